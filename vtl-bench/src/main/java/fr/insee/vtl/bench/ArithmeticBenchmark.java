@@ -0,0 +1,62 @@
+package fr.insee.vtl.bench;
+
+import fr.insee.vtl.model.Dataset;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A calc of 20 chained long additions and subtractions on 1M and 10M rows, evaluated by the
+ * interpreter. Run it with <code>-prof gc</code> to see the allocations of the intermediate
+ * results. The datasets are bound in the scope of the engine, so that the benchmark also runs on
+ * older engines.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(
+    value = 1,
+    jvmArgs = {"-Xms4g", "-Xmx8g"})
+public class ArithmeticBenchmark {
+
+  private static final int OPERATORS = 20;
+
+  @Param({"1000000", "10000000"})
+  private int rows;
+
+  private ScriptEngine engine;
+  private String script;
+
+  @Setup
+  public void setUp() {
+    engine = new ScriptEngineManager().getEngineByName("vtl");
+    engine.put("ds", BenchmarkDatasets.longs(rows, String::valueOf, "m1", "m2"));
+
+    var expression = new StringBuilder("m1");
+    for (int i = 0; i < OPERATORS; i++) {
+      expression.append(i % 2 == 0 ? " + m2" : " - m1");
+    }
+    script = "res := ds[calc m3 := " + expression + "];";
+  }
+
+  @Benchmark
+  public List<?> calc() throws ScriptException {
+    engine.eval(script);
+    return ((Dataset) engine.get("res")).getDataPoints();
+  }
+}
@@ -0,0 +1,42 @@
+package fr.insee.vtl.bench;
+
+import fr.insee.vtl.model.Dataset;
+import fr.insee.vtl.model.InMemoryDataset;
+import fr.insee.vtl.model.Structured;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/** Synthetic datasets of the benchmarks. */
+final class BenchmarkDatasets {
+
+  private BenchmarkDatasets() {}
+
+  /**
+   * Returns a dataset identified by a string column <code>id</code> with long measures.
+   *
+   * @param rows The number of rows.
+   * @param identifier The value of the identifier of a row.
+   * @param measures The names of the measures, the value of a measure is the index of the row plus
+   *     the index of the measure.
+   * @return The dataset.
+   */
+  static Dataset longs(int rows, IntFunction<String> identifier, String... measures) {
+    var components = new ArrayList<Structured.Component>();
+    components.add(new Structured.Component("id", String.class, Dataset.Role.IDENTIFIER));
+    for (String measure : measures) {
+      components.add(new Structured.Component(measure, Long.class, Dataset.Role.MEASURE));
+    }
+    var structure = new Structured.DataStructure(components);
+    List<Structured.DataPoint> dataPoints = new ArrayList<>(rows);
+    for (int i = 0; i < rows; i++) {
+      var values = new ArrayList<>(measures.length + 1);
+      values.add(identifier.apply(i));
+      for (int j = 0; j < measures.length; j++) {
+        values.add((long) i + j);
+      }
+      dataPoints.add(new Structured.DataPoint(structure, values));
+    }
+    return new InMemoryDataset(dataPoints, structure);
+  }
+}
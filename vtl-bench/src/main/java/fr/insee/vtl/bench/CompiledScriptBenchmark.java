@@ -0,0 +1,96 @@
+package fr.insee.vtl.bench;
+
+import fr.insee.vtl.model.Dataset;
+import java.util.concurrent.TimeUnit;
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+import javax.script.SimpleBindings;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Evaluations of the same 500-statement script with new bindings: calcs, filters and datapoint
+ * rulesets over a small dataset.
+ *
+ * <p>{@link #coldEval} parses and visits the whole script on every evaluation, {@link
+ * #compiledEval} evaluates a script compiled once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CompiledScriptBenchmark {
+
+  private static final int STATEMENTS = 500;
+
+  @Param({"100"})
+  private int rows;
+
+  private ScriptEngine engine;
+  private String script;
+  private CompiledScript compiled;
+  private Dataset dataset;
+
+  /** Returns a script chaining calcs and filters, checked by a new ruleset every 25 statements. */
+  static String script(int statements) {
+    var script = new StringBuilder();
+    var last = "ds";
+    for (int i = 1; i <= statements; i++) {
+      String statement;
+      if (i % 25 == 0) {
+        statement =
+            "define datapoint ruleset dpr"
+                + i
+                + " (variable m1) is positive : m1 >= 0 errorcode \"negative\" "
+                + "end datapoint ruleset;";
+      } else if (i % 25 == 1 && i > 1) {
+        statement = "v" + i + " := check_datapoint(" + last + ", dpr" + (i - 1) + ");";
+      } else {
+        var clause = i % 2 == 0 ? "calc m2 := m2 + m1 * 2" : "filter m1 >= 0";
+        statement = "s" + i + " := " + last + "[" + clause + "];";
+        last = "s" + i;
+      }
+      script.append(statement).append('\n');
+    }
+    return script.toString();
+  }
+
+  @Setup
+  public void setUp() throws ScriptException {
+    engine = new ScriptEngineManager().getEngineByName("vtl");
+    script = script(STATEMENTS);
+    compiled = ((Compilable) engine).compile(script);
+    dataset = BenchmarkDatasets.longs(rows, String::valueOf, "m1", "m2");
+  }
+
+  private Bindings newBindings() {
+    Bindings bindings = new SimpleBindings();
+    bindings.put("ds", dataset);
+    return bindings;
+  }
+
+  @Benchmark
+  public Object coldEval() throws ScriptException {
+    return engine.eval(script, newBindings());
+  }
+
+  @Benchmark
+  public Object compiledEval() throws ScriptException {
+    return compiled.eval(newBindings());
+  }
+}
@@ -0,0 +1,106 @@
+package fr.insee.vtl.bench;
+
+import fr.insee.vtl.model.Dataset;
+import fr.insee.vtl.model.InMemoryDataset;
+import fr.insee.vtl.model.Structured;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.script.Bindings;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+import javax.script.SimpleBindings;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Constant folding and natives prepared for their constant arguments: a calc of regular expressions
+ * and concatenations on every row.
+ *
+ * <p>In {@link #constants}, the regular expressions and the concatenated suffix are constants: the
+ * patterns are compiled once and the suffix is folded. {@link #columns} computes the same values
+ * with these arguments read from columns, so that they are handled on every row. {@link #casts}
+ * casts strings to dates and dates to strings with masks, which can only be constants.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(
+    value = 1,
+    jvmArgs = {"-Xms4g", "-Xmx8g"})
+public class ConstantArgumentBenchmark {
+
+  private static final String CONSTANTS_SCRIPT =
+      "res := ds[calc r := replace(s, \"[0-9]+\", \"\"), "
+          + "m := match_characters(s, \"[a-z0-9]+\"), "
+          + "c := s || (\"-\" || \"x\")];";
+
+  private static final String COLUMNS_SCRIPT =
+      "res := ds[calc r := replace(s, digits, \"\"), "
+          + "m := match_characters(s, alphanumerics), "
+          + "c := s || (separator || suffix)];";
+
+  private static final String CASTS_SCRIPT =
+      "res := ds[calc d := cast(day, date, \"YYYY-MM-DD\"), "
+          + "y := cast(cast(day, date, \"YYYY-MM-DD\"), string, \"YYYY\")];";
+
+  @Param({"1000000"})
+  private int rows;
+
+  private ScriptEngine engine;
+  private Bindings bindings;
+
+  @Setup
+  public void setUp() {
+    engine = new ScriptEngineManager().getEngineByName("vtl");
+    var names = List.of("id", "s", "digits", "alphanumerics", "separator", "suffix", "day");
+    var components = new ArrayList<Structured.Component>();
+    for (String name : names) {
+      var role = name.equals("id") ? Dataset.Role.IDENTIFIER : Dataset.Role.MEASURE;
+      components.add(new Structured.Component(name, String.class, role));
+    }
+    var structure = new Structured.DataStructure(components);
+    List<Structured.DataPoint> dataPoints = new ArrayList<>(rows);
+    for (int i = 0; i < rows; i++) {
+      var day = String.format("%04d-%02d-%02d", 2000 + i % 20, 1 + i % 12, 1 + i % 28);
+      dataPoints.add(
+          new Structured.DataPoint(
+              structure,
+              List.of(String.valueOf(i), "ab" + i + "cd", "[0-9]+", "[a-z0-9]+", "-", "x", day)));
+    }
+    bindings = new SimpleBindings();
+    bindings.put("ds", new InMemoryDataset(dataPoints, structure));
+  }
+
+  private List<?> evalCalc(String script) throws ScriptException {
+    engine.eval(script, bindings);
+    return ((Dataset) bindings.get("res")).getDataPoints();
+  }
+
+  @Benchmark
+  public List<?> constants() throws ScriptException {
+    return evalCalc(CONSTANTS_SCRIPT);
+  }
+
+  @Benchmark
+  public List<?> columns() throws ScriptException {
+    return evalCalc(COLUMNS_SCRIPT);
+  }
+
+  @Benchmark
+  public List<?> casts() throws ScriptException {
+    return evalCalc(CASTS_SCRIPT);
+  }
+}
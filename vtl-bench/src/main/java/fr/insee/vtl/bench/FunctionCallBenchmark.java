@@ -0,0 +1,179 @@
+package fr.insee.vtl.bench;
+
+import fr.insee.vtl.engine.VtlScriptEngine;
+import fr.insee.vtl.engine.expressions.ComponentExpression;
+import fr.insee.vtl.engine.expressions.FunctionExpression;
+import fr.insee.vtl.model.Dataset;
+import fr.insee.vtl.model.Positioned;
+import fr.insee.vtl.model.ResolvableExpression;
+import fr.insee.vtl.model.Structured;
+import fr.insee.vtl.model.VtlMethod;
+import fr.insee.vtl.model.exceptions.VtlScriptException;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.script.Bindings;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+import javax.script.SimpleBindings;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Calls to the natives: a calc of 20 chained string functions (<code>trim</code>, <code>upper
+ * </code> and <code>lower</code>) on every row. These natives have no unboxed implementation, so
+ * they are always called through the method handles bound by the function expressions.
+ *
+ * <p>{@link #calc} runs the calc with the interpreter and {@link #compiledCalc} with the
+ * expressions compiled to bytecode. {@link #functionExpressions} resolves the same function
+ * expressions on every data point, and {@link #baselineExpressions} the same calls made the way the
+ * expressions used to make them: looking the native up and invoking it by reflection on every row,
+ * with the components read by name from the data point seen as a map.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(
+    value = 1,
+    jvmArgs = {"-Xms4g", "-Xmx8g"})
+public class FunctionCallBenchmark {
+
+  private static final int FUNCTIONS = 20;
+
+  private static final String NATIVES =
+      "fr.insee.vtl.engine.visitors.expression.functions.StringFunctionsVisitor";
+
+  private static final List<String> VTL_NAMES = List.of("trim", "upper", "lower");
+
+  private static final List<String> NATIVE_NAMES = List.of("trim", "ucase", "lcase");
+
+  private static final Positioned POSITION = () -> new Positioned.Position(0, 0, 0, 0);
+
+  @Param({"1000000", "10000000"})
+  private int rows;
+
+  private ScriptEngine engine;
+  private ScriptEngine compilingEngine;
+  private Bindings bindings;
+  private String script;
+  private List<Structured.DataPoint> dataPoints;
+  private ResolvableExpression functionExpression;
+  private ResolvableExpression baselineExpression;
+
+  @Setup
+  public void setUp() throws ReflectiveOperationException, VtlScriptException {
+    engine = new ScriptEngineManager().getEngineByName("vtl");
+    compilingEngine = new ScriptEngineManager().getEngineByName("vtl");
+    compilingEngine.put(VtlScriptEngine.EXPRESSION_COMPILATION, true);
+    var dataset = BenchmarkDatasets.longs(rows, String::valueOf, "m1");
+    bindings = new SimpleBindings();
+    bindings.put("ds", dataset);
+    dataPoints = dataset.getDataPoints();
+
+    var expression = new StringBuilder("id");
+    var id = dataset.getDataStructure().get("id");
+    functionExpression = new ComponentExpression(id, POSITION);
+    baselineExpression = new ComponentLookup(id.getName());
+    for (int i = 0; i < FUNCTIONS; i++) {
+      expression.insert(0, VTL_NAMES.get(i % 3) + "(").append(")");
+      var method = Class.forName(NATIVES).getMethod(NATIVE_NAMES.get(i % 3), String.class);
+      functionExpression =
+          new FunctionExpression(new VtlMethod(method), List.of(functionExpression), POSITION);
+      baselineExpression = new ReflectiveCall(new VtlMethod(method), baselineExpression);
+    }
+    script = "res := ds[calc m2 := " + expression + "];";
+  }
+
+  private List<?> evalCalc(ScriptEngine engine) throws ScriptException {
+    engine.eval(script, bindings);
+    return ((Dataset) bindings.get("res")).getDataPoints();
+  }
+
+  @Benchmark
+  public List<?> calc() throws ScriptException {
+    return evalCalc(engine);
+  }
+
+  @Benchmark
+  public List<?> compiledCalc() throws ScriptException {
+    return evalCalc(compilingEngine);
+  }
+
+  @Benchmark
+  public void functionExpressions(Blackhole blackhole) {
+    for (Structured.DataPoint dataPoint : dataPoints) {
+      blackhole.consume(functionExpression.resolve(dataPoint));
+    }
+  }
+
+  @Benchmark
+  public void baselineExpressions(Blackhole blackhole) {
+    for (Structured.DataPoint dataPoint : dataPoints) {
+      blackhole.consume(baselineExpression.resolve(dataPoint));
+    }
+  }
+
+  /** Reads a component by name, as the component expressions used to. */
+  private static final class ComponentLookup extends ResolvableExpression {
+
+    private final String name;
+
+    private ComponentLookup(String name) {
+      super(POSITION);
+      this.name = name;
+    }
+
+    @Override
+    public Object resolve(Map<String, Object> context) {
+      return context.get(name);
+    }
+
+    @Override
+    public Class<?> getType() {
+      return String.class;
+    }
+  }
+
+  /** Calls a native of one parameter as the function expressions used to. */
+  private static final class ReflectiveCall extends ResolvableExpression {
+
+    private final VtlMethod method;
+    private final List<ResolvableExpression> parameters;
+
+    private ReflectiveCall(VtlMethod method, ResolvableExpression parameter) {
+      super(POSITION);
+      this.method = method;
+      this.parameters = List.of(parameter);
+    }
+
+    @Override
+    public Object resolve(Map<String, Object> context) {
+      Object[] evaluatedParameters = parameters.stream().map(p -> p.resolve(context)).toArray();
+      try {
+        Method resolved = method.getMethod(this);
+        return resolved.invoke(null, evaluatedParameters);
+      } catch (Exception e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    @Override
+    public Class<?> getType() {
+      return String.class;
+    }
+  }
+}
@@ -0,0 +1,65 @@
+package fr.insee.vtl.bench;
+
+import fr.insee.vtl.model.Dataset;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.script.Bindings;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+import javax.script.SimpleBindings;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Inner and left joins of the in-memory processing engine, from 10k to 5M rows on each side. Half
+ * of the identifiers of each dataset are found in the other one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(
+    value = 1,
+    jvmArgs = {"-Xms4g", "-Xmx8g"})
+public class JoinBenchmark {
+
+  @Param({"10000", "100000", "1000000", "5000000"})
+  private int rows;
+
+  private ScriptEngine engine;
+  private Bindings bindings;
+
+  @Setup
+  public void setUp() {
+    engine = new ScriptEngineManager().getEngineByName("vtl");
+    bindings = new SimpleBindings();
+    bindings.put("ds1", BenchmarkDatasets.longs(rows, String::valueOf, "m1"));
+    bindings.put("ds2", BenchmarkDatasets.longs(rows, i -> String.valueOf(i + rows / 2), "m2"));
+  }
+
+  private List<?> evalJoin(String script) throws ScriptException {
+    engine.eval(script, bindings);
+    return ((Dataset) bindings.get("res")).getDataPoints();
+  }
+
+  @Benchmark
+  public List<?> innerJoin() throws ScriptException {
+    return evalJoin("res := inner_join(ds1, ds2);");
+  }
+
+  @Benchmark
+  public List<?> leftJoin() throws ScriptException {
+    return evalJoin("res := left_join(ds1, ds2);");
+  }
+}
@@ -0,0 +1,122 @@
+package fr.insee.vtl.bench;
+
+import fr.insee.vtl.parser.VtlLexer;
+import fr.insee.vtl.parser.VtlParser;
+import java.util.concurrent.TimeUnit;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing of synthetic scripts of 1k and 10k statements.
+ *
+ * <p>{@link #compile} parses a script with the engine, in SLL prediction mode first. {@link
+ * #compileWithNewEngine} does the same with a new engine, which parses with the DFA cache warmed by
+ * the previous engines. {@link #sllParse} and {@link #llParse} only parse the script, with the
+ * parser set up the same way: {@link #sllParse} in SLL prediction mode as the engine does first,
+ * {@link #llParse} in full LL prediction mode only, as the engine used to.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ParseBenchmark {
+
+  @Param({"1000", "10000"})
+  private int statements;
+
+  private ScriptEngineManager manager;
+  private ScriptEngine engine;
+  private String script;
+
+  /** Returns a script of assignments, calcs, filters, aggregations and joins. */
+  static String script(int statements) {
+    var script = new StringBuilder();
+    for (int i = 0; i < statements; i++) {
+      var statement =
+          switch (i % 5) {
+            case 0 -> "a" + i + " := (x + " + i + ") * 2 - abs(y) / 3;";
+            case 1 ->
+                "c"
+                    + i
+                    + " := ds[calc m := if m1 > 0 then m1 else - m1, n := substr(s, 1, 2)]"
+                    + "[filter m > "
+                    + i
+                    + " and not isnull(n)];";
+            case 2 -> "g" + i + " := ds[aggr t := sum(m1), u := max(m2) group by id];";
+            case 3 ->
+                "j" + i + " := inner_join(ds1 as d1, ds2 as d2 filter m1 > 0 calc m := m1 + m2);";
+            default -> "r" + i + " := union(ds1, ds2)[keep m1][rename m1 to m" + i + "];";
+          };
+      script.append(statement).append('\n');
+    }
+    return script.toString();
+  }
+
+  @Setup
+  public void setUp() {
+    manager = new ScriptEngineManager();
+    engine = manager.getEngineByName("vtl");
+    script = script(statements);
+  }
+
+  @Benchmark
+  public CompiledScript compile() throws ScriptException {
+    return ((Compilable) engine).compile(script);
+  }
+
+  @Benchmark
+  public CompiledScript compileWithNewEngine() throws ScriptException {
+    return ((Compilable) manager.getEngineByName("vtl")).compile(script);
+  }
+
+  /**
+   * Returns a parser of the script built as the engine builds it: the lexer and the parser report
+   * to the same listener instead of the console.
+   */
+  private VtlParser parser(PredictionMode mode) {
+    var listener = new BaseErrorListener();
+    var lexer = new VtlLexer(CharStreams.fromString(script));
+    lexer.removeErrorListeners();
+    lexer.addErrorListener(listener);
+    var parser = new VtlParser(new CommonTokenStream(lexer));
+    parser.removeErrorListeners();
+    parser.getInterpreter().setPredictionMode(mode);
+    if (mode == PredictionMode.SLL) {
+      parser.setErrorHandler(new BailErrorStrategy());
+    } else {
+      parser.addErrorListener(listener);
+    }
+    return parser;
+  }
+
+  @Benchmark
+  public VtlParser.StartContext sllParse() {
+    return parser(PredictionMode.SLL).start();
+  }
+
+  @Benchmark
+  public VtlParser.StartContext llParse() {
+    return parser(PredictionMode.LL).start();
+  }
+}
@@ -0,0 +1,7 @@
+/**
+ * JMH benchmarks of the VTL engine.
+ *
+ * <p>The module is packaged as an executable jar: <code>mvn package -pl vtl-bench -am</code>, then
+ * <code>java -jar vtl-bench/target/benchmarks.jar [benchmark regexp] [-p param=value]</code>.
+ */
+package fr.insee.vtl.bench;
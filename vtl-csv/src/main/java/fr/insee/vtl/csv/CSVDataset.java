@@ -21,6 +21,7 @@ public class CSVDataset implements Dataset {
 
   private final DataStructure structure;
   private final CsvMapReader csvReader;
+  private final List<String> ordering;
   private ArrayList<DataPoint> data;
 
   public CSVDataset(DataStructure structure, Reader csv) throws IOException {
@@ -29,7 +30,23 @@ public class CSVDataset implements Dataset {
 
   public CSVDataset(DataStructure structure, Reader csv, CsvPreference csvPreference)
       throws IOException {
+    this(structure, csv, csvPreference, List.of());
+  }
+
+  /**
+   * Constructor for a CSV file whose rows are sorted on some columns.
+   *
+   * @param structure The structure of the dataset.
+   * @param csv The reader of the CSV file.
+   * @param csvPreference The CSV preferences.
+   * @param ordering The names of the columns the rows are sorted on.
+   * @see Dataset#getOrdering()
+   */
+  public CSVDataset(
+      DataStructure structure, Reader csv, CsvPreference csvPreference, List<String> ordering)
+      throws IOException {
     this.structure = structure;
+    this.ordering = List.copyOf(ordering);
     this.csvReader = new CsvMapReader(csv, csvPreference);
     var columns = this.csvReader.getHeader(true);
     if (!this.structure.keySet().containsAll(List.of(columns))) {
@@ -94,4 +111,9 @@ public class CSVDataset implements Dataset {
   public DataStructure getDataStructure() {
     return this.structure;
   }
+
+  @Override
+  public List<String> getOrdering() {
+    return ordering;
+  }
 }
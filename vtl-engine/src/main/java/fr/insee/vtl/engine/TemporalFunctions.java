@@ -200,7 +200,7 @@ public class TemporalFunctions {
     return op.atZone(zid);
   }
 
-  private static Interval truncate_time(Interval op, ChronoUnit unit, ZoneId zone) {
+  public static Interval truncate_time(Interval op, ChronoUnit unit, ZoneId zone) {
     var start = truncate_time(op.getStart(), unit, zone);
     return Interval.of(start, unit.getDuration());
   }
@@ -213,7 +213,7 @@ public class TemporalFunctions {
     return truncate_time(op, toChronoUnit(unit), ZoneId.systemDefault());
   }
 
-  private static Instant truncate_time(Instant op, ChronoUnit unit, ZoneId zone) {
+  public static Instant truncate_time(Instant op, ChronoUnit unit, ZoneId zone) {
     var zonedOp = op.atZone(zone);
     return switch (unit) {
       case DAYS -> zonedOp.truncatedTo(ChronoUnit.DAYS).toInstant();
@@ -245,7 +245,7 @@ public class TemporalFunctions {
         .atOffset(op.getOffset());
   }
 
-  private static ChronoUnit toChronoUnit(String unit) {
+  public static ChronoUnit toChronoUnit(String unit) {
     return switch (unit.toLowerCase()) {
       case "day" -> ChronoUnit.DAYS;
       case "month" -> ChronoUnit.MONTHS;
@@ -24,7 +24,6 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Deque;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -32,24 +31,31 @@ import java.util.Optional;
 import java.util.ServiceLoader;
 import java.util.Set;
 import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import javax.script.AbstractScriptEngine;
 import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
 import javax.script.ScriptContext;
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineFactory;
 import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
 import javax.script.SimpleBindings;
+import org.antlr.v4.runtime.BailErrorStrategy;
 import org.antlr.v4.runtime.BaseErrorListener;
 import org.antlr.v4.runtime.CharStreams;
 import org.antlr.v4.runtime.CodePointCharStream;
 import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
 import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.RecognitionException;
 import org.antlr.v4.runtime.Recognizer;
 import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.antlr.v4.runtime.tree.ParseTree;
 import org.antlr.v4.runtime.tree.TerminalNode;
 
@@ -65,17 +71,52 @@ import org.antlr.v4.runtime.tree.TerminalNode;
  *
  * <p>VTL expressions can be evaluated using the methods: {@link #eval(Reader)}, {@link
  * #eval(Reader, ScriptContext)}, {@link #eval(String)} and {@link #eval(String, ScriptContext)}
+ *
+ * <p>Scripts evaluated several times with different bindings can be parsed once with {@link
+ * #compile(String)} or {@link #compile(Reader)}.
  */
-public class VtlScriptEngine extends AbstractScriptEngine {
+public class VtlScriptEngine extends AbstractScriptEngine implements Compilable {
 
   /** Script engine property giving the (comma-separated) list of engine names. */
   public static final String PROCESSING_ENGINE_NAMES = "$vtl.engine.processing_engine_names";
 
+  /**
+   * Script engine property enabling the compilation of calc and filter expressions to bytecode by
+   * the in-memory processing engine (<code>true</code> or <code>false</code>, the default).
+   */
+  public static final String EXPRESSION_COMPILATION = "$vtl.engine.expression_compilation";
+
   private final ScriptEngineFactory factory;
+
+  /** Custom methods by name, only read and written under the lock of the engine. */
   private Map<String, Method> methodCache;
 
+  /** Global methods by name, only read and written under the lock of the engine. */
   private Map<String, Method> globalMethodCache;
 
+  /** Prefix of the names of the script engine properties. */
+  private static final String PROPERTY_PREFIX = "$vtl.";
+
+  /** Processing engine factories by name, the service loader is only scanned once per name. */
+  private final Map<String, ProcessingEngineFactory> processingEngineFactories =
+      new ConcurrentHashMap<>();
+
+  /** Evaluation of a script running on the current thread, if any. */
+  private final ThreadLocal<Evaluation> currentEvaluation = new ThreadLocal<>();
+
+  /** Native and custom methods by name, rebuilt when a method is registered. */
+  private volatile Map<String, List<Method>> methodIndex;
+
+  /** Global methods by name, rebuilt when a global method is registered. */
+  private volatile Map<String, List<Method>> globalMethodIndex;
+
+  /** Resolved methods by name and parameter types, cleared when a method is registered. */
+  private final Map<List<Object>, VtlMethod> resolvedMethods = new ConcurrentHashMap<>();
+
+  /** Resolved global methods by name and parameter types, cleared when one is registered. */
+  private final Map<List<Object>, Optional<VtlMethod>> resolvedGlobalMethods =
+      new ConcurrentHashMap<>();
+
   /**
    * Constructor taking a script engine factory.
    *
@@ -192,84 +233,222 @@ public class VtlScriptEngine extends AbstractScriptEngine {
   /**
    * Returns an instance of the processing engine for the script engine.
    *
+   * <p>During the evaluation of a script, the same instance is returned for the whole script.
+   *
    * @return an instance of the processing engine for the script engine.
    */
   public ProcessingEngine getProcessingEngine() {
+    Evaluation evaluation = currentEvaluation.get();
+    if (evaluation != null && evaluation.processingEngine != null) {
+      return evaluation.processingEngine;
+    }
     String name = getProcessingEngineName();
-    Optional<ProcessingEngineFactory> factory =
-        ServiceLoader.load(ProcessingEngineFactory.class).stream()
-            .map(ServiceLoader.Provider::get)
-            .filter(f -> f.getName().equals(name))
-            .findFirst();
-    return factory.orElseThrow().getProcessingEngine(this);
+    ProcessingEngineFactory factory = processingEngineFactories.get(name);
+    if (factory == null) {
+      factory =
+          ServiceLoader.load(ProcessingEngineFactory.class).stream()
+              .map(ServiceLoader.Provider::get)
+              .filter(f -> f.getName().equals(name))
+              .findFirst()
+              .orElseThrow();
+      processingEngineFactories.put(name, factory);
+    }
+    return factory.getProcessingEngine(this);
   }
 
   /**
-   * Base method for the evaluation of a script expression in a given context.
+   * Parses a script.
    *
-   * @param stream The script to evaluate represented as a stream of Unicode code points.
-   * @param context The evaluation context (for example: data bindings).
-   * @return The result of the evaluation of the script in the given context.
-   * @throws VtlScriptException In case of error during the evaluation.
+   * @param stream The script to parse represented as a stream of Unicode code points.
+   * @return The parse tree of the script.
+   * @throws VtlScriptException In case of syntax error.
    */
-  private Object evalStream(CodePointCharStream stream, ScriptContext context)
-      throws VtlScriptException {
-    try {
-      VtlLexer lexer = new VtlLexer(stream);
-
-      Deque<VtlScriptException> errors = new ArrayDeque<>();
-      BaseErrorListener baseErrorListener =
-          new BaseErrorListener() {
-            @Override
-            public void syntaxError(
-                Recognizer<?, ?> recognizer,
-                Object offendingSymbol,
-                int startLine,
-                int startColumn,
-                String msg,
-                RecognitionException e) {
-              if (e != null && e.getCtx() != null) {
-                errors.add(new VtlScriptException(msg, fromContext(e.getCtx())));
+  private VtlParser.StartContext parse(CodePointCharStream stream) throws VtlScriptException {
+    VtlLexer lexer = new VtlLexer(stream);
+
+    Deque<VtlScriptException> errors = new ArrayDeque<>();
+    BaseErrorListener baseErrorListener =
+        new BaseErrorListener() {
+          @Override
+          public void syntaxError(
+              Recognizer<?, ?> recognizer,
+              Object offendingSymbol,
+              int startLine,
+              int startColumn,
+              String msg,
+              RecognitionException e) {
+            if (e != null && e.getCtx() != null) {
+              errors.add(new VtlScriptException(msg, fromContext(e.getCtx())));
+            } else {
+              if (offendingSymbol instanceof Token offendingSymbolToken) {
+                errors.add(new VtlSyntaxException(msg, fromToken(offendingSymbolToken)));
               } else {
-                if (offendingSymbol instanceof Token offendingSymbolToken) {
-                  errors.add(new VtlSyntaxException(msg, fromToken(offendingSymbolToken)));
-                } else {
-                  var pos =
-                      new Positioned.Position(startLine, startLine, startColumn, startColumn + 1);
-                  errors.add(new VtlScriptException(msg, () -> pos));
-                }
+                var pos =
+                    new Positioned.Position(startLine, startLine, startColumn, startColumn + 1);
+                errors.add(new VtlScriptException(msg, () -> pos));
               }
             }
-          };
+          }
+        };
 
-      lexer.removeErrorListeners();
-      lexer.addErrorListener(baseErrorListener);
+    lexer.removeErrorListeners();
+    lexer.addErrorListener(baseErrorListener);
 
-      VtlParser parser = new VtlParser(new CommonTokenStream(lexer));
-      parser.removeErrorListeners();
-      parser.addErrorListener(baseErrorListener);
+    CommonTokenStream tokens = new CommonTokenStream(lexer);
+    VtlParser parser = new VtlParser(tokens);
+    parser.removeErrorListeners();
 
+    // Most scripts parse with the faster SLL prediction. It bails out on the first error,
+    // in which case the script is parsed again with full LL prediction and error reporting.
+    VtlParser.StartContext start;
+    parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+    parser.setErrorHandler(new BailErrorStrategy());
+    try {
+      start = parser.start();
+    } catch (ParseCancellationException sllFailure) {
+      tokens.seek(0);
+      parser.reset();
+      parser.addErrorListener(baseErrorListener);
+      parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+      parser.setErrorHandler(new DefaultErrorStrategy());
       // Note that we need to call this method to trigger the
       // error listener.
-      var start = parser.start();
+      start = parser.start();
+    }
 
-      if (!errors.isEmpty()) {
-        var first = errors.removeFirst();
-        for (VtlScriptException suppressed : errors) {
-          first.addSuppressed(suppressed);
-        }
-        throw first;
+    if (!errors.isEmpty()) {
+      var first = errors.removeFirst();
+      for (VtlScriptException suppressed : errors) {
+        first.addSuppressed(suppressed);
       }
+      throw first;
+    }
+    return start;
+  }
 
-      AssignmentVisitor assignmentVisitor = new AssignmentVisitor(this, getProcessingEngine());
+  /**
+   * Returns the context of the script being evaluated on the current thread, or the context of the
+   * engine.
+   *
+   * @return The current script context.
+   */
+  @Override
+  public ScriptContext getContext() {
+    Evaluation evaluation = currentEvaluation.get();
+    return evaluation == null ? super.getContext() : evaluation.context;
+  }
+
+  /**
+   * Returns the bindings of a scope of the script being evaluated on the current thread, or of the
+   * context of the engine.
+   *
+   * @param scope The scope of the bindings.
+   * @return The bindings of the scope.
+   */
+  @Override
+  public Bindings getBindings(int scope) {
+    Evaluation evaluation = currentEvaluation.get();
+    return evaluation == null ? super.getBindings(scope) : evaluation.context.getBindings(scope);
+  }
+
+  /**
+   * Returns the value of a key of the engine scope.
+   *
+   * <p>When a script is evaluated with its own bindings, the script engine properties that are not
+   * set in these bindings are the ones of the engine.
+   *
+   * @param key The key.
+   * @return The value of the key.
+   */
+  @Override
+  public Object get(String key) {
+    Evaluation evaluation = currentEvaluation.get();
+    if (evaluation == null || evaluation.context == context) {
+      return super.get(key);
+    }
+    Bindings bindings = evaluation.context.getBindings(ScriptContext.ENGINE_SCOPE);
+    if ((bindings == null || !bindings.containsKey(key)) && key.startsWith(PROPERTY_PREFIX)) {
+      return context.getAttribute(key, ScriptContext.ENGINE_SCOPE);
+    }
+    return bindings == null ? null : bindings.get(key);
+  }
+
+  /**
+   * Evaluates the statements of a parsed script in a given context.
+   *
+   * <p>The visitors read and write the bindings of the context, which is only seen by the current
+   * thread during the evaluation: the context of the engine is left untouched so that scripts can
+   * be evaluated concurrently with their own bindings.
+   *
+   * @param start The parse tree of the script.
+   * @param context The evaluation context (for example: data bindings).
+   * @param definitions The definitions of the script already evaluated, null if not kept.
+   * @return The result of the evaluation of the last statement.
+   * @throws VtlScriptException In case of error during the evaluation.
+   */
+  private Object evalTree(
+      VtlParser.StartContext start,
+      ScriptContext context,
+      Map<VtlParser.StatementContext, Object> definitions)
+      throws VtlScriptException {
+    Evaluation enclosingEvaluation = currentEvaluation.get();
+    Evaluation evaluation = new Evaluation(context == null ? getContext() : context);
+    currentEvaluation.set(evaluation);
+    try {
+      evaluation.processingEngine = getProcessingEngine();
+      AssignmentVisitor assignmentVisitor =
+          new AssignmentVisitor(this, evaluation.processingEngine);
+      Bindings bindings = evaluation.context.getBindings(ScriptContext.ENGINE_SCOPE);
       Object lastValue = null;
       for (VtlParser.StatementContext stmt : start.statement()) {
+        String rulesetName = definedRulesetName(stmt);
+        if (rulesetName != null && definitions != null && definitions.containsKey(stmt)) {
+          // Rulesets do not depend on the bindings, they are only bound again.
+          lastValue = definitions.get(stmt);
+          bindings.put(rulesetName, lastValue);
+          continue;
+        }
         lastValue = assignmentVisitor.visit(stmt);
+        if (rulesetName != null && definitions != null) {
+          definitions.put(stmt, lastValue);
+        }
       }
       return lastValue;
     } catch (VtlRuntimeException vre) {
       throw vre.getCause();
+    } finally {
+      if (enclosingEvaluation == null) {
+        currentEvaluation.remove();
+      } else {
+        currentEvaluation.set(enclosingEvaluation);
+      }
+    }
+  }
+
+  /** Returns the name of the ruleset defined by a statement, or null. */
+  private static String definedRulesetName(VtlParser.StatementContext stmt) {
+    if (stmt instanceof VtlParser.DefineExpressionContext define) {
+      if (define.defOperators() instanceof VtlParser.DefDatapointRulesetContext datapoint) {
+        return datapoint.rulesetID().getText();
+      }
+      if (define.defOperators() instanceof VtlParser.DefHierarchicalContext hierarchical) {
+        return hierarchical.rulesetID().getText();
+      }
     }
+    return null;
+  }
+
+  /**
+   * Base method for the evaluation of a script expression in a given context.
+   *
+   * @param stream The script to evaluate represented as a stream of Unicode code points.
+   * @param context The evaluation context (for example: data bindings).
+   * @return The result of the evaluation of the script in the given context.
+   * @throws VtlScriptException In case of error during the evaluation.
+   */
+  private Object evalStream(CodePointCharStream stream, ScriptContext context)
+      throws VtlScriptException {
+    return evalTree(parse(stream), context, null);
   }
 
   /**
@@ -304,6 +483,34 @@ public class VtlScriptEngine extends AbstractScriptEngine {
     }
   }
 
+  /**
+   * Compiles a script (represented as a string) for later evaluations.
+   *
+   * @param script The script to compile represented as a string.
+   * @return The compiled script.
+   * @throws VtlScriptException In case of syntax error.
+   */
+  @Override
+  public CompiledScript compile(String script) throws VtlScriptException {
+    return new VtlCompiledScript(parse(CharStreams.fromString(script)));
+  }
+
+  /**
+   * Compiles a script (read in a <code>Reader</code>) for later evaluations.
+   *
+   * @param reader The <code>Reader</code> containing the script to compile.
+   * @return The compiled script.
+   * @throws ScriptException In case of syntax error.
+   */
+  @Override
+  public CompiledScript compile(Reader reader) throws ScriptException {
+    try {
+      return new VtlCompiledScript(parse(CharStreams.fromReader(reader)));
+    } catch (IOException e) {
+      throw new ScriptException(e);
+    }
+  }
+
   /**
    * Returns a new instance of script context bindings.
    *
@@ -325,45 +532,77 @@ public class VtlScriptEngine extends AbstractScriptEngine {
   }
 
   public VtlMethod findMethod(String name, Collection<Class> types) throws NoSuchMethodException {
-    Set<Method> customMethods =
-        methodCache == null ? Set.of() : new HashSet<>(methodCache.values());
-    Set<Method> methods =
-        Stream.concat(NATIVE_METHODS.stream(), customMethods.stream()).collect(Collectors.toSet());
-
-    List<Method> candidates =
-        methods.stream()
-            .filter(method -> method.getName().equals(name))
-            .filter(method -> matchParameters(method, types.toArray(Class[]::new)))
-            .collect(Collectors.toList());
-    if (candidates.size() == 1) {
-      return new VtlMethod(candidates.get(0));
+    List<Object> key = Arrays.asList(name, Arrays.asList(types.toArray()));
+    VtlMethod resolved = resolvedMethods.get(key);
+    if (resolved != null) {
+      return resolved;
     }
-    // TODO: Handle parameter resolution.
-    for (Method method : methods) {
-      if (method.getName().equals(name)
-          && types.equals(Arrays.asList(method.getParameterTypes()))) {
-        return new VtlMethod(method);
+    // Resolved under the lock of the registrations, so that no stale index or method is cached.
+    synchronized (this) {
+      if (methodIndex == null) {
+        Collection<Method> customMethods = methodCache == null ? Set.of() : methodCache.values();
+        methodIndex = indexMethods(Stream.concat(NATIVE_METHODS.stream(), customMethods.stream()));
       }
+      resolved =
+          resolveMethod(
+              methodIndex.getOrDefault(name, List.of()),
+              name,
+              Arrays.asList(types.toArray(new Class<?>[0])));
+      if (resolved == null) {
+        throw new NoSuchMethodException(methodToString(name, types));
+      }
+      resolvedMethods.put(key, resolved);
     }
-    throw new NoSuchMethodException(methodToString(name, types));
+    return resolved;
   }
 
   public VtlMethod findGlobalMethod(String name, Collection<Class> types)
       throws NoSuchMethodException {
-    if (globalMethodCache == null) return null;
-    Set<Method> methods = new HashSet<>(globalMethodCache.values());
+    List<Object> key = Arrays.asList(name, Arrays.asList(types.toArray()));
+    Optional<VtlMethod> resolved = resolvedGlobalMethods.get(key);
+    if (resolved != null) {
+      return resolved.orElse(null);
+    }
+    synchronized (this) {
+      if (globalMethodIndex == null) {
+        globalMethodIndex =
+            globalMethodCache == null
+                ? Map.of()
+                : indexMethods(globalMethodCache.values().stream());
+      }
+      List<Method> methods = globalMethodIndex.get(name);
+      if (methods == null
+          || methods.stream().noneMatch(m -> matchParameters(m, types.toArray(new Class<?>[0])))) {
+        // It's not a global method
+        resolved = Optional.empty();
+      } else {
+        resolved =
+            Optional.ofNullable(
+                resolveMethod(methods, name, Arrays.asList(types.toArray(new Class<?>[0]))));
+        if (resolved.isEmpty()) {
+          throw new NoSuchMethodException(methodToString(name, types));
+        }
+      }
+      resolvedGlobalMethods.put(key, resolved);
+    }
+    return resolved.orElse(null);
+  }
+
+  /** Indexes distinct methods by name. */
+  private static Map<String, List<Method>> indexMethods(Stream<Method> methods) {
+    return methods.distinct().collect(Collectors.groupingBy(Method::getName));
+  }
 
+  /**
+   * Resolves a method among the methods with the given name, or returns null if none or several of
+   * them match the types.
+   */
+  private static VtlMethod resolveMethod(
+      List<Method> methods, String name, Collection<Class<?>> types) {
     List<Method> candidates =
         methods.stream()
-            .filter(method -> method.getName().equals(name))
-            .filter(method -> matchParameters(method, types.toArray(Class[]::new)))
+            .filter(method -> matchParameters(method, types.toArray(new Class<?>[0])))
             .collect(Collectors.toList());
-
-    if (candidates.size() == 0) {
-      // It's not a global method
-      return null;
-    }
-
     if (candidates.size() == 1) {
       return new VtlMethod(candidates.get(0));
     }
@@ -374,7 +613,7 @@ public class VtlScriptEngine extends AbstractScriptEngine {
         return new VtlMethod(method);
       }
     }
-    throw new NoSuchMethodException(methodToString(name, types));
+    return null;
   }
 
   private String methodToString(String name, Collection<Class> argTypes) {
@@ -387,22 +626,30 @@ public class VtlScriptEngine extends AbstractScriptEngine {
     return sj.toString();
   }
 
-  public Method registerMethod(String name, Method method) {
+  public synchronized Method registerMethod(String name, Method method) {
     if (methodCache == null) {
       loadMethods();
     }
-    return methodCache.put(name, method);
+    Method previous = methodCache.put(name, method);
+    methodIndex = null;
+    resolvedMethods.clear();
+    return previous;
   }
 
-  public Method registerGlobalMethod(String name, Method method) {
+  public synchronized Method registerGlobalMethod(String name, Method method) {
     if (globalMethodCache == null) {
       globalMethodCache = new LinkedHashMap<>();
     }
-    return globalMethodCache.put(name, method);
+    Method previous = globalMethodCache.put(name, method);
+    globalMethodIndex = null;
+    resolvedGlobalMethods.clear();
+    return previous;
   }
 
   private void loadMethods() {
     methodCache = new LinkedHashMap<>();
+    methodIndex = null;
+    resolvedMethods.clear();
     ServiceLoader<FunctionProvider> providers = ServiceLoader.load(FunctionProvider.class);
     for (FunctionProvider provider : providers) {
       Map<String, Method> functions = provider.getFunctions(this);
@@ -412,4 +659,44 @@ public class VtlScriptEngine extends AbstractScriptEngine {
       }
     }
   }
+
+  /** State of the evaluation of a script, only seen by the thread running it. */
+  private static final class Evaluation {
+
+    private final ScriptContext context;
+    private ProcessingEngine processingEngine;
+
+    private Evaluation(ScriptContext context) {
+      this.context = context;
+    }
+  }
+
+  /**
+   * A script parsed once and evaluated as many times as needed.
+   *
+   * <p>The parse tree is kept, each evaluation only visits it with the bindings of the evaluation
+   * context: the datasets are resolved from these bindings and the processing engine is chosen
+   * according to the engine properties at evaluation time. The rulesets defined by the script do
+   * not depend on the bindings: their rules are resolved and type checked by the first evaluation
+   * only.
+   */
+  private final class VtlCompiledScript extends CompiledScript {
+
+    private final VtlParser.StartContext start;
+    private final Map<VtlParser.StatementContext, Object> definitions = new ConcurrentHashMap<>();
+
+    private VtlCompiledScript(VtlParser.StartContext start) {
+      this.start = start;
+    }
+
+    @Override
+    public Object eval(ScriptContext context) throws VtlScriptException {
+      return evalTree(start, context, definitions);
+    }
+
+    @Override
+    public ScriptEngine getEngine() {
+      return VtlScriptEngine.this;
+    }
+  }
 }
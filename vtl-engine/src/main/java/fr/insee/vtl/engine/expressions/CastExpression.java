@@ -3,18 +3,27 @@ package fr.insee.vtl.engine.expressions;
 import fr.insee.vtl.engine.exceptions.InvalidArgumentException;
 import fr.insee.vtl.model.Positioned;
 import fr.insee.vtl.model.ResolvableExpression;
+import fr.insee.vtl.model.Structured;
+import fr.insee.vtl.model.VtlFunction;
 import fr.insee.vtl.model.exceptions.VtlScriptException;
 import java.time.*;
 import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
+import java.time.temporal.TemporalQueries;
 import java.util.Map;
+import java.util.Set;
 import org.threeten.extra.Interval;
 import org.threeten.extra.PeriodDuration;
 
 public class CastExpression extends ResolvableExpression {
 
   private final Class<?> target;
-  private final ResolvableExpression expr;
+  private final ResolvableExpression operand;
+  // Converts the value of the operand, the operand is resolved along the path of the caller.
+  private final VtlFunction<Object, Object> conversion;
+  private final String mask;
+
+  // The mask is a constant of the script, it is only parsed once (formatters are not serializable).
+  private transient DateTimeFormatter maskFormatter;
 
   private final String isNotSupported = " is not supported";
 
@@ -23,230 +32,190 @@ public class CastExpression extends ResolvableExpression {
       throws VtlScriptException {
     super(position);
     this.target = target;
+    this.operand = expr;
+    this.mask = mask;
     var source = expr.getType();
     if (source.equals(target)) {
-      this.expr = expr;
+      this.conversion = value -> value;
     } else {
       if (String.class.equals(source)) {
-        this.expr = castString(expr, mask);
+        this.conversion = castString();
       } else if (Boolean.class.equals(source)) {
-        this.expr = castBoolean(expr);
+        this.conversion = castBoolean();
       } else if (Long.class.equals(source)) {
-        this.expr = castLong(expr);
+        this.conversion = castLong();
       } else if (Double.class.equals(source)) {
-        this.expr = castDouble(expr);
+        this.conversion = castDouble();
       } else if (Instant.class.equals(source)) {
         if (mask == null || mask.isEmpty()) {
           throw new InvalidArgumentException("cannot cast date: no mask specified", position);
         }
-        this.expr = castInstant(expr, mask);
+        this.conversion = castInstant();
       } else
         throw new VtlScriptException(
             "cast unsupported on expression of type: " + expr.getType(), position);
     }
   }
 
-  public ResolvableExpression castBoolean(ResolvableExpression expr) {
+  private VtlFunction<Object, Object> castBoolean() {
     var outputClass = getType();
     if (outputClass.equals(String.class)) {
-      return ResolvableExpression.withType(String.class)
-          .withPosition(expr)
-          .using(
-              context -> {
-                Boolean exprValue = (Boolean) expr.resolve(context);
-                if (exprValue == null) return null;
-                return exprValue.toString();
-              });
+      return value -> {
+        Boolean exprValue = (Boolean) value;
+        if (exprValue == null) return null;
+        return exprValue.toString();
+      };
     } else if (outputClass.equals(Long.class)) {
-      return ResolvableExpression.withType(Long.class)
-          .withPosition(expr)
-          .using(
-              context -> {
-                Boolean exprValue = (Boolean) expr.resolve(context);
-                if (exprValue == null) return null;
-                return exprValue ? 1L : 0L;
-              });
+      return value -> {
+        Boolean exprValue = (Boolean) value;
+        if (exprValue == null) return null;
+        return exprValue ? 1L : 0L;
+      };
     } else if (outputClass.equals(Double.class)) {
-      return ResolvableExpression.withType(Double.class)
-          .withPosition(expr)
-          .using(
-              context -> {
-                Boolean exprValue = (Boolean) expr.resolve(context);
-                if (exprValue == null) return null;
-                return exprValue ? 1D : 0D;
-              });
+      return value -> {
+        Boolean exprValue = (Boolean) value;
+        if (exprValue == null) return null;
+        return exprValue ? 1D : 0D;
+      };
     }
     throw new ClassCastException("Cast Boolean to " + outputClass + isNotSupported);
   }
 
-  private ResolvableExpression castDouble(ResolvableExpression expr) {
+  private VtlFunction<Object, Object> castDouble() {
     var outputClass = getType();
     if (outputClass.equals(String.class))
-      return ResolvableExpression.withType(String.class)
-          .withPosition(expr)
-          .using(
-              context -> {
-                Double exprValue = (Double) expr.resolve(context);
-                if (exprValue == null) return null;
-                return exprValue.toString();
-              });
+      return value -> {
+        Double exprValue = (Double) value;
+        if (exprValue == null) return null;
+        return exprValue.toString();
+      };
     if (outputClass.equals(Long.class))
-      return ResolvableExpression.withType(Long.class)
-          .withPosition(expr)
-          .using(
-              context -> {
-                Double exprValue = (Double) expr.resolve(context);
-                if (exprValue == null) return null;
-                if (exprValue % 1 != 0)
-                  throw new UnsupportedOperationException(
-                      exprValue + " can not be casted into integer");
-                return exprValue.longValue();
-              });
-    if (outputClass.equals(Double.class))
-      return ResolvableExpression.withType(Double.class)
-          .withPosition(expr)
-          .using(context -> (Double) expr.resolve(context));
+      return value -> {
+        Double exprValue = (Double) value;
+        if (exprValue == null) return null;
+        if (exprValue % 1 != 0)
+          throw new UnsupportedOperationException(exprValue + " can not be casted into integer");
+        return exprValue.longValue();
+      };
+    if (outputClass.equals(Double.class)) return value -> (Double) value;
     if (outputClass.equals(Boolean.class))
-      return ResolvableExpression.withType(Boolean.class)
-          .withPosition(expr)
-          .using(
-              context -> {
-                Double exprValue = (Double) expr.resolve(context);
-                if (exprValue == null) return null;
-                return !exprValue.equals(0D);
-              });
+      return value -> {
+        Double exprValue = (Double) value;
+        if (exprValue == null) return null;
+        return !exprValue.equals(0D);
+      };
     throw new ClassCastException("Cast Double to " + outputClass + isNotSupported);
   }
 
-  private ResolvableExpression castInstant(ResolvableExpression expr, String mask) {
+  private VtlFunction<Object, Object> castInstant() {
     var outputClass = getType();
     if (outputClass.equals(String.class))
-      return ResolvableExpression.withType(String.class)
-          .withPosition(expr)
-          .using(
-              context -> {
-                var value = expr.resolve(context);
-                Instant exprValue;
-                if (value instanceof LocalDate date) {
-                  exprValue = date.atStartOfDay().toInstant(ZoneOffset.UTC);
-                } else {
-                  exprValue = (Instant) value;
-                }
-                if (exprValue == null) return null;
-                DateTimeFormatter maskFormatter = DateTimeFormatter.ofPattern(mask);
-                return maskFormatter.format(exprValue.atOffset(ZoneOffset.UTC));
-              });
+      return value -> {
+        Instant exprValue;
+        if (value instanceof LocalDate date) {
+          exprValue = date.atStartOfDay().toInstant(ZoneOffset.UTC);
+        } else {
+          exprValue = (Instant) value;
+        }
+        if (exprValue == null) return null;
+        return maskFormatter(false).format(exprValue.atOffset(ZoneOffset.UTC));
+      };
     throw new ClassCastException("Cast Date to " + outputClass + isNotSupported);
   }
 
-  private ResolvableExpression castLong(ResolvableExpression expr) {
+  private VtlFunction<Object, Object> castLong() {
     var outputClass = getType();
     if (outputClass.equals(String.class))
-      return ResolvableExpression.withType(String.class)
-          .withPosition(expr)
-          .using(
-              context -> {
-                Long exprValue = (Long) expr.resolve(context);
-                if (exprValue == null) return null;
-                return exprValue.toString();
-              });
+      return value -> {
+        Long exprValue = (Long) value;
+        if (exprValue == null) return null;
+        return exprValue.toString();
+      };
     if (outputClass.equals(Double.class))
-      return ResolvableExpression.withType(Double.class)
-          .withPosition(expr)
-          .using(
-              context -> {
-                Long exprValue = (Long) expr.resolve(context);
-                if (exprValue == null) return null;
-                return Double.valueOf(exprValue);
-              });
+      return value -> {
+        Long exprValue = (Long) value;
+        if (exprValue == null) return null;
+        return Double.valueOf(exprValue);
+      };
     if (outputClass.equals(Boolean.class))
-      return ResolvableExpression.withType(Boolean.class)
-          .withPosition(expr)
-          .using(
-              context -> {
-                Long exprValue = (Long) expr.resolve(context);
-                if (exprValue == null) return null;
-                return !exprValue.equals(0L);
-              });
+      return value -> {
+        Long exprValue = (Long) value;
+        if (exprValue == null) return null;
+        return !exprValue.equals(0L);
+      };
     throw new ClassCastException("Cast Long to " + outputClass + isNotSupported);
   }
 
-  private ResolvableExpression castString(ResolvableExpression expr, String mask) {
+  private VtlFunction<Object, Object> castString() {
     var outputClass = getType();
     if (outputClass.equals(Long.class)) {
-      return ResolvableExpression.withType(Long.class)
-          .withPosition(expr)
-          .using(
-              context -> {
-                String exprValue = (String) expr.resolve(context);
-                if (exprValue == null) return null;
-                return Long.valueOf(exprValue);
-              });
+      return value -> {
+        String exprValue = (String) value;
+        if (exprValue == null) return null;
+        return Long.valueOf(exprValue);
+      };
     } else if (outputClass.equals(Double.class)) {
-      return ResolvableExpression.withType(Double.class)
-          .withPosition(expr)
-          .using(
-              context -> {
-                String exprValue = (String) expr.resolve(context);
-                if (exprValue == null) return null;
-                return Double.valueOf(exprValue);
-              });
+      return value -> {
+        String exprValue = (String) value;
+        if (exprValue == null) return null;
+        return Double.valueOf(exprValue);
+      };
     } else if (outputClass.equals(Boolean.class)) {
-      return ResolvableExpression.withType(Boolean.class)
-          .withPosition(expr)
-          .using(
-              context -> {
-                String exprValue = (String) expr.resolve(context);
-                if (exprValue == null) return null;
-                return Boolean.valueOf(exprValue);
-              });
+      return value -> {
+        String exprValue = (String) value;
+        if (exprValue == null) return null;
+        return Boolean.valueOf(exprValue);
+      };
     } else if (outputClass.equals(Instant.class)) {
-      return ResolvableExpression.withType(Instant.class)
-          .withPosition(expr)
-          .using(
-              context -> {
-                if (mask == null) return null;
-                String exprValue = (String) expr.resolve(context);
-                if (exprValue == null) return null;
-                // The spec is pretty vague about date and time. Apparently, date is a point in time
-                // so a good java
-                // representation is Instant. But date can be created using only year/month and date
-                // mask, leaving
-                // any time information.
-                DateTimeFormatter maskFormatter =
-                    DateTimeFormatter.ofPattern(mask).withZone(ZoneOffset.UTC);
-                try {
-                  return LocalDateTime.parse(exprValue, maskFormatter).toInstant(ZoneOffset.UTC);
-                } catch (DateTimeParseException dtp) {
-                  return LocalDate.parse(exprValue, maskFormatter)
-                      .atStartOfDay()
-                      .toInstant(ZoneOffset.UTC);
-                }
-              });
+      return value -> {
+        if (mask == null) return null;
+        String exprValue = (String) value;
+        if (exprValue == null) return null;
+        // The spec is pretty vague about date and time. Apparently, date is a point in time so a
+        // good java representation is Instant. But date can be created using only year/month and
+        // date mask, leaving any time information.
+        // The value is parsed once, the masks without time fall back to the start of the day
+        // without a parse failure on every row.
+        var parsed = maskFormatter(true).parse(exprValue);
+        var date = LocalDate.from(parsed);
+        var time = parsed.query(TemporalQueries.localTime());
+        return (time == null ? date.atStartOfDay() : date.atTime(time)).toInstant(ZoneOffset.UTC);
+      };
     } else if (outputClass.equals(PeriodDuration.class)) {
-      return ResolvableExpression.withType(PeriodDuration.class)
-          .withPosition(expr)
-          .using(
-              context -> {
-                String value = (String) expr.tryCast(String.class).resolve(context);
-                return PeriodDuration.parse(value).normalizedYears().normalizedStandardDays();
-              });
+      return value ->
+          PeriodDuration.parse((String) value).normalizedYears().normalizedStandardDays();
     } else if (outputClass.equals(Interval.class)) {
-      return ResolvableExpression.withType(Interval.class)
-          .withPosition(expr)
-          .using(
-              context -> {
-                String value = (String) expr.tryCast(String.class).resolve(context);
-                return Interval.parse(value);
-              });
+      return value -> Interval.parse((String) value);
     } else {
       throw new ClassCastException("Cast String to " + outputClass + isNotSupported);
     }
   }
 
+  private DateTimeFormatter maskFormatter(boolean utc) {
+    if (maskFormatter == null) {
+      var formatter = DateTimeFormatter.ofPattern(mask);
+      maskFormatter = utc ? formatter.withZone(ZoneOffset.UTC) : formatter;
+    }
+    return maskFormatter;
+  }
+
+  public ResolvableExpression getOperand() {
+    return operand;
+  }
+
+  @Override
+  public Set<String> getDependencies() {
+    return operand.getDependencies();
+  }
+
   @Override
   public Object resolve(Map<String, Object> context) {
-    return expr.resolve(context);
+    return conversion.apply(operand.resolve(context));
+  }
+
+  @Override
+  public Object resolve(Structured.DataPoint context) {
+    return conversion.apply(operand.resolve(context));
   }
 
   @Override
@@ -0,0 +1,252 @@
+package fr.insee.vtl.engine.expressions;
+
+import static fr.insee.vtl.engine.VtlNativeMethods.NATIVE_METHODS;
+
+import fr.insee.vtl.engine.exceptions.VtlRuntimeException;
+import fr.insee.vtl.model.ConstantExpression;
+import fr.insee.vtl.model.ResolvableExpression;
+import fr.insee.vtl.model.Structured;
+import fr.insee.vtl.model.exceptions.VtlScriptException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+/**
+ * Common subexpression elimination over the expressions evaluated together for each data point (the
+ * items of a calc clause for instance).
+ *
+ * <p>Calls to the natives are compared structurally: same method and equal parameters, where
+ * components are equal by name and constants by value. The calls that occur more than once are
+ * resolved once per data point and their value is kept in a scratch slot until the next data point.
+ * The functions registered by users may not be deterministic, their calls are never shared. They
+ * are still resolved on demand, so the branches of a conditional that are not taken are not
+ * resolved either.
+ *
+ * <p>The scratch slots belong to an {@link Evaluation}. Processing engines create one each time a
+ * dataset is resolved and move it to the next row before resolving the expressions of a data point.
+ *
+ * <p>The expressions can be prepared once rewritten, compiled to bytecode for instance. The shared
+ * subexpressions are then opaque nodes of the prepared expressions, their own expression is
+ * prepared separately. Without common subexpressions, the expressions are prepared once, otherwise
+ * for each evaluation since the shared nodes hold its scratch slots.
+ */
+public final class CommonSubexpressions {
+
+  private final List<ResolvableExpression> expressions;
+  private final UnaryOperator<ResolvableExpression> prepare;
+  private final Map<Object, Integer> occurrences = new HashMap<>();
+  private final List<ResolvableExpression> preparedExpressions;
+
+  private CommonSubexpressions(
+      List<ResolvableExpression> expressions, UnaryOperator<ResolvableExpression> prepare) {
+    this.expressions = expressions;
+    this.prepare = prepare;
+    for (ResolvableExpression expression : expressions) {
+      count(expression);
+    }
+    occurrences.values().removeIf(count -> count < 2);
+    this.preparedExpressions =
+        hasCommonSubexpressions() ? null : expressions.stream().map(prepare).toList();
+  }
+
+  /**
+   * Analyses expressions evaluated for the same data points.
+   *
+   * @param expressions The expressions.
+   * @return The common subexpressions of the expressions.
+   */
+  public static CommonSubexpressions of(List<ResolvableExpression> expressions) {
+    return of(expressions, UnaryOperator.identity());
+  }
+
+  /**
+   * Analyses expressions evaluated for the same data points, prepared once rewritten.
+   *
+   * @param expressions The expressions.
+   * @param prepare The preparation of the rewritten expressions and shared subexpressions.
+   * @return The common subexpressions of the expressions.
+   */
+  public static CommonSubexpressions of(
+      List<ResolvableExpression> expressions, UnaryOperator<ResolvableExpression> prepare) {
+    return new CommonSubexpressions(List.copyOf(expressions), prepare);
+  }
+
+  /** Returns the structural key of an expression, the expression itself for opaque ones. */
+  private static Object keyOf(ResolvableExpression expression) {
+    if (expression instanceof ComponentExpression component) {
+      return List.of(ComponentExpression.class, component.getComponent().getName());
+    }
+    if (expression instanceof ConstantExpression constant) {
+      return Arrays.asList(
+          ConstantExpression.class, constant.getType(), constant.resolve(Map.of()));
+    }
+    if (expression instanceof FunctionExpression function) {
+      var key = new ArrayList<>();
+      key.add(function.getMethod());
+      for (ResolvableExpression parameter : function.getParameters()) {
+        key.add(keyOf(parameter));
+      }
+      return key;
+    }
+    return expression;
+  }
+
+  /** Returns true if the expression calls a native, the calls that can be shared. */
+  private static boolean isNativeCall(FunctionExpression function) {
+    try {
+      return NATIVE_METHODS.contains(function.getMethod().getMethod(function));
+    } catch (VtlScriptException e) {
+      return false;
+    }
+  }
+
+  private void count(ResolvableExpression expression) {
+    if (!(expression instanceof FunctionExpression function)) {
+      return;
+    }
+    var count = isNativeCall(function) ? occurrences.merge(keyOf(expression), 1, Integer::sum) : 1;
+    // The parameters of a repeated call are only counted once.
+    if (count == 1) {
+      for (ResolvableExpression parameter : function.getParameters()) {
+        count(parameter);
+      }
+    }
+  }
+
+  /** Returns true if some subexpressions occur more than once. */
+  public boolean hasCommonSubexpressions() {
+    return !occurrences.isEmpty();
+  }
+
+  /** Creates the expressions and scratch slots for one evaluation. */
+  public Evaluation newEvaluation() {
+    return new Evaluation(this);
+  }
+
+  /**
+   * Rewritten expressions sharing the scratch slots of one evaluation. An evaluation must not be
+   * shared between threads.
+   */
+  public static final class Evaluation {
+
+    private final Map<Object, SharedExpression> shared = new HashMap<>();
+    private final UnaryOperator<ResolvableExpression> prepare;
+    private final List<ResolvableExpression> expressions;
+    private Object[] values = new Object[0];
+    private long[] rows = new long[0];
+    private long row = 1;
+
+    private Evaluation(CommonSubexpressions subexpressions) {
+      this.prepare = subexpressions.prepare;
+      if (!subexpressions.hasCommonSubexpressions()) {
+        this.expressions = subexpressions.preparedExpressions;
+        return;
+      }
+      var rewritten = new ArrayList<ResolvableExpression>();
+      for (ResolvableExpression expression : subexpressions.expressions) {
+        rewritten.add(prepare.apply(rewrite(expression, subexpressions.occurrences)));
+      }
+      this.expressions = List.copyOf(rewritten);
+      this.values = new Object[shared.size()];
+      this.rows = new long[shared.size()];
+    }
+
+    /** Returns the expressions, in the order they were given. */
+    public List<ResolvableExpression> getExpressions() {
+      return expressions;
+    }
+
+    /** Invalidates the values of the previous data point. */
+    public void nextRow() {
+      row++;
+    }
+
+    private ResolvableExpression rewrite(
+        ResolvableExpression expression, Map<Object, Integer> occurrences) {
+      if (!(expression instanceof FunctionExpression function)) {
+        return expression;
+      }
+      var key = keyOf(expression);
+      var existing = shared.get(key);
+      if (existing != null) {
+        return existing;
+      }
+      var parameters = new ArrayList<ResolvableExpression>();
+      for (ResolvableExpression parameter : function.getParameters()) {
+        parameters.add(rewrite(parameter, occurrences));
+      }
+      ResolvableExpression rewritten;
+      try {
+        rewritten =
+            parameters.equals(function.getParameters())
+                ? function
+                : new FunctionExpression(function.getMethod(), parameters, function);
+      } catch (VtlScriptException e) {
+        throw new VtlRuntimeException(e);
+      }
+      if (occurrences.containsKey(key)) {
+        var sharedExpression = new SharedExpression(prepare.apply(rewritten), this, shared.size());
+        shared.put(key, sharedExpression);
+        return sharedExpression;
+      }
+      return rewritten;
+    }
+  }
+
+  /** A subexpression resolved once per data point. */
+  private static final class SharedExpression extends ResolvableExpression {
+
+    private final ResolvableExpression expression;
+    private final transient Evaluation evaluation;
+    private final int slot;
+
+    private SharedExpression(ResolvableExpression expression, Evaluation evaluation, int slot) {
+      super(expression);
+      this.expression = expression;
+      this.evaluation = evaluation;
+      this.slot = slot;
+    }
+
+    @Override
+    public Object resolve(Map<String, Object> context) {
+      if (evaluation == null) {
+        return expression.resolve(context);
+      }
+      if (evaluation.rows[slot] == evaluation.row) {
+        return evaluation.values[slot];
+      }
+      return store(expression.resolve(context));
+    }
+
+    @Override
+    public Object resolve(Structured.DataPoint context) {
+      if (evaluation == null) {
+        return expression.resolve(context);
+      }
+      if (evaluation.rows[slot] == evaluation.row) {
+        return evaluation.values[slot];
+      }
+      return store(expression.resolve(context));
+    }
+
+    private Object store(Object value) {
+      evaluation.values[slot] = value;
+      evaluation.rows[slot] = evaluation.row;
+      return value;
+    }
+
+    @Override
+    public Set<String> getDependencies() {
+      return expression.getDependencies();
+    }
+
+    @Override
+    public Class<?> getType() {
+      return expression.getType();
+    }
+  }
+}
@@ -0,0 +1,116 @@
+package fr.insee.vtl.engine.expressions;
+
+import fr.insee.vtl.engine.exceptions.VtlRuntimeException;
+import fr.insee.vtl.model.ResolvableExpression;
+import fr.insee.vtl.model.Structured;
+import fr.insee.vtl.model.exceptions.VtlScriptException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Base class of the expressions generated by {@link ExpressionCompiler}.
+ *
+ * <p>Subclasses are hidden classes implementing {@link #evaluate(Structured.DataPoint)} for a given
+ * data structure. When a data point does not have the layout the expression was compiled against,
+ * the source expression is interpreted instead. Errors raised by the functions are reported at the
+ * position of the function that failed, the way {@link FunctionExpression} reports them.
+ */
+public abstract class CompiledExpression extends ResolvableExpression {
+
+  /** Constants referenced by the generated code. */
+  protected final Object[] constants;
+
+  /** Sub-expressions that could not be compiled and are interpreted by the generated code. */
+  protected final ResolvableExpression[] fallbacks;
+
+  private final ResolvableExpression source;
+  private final String[] columnNames;
+  private final int[] columnIndices;
+
+  private transient Structured.DataStructure checkedStructure;
+
+  protected CompiledExpression(
+      ResolvableExpression source,
+      String[] columnNames,
+      int[] columnIndices,
+      Object[] constants,
+      ResolvableExpression[] fallbacks) {
+    super(source);
+    this.source = Objects.requireNonNull(source);
+    this.columnNames = Objects.requireNonNull(columnNames);
+    this.columnIndices = Objects.requireNonNull(columnIndices);
+    this.constants = Objects.requireNonNull(constants);
+    this.fallbacks = Objects.requireNonNull(fallbacks);
+  }
+
+  /**
+   * Evaluates the expression for a data point laid out like the compiled structure.
+   *
+   * @param dataPoint The data point.
+   * @return The result of the expression.
+   */
+  protected abstract Object evaluate(Structured.DataPoint dataPoint);
+
+  /** Returns the expression this class was generated from. */
+  public ResolvableExpression getSource() {
+    return source;
+  }
+
+  @Override
+  public Object resolve(Structured.DataPoint dataPoint) {
+    if (!hasCompiledLayout(dataPoint.getDataStructure())) {
+      return source.resolve(dataPoint);
+    }
+    // The functions report their own errors, the interpreted nodes throw theirs as is.
+    return evaluate(dataPoint);
+  }
+
+  /**
+   * Wraps an exception thrown by the generated code for a function of the source expression.
+   *
+   * @param throwable The exception.
+   * @param expression The function that threw it.
+   * @return The exception to throw.
+   */
+  protected static VtlRuntimeException error(Throwable throwable, ResolvableExpression expression) {
+    if (throwable instanceof VtlRuntimeException e) {
+      return e;
+    }
+    var cause = throwable instanceof Exception e ? e : new Exception(throwable);
+    return new VtlRuntimeException(new VtlScriptException(cause, expression));
+  }
+
+  @Override
+  public Object resolve(Map<String, Object> context) {
+    return source.resolve(context);
+  }
+
+  @Override
+  public Set<String> getDependencies() {
+    return source.getDependencies();
+  }
+
+  @Override
+  public Class<?> getType() {
+    return source.getType();
+  }
+
+  private boolean hasCompiledLayout(Structured.DataStructure structure) {
+    if (structure == checkedStructure) {
+      return true;
+    }
+    for (int i = 0; i < columnNames.length; i++) {
+      if (structure.indexOfKey(columnNames[i]) != columnIndices[i]) {
+        return false;
+      }
+    }
+    checkedStructure = structure;
+    return true;
+  }
+
+  /** Generated classes cannot be serialized, the source expression is written instead. */
+  protected Object writeReplace() {
+    return source;
+  }
+}
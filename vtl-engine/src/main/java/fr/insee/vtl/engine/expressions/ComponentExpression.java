@@ -5,6 +5,7 @@ import fr.insee.vtl.model.ResolvableExpression;
 import fr.insee.vtl.model.Structured;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
 // TODO: Extract to model
 // TODO: Check that we don't already have something like that.
@@ -12,18 +13,55 @@ public class ComponentExpression extends ResolvableExpression {
 
   private final Structured.Component component;
 
+  // Index of the component in the last structure seen. Bound again when the structure changes
+  // (after a rename or a projection for instance).
+  private transient Binding binding;
+
   public ComponentExpression(Structured.Component component, Positioned position) {
     super(position);
     this.component = Objects.requireNonNull(component);
   }
 
+  public Structured.Component getComponent() {
+    return component;
+  }
+
+  @Override
+  public Set<String> getDependencies() {
+    return Set.of(component.getName());
+  }
+
   @Override
   public Object resolve(Map<String, Object> context) {
     return context.get(component.getName());
   }
 
+  @Override
+  public Object resolve(Structured.DataPoint context) {
+    var structure = context.getDataStructure();
+    var current = binding;
+    if (current == null || current.structure != structure) {
+      current = new Binding(structure, structure.indexOfKey(component.getName()));
+      binding = current;
+    }
+    if (current.index < 0) {
+      return super.resolve(context);
+    }
+    return context.get(current.index);
+  }
+
   @Override
   public Class<?> getType() {
     return component.getType();
   }
+
+  private static final class Binding {
+    private final Structured.DataStructure structure;
+    private final int index;
+
+    private Binding(Structured.DataStructure structure, int index) {
+      this.structure = structure;
+      this.index = index;
+    }
+  }
 }
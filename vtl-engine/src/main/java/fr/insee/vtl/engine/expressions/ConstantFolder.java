@@ -0,0 +1,59 @@
+package fr.insee.vtl.engine.expressions;
+
+import static fr.insee.vtl.engine.VtlNativeMethods.NATIVE_METHODS;
+
+import fr.insee.vtl.model.ConstantExpression;
+import fr.insee.vtl.model.ResolvableExpression;
+import fr.insee.vtl.model.exceptions.VtlScriptException;
+import java.util.Map;
+
+/**
+ * Folds the expressions whose operands are all constants.
+ *
+ * <p>Expressions are built bottom-up, so folding each native call and cast as it is created folds
+ * whole constant subtrees. Only natives with at least one parameter are folded, user defined
+ * methods and methods without parameters (current_date for instance) may not be deterministic.
+ */
+public final class ConstantFolder {
+
+  private ConstantFolder() {
+    throw new IllegalStateException("Utility class");
+  }
+
+  /**
+   * Resolves an expression once if it only depends on constants.
+   *
+   * @param expression The expression to fold.
+   * @return A constant of the same type, or the expression itself if it cannot be folded.
+   */
+  public static ResolvableExpression fold(ResolvableExpression expression) {
+    if (!isFoldable(expression)) {
+      return expression;
+    }
+    try {
+      return new ConstantExpression(expression.resolve(Map.of()), expression.getType(), expression);
+    } catch (RuntimeException e) {
+      // The error is raised when, and if, the expression is resolved.
+      return expression;
+    }
+  }
+
+  private static boolean isFoldable(ResolvableExpression expression) {
+    if (expression instanceof CastExpression cast) {
+      return cast.getOperand() instanceof ConstantExpression;
+    }
+    if (!(expression instanceof FunctionExpression function)) {
+      return false;
+    }
+    try {
+      if (!NATIVE_METHODS.contains(function.getMethod().getMethod(function))) {
+        return false;
+      }
+    } catch (VtlScriptException e) {
+      return false;
+    }
+    var parameters = function.getParameters();
+    return !parameters.isEmpty()
+        && parameters.stream().allMatch(ConstantExpression.class::isInstance);
+  }
+}
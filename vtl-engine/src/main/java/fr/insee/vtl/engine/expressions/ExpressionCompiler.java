@@ -0,0 +1,542 @@
+package fr.insee.vtl.engine.expressions;
+
+import static org.objectweb.asm.Opcodes.*;
+
+import fr.insee.vtl.engine.exceptions.VtlRuntimeException;
+import fr.insee.vtl.model.ConstantExpression;
+import fr.insee.vtl.model.ResolvableExpression;
+import fr.insee.vtl.model.Structured;
+import fr.insee.vtl.model.exceptions.VtlScriptException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+/**
+ * Compiles expression trees to bytecode.
+ *
+ * <p>For a given data structure, the compiler generates a hidden {@link CompiledExpression} class
+ * with a single evaluate method that reads the columns by index. Arithmetic, unary and numeric
+ * comparison natives are inlined on unboxed long, double and boolean values, other static functions
+ * are called directly. Nodes that cannot be compiled are kept as is and interpreted by the
+ * generated code. Errors are caught where each function is called and reported at its position,
+ * like the interpreter does.
+ */
+public final class ExpressionCompiler {
+
+  private static final String CLASS_NAME =
+      Type.getInternalName(CompiledExpression.class) + "$Generated";
+  private static final String SUPER_NAME = Type.getInternalName(CompiledExpression.class);
+  private static final String DATA_POINT = Type.getInternalName(Structured.DataPoint.class);
+  private static final String EXPRESSION = Type.getInternalName(ResolvableExpression.class);
+  private static final String RUNTIME_EXCEPTION = Type.getInternalName(VtlRuntimeException.class);
+  private static final String CLASS_CAST_EXCEPTION = Type.getInternalName(ClassCastException.class);
+
+  private ExpressionCompiler() {
+    throw new IllegalStateException("Utility class");
+  }
+
+  /**
+   * Compiles an expression for the data points of a given structure.
+   *
+   * @param expression The expression to compile.
+   * @param structure The structure of the data points the expression will be resolved against.
+   * @return A compiled expression, or the expression itself if there is nothing to compile.
+   */
+  public static ResolvableExpression compile(
+      ResolvableExpression expression, Structured.DataStructure structure) {
+    if (!(expression instanceof FunctionExpression)) {
+      return expression;
+    }
+    try {
+      return new Generator(structure).generate(expression);
+    } catch (Exception | LinkageError e) {
+      // The interpreter is always a valid fallback.
+      return expression;
+    }
+  }
+
+  private static Kind kindOf(Class<?> type) {
+    if (Long.class.equals(type)) {
+      return Kind.LONG;
+    }
+    if (Double.class.equals(type)) {
+      return Kind.DOUBLE;
+    }
+    if (Boolean.class.equals(type)) {
+      return Kind.BOOLEAN;
+    }
+    return null;
+  }
+
+  /** Unboxed representation of a value. */
+  private enum Kind {
+    LONG(Long.class, "longValue", "J", LLOAD, LSTORE, 2),
+    DOUBLE(Double.class, "doubleValue", "D", DLOAD, DSTORE, 2),
+    BOOLEAN(Boolean.class, "booleanValue", "Z", ILOAD, ISTORE, 1);
+
+    final String boxName;
+    final String unboxMethod;
+    final String descriptor;
+    final int load;
+    final int store;
+    final int size;
+
+    Kind(Class<?> box, String unboxMethod, String descriptor, int load, int store, int size) {
+      this.boxName = Type.getInternalName(box);
+      this.unboxMethod = unboxMethod;
+      this.descriptor = descriptor;
+      this.load = load;
+      this.store = store;
+      this.size = size;
+    }
+  }
+
+  private static final class Generator {
+
+    private final Structured.DataStructure structure;
+    private final Map<String, Integer> columns = new LinkedHashMap<>();
+    private final List<Object> constants = new ArrayList<>();
+    private final List<ResolvableExpression> fallbacks = new ArrayList<>();
+    private final List<Handler> handlers = new ArrayList<>();
+
+    private MethodVisitor mv;
+    // Slot 0 is this and slot 1 the data point.
+    private int nextLocal = 2;
+
+    private Generator(Structured.DataStructure structure) {
+      this.structure = structure;
+    }
+
+    private ResolvableExpression generate(ResolvableExpression expression) throws Exception {
+      var cw =
+          new ClassWriter(ClassWriter.COMPUTE_FRAMES) {
+            @Override
+            protected String getCommonSuperClass(String type1, String type2) {
+              // Only references typed as Object are merged by the generated code.
+              return "java/lang/Object";
+            }
+          };
+      cw.visit(V17, ACC_FINAL | ACC_SUPER | ACC_SYNTHETIC, CLASS_NAME, null, SUPER_NAME, null);
+
+      var constructorType =
+          MethodType.methodType(
+              void.class,
+              ResolvableExpression.class,
+              String[].class,
+              int[].class,
+              Object[].class,
+              ResolvableExpression[].class);
+      var constructorDescriptor = constructorType.toMethodDescriptorString();
+      var constructor = cw.visitMethod(ACC_PUBLIC, "<init>", constructorDescriptor, null, null);
+      constructor.visitCode();
+      for (int i = 0; i <= constructorType.parameterCount(); i++) {
+        constructor.visitVarInsn(ALOAD, i);
+      }
+      constructor.visitMethodInsn(
+          INVOKESPECIAL, SUPER_NAME, "<init>", constructorDescriptor, false);
+      constructor.visitInsn(RETURN);
+      constructor.visitMaxs(0, 0);
+      constructor.visitEnd();
+
+      mv =
+          cw.visitMethod(
+              ACC_PROTECTED, "evaluate", "(L" + DATA_POINT + ";)Ljava/lang/Object;", null, null);
+      mv.visitCode();
+      emitBoxed(expression);
+      mv.visitInsn(ARETURN);
+      emitHandlers();
+      mv.visitMaxs(0, 0);
+      mv.visitEnd();
+      cw.visitEnd();
+
+      var lookup = MethodHandles.lookup().defineHiddenClass(cw.toByteArray(), true);
+      var factory = lookup.lookupClass().getConstructor(constructorType.parameterArray());
+      return (ResolvableExpression)
+          factory.newInstance(
+              expression,
+              columns.keySet().toArray(String[]::new),
+              columns.values().stream().mapToInt(Integer::intValue).toArray(),
+              constants.toArray(),
+              fallbacks.toArray(ResolvableExpression[]::new));
+    }
+
+    private int newLocal(int size) {
+      var local = nextLocal;
+      nextLocal += size;
+      return local;
+    }
+
+    private void pushInt(int value) {
+      if (value >= -1 && value <= 5) {
+        mv.visitInsn(ICONST_0 + value);
+      } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+        mv.visitIntInsn(BIPUSH, value);
+      } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+        mv.visitIntInsn(SIPUSH, value);
+      } else {
+        mv.visitLdcInsn(value);
+      }
+    }
+
+    private NativeOperator inlinedOperator(FunctionExpression function) throws VtlScriptException {
+      var operator =
+          NativeOperator.of(function.getMethod().getMethod(function), function.getParameters());
+      // Numeric functions are called directly.
+      return operator == null || operator.isNumericFunction() || operator.isConditional()
+          ? null
+          : operator;
+    }
+
+    private static boolean isConditional(FunctionExpression function) throws VtlScriptException {
+      var operator =
+          NativeOperator.of(function.getMethod().getMethod(function), function.getParameters());
+      return operator != null && operator.isConditional();
+    }
+
+    /** Pushes the value of the expression as a reference. */
+    private void emitBoxed(ResolvableExpression expression) throws VtlScriptException {
+      if (expression instanceof ConstantExpression constant) {
+        var value = constant.resolve(Map.of());
+        if (value == null) {
+          mv.visitInsn(ACONST_NULL);
+        } else {
+          mv.visitVarInsn(ALOAD, 0);
+          mv.visitFieldInsn(GETFIELD, SUPER_NAME, "constants", "[Ljava/lang/Object;");
+          pushInt(constants.size());
+          mv.visitInsn(AALOAD);
+          constants.add(value);
+        }
+        return;
+      }
+      if (expression instanceof ComponentExpression component) {
+        var name = component.getComponent().getName();
+        var index = structure.indexOfKey(name);
+        if (index >= 0) {
+          columns.put(name, index);
+          mv.visitVarInsn(ALOAD, 1);
+          pushInt(index);
+          mv.visitMethodInsn(INVOKEVIRTUAL, DATA_POINT, "get", "(I)Ljava/lang/Object;", false);
+          return;
+        }
+      }
+      if (expression instanceof FunctionExpression function) {
+        var operator = inlinedOperator(function);
+        if (operator != null) {
+          var isNull = new Label();
+          var end = new Label();
+          var kind = emitInlined(function, operator, isNull);
+          mv.visitMethodInsn(
+              INVOKESTATIC,
+              kind.boxName,
+              "valueOf",
+              "(" + kind.descriptor + ")L" + kind.boxName + ";",
+              false);
+          mv.visitJumpInsn(GOTO, end);
+          mv.visitLabel(isNull);
+          mv.visitInsn(ACONST_NULL);
+          mv.visitLabel(end);
+          return;
+        }
+        var method = function.getMethod().getMethod(function);
+        // Conditionals and prepared natives are interpreted, a direct call would resolve all the
+        // operands or parse the constant ones for each row.
+        if (isCallable(method)
+            && !isConditional(function)
+            && PreparedNatives.prepare(method, function.getParameters()) == null) {
+          // The parameters are evaluated outside of the guarded instructions, their errors are
+          // reported at their own position.
+          var handler = handler(function, null);
+          var types = method.getParameterTypes();
+          for (int i = 0; i < types.length; i++) {
+            emitBoxed(function.getParameters().get(i));
+            var type = types[i];
+            if (!Object.class.equals(type)) {
+              guarded(handler, () -> mv.visitTypeInsn(CHECKCAST, Type.getInternalName(type)));
+            }
+          }
+          var owner = method.getDeclaringClass();
+          guarded(
+              handler,
+              () ->
+                  mv.visitMethodInsn(
+                      INVOKESTATIC,
+                      Type.getInternalName(owner),
+                      method.getName(),
+                      Type.getMethodDescriptor(method),
+                      owner.isInterface()));
+          if (void.class.equals(method.getReturnType())) {
+            mv.visitInsn(ACONST_NULL);
+          }
+          return;
+        }
+      }
+      emitFallback(expression);
+    }
+
+    /**
+     * Pushes the unboxed value of an operand of the function, or jumps to the label if it is null.
+     */
+    private void emitUnboxed(
+        FunctionExpression function, ResolvableExpression expression, Kind kind, Label ifNull)
+        throws VtlScriptException {
+      Kind natural = kindOf(expression.getType());
+      if (natural != kind && !(natural == Kind.LONG && kind == Kind.DOUBLE)) {
+        natural = kind;
+      }
+      if (expression instanceof ConstantExpression constant) {
+        var value = constant.resolve(Map.of());
+        if (value instanceof Long longValue) {
+          mv.visitLdcInsn(longValue);
+        } else if (value instanceof Double doubleValue) {
+          mv.visitLdcInsn(doubleValue);
+        } else if (value instanceof Boolean booleanValue) {
+          mv.visitInsn(booleanValue ? ICONST_1 : ICONST_0);
+        } else {
+          emitUnboxing(function, expression, natural, ifNull);
+        }
+      } else if (expression instanceof FunctionExpression operand
+          && inlinedOperator(operand) != null) {
+        natural = emitInlined(operand, inlinedOperator(operand), ifNull);
+      } else {
+        emitUnboxing(function, expression, natural, ifNull);
+      }
+      if (natural == Kind.LONG && kind == Kind.DOUBLE) {
+        mv.visitInsn(L2D);
+      }
+    }
+
+    /** An operand of the wrong type is reported at the position of the function. */
+    private void emitUnboxing(
+        FunctionExpression function, ResolvableExpression expression, Kind kind, Label ifNull)
+        throws VtlScriptException {
+      emitBoxed(expression);
+      var local = newLocal(1);
+      mv.visitVarInsn(ASTORE, local);
+      mv.visitVarInsn(ALOAD, local);
+      mv.visitJumpInsn(IFNULL, ifNull);
+      mv.visitVarInsn(ALOAD, local);
+      guarded(
+          handler(function, CLASS_CAST_EXCEPTION), () -> mv.visitTypeInsn(CHECKCAST, kind.boxName));
+      mv.visitMethodInsn(
+          INVOKEVIRTUAL, kind.boxName, kind.unboxMethod, "()" + kind.descriptor, false);
+    }
+
+    /**
+     * Pushes the unboxed result of an inlined function.
+     *
+     * <p>Operands are stored in locals as soon as they are evaluated so that the stack is empty
+     * whenever a null operand jumps to the label.
+     */
+    private Kind emitInlined(FunctionExpression function, NativeOperator operator, Label ifNull)
+        throws VtlScriptException {
+      var method = function.getMethod().getMethod(function);
+      var parameters = function.getParameters();
+      switch (operator) {
+        case PLUS -> {
+          var kind = kindOf(method.getReturnType());
+          emitUnboxed(function, parameters.get(0), kind, ifNull);
+          return kind;
+        }
+        case MINUS -> {
+          var kind = kindOf(method.getReturnType());
+          emitUnboxed(function, parameters.get(0), kind, ifNull);
+          mv.visitInsn(kind == Kind.LONG ? LNEG : DNEG);
+          return kind;
+        }
+        case NOT -> {
+          emitUnboxed(function, parameters.get(0), Kind.BOOLEAN, ifNull);
+          mv.visitInsn(ICONST_1);
+          mv.visitInsn(IXOR);
+          return Kind.BOOLEAN;
+        }
+        case ADDITION, SUBTRACTION, MULTIPLICATION, DIVISION -> {
+          var kind = kindOf(method.getReturnType());
+          emitOperands(function, kind, ifNull);
+          mv.visitInsn(arithmeticOpcode(operator, kind));
+          return kind;
+        }
+        default -> {
+          var kind =
+              kindOf(parameters.get(0).getType()) == Kind.LONG
+                      && kindOf(parameters.get(1).getType()) == Kind.LONG
+                  ? Kind.LONG
+                  : Kind.DOUBLE;
+          emitOperands(function, kind, ifNull);
+          if (kind == Kind.LONG) {
+            mv.visitInsn(LCMP);
+          } else {
+            mv.visitMethodInsn(INVOKESTATIC, "java/lang/Double", "compare", "(DD)I", false);
+          }
+          var isFalse = new Label();
+          var end = new Label();
+          mv.visitJumpInsn(comparisonFalseOpcode(operator), isFalse);
+          mv.visitInsn(ICONST_1);
+          mv.visitJumpInsn(GOTO, end);
+          mv.visitLabel(isFalse);
+          mv.visitInsn(ICONST_0);
+          mv.visitLabel(end);
+          return Kind.BOOLEAN;
+        }
+      }
+    }
+
+    /**
+     * Both operands are always evaluated, like the interpreter does: a null left operand is
+     * recorded in a flag and only tested once the right one has been evaluated.
+     */
+    private void emitOperands(FunctionExpression function, Kind kind, Label ifNull)
+        throws VtlScriptException {
+      var leftLocal = newLocal(kind.size);
+      var rightLocal = newLocal(kind.size);
+      var leftIsNullLocal = newLocal(1);
+      var leftIsNull = new Label();
+      var right = new Label();
+      // The left local is initialized on both paths for the verifier.
+      mv.visitInsn(kind == Kind.LONG ? LCONST_0 : DCONST_0);
+      mv.visitVarInsn(kind.store, leftLocal);
+      mv.visitInsn(ICONST_0);
+      mv.visitVarInsn(ISTORE, leftIsNullLocal);
+      emitUnboxed(function, function.getParameters().get(0), kind, leftIsNull);
+      mv.visitVarInsn(kind.store, leftLocal);
+      mv.visitJumpInsn(GOTO, right);
+      mv.visitLabel(leftIsNull);
+      mv.visitInsn(ICONST_1);
+      mv.visitVarInsn(ISTORE, leftIsNullLocal);
+      mv.visitLabel(right);
+      emitUnboxed(function, function.getParameters().get(1), kind, ifNull);
+      mv.visitVarInsn(kind.store, rightLocal);
+      mv.visitVarInsn(ILOAD, leftIsNullLocal);
+      mv.visitJumpInsn(IFNE, ifNull);
+      mv.visitVarInsn(kind.load, leftLocal);
+      mv.visitVarInsn(kind.load, rightLocal);
+    }
+
+    private static int arithmeticOpcode(NativeOperator operator, Kind kind) {
+      var isLong = kind == Kind.LONG;
+      return switch (operator) {
+        case ADDITION -> isLong ? LADD : DADD;
+        case SUBTRACTION -> isLong ? LSUB : DSUB;
+        case MULTIPLICATION -> isLong ? LMUL : DMUL;
+        case DIVISION -> DDIV;
+        default -> throw new IllegalArgumentException(operator.name());
+      };
+    }
+
+    private static int comparisonFalseOpcode(NativeOperator operator) {
+      return switch (operator) {
+        case EQUAL -> IFNE;
+        case NOT_EQUAL -> IFEQ;
+        case LESS_THAN -> IFGE;
+        case GREATER_THAN -> IFLE;
+        case LESS_THAN_OR_EQUAL -> IFGT;
+        case GREATER_THAN_OR_EQUAL -> IFLT;
+        default -> throw new IllegalArgumentException(operator.name());
+      };
+    }
+
+    /**
+     * Returns the handler reporting the exceptions of the given type at the position of the
+     * expression, a null type catching all of them.
+     */
+    private Handler handler(ResolvableExpression expression, String type) {
+      for (Handler handler : handlers) {
+        if (handler.expression() == expression && Objects.equals(handler.type(), type)) {
+          return handler;
+        }
+      }
+      var handler = new Handler(expression, type, constants.size(), new Label());
+      constants.add(expression);
+      handlers.add(handler);
+      return handler;
+    }
+
+    /**
+     * Emits instructions that do not evaluate any expression, their exceptions going to the
+     * handler. The guarded ranges never overlap.
+     */
+    private void guarded(Handler handler, Runnable instructions) {
+      var start = new Label();
+      var end = new Label();
+      mv.visitTryCatchBlock(start, end, handler.label(), handler.type());
+      mv.visitLabel(start);
+      instructions.run();
+      mv.visitLabel(end);
+    }
+
+    private void emitHandlers() {
+      for (Handler handler : handlers) {
+        mv.visitLabel(handler.label());
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETFIELD, SUPER_NAME, "constants", "[Ljava/lang/Object;");
+        pushInt(handler.constant());
+        mv.visitInsn(AALOAD);
+        mv.visitTypeInsn(CHECKCAST, EXPRESSION);
+        mv.visitMethodInsn(
+            INVOKESTATIC,
+            SUPER_NAME,
+            "error",
+            "(Ljava/lang/Throwable;L" + EXPRESSION + ";)L" + RUNTIME_EXCEPTION + ";",
+            false);
+        mv.visitInsn(ATHROW);
+      }
+    }
+
+    private void emitFallback(ResolvableExpression expression) {
+      mv.visitVarInsn(ALOAD, 0);
+      mv.visitFieldInsn(GETFIELD, SUPER_NAME, "fallbacks", "[L" + EXPRESSION + ";");
+      pushInt(fallbacks.size());
+      mv.visitInsn(AALOAD);
+      mv.visitVarInsn(ALOAD, 1);
+      mv.visitMethodInsn(
+          INVOKEVIRTUAL, EXPRESSION, "resolve", "(L" + DATA_POINT + ";)Ljava/lang/Object;", false);
+      fallbacks.add(expression);
+    }
+
+    /** Exception handler of the instructions of a function, stored in the constants. */
+    private record Handler(
+        ResolvableExpression expression, String type, int constant, Label label) {}
+
+    /**
+     * Checks that the generated code can call the method directly: a public static method with
+     * reference types only, visible from the class loader and the module of the engine.
+     */
+    private static boolean isCallable(Method method) {
+      var owner = method.getDeclaringClass();
+      if (!Modifier.isStatic(method.getModifiers())
+          || !Modifier.isPublic(method.getModifiers())
+          || !Modifier.isPublic(owner.getModifiers())
+          || method.getReturnType().isPrimitive() && !void.class.equals(method.getReturnType())) {
+        return false;
+      }
+      for (Class<?> type : method.getParameterTypes()) {
+        if (type.isPrimitive()) {
+          return false;
+        }
+      }
+      var engineModule = ExpressionCompiler.class.getModule();
+      if (!owner.getModule().isExported(owner.getPackageName(), engineModule)) {
+        return false;
+      }
+      try {
+        if (Class.forName(owner.getName(), false, ExpressionCompiler.class.getClassLoader())
+            != owner) {
+          return false;
+        }
+      } catch (ClassNotFoundException e) {
+        return false;
+      }
+      engineModule.addReads(owner.getModule());
+      return true;
+    }
+  }
+}
@@ -4,21 +4,49 @@ import fr.insee.vtl.engine.exceptions.VtlRuntimeException;
 import fr.insee.vtl.model.ListExpression;
 import fr.insee.vtl.model.Positioned;
 import fr.insee.vtl.model.ResolvableExpression;
+import fr.insee.vtl.model.Structured;
 import fr.insee.vtl.model.VtlMethod;
 import fr.insee.vtl.model.exceptions.VtlScriptException;
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
-/** An expression that calls a method. */
+/**
+ * An expression that calls a method.
+ *
+ * <p>The method is bound to a {@link MethodHandle} once per expression. The handle is transient and
+ * bound again lazily when the expression is deserialized (by Spark executors for instance).
+ *
+ * <p>Numeric and comparison natives are evaluated on unboxed values instead, see {@link
+ * NativeOperator}. Their operands are resolved with the primitive resolution methods so that nested
+ * natives do not box their intermediate results. Boolean operators, if-then-else and nvl only
+ * resolve the operands that are needed. Natives that parse constant parameters use a prepared
+ * variant, see {@link PreparedNatives}.
+ *
+ * <p>Methods with more than three parameters receive a new argument array on each call. The array
+ * is deliberately not reused: the expressions of a compiled script can be resolved by several
+ * threads at once, so a buffer would have to be held per thread, and a thread local lookup costs
+ * about as much as the allocation. Among the natives, only instr has four parameters, and its
+ * string search outweighs the array.
+ */
 public class FunctionExpression extends ResolvableExpression {
 
+  // Arities up to this value are invoked directly, without allocating an argument array.
+  private static final int MAX_DIRECT_ARITY = 3;
+
   private final VtlMethod method;
 
   private final Class<?> returnType;
   private final List<ResolvableExpression> parameters;
+  private final NativeOperator operator;
+
+  private transient MethodHandle handle;
 
   public FunctionExpression(
       VtlMethod method, List<ResolvableExpression> parameters, Positioned position)
@@ -26,9 +54,10 @@ public class FunctionExpression extends ResolvableExpression {
     super(position);
     this.method = Objects.requireNonNull(method);
     this.parameters = Objects.requireNonNull(parameters);
-    this.returnType = this.method.getMethod(position).getReturnType();
+    var reflectMethod = this.method.getMethod(position);
+    this.returnType = reflectMethod.getReturnType();
 
-    var expectedTypes = Arrays.asList(this.method.getMethod(position).getParameterTypes());
+    var expectedTypes = Arrays.asList(reflectMethod.getParameterTypes());
     if (expectedTypes.size() < parameters.size()) {
       throw new VtlScriptException("unexpected parameter", parameters.get(expectedTypes.size()));
     } else if (expectedTypes.size() > parameters.size()) {
@@ -48,25 +77,382 @@ public class FunctionExpression extends ResolvableExpression {
       }
       expression.checkInstanceOf(type);
     }
+    this.handle = bind(reflectMethod, parameters, position);
+    this.operator = NativeOperator.of(reflectMethod, parameters);
+  }
+
+  /**
+   * Converts the method, or its prepared variant when there is one, to a handle of type <code>
+   * (Object, ...)Object</code>, or <code>(Object[])Object</code> when the arity is greater than
+   * {@link #MAX_DIRECT_ARITY}.
+   */
+  private static MethodHandle bind(
+      Method method, List<ResolvableExpression> parameters, Positioned position)
+      throws VtlScriptException {
+    var prepared = PreparedNatives.prepare(method, parameters);
+    if (prepared != null) {
+      return prepared;
+    }
+    try {
+      // Methods registered by users may live in modules the engine does not read yet.
+      FunctionExpression.class.getModule().addReads(method.getDeclaringClass().getModule());
+      var arity = method.getParameterCount();
+      var bound =
+          MethodHandles.lookup().unreflect(method).asType(MethodType.genericMethodType(arity));
+      if (arity > MAX_DIRECT_ARITY) {
+        bound = bound.asSpreader(Object[].class, arity);
+      }
+      return bound;
+    } catch (IllegalAccessException e) {
+      throw new VtlScriptException(
+          "could not access method " + method.getName() + ": " + e.getMessage(), position);
+    }
+  }
+
+  public VtlMethod getMethod() {
+    return method;
+  }
+
+  public List<ResolvableExpression> getParameters() {
+    return parameters;
+  }
+
+  @Override
+  public Set<String> getDependencies() {
+    return dependenciesOf(parameters);
+  }
+
+  private MethodHandle getHandle() {
+    var bound = handle;
+    if (bound == null) {
+      try {
+        bound = bind(method.getMethod(this), parameters, this);
+      } catch (VtlScriptException e) {
+        throw new VtlRuntimeException(e);
+      }
+      handle = bound;
+    }
+    return bound;
   }
 
   @Override
   public Object resolve(Map<String, Object> context) {
-    Object[] evaluatedParameters = parameters.stream().map(p -> p.resolve(context)).toArray();
-    try {
-      return method.getMethod(this).invoke(null, evaluatedParameters);
-    } catch (InvocationTargetException ite) {
-      var cause = ite.getCause();
-      if (cause instanceof Exception) {
-        throw new VtlRuntimeException(new VtlScriptException((Exception) ite.getCause(), this));
-      } else {
-        throw new VtlRuntimeException(new VtlScriptException(new Exception(ite.getCause()), this));
+    return operator != null ? resolveNative(context, null) : resolve(context, null);
+  }
+
+  @Override
+  public Object resolve(Structured.DataPoint context) {
+    return operator != null ? resolveNative(null, context) : resolve(null, context);
+  }
+
+  @Override
+  public long resolveLong(Map<String, Object> context, NullFlag isNull) {
+    return hasNative(Long.class)
+        ? evaluateLong(context, null, isNull)
+        : super.resolveLong(context, isNull);
+  }
+
+  @Override
+  public long resolveLong(Structured.DataPoint context, NullFlag isNull) {
+    return hasNative(Long.class)
+        ? evaluateLong(null, context, isNull)
+        : super.resolveLong(context, isNull);
+  }
+
+  @Override
+  public double resolveDouble(Map<String, Object> context, NullFlag isNull) {
+    return hasNative(Double.class)
+        ? evaluateDouble(context, null, isNull)
+        : super.resolveDouble(context, isNull);
+  }
+
+  @Override
+  public double resolveDouble(Structured.DataPoint context, NullFlag isNull) {
+    return hasNative(Double.class)
+        ? evaluateDouble(null, context, isNull)
+        : super.resolveDouble(context, isNull);
+  }
+
+  @Override
+  public boolean resolveBoolean(Map<String, Object> context, NullFlag isNull) {
+    return hasNative(Boolean.class)
+        ? evaluateBoolean(context, null, isNull)
+        : super.resolveBoolean(context, isNull);
+  }
+
+  @Override
+  public boolean resolveBoolean(Structured.DataPoint context, NullFlag isNull) {
+    return hasNative(Boolean.class)
+        ? evaluateBoolean(null, context, isNull)
+        : super.resolveBoolean(context, isNull);
+  }
+
+  /** Resolves the parameters against the data point when there is one, the map otherwise. */
+  private Object resolveParameter(
+      int index, Map<String, Object> context, Structured.DataPoint dataPoint) {
+    var parameter = parameters.get(index);
+    return dataPoint != null ? parameter.resolve(dataPoint) : parameter.resolve(context);
+  }
+
+  private Object resolve(Map<String, Object> context, Structured.DataPoint dataPoint) {
+    var bound = getHandle();
+    var arity = parameters.size();
+    Object first = null;
+    Object second = null;
+    Object third = null;
+    Object[] evaluatedParameters = null;
+    if (arity > MAX_DIRECT_ARITY) {
+      evaluatedParameters = new Object[arity];
+      for (int i = 0; i < arity; i++) {
+        evaluatedParameters[i] = resolveParameter(i, context, dataPoint);
       }
+    } else {
+      if (arity > 0) first = resolveParameter(0, context, dataPoint);
+      if (arity > 1) second = resolveParameter(1, context, dataPoint);
+      if (arity > 2) third = resolveParameter(2, context, dataPoint);
+    }
+    try {
+      return switch (arity) {
+        case 0 -> (Object) bound.invokeExact();
+        case 1 -> (Object) bound.invokeExact(first);
+        case 2 -> (Object) bound.invokeExact(first, second);
+        case 3 -> (Object) bound.invokeExact(first, second, third);
+        default -> (Object) bound.invokeExact(evaluatedParameters);
+      };
     } catch (Exception e) {
       throw new VtlRuntimeException(new VtlScriptException(e, this));
+    } catch (Throwable t) {
+      throw new VtlRuntimeException(new VtlScriptException(new Exception(t), this));
     }
   }
 
+  private boolean hasNative(Class<?> type) {
+    return operator != null && type.equals(returnType);
+  }
+
+  /** Evaluates a native on unboxed values and boxes the result only. */
+  private Object resolveNative(Map<String, Object> context, Structured.DataPoint dataPoint) {
+    var isNull = new NullFlag();
+    if (Long.class.equals(returnType)) {
+      var value = evaluateLong(context, dataPoint, isNull);
+      return isNull.isNull() ? null : value;
+    }
+    if (Double.class.equals(returnType)) {
+      var value = evaluateDouble(context, dataPoint, isNull);
+      return isNull.isNull() ? null : value;
+    }
+    if (Boolean.class.equals(returnType)) {
+      var value = evaluateBoolean(context, dataPoint, isNull);
+      return isNull.isNull() ? null : value;
+    }
+    return resolveConditional(context, dataPoint);
+  }
+
+  /** Resolves the conditionals of other types, only the selected operand is resolved. */
+  private Object resolveConditional(Map<String, Object> context, Structured.DataPoint dataPoint) {
+    if (operator == NativeOperator.NVL) {
+      var value = resolveParameter(0, context, dataPoint);
+      return value != null ? value : resolveParameter(1, context, dataPoint);
+    }
+    var condition = (Boolean) resolveParameter(0, context, dataPoint);
+    if (condition == null) {
+      return null;
+    }
+    return resolveParameter(condition ? 1 : 2, context, dataPoint);
+  }
+
+  private long evaluateLong(
+      Map<String, Object> context, Structured.DataPoint dataPoint, NullFlag isNull) {
+    return switch (operator) {
+      case PLUS -> longParameter(0, context, dataPoint, isNull);
+      case MINUS -> -longParameter(0, context, dataPoint, isNull);
+      case CEIL -> (long) Math.ceil(doubleParameter(0, context, dataPoint, isNull));
+      case FLOOR -> (long) Math.floor(doubleParameter(0, context, dataPoint, isNull));
+      case IF_THEN_ELSE -> {
+        var condition = booleanParameter(0, context, dataPoint, isNull);
+        yield isNull.isNull() ? 0L : longParameter(condition ? 1 : 2, context, dataPoint, isNull);
+      }
+      case NVL -> {
+        var value = longParameter(0, context, dataPoint, isNull);
+        yield isNull.isNull() ? longParameter(1, context, dataPoint, isNull) : value;
+      }
+      default -> {
+        // Both operands are always resolved, like the boxed implementations do.
+        var left = longParameter(0, context, dataPoint, isNull);
+        var leftIsNull = isNull.isNull();
+        var right = longParameter(1, context, dataPoint, isNull);
+        isNull.set(leftIsNull || isNull.isNull());
+        yield switch (operator) {
+          case ADDITION -> left + right;
+          case SUBTRACTION -> left - right;
+          case MULTIPLICATION -> left * right;
+          default -> throw new IllegalStateException("unexpected long operator " + operator);
+        };
+      }
+    };
+  }
+
+  private double evaluateDouble(
+      Map<String, Object> context, Structured.DataPoint dataPoint, NullFlag isNull) {
+    return switch (operator) {
+      case PLUS -> doubleParameter(0, context, dataPoint, isNull);
+      case MINUS -> -doubleParameter(0, context, dataPoint, isNull);
+      case ABS -> Math.abs(doubleParameter(0, context, dataPoint, isNull));
+      case EXP -> Math.exp(doubleParameter(0, context, dataPoint, isNull));
+      case LN -> Math.log(doubleParameter(0, context, dataPoint, isNull));
+      case IF_THEN_ELSE -> {
+        var condition = booleanParameter(0, context, dataPoint, isNull);
+        yield isNull.isNull() ? 0D : doubleParameter(condition ? 1 : 2, context, dataPoint, isNull);
+      }
+      case NVL -> {
+        var value = doubleParameter(0, context, dataPoint, isNull);
+        yield isNull.isNull() ? doubleParameter(1, context, dataPoint, isNull) : value;
+      }
+      case SQRT -> {
+        var value = doubleParameter(0, context, dataPoint, isNull);
+        if (!isNull.isNull() && value < 0) {
+          throw invalidOperand("operand has to be 0 or positive");
+        }
+        yield Math.sqrt(value);
+      }
+      default -> {
+        var left = doubleParameter(0, context, dataPoint, isNull);
+        var leftIsNull = isNull.isNull();
+        var right = doubleParameter(1, context, dataPoint, isNull);
+        if (leftIsNull || isNull.isNull()) {
+          isNull.set(true);
+          yield 0D;
+        }
+        yield switch (operator) {
+          case ADDITION -> left + right;
+          case SUBTRACTION -> left - right;
+          case MULTIPLICATION -> left * right;
+          case DIVISION -> left / right;
+          case MOD -> right == 0 ? left : (left % right) * (right < 0 ? -1 : 1);
+          case POWER -> Math.pow(left, right);
+          case LOG -> {
+            if (left <= 0) {
+              throw invalidOperand("operand must be positive");
+            }
+            if (right < 1) {
+              throw invalidOperand("base must be greater or equal than 1");
+            }
+            yield Math.log(left) / Math.log(right);
+          }
+          default -> throw new IllegalStateException("unexpected double operator " + operator);
+        };
+      }
+    };
+  }
+
+  private boolean evaluateBoolean(
+      Map<String, Object> context, Structured.DataPoint dataPoint, NullFlag isNull) {
+    switch (operator) {
+      case NOT -> {
+        return !booleanParameter(0, context, dataPoint, isNull);
+      }
+      case AND, OR -> {
+        // Three-valued logic: the right operand is skipped when the left one decides alone.
+        var decisive = operator == NativeOperator.OR;
+        var left = booleanParameter(0, context, dataPoint, isNull);
+        if (!isNull.isNull() && left == decisive) {
+          return decisive;
+        }
+        var leftIsNull = isNull.isNull();
+        var right = booleanParameter(1, context, dataPoint, isNull);
+        if (!isNull.isNull() && right == decisive) {
+          return decisive;
+        }
+        isNull.set(leftIsNull || isNull.isNull());
+        return !decisive;
+      }
+      case IF_THEN_ELSE -> {
+        var condition = booleanParameter(0, context, dataPoint, isNull);
+        return !isNull.isNull() && booleanParameter(condition ? 1 : 2, context, dataPoint, isNull);
+      }
+      case NVL -> {
+        var value = booleanParameter(0, context, dataPoint, isNull);
+        return isNull.isNull() ? booleanParameter(1, context, dataPoint, isNull) : value;
+      }
+      default -> {
+        return evaluateComparison(context, dataPoint, isNull);
+      }
+    }
+  }
+
+  private boolean evaluateComparison(
+      Map<String, Object> context, Structured.DataPoint dataPoint, NullFlag isNull) {
+    int compare;
+    if (Long.class.equals(parameters.get(0).getType())
+        && Long.class.equals(parameters.get(1).getType())) {
+      var left = longParameter(0, context, dataPoint, isNull);
+      var leftIsNull = isNull.isNull();
+      var right = longParameter(1, context, dataPoint, isNull);
+      isNull.set(leftIsNull || isNull.isNull());
+      compare = Long.compare(left, right);
+    } else {
+      var left = doubleParameter(0, context, dataPoint, isNull);
+      var leftIsNull = isNull.isNull();
+      var right = doubleParameter(1, context, dataPoint, isNull);
+      isNull.set(leftIsNull || isNull.isNull());
+      compare = Double.compare(left, right);
+    }
+    return switch (operator) {
+      case EQUAL -> compare == 0;
+      case NOT_EQUAL -> compare != 0;
+      case LESS_THAN -> compare < 0;
+      case GREATER_THAN -> compare > 0;
+      case LESS_THAN_OR_EQUAL -> compare <= 0;
+      case GREATER_THAN_OR_EQUAL -> compare >= 0;
+      default -> throw new IllegalStateException("unexpected boolean operator " + operator);
+    };
+  }
+
+  private long longParameter(
+      int index, Map<String, Object> context, Structured.DataPoint dataPoint, NullFlag isNull) {
+    var parameter = parameters.get(index);
+    try {
+      return dataPoint != null
+          ? parameter.resolveLong(dataPoint, isNull)
+          : parameter.resolveLong(context, isNull);
+    } catch (ClassCastException e) {
+      throw new VtlRuntimeException(new VtlScriptException(e, this));
+    }
+  }
+
+  /** Long operands are widened, like the boxed implementations do. */
+  private double doubleParameter(
+      int index, Map<String, Object> context, Structured.DataPoint dataPoint, NullFlag isNull) {
+    var parameter = parameters.get(index);
+    if (Long.class.equals(parameter.getType())) {
+      return longParameter(index, context, dataPoint, isNull);
+    }
+    try {
+      return dataPoint != null
+          ? parameter.resolveDouble(dataPoint, isNull)
+          : parameter.resolveDouble(context, isNull);
+    } catch (ClassCastException e) {
+      throw new VtlRuntimeException(new VtlScriptException(e, this));
+    }
+  }
+
+  private boolean booleanParameter(
+      int index, Map<String, Object> context, Structured.DataPoint dataPoint, NullFlag isNull) {
+    var parameter = parameters.get(index);
+    try {
+      return dataPoint != null
+          ? parameter.resolveBoolean(dataPoint, isNull)
+          : parameter.resolveBoolean(context, isNull);
+    } catch (ClassCastException e) {
+      throw new VtlRuntimeException(new VtlScriptException(e, this));
+    }
+  }
+
+  private VtlRuntimeException invalidOperand(String message) {
+    return new VtlRuntimeException(
+        new VtlScriptException(new IllegalArgumentException(message), this));
+  }
+
   @Override
   public Class<?> getType() {
     return this.returnType;
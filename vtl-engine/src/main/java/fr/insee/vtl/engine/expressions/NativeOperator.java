@@ -0,0 +1,144 @@
+package fr.insee.vtl.engine.expressions;
+
+import com.github.hervian.reflection.Fun;
+import fr.insee.vtl.engine.visitors.expression.ArithmeticExprOrConcatVisitor;
+import fr.insee.vtl.engine.visitors.expression.ArithmeticVisitor;
+import fr.insee.vtl.engine.visitors.expression.BooleanVisitor;
+import fr.insee.vtl.engine.visitors.expression.ComparisonVisitor;
+import fr.insee.vtl.engine.visitors.expression.ConditionalVisitor;
+import fr.insee.vtl.engine.visitors.expression.UnaryVisitor;
+import fr.insee.vtl.engine.visitors.expression.functions.NumericFunctionsVisitor;
+import fr.insee.vtl.model.ResolvableExpression;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Native methods that have an implementation on unboxed long, double and boolean values.
+ *
+ * <p>The boolean and conditional operators are also evaluated lazily: operands that cannot change
+ * the result are not resolved.
+ */
+enum NativeOperator {
+  ADDITION,
+  SUBTRACTION,
+  MULTIPLICATION,
+  DIVISION,
+  PLUS,
+  MINUS,
+  NOT,
+  EQUAL,
+  NOT_EQUAL,
+  LESS_THAN,
+  GREATER_THAN,
+  LESS_THAN_OR_EQUAL,
+  GREATER_THAN_OR_EQUAL,
+  AND,
+  OR,
+  IF_THEN_ELSE,
+  NVL,
+  CEIL,
+  FLOOR,
+  ABS,
+  EXP,
+  LN,
+  SQRT,
+  MOD,
+  POWER,
+  LOG;
+
+  private static final Map<Method, NativeOperator> METHODS =
+      Map.ofEntries(
+          Map.entry(Fun.<Long, Long>toMethod(ArithmeticExprOrConcatVisitor::addition), ADDITION),
+          Map.entry(Fun.<Long, Double>toMethod(ArithmeticExprOrConcatVisitor::addition), ADDITION),
+          Map.entry(Fun.<Double, Long>toMethod(ArithmeticExprOrConcatVisitor::addition), ADDITION),
+          Map.entry(
+              Fun.<Double, Double>toMethod(ArithmeticExprOrConcatVisitor::addition), ADDITION),
+          Map.entry(
+              Fun.<Long, Long>toMethod(ArithmeticExprOrConcatVisitor::subtraction), SUBTRACTION),
+          Map.entry(
+              Fun.<Long, Double>toMethod(ArithmeticExprOrConcatVisitor::subtraction), SUBTRACTION),
+          Map.entry(
+              Fun.<Double, Long>toMethod(ArithmeticExprOrConcatVisitor::subtraction), SUBTRACTION),
+          Map.entry(
+              Fun.<Double, Double>toMethod(ArithmeticExprOrConcatVisitor::subtraction),
+              SUBTRACTION),
+          Map.entry(Fun.<Long, Long>toMethod(ArithmeticVisitor::multiplication), MULTIPLICATION),
+          Map.entry(Fun.<Long, Double>toMethod(ArithmeticVisitor::multiplication), MULTIPLICATION),
+          Map.entry(Fun.<Double, Long>toMethod(ArithmeticVisitor::multiplication), MULTIPLICATION),
+          Map.entry(
+              Fun.<Double, Double>toMethod(ArithmeticVisitor::multiplication), MULTIPLICATION),
+          Map.entry(Fun.<Long, Long>toMethod(ArithmeticVisitor::division), DIVISION),
+          Map.entry(Fun.<Long, Double>toMethod(ArithmeticVisitor::division), DIVISION),
+          Map.entry(Fun.<Double, Long>toMethod(ArithmeticVisitor::division), DIVISION),
+          Map.entry(Fun.<Double, Double>toMethod(ArithmeticVisitor::division), DIVISION),
+          Map.entry(Fun.<Long>toMethod(UnaryVisitor::plus), PLUS),
+          Map.entry(Fun.<Double>toMethod(UnaryVisitor::plus), PLUS),
+          Map.entry(Fun.<Long>toMethod(UnaryVisitor::minus), MINUS),
+          Map.entry(Fun.<Double>toMethod(UnaryVisitor::minus), MINUS),
+          Map.entry(Fun.toMethod(UnaryVisitor::not), NOT),
+          Map.entry(Fun.toMethod(ComparisonVisitor::isEqual), EQUAL),
+          Map.entry(Fun.toMethod(ComparisonVisitor::isNotEqual), NOT_EQUAL),
+          Map.entry(Fun.toMethod(ComparisonVisitor::isLessThan), LESS_THAN),
+          Map.entry(Fun.toMethod(ComparisonVisitor::isGreaterThan), GREATER_THAN),
+          Map.entry(Fun.toMethod(ComparisonVisitor::isLessThanOrEqual), LESS_THAN_OR_EQUAL),
+          Map.entry(Fun.toMethod(ComparisonVisitor::isGreaterThanOrEqual), GREATER_THAN_OR_EQUAL),
+          Map.entry(Fun.toMethod(BooleanVisitor::and), AND),
+          Map.entry(Fun.toMethod(BooleanVisitor::or), OR),
+          Map.entry(
+              Fun.<Boolean, Long, Long>toMethod(ConditionalVisitor::ifThenElse), IF_THEN_ELSE),
+          Map.entry(
+              Fun.<Boolean, Double, Double>toMethod(ConditionalVisitor::ifThenElse), IF_THEN_ELSE),
+          Map.entry(
+              Fun.<Boolean, String, String>toMethod(ConditionalVisitor::ifThenElse), IF_THEN_ELSE),
+          Map.entry(
+              Fun.<Boolean, Boolean, Boolean>toMethod(ConditionalVisitor::ifThenElse),
+              IF_THEN_ELSE),
+          Map.entry(Fun.<Long, Long>toMethod(ConditionalVisitor::nvl), NVL),
+          Map.entry(Fun.<Double, Double>toMethod(ConditionalVisitor::nvl), NVL),
+          Map.entry(Fun.<Double, Long>toMethod(ConditionalVisitor::nvl), NVL),
+          Map.entry(Fun.<Long, Double>toMethod(ConditionalVisitor::nvl), NVL),
+          Map.entry(Fun.<String, String>toMethod(ConditionalVisitor::nvl), NVL),
+          Map.entry(Fun.<Boolean, Boolean>toMethod(ConditionalVisitor::nvl), NVL),
+          Map.entry(Fun.toMethod(NumericFunctionsVisitor::ceil), CEIL),
+          Map.entry(Fun.toMethod(NumericFunctionsVisitor::floor), FLOOR),
+          Map.entry(Fun.toMethod(NumericFunctionsVisitor::abs), ABS),
+          Map.entry(Fun.toMethod(NumericFunctionsVisitor::exp), EXP),
+          Map.entry(Fun.toMethod(NumericFunctionsVisitor::ln), LN),
+          Map.entry(Fun.toMethod(NumericFunctionsVisitor::sqrt), SQRT),
+          Map.entry(Fun.toMethod(NumericFunctionsVisitor::mod), MOD),
+          Map.entry(Fun.toMethod(NumericFunctionsVisitor::power), POWER),
+          Map.entry(Fun.toMethod(NumericFunctionsVisitor::log), LOG));
+
+  /**
+   * Returns the operator implementing a method for the given parameters, or null if the method is
+   * not native or if a parameter of an arithmetic, comparison or numeric operator is not statically
+   * typed as a long, a double or, for not, a boolean.
+   */
+  static NativeOperator of(Method method, List<ResolvableExpression> parameters) {
+    var operator = METHODS.get(method);
+    if (operator == null || operator.isConditional()) {
+      return operator;
+    }
+    for (ResolvableExpression parameter : parameters) {
+      var type = parameter.getType();
+      var supported =
+          operator == NOT
+              ? Boolean.class.equals(type)
+              : Long.class.equals(type) || Double.class.equals(type);
+      if (!supported) {
+        return null;
+      }
+    }
+    return operator;
+  }
+
+  /** Returns true for the operators that do not always resolve all their operands. */
+  boolean isConditional() {
+    return this == AND || this == OR || this == IF_THEN_ELSE || this == NVL;
+  }
+
+  boolean isNumericFunction() {
+    return compareTo(CEIL) >= 0;
+  }
+}
@@ -0,0 +1,174 @@
+package fr.insee.vtl.engine.expressions;
+
+import com.github.hervian.reflection.Fun;
+import fr.insee.vtl.engine.TemporalFunctions;
+import fr.insee.vtl.engine.visitors.expression.functions.ComparisonFunctionsVisitor;
+import fr.insee.vtl.engine.visitors.expression.functions.StringFunctionsVisitor;
+import fr.insee.vtl.model.ConstantExpression;
+import fr.insee.vtl.model.ResolvableExpression;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import org.threeten.extra.Interval;
+
+/**
+ * Prepared variants of the natives that parse some of their parameters.
+ *
+ * <p>When these parameters are constants, they are parsed once (a regular expression, a time unit
+ * or a time zone) and bound to a handle that ignores them. The handle has the same type as the one
+ * of the original method, so {@link FunctionExpression} invokes it in the same way.
+ */
+final class PreparedNatives {
+
+  private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+  private static final Map<Method, Preparation> PREPARATIONS =
+      Map.ofEntries(
+          Map.entry(
+              Fun.toMethod(StringFunctionsVisitor::replace),
+              parameters ->
+                  bind(
+                      "replace",
+                      MethodType.methodType(
+                          String.class, String.class, Pattern.class, String.class),
+                      1,
+                      1,
+                      Pattern.compile(constant(parameters, 1)))),
+          Map.entry(
+              Fun.toMethod(ComparisonFunctionsVisitor::charsetMatch),
+              parameters ->
+                  bind(
+                      "charsetMatch",
+                      MethodType.methodType(Boolean.class, String.class, Pattern.class),
+                      1,
+                      1,
+                      Pattern.compile(constant(parameters, 1)))),
+          Map.entry(
+              Fun.<Instant, String, String>toMethod(TemporalFunctions::truncate_time),
+              parameters ->
+                  bind(
+                      "truncateTime",
+                      MethodType.methodType(
+                          Instant.class, Instant.class, ChronoUnit.class, ZoneId.class),
+                      1,
+                      2,
+                      TemporalFunctions.toChronoUnit(constant(parameters, 1)),
+                      ZoneId.of(constant(parameters, 2)))),
+          Map.entry(
+              Fun.<Instant, String>toMethod(TemporalFunctions::truncate_time),
+              parameters ->
+                  bind(
+                      "truncateTime",
+                      MethodType.methodType(
+                          Instant.class, Instant.class, ChronoUnit.class, ZoneId.class),
+                      1,
+                      1,
+                      TemporalFunctions.toChronoUnit(constant(parameters, 1)),
+                      ZoneOffset.UTC)),
+          Map.entry(
+              Fun.<Interval, String, String>toMethod(TemporalFunctions::truncate_time),
+              parameters ->
+                  bind(
+                      "truncateTime",
+                      MethodType.methodType(
+                          Interval.class, Interval.class, ChronoUnit.class, ZoneId.class),
+                      1,
+                      2,
+                      TemporalFunctions.toChronoUnit(constant(parameters, 1)),
+                      ZoneId.of(constant(parameters, 2)))),
+          Map.entry(
+              Fun.toMethod(TemporalFunctions::at_zone),
+              parameters ->
+                  bind(
+                      "atZone",
+                      MethodType.methodType(ZonedDateTime.class, Instant.class, ZoneId.class),
+                      1,
+                      1,
+                      ZoneId.of(constant(parameters, 1)))));
+
+  private PreparedNatives() {
+    throw new IllegalStateException("Utility class");
+  }
+
+  /**
+   * Returns a prepared handle of type <code>(Object, ...)Object</code> for a method called with the
+   * given parameters, or null if the method has no prepared variant or if its parameters are not
+   * constant.
+   */
+  static MethodHandle prepare(Method method, List<ResolvableExpression> parameters) {
+    var preparation = PREPARATIONS.get(method);
+    if (preparation == null) {
+      return null;
+    }
+    try {
+      return preparation.prepare(parameters);
+    } catch (Exception e) {
+      // Not constant or invalid, the errors are raised by the method itself for each row.
+      return null;
+    }
+  }
+
+  private static String constant(List<ResolvableExpression> parameters, int index) {
+    if (parameters.get(index) instanceof ConstantExpression constant
+        && constant.resolve(Map.of()) instanceof String value) {
+      return value;
+    }
+    throw new IllegalArgumentException("parameter " + index + " is not a constant string");
+  }
+
+  /**
+   * Binds values to the parameters of a prepared method, starting at a position, and ignores the
+   * replaced parameters of the original method.
+   */
+  private static MethodHandle bind(
+      String name, MethodType type, int position, int replaced, Object... values)
+      throws ReflectiveOperationException {
+    var bound =
+        MethodHandles.insertArguments(
+            LOOKUP.findStatic(PreparedNatives.class, name, type), position, values);
+    bound =
+        MethodHandles.dropArguments(bound, position, Collections.nCopies(replaced, Object.class));
+    return bound.asType(MethodType.genericMethodType(bound.type().parameterCount()));
+  }
+
+  private static String replace(String value, Pattern pattern, String replacement) {
+    if (value == null) {
+      return null;
+    }
+    return pattern.matcher(value).replaceAll(replacement == null ? "" : replacement);
+  }
+
+  private static Boolean charsetMatch(String value, Pattern pattern) {
+    if (value == null) {
+      return null;
+    }
+    return pattern.matcher(value).matches();
+  }
+
+  private static Instant truncateTime(Instant value, ChronoUnit unit, ZoneId zone) {
+    return TemporalFunctions.truncate_time(value, unit, zone);
+  }
+
+  private static Interval truncateTime(Interval value, ChronoUnit unit, ZoneId zone) {
+    return TemporalFunctions.truncate_time(value, unit, zone);
+  }
+
+  private static ZonedDateTime atZone(Instant value, ZoneId zone) {
+    return value.atZone(zone);
+  }
+
+  @FunctionalInterface
+  private interface Preparation {
+    MethodHandle prepare(List<ResolvableExpression> parameters) throws Exception;
+  }
+}
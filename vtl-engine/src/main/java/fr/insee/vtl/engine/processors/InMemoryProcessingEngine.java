@@ -4,15 +4,25 @@ import static fr.insee.vtl.model.Structured.Component;
 import static fr.insee.vtl.model.Structured.DataPoint;
 import static fr.insee.vtl.model.Structured.DataStructure;
 
-import fr.insee.vtl.engine.utils.KeyExtractor;
-import fr.insee.vtl.engine.utils.MapCollector;
+import fr.insee.vtl.engine.VtlScriptEngine;
+import fr.insee.vtl.engine.expressions.CommonSubexpressions;
+import fr.insee.vtl.engine.expressions.ExpressionCompiler;
+import fr.insee.vtl.engine.utils.Aggregator;
+import fr.insee.vtl.engine.utils.GroupKey;
+import fr.insee.vtl.engine.utils.Orderings;
+import fr.insee.vtl.engine.utils.Windows;
 import fr.insee.vtl.model.*;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import javax.script.ScriptEngine;
@@ -23,6 +33,40 @@ import javax.script.ScriptEngine;
  */
 public class InMemoryProcessingEngine implements ProcessingEngine {
 
+  private static final String RULEID = "ruleid";
+  private static final String BOOLVAR = "bool_var";
+  private static final String ERRORCODE = "errorcode";
+  private static final String ERRORLEVEL = "errorlevel";
+  private static final String IMBALANCE = "imbalance";
+
+  private final boolean compileExpressions;
+
+  public InMemoryProcessingEngine() {
+    this(false);
+  }
+
+  /**
+   * Constructor taking the expression compilation mode.
+   *
+   * @param compileExpressions Whether calc and filter expressions are compiled to bytecode.
+   */
+  public InMemoryProcessingEngine(boolean compileExpressions) {
+    this.compileExpressions = compileExpressions;
+  }
+
+  /**
+   * Analyses the expressions resolved together for the data points of a structure. They are
+   * compiled once their common subexpressions are shared, the shared ones are compiled separately.
+   */
+  private CommonSubexpressions subexpressions(
+      List<ResolvableExpression> expressions, DataStructure structure) {
+    if (!compileExpressions) {
+      return CommonSubexpressions.of(expressions);
+    }
+    return CommonSubexpressions.of(
+        expressions, expression -> ExpressionCompiler.compile(expression, structure));
+  }
+
   @Override
   public DatasetExpression executeCalc(
       DatasetExpression expression,
@@ -40,23 +84,46 @@ public class InMemoryProcessingEngine implements ProcessingEngine {
               columnName, expressions.get(columnName).getType(), roles.get(columnName), true));
     }
 
+    // Resolve the target columns once, rows are then written by index.
+    var structure = expression.getDataStructure();
+    var columnCount = expressions.size();
+    var columnIndices = new int[columnCount];
+    var itemExpressions = new ArrayList<ResolvableExpression>(columnCount);
+    var i = 0;
+    for (Map.Entry<String, ResolvableExpression> entry : expressions.entrySet()) {
+      columnIndices[i] = newStructure.indexOfKey(entry.getKey());
+      itemExpressions.add(entry.getValue());
+      i++;
+    }
+    // Subexpressions shared by the items are resolved once per data point.
+    var subexpressions = subexpressions(itemExpressions, structure);
+    var unchangedColumns = new HashSet<>(structure.keySet());
+    unchangedColumns.removeAll(expressions.keySet());
+
     return new DatasetExpression(expression) {
       @Override
       public Dataset resolve(Map<String, Object> context) {
         var dataset = expression.resolve(context);
-        List<List<Object>> result =
+        var evaluation = subexpressions.newEvaluation();
+        var columnExpressions = evaluation.getExpressions().toArray(ResolvableExpression[]::new);
+        List<DataPoint> result =
             dataset.getDataPoints().stream()
                 .map(
                     dataPoint -> {
+                      evaluation.nextRow();
                       var newDataPoint = new DataPoint(newStructure, dataPoint);
-                      for (String columnName : expressions.keySet()) {
+                      while (newDataPoint.size() < newStructure.size()) {
+                        newDataPoint.add(null);
+                      }
+                      for (int column = 0; column < columnCount; column++) {
                         newDataPoint.set(
-                            columnName, expressions.get(columnName).resolve(dataPoint));
+                            columnIndices[column], columnExpressions[column].resolve(dataPoint));
                       }
                       return newDataPoint;
                     })
                 .collect(Collectors.toList());
-        return new InMemoryDataset(result, newStructure);
+        return new InMemoryDataset(
+            result, newStructure, Orderings.keep(dataset.getOrdering(), unchangedColumns));
       }
 
       @Override
@@ -69,6 +136,7 @@ public class InMemoryProcessingEngine implements ProcessingEngine {
   @Override
   public DatasetExpression executeFilter(
       DatasetExpression expression, ResolvableExpression filter, String filterText) {
+    var subexpressions = subexpressions(List.of(filter), expression.getDataStructure());
     return new DatasetExpression(expression) {
 
       @Override
@@ -79,16 +147,19 @@ public class InMemoryProcessingEngine implements ProcessingEngine {
       @Override
       public Dataset resolve(Map<String, Object> context) {
         Dataset resolve = expression.resolve(context);
-        List<List<Object>> result =
+        var evaluation = subexpressions.newEvaluation();
+        var preparedFilter = evaluation.getExpressions().get(0);
+        List<DataPoint> result =
             resolve.getDataPoints().stream()
                 .filter(
                     map -> {
-                      var res = filter.resolve(map);
+                      evaluation.nextRow();
+                      var res = preparedFilter.resolve(map);
                       if (res == null) return false;
                       return (boolean) res;
                     })
                 .collect(Collectors.toList());
-        return new InMemoryDataset(result, getDataStructure());
+        return new InMemoryDataset(result, getDataStructure(), resolve.getOrdering());
       }
     };
   }
@@ -114,8 +185,9 @@ public class InMemoryProcessingEngine implements ProcessingEngine {
     return new DatasetExpression(expression) {
       @Override
       public Dataset resolve(Map<String, Object> context) {
+        var dataset = expression.resolve(context);
         var result =
-            expression.resolve(context).getDataPoints().stream()
+            dataset.getDataPoints().stream()
                 .map(
                     dataPoint -> {
                       var newDataPoint = new DataPoint(renamedStructure, dataPoint);
@@ -126,7 +198,8 @@ public class InMemoryProcessingEngine implements ProcessingEngine {
                       return newDataPoint;
                     })
                 .collect(Collectors.toList());
-        return new InMemoryDataset(result, getDataStructure());
+        return new InMemoryDataset(
+            result, getDataStructure(), Orderings.rename(dataset.getOrdering(), fromTo));
       }
 
       @Override
@@ -149,8 +222,9 @@ public class InMemoryProcessingEngine implements ProcessingEngine {
       @Override
       public Dataset resolve(Map<String, Object> context) {
         var columnNames = getColumnNames();
-        List<List<Object>> result =
-            expression.resolve(context).getDataPoints().stream()
+        var dataset = expression.resolve(context);
+        List<DataPoint> result =
+            dataset.getDataPoints().stream()
                 .map(
                     data -> {
                       var projectedDataPoint = new DataPoint(newStructure);
@@ -160,8 +234,8 @@ public class InMemoryProcessingEngine implements ProcessingEngine {
                       return projectedDataPoint;
                     })
                 .collect(Collectors.toList());
-        // TODO: Use List<Datapoint> type for result to avoid conversion.
-        return new InMemoryDataset(result, getDataStructure());
+        return new InMemoryDataset(
+            result, getDataStructure(), Orderings.keep(dataset.getOrdering(), columnNames));
       }
 
       @Override
@@ -192,14 +266,135 @@ public class InMemoryProcessingEngine implements ProcessingEngine {
     };
   }
 
+  @Override
+  public DatasetExpression executeIntersect(List<DatasetExpression> datasets) {
+    var identifiers = identifierNames(datasets.get(0));
+    return new DatasetExpression(datasets.get(0)) {
+      @Override
+      public Dataset resolve(Map<String, Object> context) {
+        var first = datasets.get(0).resolve(context);
+        List<Set<Object>> others = new ArrayList<>();
+        for (DatasetExpression datasetExpression : datasets.subList(1, datasets.size())) {
+          others.add(keys(datasetExpression.resolve(context), identifiers));
+        }
+        // The smallest sets reject most of the points.
+        others.sort(Comparator.comparingInt(Set::size));
+        Set<Object> seen = new HashSet<>();
+        List<DataPoint> data = new ArrayList<>();
+        for (DataPoint dataPoint : first.getDataPoints()) {
+          var key = joinKey(dataPoint, identifiers);
+          if (others.stream().allMatch(keys -> keys.contains(key)) && seen.add(key)) {
+            data.add(dataPoint);
+          }
+        }
+        return new InMemoryDataset(data, getDataStructure(), first.getOrdering());
+      }
+
+      @Override
+      public DataStructure getDataStructure() {
+        return datasets.get(0).getDataStructure();
+      }
+    };
+  }
+
+  @Override
+  public DatasetExpression executeSetDiff(DatasetExpression left, DatasetExpression right) {
+    var identifiers = identifierNames(left);
+    return new DatasetExpression(left) {
+      @Override
+      public Dataset resolve(Map<String, Object> context) {
+        var leftDataset = left.resolve(context);
+        var rightKeys = keys(right.resolve(context), identifiers);
+        List<DataPoint> data = new ArrayList<>();
+        for (DataPoint dataPoint : leftDataset.getDataPoints()) {
+          // Adding the key also drops the duplicates of the left points.
+          if (rightKeys.add(joinKey(dataPoint, identifiers))) {
+            data.add(dataPoint);
+          }
+        }
+        return new InMemoryDataset(data, getDataStructure(), leftDataset.getOrdering());
+      }
+
+      @Override
+      public DataStructure getDataStructure() {
+        return left.getDataStructure();
+      }
+    };
+  }
+
+  @Override
+  public DatasetExpression executeSymDiff(DatasetExpression left, DatasetExpression right) {
+    var identifiers = identifierNames(left);
+    var structure = left.getDataStructure();
+    return new DatasetExpression(left) {
+      @Override
+      public Dataset resolve(Map<String, Object> context) {
+        var leftPoints = left.resolve(context).getDataPoints();
+        var rightDataset = right.resolve(context);
+        var rightPoints = rightDataset.getDataPoints();
+        var leftKeys = keys(leftPoints, identifiers);
+        var rightKeys = keys(rightPoints, identifiers);
+        List<DataPoint> data = new ArrayList<>();
+        Set<Object> seen = new HashSet<>();
+        for (DataPoint dataPoint : leftPoints) {
+          var key = joinKey(dataPoint, identifiers);
+          if (!rightKeys.contains(key) && seen.add(key)) {
+            data.add(dataPoint);
+          }
+        }
+        // The columns of the right points are laid out as the left ones.
+        var columns = new ArrayList<>(structure.keySet());
+        var rightStructure = rightDataset.getDataStructure();
+        var sameLayout = columns.equals(new ArrayList<>(rightStructure.keySet()));
+        var positions = columns.stream().mapToInt(rightStructure::indexOfKey).toArray();
+        for (DataPoint dataPoint : rightPoints) {
+          var key = joinKey(dataPoint, identifiers);
+          if (!leftKeys.contains(key) && seen.add(key)) {
+            if (sameLayout) {
+              data.add(dataPoint);
+              continue;
+            }
+            var newDataPoint = new DataPoint(structure);
+            for (int i = 0; i < positions.length; i++) {
+              newDataPoint.set(i, dataPoint.get(positions[i]));
+            }
+            data.add(newDataPoint);
+          }
+        }
+        return new InMemoryDataset(data, structure);
+      }
+
+      @Override
+      public DataStructure getDataStructure() {
+        return structure;
+      }
+    };
+  }
+
+  private static List<String> identifierNames(DatasetExpression expression) {
+    return expression.getDataStructure().getIdentifiers().stream()
+        .map(Component::getName)
+        .collect(Collectors.toList());
+  }
+
+  /** Returns the keys of the data points on the given identifiers. */
+  private static Set<Object> keys(List<DataPoint> points, List<String> identifiers) {
+    Set<Object> keys = new HashSet<>(Math.max(16, points.size() * 4 / 3 + 1));
+    for (DataPoint dataPoint : points) {
+      keys.add(joinKey(dataPoint, identifiers));
+    }
+    return keys;
+  }
+
+  private static Set<Object> keys(Dataset dataset, List<String> identifiers) {
+    return keys(dataset.getDataPoints(), identifiers);
+  }
+
   @Override
   public DatasetExpression executeAggr(
       DatasetExpression expression,
       List<String> groupBy,
       Map<String, AggregationExpression> collectorMap) {
-    // Create a keyExtractor with the columns we group by.
-    var keyExtractor = new KeyExtractor(groupBy);
-
     // Compute the new data structure.
     Map<String, Dataset.Component> newStructure = new LinkedHashMap<>();
     for (Dataset.Component component : expression.getDataStructure().values()) {
@@ -220,25 +415,24 @@ public class InMemoryProcessingEngine implements ProcessingEngine {
       @Override
       public Dataset resolve(Map<String, Object> context) {
 
-        List<DataPoint> data = expression.resolve(Map.of()).getDataPoints();
-        MapCollector collector = new MapCollector(structure, collectorMap);
-        List<DataPoint> collect =
-            data.stream()
-                .collect(Collectors.groupingBy(keyExtractor, collector))
-                .entrySet()
-                .stream()
-                .map(
-                    e -> {
-                      DataPoint dataPoint = e.getValue();
-                      Map<String, Object> identifiers = e.getKey();
-                      for (Map.Entry<String, Object> identifierElement : identifiers.entrySet()) {
-                        dataPoint.set(identifierElement.getKey(), identifierElement.getValue());
-                      }
-                      return dataPoint;
-                    })
-                .collect(Collectors.toList());
+        Dataset dataset = expression.resolve(Map.of());
+        List<DataPoint> data = dataset.getDataPoints();
+        var aggregator = new Aggregator(structure, groupBy, collectorMap);
+
+        // Groups of datasets sorted on the group by columns are contiguous.
+        var ordering = Orderings.orderingOn(dataset.getOrdering(), groupBy);
+        if (ordering != null) {
+          try {
+            var sorted = aggregator.aggregateSorted(data, ordering);
+            if (sorted != null) {
+              return new InMemoryDataset(sorted, structure, ordering);
+            }
+          } catch (ClassCastException e) {
+            // Not comparable, hashed below.
+          }
+        }
 
-        return new InMemoryDataset(collect, structure);
+        return new InMemoryDataset(aggregator.aggregate(data), structure);
       }
 
       @Override
@@ -248,6 +442,83 @@ public class InMemoryProcessingEngine implements ProcessingEngine {
     };
   }
 
+  /**
+   * Evaluates an analytic function on the sorted partitions of a dataset. The data points keep
+   * their order, the result of the function is written in the target column, nullable unless the
+   * function always has a value.
+   */
+  private DatasetExpression executeAnalytic(
+      DatasetExpression expression,
+      String targetColumnName,
+      Class<?> type,
+      boolean nullable,
+      List<String> partitionBy,
+      Map<String, Analytics.Order> orderBy,
+      Function<List<DataPoint>, Object[]> function) {
+    var structure = expression.getDataStructure();
+    var newStructure = new DataStructure(structure);
+    var role =
+        structure.containsKey(targetColumnName)
+            ? structure.get(targetColumnName).getRole()
+            : Dataset.Role.MEASURE;
+    newStructure.put(
+        targetColumnName, new Dataset.Component(targetColumnName, type, role, nullable));
+    var target = newStructure.indexOfKey(targetColumnName);
+    var unchangedColumns = new HashSet<>(structure.keySet());
+    unchangedColumns.remove(targetColumnName);
+
+    return new DatasetExpression(expression) {
+      @Override
+      public Dataset resolve(Map<String, Object> context) {
+        var dataset = expression.resolve(context);
+        var points = dataset.getDataPoints();
+        var values = new Object[points.size()];
+        for (int[] partition : Windows.partitions(points, partitionBy, orderBy)) {
+          var sorted = new ArrayList<DataPoint>(partition.length);
+          for (int index : partition) {
+            sorted.add(points.get(index));
+          }
+          var partitionValues = function.apply(sorted);
+          for (int i = 0; i < partition.length; i++) {
+            values[partition[i]] = partitionValues[i];
+          }
+        }
+        List<DataPoint> result = new ArrayList<>(points.size());
+        for (int i = 0; i < points.size(); i++) {
+          var newDataPoint = new DataPoint(newStructure, points.get(i));
+          while (newDataPoint.size() < newStructure.size()) {
+            newDataPoint.add(null);
+          }
+          newDataPoint.set(target, values[i]);
+          result.add(newDataPoint);
+        }
+        return new InMemoryDataset(
+            result, newStructure, Orderings.keep(dataset.getOrdering(), unchangedColumns));
+      }
+
+      @Override
+      public DataStructure getDataStructure() {
+        return newStructure;
+      }
+    };
+  }
+
+  private static Class<?> columnType(DatasetExpression expression, String columnName) {
+    var component = expression.getDataStructure().get(columnName);
+    if (component == null) {
+      throw new IllegalArgumentException("unknown column " + columnName);
+    }
+    return component.getType();
+  }
+
+  private static Object[] columnValues(List<DataPoint> points, String columnName) {
+    var values = new Object[points.size()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = points.get(i).get(columnName);
+    }
+    return values;
+  }
+
   @Override
   public DatasetExpression executeSimpleAnalytic(
       DatasetExpression dataset,
@@ -257,7 +528,26 @@ public class InMemoryProcessingEngine implements ProcessingEngine {
       List<String> partitionBy,
       Map<String, Analytics.Order> orderBy,
       Analytics.WindowSpec window) {
-    throw new UnsupportedOperationException();
+    Class<?> type =
+        switch (function) {
+          case SUM, MIN, MAX, MEDIAN, FIRST_VALUE, LAST_VALUE -> columnType(dataset, columnName);
+          case COUNT -> Long.class;
+          case AVG, STDDEV_POP, STDDEV_SAMP, VAR_POP, VAR_SAMP -> Double.class;
+          default -> throw new UnsupportedOperationException("Unknown analytic function");
+        };
+    return executeAnalytic(
+        dataset,
+        targetColumnName,
+        type,
+        // Counts are zero on empty frames, the other aggregates are null.
+        function != Analytics.Function.COUNT,
+        partitionBy,
+        orderBy,
+        sorted -> {
+          var frames = Windows.frames(sorted, orderBy, window);
+          var values = columnValues(sorted, columnName);
+          return Windows.aggregate(function, values, frames[0], frames[1]);
+        });
   }
 
   @Override
@@ -269,7 +559,31 @@ public class InMemoryProcessingEngine implements ProcessingEngine {
       int offset,
       List<String> partitionBy,
       Map<String, Analytics.Order> orderBy) {
-    throw new UnsupportedOperationException();
+    int shift =
+        switch (function) {
+          case LEAD -> offset;
+          case LAG -> -offset;
+          default -> throw new UnsupportedOperationException("Unknown analytic function");
+        };
+    return executeAnalytic(
+        dataset,
+        targetColumnName,
+        columnType(dataset, columnName),
+        // Outside of the partition.
+        true,
+        partitionBy,
+        orderBy,
+        sorted -> {
+          var values = columnValues(sorted, columnName);
+          var result = new Object[values.length];
+          for (int i = 0; i < values.length; i++) {
+            var other = (long) i + shift;
+            if (other >= 0 && other < values.length) {
+              result[i] = values[(int) other];
+            }
+          }
+          return result;
+        });
   }
 
   @Override
@@ -279,7 +593,33 @@ public class InMemoryProcessingEngine implements ProcessingEngine {
       Analytics.Function function,
       String columnName,
       List<String> partitionBy) {
-    throw new UnsupportedOperationException();
+    if (function != Analytics.Function.RATIO_TO_REPORT) {
+      throw new UnsupportedOperationException("Unknown analytic function");
+    }
+    return executeAnalytic(
+        dataset,
+        targetColumnName,
+        Double.class,
+        // Of null values or of a zero total.
+        true,
+        partitionBy,
+        Map.of(),
+        sorted -> {
+          var values = columnValues(sorted, columnName);
+          var total = 0D;
+          for (Object value : values) {
+            if (value != null) {
+              total += ((Number) value).doubleValue();
+            }
+          }
+          var result = new Object[values.length];
+          for (int i = 0; i < values.length; i++) {
+            if (values[i] != null && total != 0) {
+              result[i] = ((Number) values[i]).doubleValue() / total;
+            }
+          }
+          return result;
+        });
   }
 
   @Override
@@ -289,12 +629,36 @@ public class InMemoryProcessingEngine implements ProcessingEngine {
       Analytics.Function function,
       List<String> partitionBy,
       Map<String, Analytics.Order> orderBy) {
-    throw new UnsupportedOperationException();
+    if (function != Analytics.Function.RANK) {
+      throw new UnsupportedOperationException("Unknown analytic function");
+    }
+    var comparator = Windows.comparator(orderBy);
+    return executeAnalytic(
+        dataset,
+        targetColumnName,
+        Long.class,
+        false,
+        partitionBy,
+        orderBy,
+        sorted -> {
+          // Peers have the same rank, the next rank counts all the preceding data points.
+          var result = new Object[sorted.size()];
+          for (int i = 0; i < result.length; i++) {
+            result[i] =
+                i > 0 && comparator.compare(sorted.get(i - 1), sorted.get(i)) == 0
+                    ? result[i - 1]
+                    : (Object) (i + 1L);
+          }
+          return result;
+        });
   }
 
   @Override
   public DatasetExpression executeLeftJoin(
       Map<String, DatasetExpression> datasets, List<Component> components) {
+    if (datasets.size() > 2) {
+      return handleMultiJoin(components, List.copyOf(datasets.values()), JoinType.LEFT);
+    }
     var iterator = datasets.values().iterator();
     var leftMost = iterator.next();
     while (iterator.hasNext()) {
@@ -306,6 +670,9 @@ public class InMemoryProcessingEngine implements ProcessingEngine {
   @Override
   public DatasetExpression executeInnerJoin(
       Map<String, DatasetExpression> datasets, List<Component> components) {
+    if (datasets.size() > 2) {
+      return handleMultiJoin(components, List.copyOf(datasets.values()), JoinType.INNER);
+    }
     var iterator = datasets.values().iterator();
     var leftMost = iterator.next();
     while (iterator.hasNext()) {
@@ -328,6 +695,9 @@ public class InMemoryProcessingEngine implements ProcessingEngine {
   @Override
   public DatasetExpression executeFullJoin(
       Map<String, DatasetExpression> datasets, List<Component> identifiers) {
+    if (datasets.size() > 2) {
+      return handleMultiJoin(identifiers, List.copyOf(datasets.values()), JoinType.FULL);
+    }
     var iterator = datasets.values().iterator();
     var leftMost = iterator.next();
     while (iterator.hasNext()) {
@@ -343,7 +713,120 @@ public class InMemoryProcessingEngine implements ProcessingEngine {
       String output,
       Positioned pos,
       List<String> toDrop) {
-    throw new UnsupportedOperationException();
+    var structure = dataset.getDataStructure();
+    // The rules are written against the aliases of the variables.
+    var alias = dpr.getAlias();
+    var aliasedStructure =
+        new DataStructure(
+            structure.values().stream()
+                .map(
+                    component ->
+                        !alias.containsKey(component.getName())
+                            ? component
+                            : new Dataset.Component(
+                                alias.get(component.getName()),
+                                component.getType(),
+                                component.getRole(),
+                                component.getNullable()))
+                .collect(Collectors.toList()));
+
+    var invalidOnly = output == null || output.equals(ValidationOutput.INVALID.value);
+    var keptColumns =
+        structure.keySet().stream()
+            .filter(name -> !toDrop.contains(name))
+            .collect(Collectors.toList());
+    var kept = keptColumns.stream().mapToInt(structure::indexOfKey).toArray();
+    var components = new ArrayList<Component>();
+    for (String name : keptColumns) {
+      components.add(structure.get(name));
+    }
+    components.add(new Dataset.Component(RULEID, String.class, Dataset.Role.IDENTIFIER));
+    if (!invalidOnly) {
+      components.add(new Dataset.Component(BOOLVAR, Boolean.class, Dataset.Role.MEASURE));
+    }
+    components.add(new Dataset.Component(ERRORCODE, dpr.getErrorCodeType(), Dataset.Role.MEASURE));
+    components.add(
+        new Dataset.Component(ERRORLEVEL, dpr.getErrorLevelType(), Dataset.Role.MEASURE));
+    var newStructure = new DataStructure(components);
+
+    // Antecedents and consequents of all the rules share their subexpressions.
+    var rules = dpr.getRules();
+    var conditions = new ArrayList<ResolvableExpression>(rules.size() * 2);
+    for (DataPointRule rule : rules) {
+      var antecedent = rule.getBuildAntecedentExpression(aliasedStructure);
+      var consequent = rule.getBuildConsequentExpression(aliasedStructure);
+      conditions.add(antecedent);
+      conditions.add(consequent);
+    }
+    var subexpressions = subexpressions(conditions, aliasedStructure);
+    Class<?> errorCodeType = dpr.getErrorCodeType();
+    Class<?> errorLevelType = dpr.getErrorLevelType();
+
+    return new DatasetExpression(dataset) {
+      @Override
+      public Dataset resolve(Map<String, Object> context) {
+        var resolved = dataset.resolve(context);
+        var evaluation = subexpressions.newEvaluation();
+        var expressions = evaluation.getExpressions().toArray(ResolvableExpression[]::new);
+        List<DataPoint> result = new ArrayList<>();
+        for (DataPoint dataPoint : resolved.getDataPoints()) {
+          evaluation.nextRow();
+          var point = alias.isEmpty() ? dataPoint : new DataPoint(aliasedStructure, dataPoint);
+          for (int i = 0; i < rules.size(); i++) {
+            var antecedent = (Boolean) expressions[2 * i].resolve(point);
+            var consequent = (Boolean) expressions[2 * i + 1].resolve(point);
+            Boolean valid;
+            if (antecedent == null) {
+              valid = consequent;
+            } else if (consequent == null) {
+              valid = antecedent;
+            } else {
+              valid = !antecedent || consequent;
+            }
+            if (invalidOnly && !Boolean.FALSE.equals(valid)) {
+              continue;
+            }
+            var newDataPoint = new DataPoint(newStructure);
+            var column = 0;
+            for (int index : kept) {
+              newDataPoint.set(column++, dataPoint.get(index));
+            }
+            var rule = rules.get(i);
+            newDataPoint.set(column++, rule.getName());
+            if (!invalidOnly) {
+              newDataPoint.set(column++, valid);
+            }
+            if (Boolean.TRUE.equals(antecedent) && Boolean.FALSE.equals(consequent)) {
+              var errorContext = new Structured.DataPointMap(point);
+              newDataPoint.set(
+                  column++,
+                  resolveError(rule.getErrorCodeExpression(), errorCodeType, errorContext));
+              newDataPoint.set(
+                  column,
+                  resolveError(rule.getErrorLevelExpression(), errorLevelType, errorContext));
+            }
+            result.add(newDataPoint);
+          }
+        }
+        return new InMemoryDataset(
+            result, newStructure, Orderings.keep(resolved.getOrdering(), keptColumns));
+      }
+
+      @Override
+      public DataStructure getDataStructure() {
+        return newStructure;
+      }
+    };
+  }
+
+  /** Returns the error code or level of a rule that is not satisfied. */
+  private static Object resolveError(
+      ResolvableExpression expression, Class<?> type, Map<String, Object> context) {
+    if (expression == null) {
+      return null;
+    }
+    var value = expression.resolve(context);
+    return value == null ? null : type.cast(value);
   }
 
   @Override
@@ -366,74 +849,333 @@ public class InMemoryProcessingEngine implements ProcessingEngine {
       String inputMode,
       String validationOutput,
       Positioned pos) {
-    throw new UnsupportedOperationException();
+    // inputMode: dataset (default) | dataset_priority (not handled)
+    if (inputMode != null && inputMode.equals("dataset_priority")) {
+      throw new UnsupportedOperationException(
+          "dataset_priority input mode is not supported in check_hierarchy");
+    }
+    var structure = dsE.getDataStructure();
+    var measure = structure.getMeasures().get(0);
+    Class<?> measureType = measure.getType();
+    // The data points with the same other identifiers are checked together.
+    var groupBy =
+        structure.getIdentifiers().stream()
+            .map(Component::getName)
+            .filter(name -> !name.equals(componentID))
+            .collect(Collectors.toList());
+
+    // validationOutput invalid (default) | all | all_measures
+    var invalidOnly = validationOutput == null || validationOutput.equals("invalid");
+    var withMeasure = !"all".equals(validationOutput);
+    var components = new ArrayList<Component>();
+    for (Component component : structure.values()) {
+      if (component.isIdentifier() || component == measure && withMeasure) {
+        components.add(component);
+      }
+    }
+    components.add(new Dataset.Component(RULEID, String.class, Dataset.Role.IDENTIFIER));
+    if (!invalidOnly) {
+      components.add(new Dataset.Component(BOOLVAR, Boolean.class, Dataset.Role.MEASURE));
+    }
+    components.add(new Dataset.Component(IMBALANCE, measureType, Dataset.Role.MEASURE));
+    components.add(new Dataset.Component(ERRORCODE, hr.getErrorCodeType(), Dataset.Role.MEASURE));
+    components.add(new Dataset.Component(ERRORLEVEL, hr.getErrorLevelType(), Dataset.Role.MEASURE));
+    var newStructure = new DataStructure(components);
+    var groupByTargets = groupBy.stream().mapToInt(newStructure::indexOfKey).toArray();
+    var componentTarget = newStructure.indexOfKey(componentID);
+    var measureTarget = withMeasure ? newStructure.indexOfKey(measure.getName()) : -1;
+    var ruleTarget = newStructure.indexOfKey(RULEID);
+
+    return new DatasetExpression(dsE) {
+      @Override
+      public Dataset resolve(Map<String, Object> context) {
+        var dataset = dsE.resolve(context);
+        // Index the values of the code items of each group in one pass.
+        Map<Object, Map<String, Object>> groups = new HashMap<>();
+        Map<Object, DataPoint> firstPoints = new LinkedHashMap<>();
+        var dataStructure = dataset.getDataStructure();
+        var keys = groupBy.stream().mapToInt(dataStructure::indexOfKey).toArray();
+        var code = dataStructure.indexOfKey(componentID);
+        var value = dataStructure.indexOfKey(measure.getName());
+        for (DataPoint dataPoint : dataset.getDataPoints()) {
+          if (dataPoint.get(code) == null) {
+            continue;
+          }
+          var values = new Object[keys.length];
+          for (int i = 0; i < keys.length; i++) {
+            values[i] = dataPoint.get(keys[i]);
+          }
+          var key = new GroupKey(values);
+          firstPoints.putIfAbsent(key, dataPoint);
+          groups
+              .computeIfAbsent(key, k -> new HashMap<>())
+              .put(dataPoint.get(code).toString(), dataPoint.get(value));
+        }
+
+        List<DataPoint> result = new ArrayList<>();
+        for (Map.Entry<Object, DataPoint> group : firstPoints.entrySet()) {
+          var codeValues = groups.get(group.getKey());
+          for (HierarchicalRule rule : hr.getRules()) {
+            var bindings =
+                HierarchicalRuleset.ruleBindings(
+                    rule.getCodeItems(), codeValues, validationMode, measureType);
+            if (bindings == null) {
+              continue;
+            }
+            var valid = (Boolean) rule.getExpression().resolve(bindings);
+            if (invalidOnly && !Boolean.FALSE.equals(valid)) {
+              continue;
+            }
+            var newDataPoint = new DataPoint(newStructure);
+            for (int i = 0; i < groupByTargets.length; i++) {
+              newDataPoint.set(groupByTargets[i], group.getValue().get(keys[i]));
+            }
+            newDataPoint.set(componentTarget, rule.getValueDomainValue());
+            if (measureTarget >= 0) {
+              newDataPoint.set(measureTarget, bindings.get(rule.getValueDomainValue()));
+            }
+            var column = ruleTarget;
+            newDataPoint.set(column++, rule.getName());
+            if (!invalidOnly) {
+              newDataPoint.set(column++, valid);
+            }
+            var left = (Double) rule.getLeftExpression().resolve(bindings);
+            var right = (Double) rule.getRightExpression().resolve(bindings);
+            if (left != null && right != null) {
+              newDataPoint.set(
+                  column,
+                  measureType.equals(Long.class)
+                      ? (Object) (left.longValue() - right.longValue())
+                      : (Object) (left - right));
+            }
+            column++;
+            if (Boolean.FALSE.equals(valid)) {
+              newDataPoint.set(
+                  column++,
+                  resolveError(rule.getErrorCodeExpression(), hr.getErrorCodeType(), bindings));
+              newDataPoint.set(
+                  column,
+                  resolveError(rule.getErrorLevelExpression(), hr.getErrorLevelType(), bindings));
+            }
+            result.add(newDataPoint);
+          }
+        }
+        return new InMemoryDataset(result, newStructure);
+      }
+
+      @Override
+      public DataStructure getDataStructure() {
+        return newStructure;
+      }
+    };
   }
 
   /** Returns a structure with the common identifiers only once. */
   private DataStructure createCommonStructure(
       List<Component> identifiers, DatasetExpression left, DatasetExpression right) {
+    return createCommonStructure(identifiers, List.of(left, right));
+  }
+
+  /** Returns a structure with the common identifiers only once. */
+  private DataStructure createCommonStructure(
+      List<Component> identifiers, List<DatasetExpression> datasets) {
     List<Component> components = new ArrayList<>(identifiers);
-    for (Component component : left.getDataStructure().values()) {
-      if (!identifiers.contains(component)) {
-        components.add(component);
+    for (DatasetExpression dataset : datasets) {
+      for (Component component : dataset.getDataStructure().values()) {
+        if (!identifiers.contains(component)) {
+          components.add(component);
+        }
       }
     }
-    for (Component component : right.getDataStructure().values()) {
-      if (!identifiers.contains(component)) {
-        components.add(component);
+    return new DataStructure(components);
+  }
+
+  /** Returns the values of the given identifiers, as a key that is equal for joined points. */
+  private static Object joinKey(DataPoint point, List<String> identifiers) {
+    if (identifiers.size() == 1) {
+      return point.get(identifiers.get(0));
+    }
+    Object[] values = new Object[identifiers.size()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = point.get(identifiers.get(i));
+    }
+    return new GroupKey(values);
+  }
+
+  /**
+   * Hash join of two lists of points on the given identifiers.
+   *
+   * <p>Returns, for each left point, the matching right points in their original order, or null if
+   * there is none. The hash table is built on the right points, or on the left ones if they are
+   * fewer and unmatched points are not needed.
+   */
+  private static List<List<DataPoint>> hashJoin(
+      List<String> identifiers,
+      List<DataPoint> leftPoints,
+      List<DataPoint> rightPoints,
+      boolean buildOnLeft) {
+    List<List<DataPoint>> matches = new ArrayList<>(leftPoints.size());
+    if (buildOnLeft && leftPoints.size() < rightPoints.size()) {
+      Map<Object, List<Integer>> table = new HashMap<>();
+      for (int i = 0; i < leftPoints.size(); i++) {
+        table
+            .computeIfAbsent(joinKey(leftPoints.get(i), identifiers), k -> new ArrayList<>())
+            .add(i);
+        matches.add(null);
+      }
+      for (DataPoint rightPoint : rightPoints) {
+        List<Integer> leftIndexes = table.get(joinKey(rightPoint, identifiers));
+        if (leftIndexes == null) {
+          continue;
+        }
+        for (Integer leftIndex : leftIndexes) {
+          if (matches.get(leftIndex) == null) {
+            matches.set(leftIndex, new ArrayList<>());
+          }
+          matches.get(leftIndex).add(rightPoint);
+        }
+      }
+    } else {
+      Map<Object, List<DataPoint>> table = new HashMap<>();
+      for (DataPoint rightPoint : rightPoints) {
+        table
+            .computeIfAbsent(joinKey(rightPoint, identifiers), k -> new ArrayList<>())
+            .add(rightPoint);
+      }
+      for (DataPoint leftPoint : leftPoints) {
+        matches.add(table.get(joinKey(leftPoint, identifiers)));
       }
     }
-    return new DataStructure(components);
+    return matches;
   }
 
-  /** Creates a datapoint comparator that operates on the given identifiers only. */
-  private Comparator<DataPoint> createPredicate(List<Component> identifiers) {
-    return (dl, dr) -> {
-      for (Component identifier : identifiers) {
-        if (!Objects.equals(dl.get(identifier.getName()), dr.get(identifier.getName()))) {
-          return -1;
+  /**
+   * Merge join of two lists of points sorted on the given identifiers.
+   *
+   * <p>Returns the same matches as {@link #hashJoin(List, List, List, boolean)}, as views of the
+   * right points, or null if the points turn out not to be sorted.
+   */
+  private static List<List<DataPoint>> mergeJoin(
+      List<String> ordering, List<DataPoint> leftPoints, List<DataPoint> rightPoints) {
+    List<List<DataPoint>> matches = new ArrayList<>(leftPoints.size());
+    List<DataPoint> group = null;
+    DataPoint previous = null;
+    int right = 0;
+    for (DataPoint leftPoint : leftPoints) {
+      if (previous != null) {
+        var order = Orderings.compare(previous, leftPoint, ordering);
+        if (order > 0) {
+          return null;
+        }
+        if (order == 0) {
+          matches.add(group);
+          continue;
         }
       }
-      return 0;
-    };
+      previous = leftPoint;
+      var start = right;
+      while (right < rightPoints.size()) {
+        var order = Orderings.compare(rightPoints.get(right), leftPoint, ordering);
+        if (order > 0) {
+          break;
+        }
+        if (right > 0
+            && Orderings.compare(rightPoints.get(right - 1), rightPoints.get(right), ordering)
+                > 0) {
+          return null;
+        }
+        right++;
+        if (order < 0) {
+          start = right;
+        }
+      }
+      group = start == right ? null : rightPoints.subList(start, right);
+      matches.add(group);
+    }
+    if (!Orderings.isSorted(rightPoints, Math.max(right - 1, 0), ordering)) {
+      return null;
+    }
+    return matches;
   }
 
-  private DatasetExpression handleInnerJoin(
-      List<Component> identifiers, DatasetExpression left, DatasetExpression right) {
+  /**
+   * Joins the left and right datasets on the given identifiers, keeping the order of the left
+   * points then the order of their matches. The unmatched right points of a full join come last, in
+   * their original order.
+   */
+  private DatasetExpression handleJoin(
+      List<Component> identifiers, DatasetExpression left, DatasetExpression right, JoinType type) {
+    var keepUnmatched = type != JoinType.INNER;
     var structure = createCommonStructure(identifiers, left, right);
-    var predicate = createPredicate(identifiers);
+    var identifierNames = identifiers.stream().map(Component::getName).toList();
 
     return new DatasetExpression(left) {
       @Override
       public Dataset resolve(Map<String, Object> context) {
-        var leftPoints = left.resolve(context).getDataPoints();
-        var rightPoints = right.resolve(context).getDataPoints();
+        var leftDataset = left.resolve(context);
+        var rightDataset = right.resolve(context);
+        var leftPoints = leftDataset.getDataPoints();
+        var rightPoints = rightDataset.getDataPoints();
+        List<List<DataPoint>> matches = null;
+        // Datasets sorted on the identifiers are merged instead of hashed.
+        var ordering = Orderings.orderingOn(leftDataset.getOrdering(), identifierNames);
+        if (ordering != null
+            && ordering.equals(Orderings.orderingOn(rightDataset.getOrdering(), identifierNames))) {
+          try {
+            matches = mergeJoin(ordering, leftPoints, rightPoints);
+          } catch (ClassCastException e) {
+            // Not comparable, hashed below.
+          }
+        }
+        if (matches == null) {
+          matches = hashJoin(identifierNames, leftPoints, rightPoints, !keepUnmatched);
+        }
+        Set<DataPoint> matchedRightPoints = Collections.newSetFromMap(new IdentityHashMap<>());
         List<DataPoint> result = new ArrayList<>();
-        for (DataPoint leftPoint : leftPoints) {
-          List<DataPoint> matches = new ArrayList<>();
-          for (DataPoint rightPoint : rightPoints) {
-            // Check equality
-            if (predicate.compare(leftPoint, rightPoint) == 0) {
-              matches.add(rightPoint);
-            }
+        for (int i = 0; i < leftPoints.size(); i++) {
+          var leftPoint = leftPoints.get(i);
+          var leftMatches = matches.get(i);
+          if (leftMatches == null && !keepUnmatched) {
+            continue;
           }
 
-          if (!matches.isEmpty()) {
-            // Create merge datapoint.
-            var mergedPoint = new DataPoint(structure);
-            for (String leftColumn : left.getDataStructure().keySet()) {
-              mergedPoint.set(leftColumn, leftPoint.get(leftColumn));
-            }
-            for (DataPoint match : matches) {
+          // Create merge datapoint.
+          var mergedPoint = new DataPoint(structure);
+          for (String leftColumn : left.getDataStructure().keySet()) {
+            mergedPoint.set(leftColumn, leftPoint.get(leftColumn));
+          }
+
+          if (leftMatches == null) {
+            result.add(mergedPoint);
+          } else {
+            for (DataPoint match : leftMatches) {
               var matchPoint = new DataPoint(structure, mergedPoint);
               for (String rightColumn : right.getDataStructure().keySet()) {
                 matchPoint.set(rightColumn, match.get(rightColumn));
               }
               result.add(matchPoint);
             }
+            if (type == JoinType.FULL) {
+              matchedRightPoints.addAll(leftMatches);
+            }
           }
         }
-        return new InMemoryDataset(result, structure);
+        if (type == JoinType.FULL) {
+          for (DataPoint rightPoint : rightPoints) {
+            if (!matchedRightPoints.contains(rightPoint)) {
+              var rightOnlyPoint = new DataPoint(structure);
+              for (String rightColumn : right.getDataStructure().keySet()) {
+                rightOnlyPoint.set(rightColumn, rightPoint.get(rightColumn));
+              }
+              result.add(rightOnlyPoint);
+            }
+          }
+        }
+        if (type == JoinType.FULL) {
+          return new InMemoryDataset(result, structure);
+        }
+        // The left points keep their order.
+        return new InMemoryDataset(result, structure, leftDataset.getOrdering());
       }
 
       @Override
@@ -443,53 +1185,105 @@ public class InMemoryProcessingEngine implements ProcessingEngine {
     };
   }
 
-  private DatasetExpression handleFullJoin(
-      List<Component> identifiers, DatasetExpression left, DatasetExpression right) {
-    // Naive implementation, left and right union. Could be optimized.
-    return executeUnion(
-        List.of(
-            handleLeftJoin(identifiers, left, right), handleLeftJoin(identifiers, right, left)));
-  }
-
-  private DatasetExpression handleLeftJoin(
-      List<Component> identifiers, DatasetExpression left, DatasetExpression right) {
-    var structure = createCommonStructure(identifiers, left, right);
-    var predicate = createPredicate(identifiers);
+  /**
+   * Joins more than two datasets on the same identifiers in one pass.
+   *
+   * <p>The hash tables of all the datasets but the first one are built once, then each point of the
+   * first dataset is merged with every combination of its matches. The points of a full join that
+   * match none of the previous datasets follow, merged with their matches in the next ones. The
+   * result and its order are the ones of successive joins, without the intermediate datasets.
+   */
+  private DatasetExpression handleMultiJoin(
+      List<Component> identifiers, List<DatasetExpression> datasets, JoinType type) {
+    var structure = createCommonStructure(identifiers, datasets);
+    var identifierNames = identifiers.stream().map(Component::getName).toList();
+    var driving = datasets.get(0);
 
-    return new DatasetExpression(left) {
+    return new DatasetExpression(driving) {
       @Override
       public Dataset resolve(Map<String, Object> context) {
-        var leftPoints = left.resolve(context).getDataPoints();
-        var rightPoints = right.resolve(context).getDataPoints();
+        var drivingDataset = driving.resolve(context);
+        List<List<DataPoint>> points = new ArrayList<>();
+        points.add(drivingDataset.getDataPoints());
+        List<Map<Object, List<DataPoint>>> tables = new ArrayList<>();
+        for (DatasetExpression other : datasets.subList(1, datasets.size())) {
+          var otherPoints = other.resolve(context).getDataPoints();
+          Map<Object, List<DataPoint>> table = new HashMap<>();
+          for (DataPoint point : otherPoints) {
+            table
+                .computeIfAbsent(joinKey(point, identifierNames), k -> new ArrayList<>())
+                .add(point);
+          }
+          points.add(otherPoints);
+          tables.add(table);
+        }
+
         List<DataPoint> result = new ArrayList<>();
-        for (DataPoint leftPoint : leftPoints) {
-          List<DataPoint> matches = new ArrayList<>();
-          for (DataPoint rightPoint : rightPoints) {
-            // Check equality
-            if (predicate.compare(leftPoint, rightPoint) == 0) {
-              matches.add(rightPoint);
+        var last = type == JoinType.FULL ? datasets.size() : 1;
+        Set<Object> previousKeys = new HashSet<>();
+        for (int index = 0; index < last; index++) {
+          for (DataPoint point : points.get(index)) {
+            var key = joinKey(point, identifierNames);
+            if (!previousKeys.contains(key)) {
+              join(result, tables, index, point, key);
             }
           }
+          if (index + 1 < last) {
+            previousKeys.addAll(
+                index == 0 ? keys(points.get(0), identifierNames) : tables.get(index - 1).keySet());
+          }
+        }
+        if (type == JoinType.FULL) {
+          return new InMemoryDataset(result, structure);
+        }
+        // The points of the first dataset keep their order.
+        return new InMemoryDataset(result, structure, drivingDataset.getOrdering());
+      }
 
-          // Create merge datapoint.
-          var mergedPoint = new DataPoint(structure);
-          for (String leftColumn : left.getDataStructure().keySet()) {
-            mergedPoint.set(leftColumn, leftPoint.get(leftColumn));
+      /**
+       * Merges a point of the dataset at the given index with every combination of its matches in
+       * the next datasets, the last one varying fastest.
+       */
+      private void join(
+          List<DataPoint> result,
+          List<Map<Object, List<DataPoint>>> tables,
+          int index,
+          DataPoint point,
+          Object key) {
+        List<List<DataPoint>> matches = new ArrayList<>(tables.size() - index);
+        for (Map<Object, List<DataPoint>> table : tables.subList(index, tables.size())) {
+          var otherMatches = table.get(key);
+          if (otherMatches == null && type == JoinType.INNER) {
+            return;
           }
+          // An unmatched dataset of a left or full join contributes null values.
+          matches.add(otherMatches == null ? Collections.singletonList(null) : otherMatches);
+        }
 
-          if (matches.isEmpty()) {
-            result.add(mergedPoint);
-          } else {
-            for (DataPoint match : matches) {
-              var matchPoint = new DataPoint(structure, mergedPoint);
-              for (String rightColumn : right.getDataStructure().keySet()) {
-                matchPoint.set(rightColumn, match.get(rightColumn));
+        var pointMerged = new DataPoint(structure);
+        for (String column : datasets.get(index).getDataStructure().keySet()) {
+          pointMerged.set(column, point.get(column));
+        }
+        int[] positions = new int[matches.size()];
+        while (true) {
+          var mergedPoint = new DataPoint(structure, pointMerged);
+          for (int i = 0; i < matches.size(); i++) {
+            var match = matches.get(i).get(positions[i]);
+            if (match != null) {
+              for (String column : datasets.get(index + 1 + i).getDataStructure().keySet()) {
+                mergedPoint.set(column, match.get(column));
               }
-              result.add(matchPoint);
             }
           }
+          result.add(mergedPoint);
+          int i = matches.size() - 1;
+          while (i >= 0 && ++positions[i] == matches.get(i).size()) {
+            positions[i--] = 0;
+          }
+          if (i < 0) {
+            return;
+          }
         }
-        return new InMemoryDataset(result, structure);
       }
 
       @Override
@@ -499,6 +1293,21 @@ public class InMemoryProcessingEngine implements ProcessingEngine {
     };
   }
 
+  private DatasetExpression handleInnerJoin(
+      List<Component> identifiers, DatasetExpression left, DatasetExpression right) {
+    return handleJoin(identifiers, left, right, JoinType.INNER);
+  }
+
+  private DatasetExpression handleFullJoin(
+      List<Component> identifiers, DatasetExpression left, DatasetExpression right) {
+    return handleJoin(identifiers, left, right, JoinType.FULL);
+  }
+
+  private DatasetExpression handleLeftJoin(
+      List<Component> identifiers, DatasetExpression left, DatasetExpression right) {
+    return handleJoin(identifiers, left, right, JoinType.LEFT);
+  }
+
   private DatasetExpression handleCrossJoin(
       List<Component> identifiers, DatasetExpression left, DatasetExpression right) {
     var structure = createCommonStructure(identifiers, left, right);
@@ -531,6 +1340,12 @@ public class InMemoryProcessingEngine implements ProcessingEngine {
     };
   }
 
+  private enum JoinType {
+    INNER,
+    LEFT,
+    FULL
+  }
+
   /**
    * The <code>Factory</code> class is an implementation of a VTL engine factory that returns
    * in-memory engines.
@@ -544,7 +1359,9 @@ public class InMemoryProcessingEngine implements ProcessingEngine {
 
     @Override
     public ProcessingEngine getProcessingEngine(ScriptEngine engine) {
-      return new InMemoryProcessingEngine();
+      var compilation = engine.get(VtlScriptEngine.EXPRESSION_COMPILATION);
+      return new InMemoryProcessingEngine(
+          Boolean.TRUE.equals(compilation) || "true".equals(compilation));
     }
   }
 }
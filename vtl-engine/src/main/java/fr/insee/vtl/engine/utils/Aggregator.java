@@ -0,0 +1,180 @@
+package fr.insee.vtl.engine.utils;
+
+import fr.insee.vtl.model.Structured;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+
+/**
+ * The <code>Aggregator</code> class aggregates the data points of a dataset by group.
+ *
+ * <p>The group key is the value of the group by column or, for several columns, a {@link GroupKey}.
+ * The intermediate results of the collectors of a group are kept in an array and addressed by slot,
+ * the columns are only looked up by name when the aggregator is created.
+ *
+ * <p>An aggregator caches the positions of the group by columns and must not be shared between
+ * threads.
+ */
+public class Aggregator {
+
+  private final Structured.DataStructure structure;
+  private final List<String> groupBy;
+  private final Supplier<Object>[] suppliers;
+  private final BiConsumer<Object, Structured.DataPoint>[] accumulators;
+  private final Function<Object, Object>[] finishers;
+  private final int[] targets;
+  private final int[] groupByTargets;
+
+  private Structured.DataStructure sourceStructure;
+  private int[] sources;
+
+  /**
+   * Constructor taking the structure of the result, the group by columns and the collectors of the
+   * aggregated columns.
+   *
+   * @param structure The structure of the result, with the group by and the aggregated columns.
+   * @param groupBy The names of the columns to group by.
+   * @param collectorMap A map between the names of the aggregated columns and their collectors.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  public Aggregator(
+      Structured.DataStructure structure,
+      List<String> groupBy,
+      Map<String, ? extends Collector<Structured.DataPoint, Object, Object>> collectorMap) {
+    this.structure = Objects.requireNonNull(structure);
+    if (!structure.keySet().containsAll(collectorMap.keySet())
+        || !structure.keySet().containsAll(groupBy)) {
+      throw new IllegalArgumentException("inconsistent collector map");
+    }
+    this.groupBy = List.copyOf(groupBy);
+    var size = collectorMap.size();
+    suppliers = new Supplier[size];
+    accumulators = new BiConsumer[size];
+    finishers = new Function[size];
+    targets = new int[size];
+    var slot = 0;
+    for (Map.Entry<String, ? extends Collector<Structured.DataPoint, Object, Object>> entry :
+        collectorMap.entrySet()) {
+      suppliers[slot] = entry.getValue().supplier();
+      accumulators[slot] = entry.getValue().accumulator();
+      finishers[slot] = entry.getValue().finisher();
+      targets[slot] = structure.indexOfKey(entry.getKey());
+      slot++;
+    }
+    groupByTargets = this.groupBy.stream().mapToInt(structure::indexOfKey).toArray();
+  }
+
+  /**
+   * Aggregates data points by group, the groups are in the order of their first data point.
+   *
+   * @param points The data points.
+   * @return One data point per group.
+   */
+  public List<Structured.DataPoint> aggregate(List<Structured.DataPoint> points) {
+    Map<Object, Object[]> groups = new HashMap<>();
+    List<Object[]> orderedGroups = new ArrayList<>();
+    for (Structured.DataPoint point : points) {
+      var key = keyOf(point);
+      var group = groups.get(key);
+      if (group == null) {
+        group = newGroup(point);
+        groups.put(key, group);
+        orderedGroups.add(group);
+      }
+      accumulate(group, point);
+    }
+    List<Structured.DataPoint> result = new ArrayList<>(orderedGroups.size());
+    for (Object[] group : orderedGroups) {
+      result.add(finish(group));
+    }
+    return result;
+  }
+
+  /**
+   * Aggregates data points sorted on the group by columns, one group at a time.
+   *
+   * @param points The data points.
+   * @param ordering The group by columns, in the order the points are sorted on.
+   * @return One data point per group, or null if the points turn out not to be sorted.
+   * @throws ClassCastException if the values of the group by columns are not comparable.
+   */
+  public List<Structured.DataPoint> aggregateSorted(
+      List<Structured.DataPoint> points, List<String> ordering) {
+    List<Structured.DataPoint> result = new ArrayList<>();
+    Object[] group = null;
+    for (Structured.DataPoint point : points) {
+      if (group != null) {
+        var order = Orderings.compare(first(group), point, ordering);
+        if (order > 0) {
+          return null;
+        }
+        if (order < 0) {
+          result.add(finish(group));
+          group = null;
+        }
+      }
+      if (group == null) {
+        group = newGroup(point);
+      }
+      accumulate(group, point);
+    }
+    if (group != null) {
+      result.add(finish(group));
+    }
+    return result;
+  }
+
+  /** Returns the key of the group of a data point. */
+  private Object keyOf(Structured.DataPoint point) {
+    if (point.getDataStructure() != sourceStructure) {
+      sourceStructure = point.getDataStructure();
+      sources = groupBy.stream().mapToInt(sourceStructure::indexOfKey).toArray();
+    }
+    if (sources.length == 1) {
+      return point.get(sources[0]);
+    }
+    var values = new Object[sources.length];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = point.get(sources[i]);
+    }
+    return new GroupKey(values);
+  }
+
+  /** Creates the intermediate results of a group, followed by its first data point. */
+  private Object[] newGroup(Structured.DataPoint first) {
+    var group = new Object[suppliers.length + 1];
+    for (int slot = 0; slot < suppliers.length; slot++) {
+      group[slot] = suppliers[slot].get();
+    }
+    group[suppliers.length] = first;
+    return group;
+  }
+
+  private Structured.DataPoint first(Object[] group) {
+    return (Structured.DataPoint) group[suppliers.length];
+  }
+
+  private void accumulate(Object[] group, Structured.DataPoint point) {
+    for (int slot = 0; slot < accumulators.length; slot++) {
+      accumulators[slot].accept(group[slot], point);
+    }
+  }
+
+  private Structured.DataPoint finish(Object[] group) {
+    var first = first(group);
+    var result = new Structured.DataPoint(structure);
+    for (int i = 0; i < groupByTargets.length; i++) {
+      result.set(groupByTargets[i], first.get(groupBy.get(i)));
+    }
+    for (int slot = 0; slot < finishers.length; slot++) {
+      result.set(targets[slot], finishers[slot].apply(group[slot]));
+    }
+    return result;
+  }
+}
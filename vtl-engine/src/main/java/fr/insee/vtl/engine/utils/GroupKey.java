@@ -0,0 +1,52 @@
+package fr.insee.vtl.engine.utils;
+
+import java.util.Arrays;
+
+/**
+ * The <code>GroupKey</code> class is a composite key made of the values of several columns.
+ *
+ * <p>The values are kept in a flat array and the hash code is computed once.
+ */
+public final class GroupKey {
+
+  private final Object[] values;
+  private final int hash;
+
+  /**
+   * Constructor taking the values of the key, the array must not be modified afterwards.
+   *
+   * @param values The values of the key.
+   */
+  public GroupKey(Object[] values) {
+    this.values = values;
+    this.hash = Arrays.hashCode(values);
+  }
+
+  /**
+   * Returns the value of a column of the key.
+   *
+   * @param index The position of the column in the key.
+   * @return The value of the column.
+   */
+  public Object get(int index) {
+    return values[index];
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    GroupKey groupKey = (GroupKey) o;
+    return hash == groupKey.hash && Arrays.equals(values, groupKey.values);
+  }
+
+  @Override
+  public int hashCode() {
+    return hash;
+  }
+
+  @Override
+  public String toString() {
+    return Arrays.toString(values);
+  }
+}
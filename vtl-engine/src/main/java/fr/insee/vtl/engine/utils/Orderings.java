@@ -0,0 +1,123 @@
+package fr.insee.vtl.engine.utils;
+
+import fr.insee.vtl.model.Dataset;
+import fr.insee.vtl.model.Structured;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The <code>Orderings</code> class contains useful methods for handling the ordering of the data
+ * points of datasets (see {@link Dataset#getOrdering()}).
+ */
+public class Orderings {
+
+  /**
+   * Default constructor overridden to raise an exception: no instance of this class should be
+   * created.
+   */
+  private Orderings() {
+    throw new IllegalStateException("Orderings utility class");
+  }
+
+  /**
+   * Returns the ordering of data points sorted on the given columns, in some order.
+   *
+   * @param ordering The ordering of the data points.
+   * @param columns The columns.
+   * @return The first columns of the ordering if they are the given columns, or null.
+   */
+  public static List<String> orderingOn(List<String> ordering, Collection<String> columns) {
+    if (ordering.size() < columns.size()) {
+      return null;
+    }
+    var prefix = ordering.subList(0, columns.size());
+    if (!new HashSet<>(prefix).equals(new HashSet<>(columns))) {
+      return null;
+    }
+    return prefix;
+  }
+
+  /**
+   * Returns the ordering that remains once only some columns are kept.
+   *
+   * @param ordering The ordering of the data points.
+   * @param columns The columns that are kept unchanged.
+   * @return The longest prefix of the ordering made of kept columns.
+   */
+  public static List<String> keep(List<String> ordering, Collection<String> columns) {
+    var kept = 0;
+    while (kept < ordering.size() && columns.contains(ordering.get(kept))) {
+      kept++;
+    }
+    return ordering.subList(0, kept);
+  }
+
+  /**
+   * Returns the ordering once some columns are renamed.
+   *
+   * @param ordering The ordering of the data points.
+   * @param fromTo The new names of the renamed columns.
+   * @return The ordering with the new names.
+   */
+  public static List<String> rename(List<String> ordering, Map<String, String> fromTo) {
+    var renamed = new ArrayList<String>(ordering.size());
+    for (String column : ordering) {
+      renamed.add(fromTo.getOrDefault(column, column));
+    }
+    return renamed;
+  }
+
+  /**
+   * Compares two data points on the given columns, null values first.
+   *
+   * @param left The first data point.
+   * @param right The second data point.
+   * @param columns The columns to compare, in order.
+   * @return A negative integer, zero, or a positive integer as the first data point is before,
+   *     equal to, or after the second one.
+   * @throws ClassCastException if the values are not comparable.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  public static int compare(
+      Structured.DataPoint left, Structured.DataPoint right, List<String> columns) {
+    for (String column : columns) {
+      var leftValue = left.get(column);
+      var rightValue = right.get(column);
+      if (leftValue == rightValue) {
+        continue;
+      }
+      if (leftValue == null) {
+        return -1;
+      }
+      if (rightValue == null) {
+        return 1;
+      }
+      var order = ((Comparable) leftValue).compareTo(rightValue);
+      if (order != 0) {
+        return order;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Checks that data points are sorted on the given columns.
+   *
+   * @param points The data points.
+   * @param from The index of the first point to check.
+   * @param columns The columns the points should be sorted on.
+   * @return True if the points are sorted from the given index.
+   */
+  public static boolean isSorted(
+      List<Structured.DataPoint> points, int from, List<String> columns) {
+    for (int i = from + 1; i < points.size(); i++) {
+      if (compare(points.get(i - 1), points.get(i), columns) > 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
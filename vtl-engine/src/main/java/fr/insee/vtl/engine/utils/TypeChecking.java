@@ -42,7 +42,8 @@ public class TypeChecking {
       T expression, Class<?> type, ParseTree tree) {
     if (isNull(expression)) {
       var pos = fromContext(tree);
-      return (T) ResolvableExpression.withType(type).withPosition(pos).using(c -> null);
+      return (T)
+          ResolvableExpression.withType(type).withPosition(pos).dependingOn().using(c -> null);
     }
     if (!isType(expression, type)) {
       throw new VtlRuntimeException(
@@ -0,0 +1,541 @@
+package fr.insee.vtl.engine.utils;
+
+import fr.insee.vtl.model.Analytics;
+import fr.insee.vtl.model.Structured;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The <code>Windows</code> class contains useful methods for evaluating analytic functions on
+ * windows of data points.
+ *
+ * <p>The data points are split in partitions and sorted once. The frame of each data point is a
+ * range of positions in its sorted partition, and the frames move forward with the data points, so
+ * the aggregates are updated as data points enter and leave the frame instead of being computed
+ * again for each frame.
+ */
+public class Windows {
+
+  /**
+   * Default constructor overridden to raise an exception: no instance of this class should be
+   * created.
+   */
+  private Windows() {
+    throw new IllegalStateException("Windows utility class");
+  }
+
+  /**
+   * Splits data points in partitions and sorts the partitions.
+   *
+   * @param points The data points.
+   * @param partitionBy The columns to partition by.
+   * @param orderBy The columns to sort the partitions on, ascending order puts null values first
+   *     and descending order puts them last.
+   * @return The positions of the data points of each partition, in sorted order.
+   */
+  public static List<int[]> partitions(
+      List<Structured.DataPoint> points,
+      List<String> partitionBy,
+      Map<String, Analytics.Order> orderBy) {
+    Map<Object, List<Integer>> partitions = new HashMap<>();
+    List<List<Integer>> orderedPartitions = new ArrayList<>();
+    for (int i = 0; i < points.size(); i++) {
+      var key = partitionKey(points.get(i), partitionBy);
+      var partition = partitions.get(key);
+      if (partition == null) {
+        partition = new ArrayList<>();
+        partitions.put(key, partition);
+        orderedPartitions.add(partition);
+      }
+      partition.add(i);
+    }
+    Comparator<Structured.DataPoint> comparator = comparator(orderBy);
+    List<int[]> result = new ArrayList<>(orderedPartitions.size());
+    for (List<Integer> partition : orderedPartitions) {
+      if (!orderBy.isEmpty()) {
+        // The sort is stable, peers stay in the order of the dataset.
+        partition.sort((a, b) -> comparator.compare(points.get(a), points.get(b)));
+      }
+      result.add(partition.stream().mapToInt(Integer::intValue).toArray());
+    }
+    return result;
+  }
+
+  private static Object partitionKey(Structured.DataPoint point, List<String> partitionBy) {
+    if (partitionBy.size() == 1) {
+      return point.get(partitionBy.get(0));
+    }
+    var values = new Object[partitionBy.size()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = point.get(partitionBy.get(i));
+    }
+    return new GroupKey(values);
+  }
+
+  /**
+   * Returns a comparator of data points on the given columns.
+   *
+   * @param orderBy The columns, ascending order puts null values first and descending order puts
+   *     them last.
+   * @return The comparator.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  public static Comparator<Structured.DataPoint> comparator(Map<String, Analytics.Order> orderBy) {
+    Comparator<Structured.DataPoint> comparator = (a, b) -> 0;
+    for (Map.Entry<String, Analytics.Order> entry : orderBy.entrySet()) {
+      var column = entry.getKey();
+      Comparator<Comparable> values =
+          entry.getValue() == Analytics.Order.DESC
+              ? Comparator.nullsLast(Comparator.<Comparable>reverseOrder())
+              : Comparator.nullsFirst(Comparator.<Comparable>naturalOrder());
+      comparator = comparator.thenComparing(point -> (Comparable) point.get(column), values);
+    }
+    return comparator;
+  }
+
+  /**
+   * Computes the frames of the data points of a sorted partition.
+   *
+   * <p>Without window, the frame is the whole partition if there is no order by, and goes from the
+   * start of the partition to the last peer of the data point otherwise. The bounds of the windows
+   * are numbers of preceding and following data points, or distances from the value of the only
+   * order by column for range windows. <code>Long.MIN_VALUE</code> and <code>Long.MAX_VALUE</code>
+   * are unbounded.
+   *
+   * @param sorted The data points of the partition, in sorted order.
+   * @param orderBy The columns the partition is sorted on.
+   * @param window The window, or null.
+   * @return The start (inclusive) and end (exclusive) of the frame of each data point.
+   */
+  public static int[][] frames(
+      List<Structured.DataPoint> sorted,
+      Map<String, Analytics.Order> orderBy,
+      Analytics.WindowSpec window) {
+    var size = sorted.size();
+    var starts = new int[size];
+    var ends = new int[size];
+    if (window instanceof Analytics.DataPointWindow) {
+      for (int i = 0; i < size; i++) {
+        starts[i] = frameStart(i, size, window.getLower());
+        ends[i] = frameEnd(i, size, window.getUpper());
+      }
+    } else if (window instanceof Analytics.RangeWindow) {
+      rangeFrames(sorted, orderBy, window, starts, ends);
+    } else if (orderBy.isEmpty()) {
+      Arrays.fill(ends, size);
+    } else {
+      var comparator = comparator(orderBy);
+      var peerEnd = 0;
+      for (int i = 0; i < size; i++) {
+        if (peerEnd <= i) {
+          peerEnd = i + 1;
+          while (peerEnd < size && comparator.compare(sorted.get(i), sorted.get(peerEnd)) == 0) {
+            peerEnd++;
+          }
+        }
+        ends[i] = peerEnd;
+      }
+    }
+    return new int[][] {starts, ends};
+  }
+
+  private static int frameStart(int i, int size, long preceding) {
+    if (preceding == Long.MIN_VALUE || preceding >= i) {
+      return 0;
+    }
+    if (preceding <= i - size) {
+      return size;
+    }
+    return (int) (i - preceding);
+  }
+
+  private static int frameEnd(int i, int size, long following) {
+    if (following == Long.MAX_VALUE || following >= size - i - 1) {
+      return size;
+    }
+    if (following < -i - 1) {
+      return 0;
+    }
+    return (int) (i + following + 1);
+  }
+
+  private static void rangeFrames(
+      List<Structured.DataPoint> sorted,
+      Map<String, Analytics.Order> orderBy,
+      Analytics.WindowSpec window,
+      int[] starts,
+      int[] ends) {
+    if (orderBy.size() != 1) {
+      throw new IllegalArgumentException("range windows need exactly one order by column");
+    }
+    var entry = orderBy.entrySet().iterator().next();
+    var direction = entry.getValue() == Analytics.Order.DESC ? -1D : 1D;
+    var size = sorted.size();
+    // Keys increase along the partition, null values are all at one end.
+    var keys = new Double[size];
+    for (int i = 0; i < size; i++) {
+      var value = sorted.get(i).get(entry.getKey());
+      if (value != null && !(value instanceof Number)) {
+        throw new IllegalArgumentException("range windows need a numeric order by column");
+      }
+      keys[i] = value == null ? null : direction * ((Number) value).doubleValue();
+    }
+    var nullFrom = 0;
+    while (nullFrom < size && keys[nullFrom] != null) {
+      nullFrom++;
+    }
+    var nullTo = nullFrom;
+    while (nullTo < size && keys[nullTo] == null) {
+      nullTo++;
+    }
+    var unboundedPreceding = window.getLower() == Long.MIN_VALUE;
+    var unboundedFollowing = window.getUpper() == Long.MAX_VALUE;
+    var start = 0;
+    var end = 0;
+    for (int i = 0; i < size; i++) {
+      if (keys[i] == null) {
+        // Null values are peers of each other only.
+        starts[i] = unboundedPreceding ? 0 : nullFrom;
+        ends[i] = unboundedFollowing ? size : nullTo;
+        continue;
+      }
+      var low = unboundedPreceding ? Double.NEGATIVE_INFINITY : keys[i] - window.getLower();
+      var high = unboundedFollowing ? Double.POSITIVE_INFINITY : keys[i] + window.getUpper();
+      while (start < size && (keys[start] == null || keys[start] < low)) {
+        start++;
+      }
+      end = Math.max(end, start);
+      while (end < size && keys[end] != null && keys[end] <= high) {
+        end++;
+      }
+      starts[i] = unboundedPreceding ? 0 : start;
+      ends[i] = unboundedFollowing ? size : end;
+    }
+  }
+
+  /**
+   * Evaluates an aggregate function on the frames of a sorted partition.
+   *
+   * @param function The aggregate function.
+   * @param values The values of the aggregated column, in sorted order.
+   * @param starts The start (inclusive) of the frame of each value.
+   * @param ends The end (exclusive) of the frame of each value.
+   * @return The value of the function on the frame of each value.
+   */
+  public static Object[] aggregate(
+      Analytics.Function function, Object[] values, int[] starts, int[] ends) {
+    var result = new Object[values.length];
+    if (function == Analytics.Function.FIRST_VALUE || function == Analytics.Function.LAST_VALUE) {
+      for (int i = 0; i < values.length; i++) {
+        if (starts[i] < ends[i]) {
+          result[i] =
+              function == Analytics.Function.FIRST_VALUE ? values[starts[i]] : values[ends[i] - 1];
+        }
+      }
+      return result;
+    }
+    var aggregate = slidingAggregate(function, values);
+    var start = 0;
+    var end = 0;
+    for (int i = 0; i < values.length; i++) {
+      if (starts[i] < start || ends[i] < end) {
+        // The frames do not move forward, start again.
+        aggregate = slidingAggregate(function, values);
+        start = starts[i];
+        end = starts[i];
+      }
+      while (end < ends[i]) {
+        aggregate.add(end++);
+      }
+      while (start < starts[i] && start < end) {
+        aggregate.remove(start++);
+      }
+      if (start < starts[i]) {
+        start = starts[i];
+        end = Math.max(end, start);
+      }
+      result[i] = aggregate.result();
+    }
+    return result;
+  }
+
+  private static SlidingAggregate slidingAggregate(Analytics.Function function, Object[] values) {
+    return switch (function) {
+      case SUM -> new Sum(values, false);
+      case AVG -> new Sum(values, true);
+      case COUNT, STDDEV_POP, STDDEV_SAMP, VAR_POP, VAR_SAMP -> new Moments(values, function);
+      case MIN -> new Extremum(values, false);
+      case MAX -> new Extremum(values, true);
+      case MEDIAN -> new Median(values);
+      default -> throw new UnsupportedOperationException("not an aggregate function: " + function);
+    };
+  }
+
+  /** An aggregate over a range of values that can grow at its end and shrink at its start. */
+  private abstract static class SlidingAggregate {
+
+    protected final Object[] values;
+
+    private SlidingAggregate(Object[] values) {
+      this.values = values;
+    }
+
+    abstract void add(int index);
+
+    abstract void remove(int index);
+
+    abstract Object result();
+  }
+
+  /** Sum or average, exact for longs, null without values. */
+  private static final class Sum extends SlidingAggregate {
+
+    private final boolean average;
+    private long count;
+    private long longSum;
+    private double doubleSum;
+    private boolean doubles;
+
+    private Sum(Object[] values, boolean average) {
+      super(values);
+      this.average = average;
+    }
+
+    @Override
+    void add(int index) {
+      var value = values[index];
+      if (value == null) {
+        return;
+      }
+      count++;
+      if (value instanceof Long l) {
+        longSum += l;
+      } else {
+        doubles = true;
+        doubleSum += ((Number) value).doubleValue();
+      }
+    }
+
+    @Override
+    void remove(int index) {
+      var value = values[index];
+      if (value == null) {
+        return;
+      }
+      count--;
+      if (value instanceof Long l) {
+        longSum -= l;
+      } else {
+        doubleSum -= ((Number) value).doubleValue();
+      }
+      if (count == 0) {
+        // Do not carry rounding errors over to the next values.
+        longSum = 0;
+        doubleSum = 0;
+      }
+    }
+
+    @Override
+    Object result() {
+      if (count == 0) {
+        return null;
+      }
+      if (average) {
+        return (doubleSum + longSum) / count;
+      }
+      return doubles ? (Object) (doubleSum + longSum) : (Object) longSum;
+    }
+  }
+
+  /** Count and variance of the values (Welford's algorithm). */
+  private static final class Moments extends SlidingAggregate {
+
+    private final Analytics.Function function;
+    private long count;
+    private double mean;
+    private double m2;
+
+    private Moments(Object[] values, Analytics.Function function) {
+      super(values);
+      this.function = function;
+    }
+
+    @Override
+    void add(int index) {
+      if (values[index] == null) {
+        return;
+      }
+      var x = ((Number) values[index]).doubleValue();
+      count++;
+      var delta = x - mean;
+      mean += delta / count;
+      m2 += delta * (x - mean);
+    }
+
+    @Override
+    void remove(int index) {
+      if (values[index] == null) {
+        return;
+      }
+      var x = ((Number) values[index]).doubleValue();
+      count--;
+      if (count == 0) {
+        mean = 0;
+        m2 = 0;
+        return;
+      }
+      var delta = x - mean;
+      mean -= delta / count;
+      m2 = Math.max(0, m2 - delta * (x - mean));
+    }
+
+    @Override
+    Object result() {
+      return switch (function) {
+        case COUNT -> count;
+        case VAR_POP -> count == 0 ? null : m2 / count;
+        case VAR_SAMP -> count <= 1 ? null : m2 / (count - 1);
+        case STDDEV_POP -> count == 0 ? null : Math.sqrt(m2 / count);
+        case STDDEV_SAMP -> count <= 1 ? null : Math.sqrt(m2 / (count - 1));
+        default -> throw new IllegalStateException();
+      };
+    }
+  }
+
+  /** Minimum or maximum, with a monotonic queue of the positions of the candidates. */
+  private static final class Extremum extends SlidingAggregate {
+
+    private final boolean max;
+    private int[] queue = new int[16];
+    private int head;
+    private int tail;
+
+    private Extremum(Object[] values, boolean max) {
+      super(values);
+      this.max = max;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private boolean dominates(Object value, Object other) {
+      var order = ((Comparable) value).compareTo(other);
+      return max ? order >= 0 : order <= 0;
+    }
+
+    @Override
+    void add(int index) {
+      var value = values[index];
+      if (value == null) {
+        return;
+      }
+      while (tail > head && dominates(value, values[queue[tail - 1]])) {
+        tail--;
+      }
+      if (tail == queue.length) {
+        // Compact before growing.
+        System.arraycopy(queue, head, queue, 0, tail - head);
+        tail -= head;
+        head = 0;
+        if (tail == queue.length) {
+          queue = Arrays.copyOf(queue, queue.length * 2);
+        }
+      }
+      queue[tail++] = index;
+    }
+
+    @Override
+    void remove(int index) {
+      if (tail > head && queue[head] == index) {
+        head++;
+      }
+    }
+
+    @Override
+    Object result() {
+      return tail > head ? values[queue[head]] : null;
+    }
+  }
+
+  /**
+   * Lower median, the values are split in a lower and an upper half kept in sorted multisets. The
+   * lower half has the extra value when the count is odd.
+   */
+  private static final class Median extends SlidingAggregate {
+
+    private final TreeMap<Object, Integer> lower = new TreeMap<>();
+    private final TreeMap<Object, Integer> upper = new TreeMap<>();
+    private int lowerSize;
+    private int upperSize;
+
+    private Median(Object[] values) {
+      super(values);
+    }
+
+    private static void put(TreeMap<Object, Integer> half, Object value) {
+      half.merge(value, 1, Integer::sum);
+    }
+
+    private static void take(TreeMap<Object, Integer> half, Object value) {
+      half.computeIfPresent(value, (v, count) -> count == 1 ? null : count - 1);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    @Override
+    void add(int index) {
+      var value = values[index];
+      if (value == null) {
+        return;
+      }
+      if (lowerSize == 0 || ((Comparable) value).compareTo(lower.lastKey()) <= 0) {
+        put(lower, value);
+        lowerSize++;
+      } else {
+        put(upper, value);
+        upperSize++;
+      }
+      balance();
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    @Override
+    void remove(int index) {
+      var value = values[index];
+      if (value == null) {
+        return;
+      }
+      if (((Comparable) value).compareTo(lower.lastKey()) <= 0) {
+        take(lower, value);
+        lowerSize--;
+      } else {
+        take(upper, value);
+        upperSize--;
+      }
+      balance();
+    }
+
+    private void balance() {
+      if (lowerSize > upperSize + 1) {
+        var value = lower.lastKey();
+        take(lower, value);
+        lowerSize--;
+        put(upper, value);
+        upperSize++;
+      } else if (upperSize > lowerSize) {
+        var value = upper.firstKey();
+        take(upper, value);
+        upperSize--;
+        put(lower, value);
+        lowerSize++;
+      }
+    }
+
+    @Override
+    Object result() {
+      return lowerSize == 0 ? null : lower.lastKey();
+    }
+  }
+}
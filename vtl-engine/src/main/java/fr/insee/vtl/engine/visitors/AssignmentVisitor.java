@@ -6,6 +6,7 @@ import fr.insee.vtl.engine.VtlScriptEngine;
 import fr.insee.vtl.engine.exceptions.InvalidArgumentException;
 import fr.insee.vtl.engine.exceptions.VtlRuntimeException;
 import fr.insee.vtl.engine.visitors.expression.ExpressionVisitor;
+import fr.insee.vtl.engine.visitors.expression.functions.GenericFunctionsVisitor;
 import fr.insee.vtl.model.*;
 import fr.insee.vtl.model.exceptions.InvalidTypeException;
 import fr.insee.vtl.model.exceptions.VtlScriptException;
@@ -16,16 +17,14 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import javax.script.Bindings;
 import javax.script.ScriptContext;
-import javax.script.ScriptException;
-import javax.script.SimpleBindings;
 import org.antlr.v4.runtime.tree.TerminalNode;
 
 /** <code>AssignmentVisitor</code> is the visitor for VTL assignment expressions. */
 public class AssignmentVisitor extends VtlBaseVisitor<Object> {
 
   private final VtlScriptEngine engine;
-  private final ProcessingEngine processingEngine;
   private final ExpressionVisitor expressionVisitor;
+  private final GenericFunctionsVisitor genericFunctionsVisitor;
 
   /**
    * Constructor taking a scripting engine and a processing engine.
@@ -35,10 +34,12 @@ public class AssignmentVisitor extends VtlBaseVisitor<Object> {
    */
   public AssignmentVisitor(VtlScriptEngine engine, ProcessingEngine processingEngine) {
     this.engine = Objects.requireNonNull(engine);
-    this.processingEngine = Objects.requireNonNull(processingEngine);
     expressionVisitor =
         new ExpressionVisitor(
-            engine.getBindings(ScriptContext.ENGINE_SCOPE), processingEngine, engine);
+            engine.getBindings(ScriptContext.ENGINE_SCOPE),
+            Objects.requireNonNull(processingEngine),
+            engine);
+    genericFunctionsVisitor = new GenericFunctionsVisitor(expressionVisitor, engine);
   }
 
   private Object visitAssignment(VtlParser.ExprContext expr) {
@@ -123,6 +124,8 @@ public class AssignmentVisitor extends VtlBaseVisitor<Object> {
     Class erLevelType =
         filteredErLevelTypes.isEmpty() ? Long.class : filteredErLevelTypes.iterator().next();
 
+    // The rules are visited with the processing engine of the script checking them, so that the
+    // ruleset can be kept by a compiled script.
     AtomicInteger index = new AtomicInteger();
     List<DataPointRule> rules =
         ctx.ruleClauseDatapoint().ruleItemDatapoint().stream()
@@ -148,11 +151,13 @@ public class AssignmentVisitor extends VtlBaseVisitor<Object> {
                                   .collect(
                                       Collectors.toMap(
                                           Dataset.Component::getName, component -> component));
-                          return new ExpressionVisitor(componentMap, processingEngine, engine)
+                          return new ExpressionVisitor(
+                                  componentMap, engine.getProcessingEngine(), engine)
                               .visit(antecedentContiditonContext);
                         } else {
                           return ResolvableExpression.withType(Boolean.class)
                               .withPosition(pos)
+                              .dependingOn()
                               .using(cc -> Boolean.TRUE);
                         }
                       },
@@ -162,7 +167,8 @@ public class AssignmentVisitor extends VtlBaseVisitor<Object> {
                                 .collect(
                                     Collectors.toMap(
                                         Dataset.Component::getName, component -> component));
-                        return new ExpressionVisitor(componentMap, processingEngine, engine)
+                        return new ExpressionVisitor(
+                                componentMap, engine.getProcessingEngine(), engine)
                             .visit(consequentConditionContext);
                       },
                       errorCodeExpression,
@@ -238,137 +244,31 @@ public class AssignmentVisitor extends VtlBaseVisitor<Object> {
                       codeItemRelationContext.valueDomainValue().IDENTIFIER().getText();
                   codeItems.add(valueDomainValue);
 
-                  VtlParser.ComparisonOperandContext comparisonOperandContext =
-                      codeItemRelationContext.comparisonOperand();
-
-                  StringBuilder codeItemExpressionBuilder = new StringBuilder();
-                  codeItemRelationContext
-                      .codeItemRelationClause()
-                      .forEach(
-                          circ -> {
-                            TerminalNode minus = circ.MINUS();
-                            String rightCodeItem = circ.rightCodeItem.getText();
-                            codeItems.add(rightCodeItem);
-                            if (minus != null)
-                              codeItemExpressionBuilder.append(" -").append(rightCodeItem);
-                            // plus value or plus null & minus null mean plus
-                            codeItemExpressionBuilder.append(" +").append(rightCodeItem);
-                          });
-
-                  String rightExpressionToEval = codeItemExpressionBuilder.toString();
-                  String expressionToEval =
-                      "bool_var := "
-                          + valueDomainValue
-                          + " "
-                          + comparisonOperandContext.getText()
-                          + " "
-                          + rightExpressionToEval
-                          + ";";
-
-                  ResolvableExpression leftExpression =
-                      ResolvableExpression.withType(Double.class)
-                          .withPosition(pos)
-                          .using(
-                              context -> {
-                                Bindings bindings = new SimpleBindings(context);
-                                bindings.forEach(
-                                    (k, v) ->
-                                        engine
-                                            .getContext()
-                                            .setAttribute(k, v, ScriptContext.ENGINE_SCOPE));
-                                try {
-                                  engine.eval("left := " + valueDomainValue + ";");
-                                  Object left = engine.getContext().getAttribute("left");
-                                  engine
-                                      .getContext()
-                                      .removeAttribute("left", ScriptContext.ENGINE_SCOPE);
-                                  bindings
-                                      .keySet()
-                                      .forEach(
-                                          k ->
-                                              engine
-                                                  .getContext()
-                                                  .removeAttribute(k, ScriptContext.ENGINE_SCOPE));
-                                  if (left.getClass().isAssignableFrom(Double.class)) {
-                                    return (Double) left;
-                                  }
-                                  return ((Long) left).doubleValue();
-                                } catch (ScriptException e) {
-                                  throw new VtlRuntimeException(
-                                      new VtlScriptException(
-                                          "right hierarchical rule has to return long or double",
-                                          pos));
-                                }
-                              });
-
-                  ResolvableExpression rightExpression =
-                      ResolvableExpression.withType(Double.class)
-                          .withPosition(pos)
-                          .using(
-                              context -> {
-                                Bindings bindings = new SimpleBindings(context);
-                                bindings.forEach(
-                                    (k, v) ->
-                                        engine
-                                            .getContext()
-                                            .setAttribute(k, v, ScriptContext.ENGINE_SCOPE));
-                                try {
-                                  engine.eval("right := " + rightExpressionToEval + ";");
-                                  Object right = engine.getContext().getAttribute("right");
-                                  engine
-                                      .getContext()
-                                      .removeAttribute("right", ScriptContext.ENGINE_SCOPE);
-                                  bindings
-                                      .keySet()
-                                      .forEach(
-                                          k ->
-                                              engine
-                                                  .getContext()
-                                                  .removeAttribute(k, ScriptContext.ENGINE_SCOPE));
-                                  if (right.getClass().isAssignableFrom(Double.class)) {
-                                    return (Double) right;
-                                  }
-                                  return ((Long) right).doubleValue();
-                                } catch (ScriptException e) {
-                                  throw new VtlRuntimeException(
-                                      new VtlScriptException(
-                                          "right hierarchical rule has to return long or double",
-                                          pos));
-                                }
-                              });
-
+                  // The rule is resolved against the values of its code items, without the
+                  // engine, so that it can be shipped to the workers of a processing engine.
+                  ResolvableExpression leftExpression = codeItemExpression(valueDomainValue, pos);
+                  ResolvableExpression rightExpression = null;
+                  for (VtlParser.CodeItemRelationClauseContext clause :
+                      codeItemRelationContext.codeItemRelationClause()) {
+                    String rightCodeItem = clause.rightCodeItem.getText();
+                    codeItems.add(rightCodeItem);
+                    ResolvableExpression item = codeItemExpression(rightCodeItem, pos);
+                    boolean minus = clause.MINUS() != null;
+                    if (rightExpression == null) {
+                      rightExpression = minus ? invokeFunction("minus", List.of(item), pos) : item;
+                    } else {
+                      rightExpression =
+                          invokeFunction(
+                              minus ? "subtraction" : "addition",
+                              List.of(rightExpression, item),
+                              pos);
+                    }
+                  }
                   ResolvableExpression expression =
-                      ResolvableExpression.withType(Boolean.class)
-                          .withPosition(pos)
-                          .using(
-                              context -> {
-                                Bindings bindings = new SimpleBindings(context);
-                                bindings.forEach(
-                                    (k, v) ->
-                                        engine
-                                            .getContext()
-                                            .setAttribute(k, v, ScriptContext.ENGINE_SCOPE));
-                                try {
-                                  engine.eval(expressionToEval);
-                                  Boolean boolVar =
-                                      (Boolean) engine.getContext().getAttribute("bool_var");
-                                  engine
-                                      .getContext()
-                                      .removeAttribute("bool_var", ScriptContext.ENGINE_SCOPE);
-                                  bindings
-                                      .keySet()
-                                      .forEach(
-                                          k ->
-                                              engine
-                                                  .getContext()
-                                                  .removeAttribute(k, ScriptContext.ENGINE_SCOPE));
-                                  return boolVar;
-                                } catch (ScriptException e) {
-                                  throw new VtlRuntimeException(
-                                      new VtlScriptException(
-                                          "hierarchical rule has to return boolean", pos));
-                                }
-                              });
+                      invokeFunction(
+                          comparisonFunction(codeItemRelationContext.comparisonOperand()),
+                          List.of(leftExpression, rightExpression),
+                          pos);
 
                   ResolvableExpression errorCodeExpression =
                       null != r.erCode() ? expressionVisitor.visit(r.erCode()) : null;
@@ -390,4 +290,36 @@ public class AssignmentVisitor extends VtlBaseVisitor<Object> {
     bindings.put(rulesetName, hr);
     return hr;
   }
+
+  /** Returns the value of a code item of a hierarchical rule, as a double. */
+  private static ResolvableExpression codeItemExpression(String codeItem, Positioned pos) {
+    return ResolvableExpression.withType(Double.class)
+        .withPosition(pos)
+        .using(c -> c.get(codeItem) instanceof Number value ? value.doubleValue() : null);
+  }
+
+  /** Returns the name of the native of a comparison operand, equality by default. */
+  private static String comparisonFunction(VtlParser.ComparisonOperandContext operand) {
+    if (operand == null) {
+      return "isEqual";
+    }
+    return switch (((TerminalNode) operand.getChild(0)).getSymbol().getType()) {
+      case VtlParser.EQ -> "isEqual";
+      case VtlParser.NEQ -> "isNotEqual";
+      case VtlParser.LT -> "isLessThan";
+      case VtlParser.MT -> "isGreaterThan";
+      case VtlParser.LE -> "isLessThanOrEqual";
+      case VtlParser.ME -> "isGreaterThanOrEqual";
+      default -> throw new UnsupportedOperationException("unknown operator " + operand.getText());
+    };
+  }
+
+  private ResolvableExpression invokeFunction(
+      String name, List<ResolvableExpression> parameters, Positioned pos) {
+    try {
+      return genericFunctionsVisitor.invokeFunction(name, parameters, pos);
+    } catch (VtlScriptException e) {
+      throw new VtlRuntimeException(e);
+    }
+  }
 }
@@ -267,6 +267,11 @@ public class ClauseVisitor extends VtlBaseVisitor<DatasetExpression> {
                     return context.get(alias);
                   }
 
+                  @Override
+                  public Set<String> getDependencies() {
+                    return Set.of(alias);
+                  }
+
                   @Override
                   public Class<?> getType() {
                     return normalizedComponent.getType();
@@ -143,6 +143,7 @@ public class ComparisonVisitor extends VtlBaseVisitor<ResolvableExpression> {
       if (parameters.stream().map(TypedExpression::getType).anyMatch(Object.class::equals)) {
         return ResolvableExpression.withType(Boolean.class)
             .withPosition(fromContext(ctx))
+            .dependingOn()
             .using(c -> null);
       }
       return switch (type.getType()) {
@@ -7,6 +7,7 @@ import fr.insee.vtl.engine.exceptions.VtlRuntimeException;
 import fr.insee.vtl.engine.visitors.expression.functions.GenericFunctionsVisitor;
 import fr.insee.vtl.model.Positioned;
 import fr.insee.vtl.model.ResolvableExpression;
+import fr.insee.vtl.model.Structured;
 import fr.insee.vtl.model.exceptions.InvalidTypeException;
 import fr.insee.vtl.model.exceptions.VtlScriptException;
 import fr.insee.vtl.parser.VtlBaseVisitor;
@@ -192,7 +193,8 @@ public class ConditionalVisitor extends VtlBaseVisitor<ResolvableExpression> {
     }
   }
 
-  static class CastExpression extends ResolvableExpression {
+  /** Expression narrowing the result of a conditional expression to the type of its branches. */
+  public static class CastExpression extends ResolvableExpression {
     private final Class<?> type;
     private final ResolvableExpression expression;
 
@@ -202,11 +204,25 @@ public class ConditionalVisitor extends VtlBaseVisitor<ResolvableExpression> {
       this.expression = expression;
     }
 
+    public ResolvableExpression getOperand() {
+      return expression;
+    }
+
     @Override
     public Object resolve(Map<String, Object> context) {
       return type.cast(expression.resolve(context));
     }
 
+    @Override
+    public Object resolve(Structured.DataPoint context) {
+      return type.cast(expression.resolve(context));
+    }
+
+    @Override
+    public Set<String> getDependencies() {
+      return expression.getDependencies();
+    }
+
     @Override
     public Class<?> getType() {
       return type;
@@ -8,6 +8,7 @@ import fr.insee.vtl.engine.exceptions.InvalidArgumentException;
 import fr.insee.vtl.engine.exceptions.VtlRuntimeException;
 import fr.insee.vtl.engine.expressions.CastExpression;
 import fr.insee.vtl.engine.expressions.ComponentExpression;
+import fr.insee.vtl.engine.expressions.ConstantFolder;
 import fr.insee.vtl.engine.expressions.FunctionExpression;
 import fr.insee.vtl.engine.visitors.expression.ExpressionVisitor;
 import fr.insee.vtl.model.Dataset;
@@ -122,7 +123,7 @@ public class GenericFunctionsVisitor extends VtlBaseVisitor<ResolvableExpression
         if (method == null) {
           method = engine.findMethod(funcName, parameterTypes);
         }
-        return new FunctionExpression(method, parameters, position);
+        return ConstantFolder.fold(new FunctionExpression(method, parameters, position));
       } else if (noMonoDs.isEmpty()) {
         finalRes = invokeFunctionOnDataset(funcName, parameters, position);
       } else {
@@ -260,10 +261,12 @@ public class GenericFunctionsVisitor extends VtlBaseVisitor<ResolvableExpression
     if (Object.class.equals(expression.getType())) {
       return ResolvableExpression.withType(outputClass)
           .withPosition(fromContext(ctx))
+          .dependingOn()
           .using(c -> null);
     }
     try {
-      return new CastExpression(fromContext(ctx), expression, mask, outputClass);
+      return ConstantFolder.fold(
+          new CastExpression(fromContext(ctx), expression, mask, outputClass));
     } catch (VtlScriptException e) {
       throw new VtlRuntimeException(e);
     }
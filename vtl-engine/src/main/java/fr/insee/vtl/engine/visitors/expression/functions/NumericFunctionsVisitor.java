@@ -190,7 +190,10 @@ public class NumericFunctionsVisitor extends VtlBaseVisitor<ResolvableExpression
           List.of(
               exprVisitor.visit(ctx.expr()),
               ctx.optionalExpr() == null
-                  ? ResolvableExpression.withType(Long.class).withPosition(pos).using(c -> 0L)
+                  ? ResolvableExpression.withType(Long.class)
+                      .withPosition(pos)
+                      .dependingOn()
+                      .using(c -> 0L)
                   : exprVisitor.visit(ctx.optionalExpr()));
       return switch (ctx.op.getType()) {
         case VtlParser.ROUND ->
@@ -21,7 +21,7 @@ import org.antlr.v4.runtime.RuleContext;
 
 /**
  * <code>SetFunctionsVisitor</code> is the visitor for expressions involving set functions (i.e.
- * union).
+ * union, intersect, setdiff and symdiff).
  */
 public class SetFunctionsVisitor extends VtlBaseVisitor<ResolvableExpression> {
 
@@ -43,10 +43,29 @@ public class SetFunctionsVisitor extends VtlBaseVisitor<ResolvableExpression> {
 
   @Override
   public ResolvableExpression visitUnionAtom(VtlParser.UnionAtomContext ctx) {
+    return processingEngine.executeUnion(datasets(ctx.expr(), ctx));
+  }
 
+  @Override
+  public ResolvableExpression visitIntersectAtom(VtlParser.IntersectAtomContext ctx) {
+    return processingEngine.executeIntersect(datasets(ctx.expr(), ctx));
+  }
+
+  @Override
+  public ResolvableExpression visitSetOrSYmDiffAtom(VtlParser.SetOrSYmDiffAtomContext ctx) {
+    List<DatasetExpression> datasets = datasets(List.of(ctx.left, ctx.right), ctx);
+    if (ctx.op.getType() == VtlParser.SETDIFF) {
+      return processingEngine.executeSetDiff(datasets.get(0), datasets.get(1));
+    }
+    return processingEngine.executeSymDiff(datasets.get(0), datasets.get(1));
+  }
+
+  /** Visits the operands of a set function, which must have the same structure. */
+  private List<DatasetExpression> datasets(
+      List<VtlParser.ExprContext> exprs, VtlParser.SetOperatorsContext ctx) {
     List<DatasetExpression> datasets = new ArrayList<>();
     Structured.DataStructure structure = null;
-    for (VtlParser.ExprContext expr : ctx.expr()) {
+    for (VtlParser.ExprContext expr : exprs) {
       DatasetExpression rest =
           (DatasetExpression)
               assertTypeExpression(expressionVisitor.visit(expr), Dataset.class, expr);
@@ -61,13 +80,10 @@ public class SetFunctionsVisitor extends VtlBaseVisitor<ResolvableExpression> {
                 "dataset structure of %s is incompatible with %s"
                     .formatted(
                         expr.getText(),
-                        ctx.expr().stream()
-                            .map(RuleContext::getText)
-                            .collect(Collectors.joining(", "))),
+                        exprs.stream().map(RuleContext::getText).collect(Collectors.joining(", "))),
                 fromContext(ctx)));
       }
     }
-
-    return processingEngine.executeUnion(datasets);
+    return datasets;
   }
 }
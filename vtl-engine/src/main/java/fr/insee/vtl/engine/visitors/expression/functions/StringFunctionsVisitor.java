@@ -164,15 +164,24 @@ public class StringFunctionsVisitor extends VtlBaseVisitor<ResolvableExpression>
       var pos = fromContext(ctx);
       ResolvableExpression expr =
           ctx.expr() == null
-              ? ResolvableExpression.withType(String.class).withPosition(pos).using(c -> null)
+              ? ResolvableExpression.withType(String.class)
+                  .withPosition(pos)
+                  .dependingOn()
+                  .using(c -> null)
               : exprVisitor.visit(ctx.expr());
       ResolvableExpression start =
           ctx.startParameter == null
-              ? ResolvableExpression.withType(Long.class).withPosition(pos).using(c -> null)
+              ? ResolvableExpression.withType(Long.class)
+                  .withPosition(pos)
+                  .dependingOn()
+                  .using(c -> null)
               : exprVisitor.visit(ctx.startParameter);
       ResolvableExpression len =
           ctx.endParameter == null
-              ? ResolvableExpression.withType(Long.class).withPosition(pos).using(c -> null)
+              ? ResolvableExpression.withType(Long.class)
+                  .withPosition(pos)
+                  .dependingOn()
+                  .using(c -> null)
               : exprVisitor.visit(ctx.endParameter);
       List<ResolvableExpression> parameters = List.of(expr, start, len);
       return genericFunctionsVisitor.invokeFunction("substr", parameters, fromContext(ctx));
@@ -194,15 +203,24 @@ public class StringFunctionsVisitor extends VtlBaseVisitor<ResolvableExpression>
       var pos = fromContext(ctx);
       ResolvableExpression expr =
           ctx.expr(0) == null
-              ? ResolvableExpression.withType(String.class).withPosition(pos).using(c -> null)
+              ? ResolvableExpression.withType(String.class)
+                  .withPosition(pos)
+                  .dependingOn()
+                  .using(c -> null)
               : exprVisitor.visit(ctx.expr(0));
       ResolvableExpression param =
           ctx.param == null
-              ? ResolvableExpression.withType(String.class).withPosition(pos).using(c -> null)
+              ? ResolvableExpression.withType(String.class)
+                  .withPosition(pos)
+                  .dependingOn()
+                  .using(c -> null)
               : exprVisitor.visit(ctx.param);
       ResolvableExpression optionalExpr =
           ctx.optionalExpr() == null
-              ? ResolvableExpression.withType(String.class).withPosition(pos).using(c -> null)
+              ? ResolvableExpression.withType(String.class)
+                  .withPosition(pos)
+                  .dependingOn()
+                  .using(c -> null)
               : exprVisitor.visit(ctx.optionalExpr());
       List<ResolvableExpression> parameters = List.of(expr, param, optionalExpr);
 
@@ -225,19 +243,31 @@ public class StringFunctionsVisitor extends VtlBaseVisitor<ResolvableExpression>
       var pos = fromContext(ctx);
       ResolvableExpression expr =
           ctx.expr(0) == null
-              ? ResolvableExpression.withType(String.class).withPosition(pos).using(c -> null)
+              ? ResolvableExpression.withType(String.class)
+                  .withPosition(pos)
+                  .dependingOn()
+                  .using(c -> null)
               : exprVisitor.visit(ctx.expr(0));
       ResolvableExpression pattern =
           ctx.pattern == null
-              ? ResolvableExpression.withType(String.class).withPosition(pos).using(c -> null)
+              ? ResolvableExpression.withType(String.class)
+                  .withPosition(pos)
+                  .dependingOn()
+                  .using(c -> null)
               : exprVisitor.visit(ctx.pattern);
       ResolvableExpression start =
           ctx.startParameter == null
-              ? ResolvableExpression.withType(Long.class).withPosition(pos).using(c -> null)
+              ? ResolvableExpression.withType(Long.class)
+                  .withPosition(pos)
+                  .dependingOn()
+                  .using(c -> null)
               : exprVisitor.visit(ctx.startParameter);
       ResolvableExpression occurence =
           ctx.occurrenceParameter == null
-              ? ResolvableExpression.withType(Long.class).withPosition(pos).using(c -> null)
+              ? ResolvableExpression.withType(Long.class)
+                  .withPosition(pos)
+                  .dependingOn()
+                  .using(c -> null)
               : exprVisitor.visit(ctx.occurrenceParameter);
       List<ResolvableExpression> parameters = List.of(expr, pattern, start, occurence);
 
@@ -28,8 +28,12 @@ module fr.insee.vtl.engine {
       InMemoryProcessingEngine.Factory;
 
   opens fr.insee.vtl.engine;
+  // The natives of the expressions are looked up from method references.
+  opens fr.insee.vtl.engine.expressions to
+      safety.mirror;
 
   requires org.antlr.antlr4.runtime;
+  requires org.objectweb.asm;
 
   // TODO: Consider removing these.
   requires org.apache.commons.lang3;
@@ -7,16 +7,29 @@ import com.github.hervian.reflection.Fun;
 import fr.insee.vtl.engine.exceptions.FunctionNotFoundException;
 import fr.insee.vtl.engine.exceptions.UndefinedVariableException;
 import fr.insee.vtl.engine.exceptions.VtlSyntaxException;
+import fr.insee.vtl.engine.expressions.FunctionExpression;
+import fr.insee.vtl.engine.visitors.expression.functions.StringFunctionsVisitor;
 import fr.insee.vtl.model.*;
 import fr.insee.vtl.model.exceptions.InvalidTypeException;
 import fr.insee.vtl.model.exceptions.VtlScriptException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.script.Bindings;
+import javax.script.Compilable;
 import javax.script.ScriptContext;
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
+import javax.script.SimpleBindings;
 import org.assertj.core.api.Condition;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Disabled;
@@ -107,6 +120,115 @@ public class VtlScriptEngineTest {
     assertThat(context.getBindings(ScriptContext.GLOBAL_SCOPE)).doesNotContainKey("b");
   }
 
+  @Test
+  public void testCompiledScript() throws ScriptException {
+    var compiled = ((Compilable) engine).compile("ds2 := ds1[calc m2 := m1 * 2];");
+    var structure =
+        List.of(
+            new Structured.Component("id", String.class, Dataset.Role.IDENTIFIER),
+            new Structured.Component("m1", Long.class, Dataset.Role.MEASURE));
+
+    Bindings first = new SimpleBindings();
+    first.put("ds1", new InMemoryDataset(structure, Arrays.asList("a", 1L)));
+    compiled.eval(first);
+    assertThat(((Dataset) first.get("ds2")).getDataAsMap())
+        .containsExactly(Map.of("id", "a", "m1", 1L, "m2", 2L));
+
+    Bindings second = new SimpleBindings();
+    second.put("ds1", new InMemoryDataset(structure, Arrays.asList("b", 2L)));
+    compiled.eval(second);
+    assertThat(((Dataset) second.get("ds2")).getDataAsMap())
+        .containsExactly(Map.of("id", "b", "m1", 2L, "m2", 4L));
+
+    // The engine bindings are left untouched.
+    assertThat(engine.getBindings(ScriptContext.ENGINE_SCOPE)).doesNotContainKey("ds2");
+  }
+
+  @Test
+  public void testCompiledScriptRuleset() throws ScriptException {
+    var compiled =
+        ((Compilable) engine)
+            .compile(
+                "define datapoint ruleset dpr1 (variable m1) is "
+                    + "positive : m1 > 0 errorcode \"negative\" "
+                    + "end datapoint ruleset; "
+                    + "ds2 := check_datapoint(ds1, dpr1 invalid);");
+    var structure =
+        List.of(
+            new Structured.Component("id", String.class, Dataset.Role.IDENTIFIER),
+            new Structured.Component("m1", Long.class, Dataset.Role.MEASURE));
+
+    Bindings first = new SimpleBindings();
+    first.put("ds1", new InMemoryDataset(structure, Arrays.asList("a", -1L)));
+    compiled.eval(first);
+    assertThat(((Dataset) first.get("ds2")).getDataAsMap()).hasSize(1);
+
+    // The ruleset is kept by the compiled script and bound again.
+    Bindings second = new SimpleBindings();
+    second.put("ds1", new InMemoryDataset(structure, Arrays.asList("b", 1L)));
+    compiled.eval(second);
+    assertThat(second.get("dpr1")).isSameAs(first.get("dpr1"));
+    assertThat(((Dataset) second.get("ds2")).getDataAsMap()).isEmpty();
+  }
+
+  @Test
+  public void testCompiledScriptEngineProperties() throws ScriptException {
+    engine.put(VtlScriptEngine.PROCESSING_ENGINE_NAMES, "unknown");
+    var compiled = ((Compilable) engine).compile("b := a;");
+    Bindings bindings = new SimpleBindings();
+    bindings.put("a", 1L);
+
+    // The properties of the engine apply to the evaluations with other bindings.
+    assertThatThrownBy(() -> compiled.eval(bindings)).isInstanceOf(NoSuchElementException.class);
+    assertThatThrownBy(() -> engine.eval("b := a;", bindings))
+        .isInstanceOf(NoSuchElementException.class);
+
+    // Unless the bindings set them.
+    bindings.put(VtlScriptEngine.PROCESSING_ENGINE_NAMES, "memory");
+    compiled.eval(bindings);
+    assertThat(bindings.get("b")).isEqualTo(1L);
+    assertThat(engine.getBindings(ScriptContext.ENGINE_SCOPE)).doesNotContainKey("b");
+  }
+
+  @Test
+  public void testCompiledScriptConcurrentEvaluations() throws Exception {
+    var compiled = ((Compilable) engine).compile("ds2 := ds1[calc m2 := m1 * 2];");
+    var structure =
+        List.of(
+            new Structured.Component("id", String.class, Dataset.Role.IDENTIFIER),
+            new Structured.Component("m1", Long.class, Dataset.Role.MEASURE));
+
+    var executor = Executors.newFixedThreadPool(4);
+    try {
+      var results = new ArrayList<Future<Bindings>>();
+      for (long i = 0; i < 32; i++) {
+        var value = i;
+        results.add(
+            executor.submit(
+                () -> {
+                  Bindings bindings = new SimpleBindings();
+                  bindings.put("ds1", new InMemoryDataset(structure, Arrays.asList("a", value)));
+                  compiled.eval(bindings);
+                  return bindings;
+                }));
+      }
+      for (int i = 0; i < results.size(); i++) {
+        assertThat(((Dataset) results.get(i).get().get("ds2")).getDataAsMap())
+            .containsExactly(Map.of("id", "a", "m1", (long) i, "m2", 2L * i));
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertThat(engine.getBindings(ScriptContext.ENGINE_SCOPE)).doesNotContainKey("ds2");
+  }
+
+  @Test
+  public void testCompiledScriptSyntaxError() {
+    assertThatThrownBy(() -> ((Compilable) engine).compile("ds2 := ds1[calc m2 := ];"))
+        .isInstanceOf(VtlScriptException.class)
+        .hasMessageContaining("mismatched input ']'");
+  }
+
   @Test
   public void testFunctionsExpression() throws NoSuchMethodException, ScriptException {
 
@@ -233,6 +355,17 @@ public class VtlScriptEngineTest {
     assertThat(engine.get("res")).isEqualTo("FOO BAR");
   }
 
+  @Test
+  public void testRegisterMethodAfterLookup() throws ScriptException {
+    VtlScriptEngine engine = (VtlScriptEngine) this.engine;
+    assertThatThrownBy(() -> engine.eval("res := testUpper(\"foo\");"))
+        .isInstanceOf(FunctionNotFoundException.class);
+
+    engine.registerMethod("testUpper", Fun.toMethod(TextFunctions::testUpper));
+    engine.eval("res := testUpper(\"foo\");");
+    assertThat(engine.get("res")).isEqualTo("FOO");
+  }
+
   @Test
   public void testSyntaxError() {
     assertThatThrownBy(
@@ -301,6 +434,30 @@ public class VtlScriptEngineTest {
     //        System.out.println(res);
   }
 
+  @Test
+  public void testFunctionExpressionSerialization() throws Exception {
+    Positioned position = () -> new Positioned.Position(0, 0, 0, 0);
+    var instr =
+        new FunctionExpression(
+            new VtlMethod(Fun.toMethod(StringFunctionsVisitor::instr)),
+            List.of(
+                new ConstantExpression("abcabc", position),
+                new ConstantExpression("b", position),
+                new ConstantExpression(1L, position),
+                new ConstantExpression(2L, position)),
+            position);
+    assertThat(instr.resolve(Map.of())).isEqualTo(4L);
+
+    var bytes = new ByteArrayOutputStream();
+    try (var out = new ObjectOutputStream(bytes)) {
+      out.writeObject(instr);
+    }
+    try (var in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      var deserialized = (ResolvableExpression) in.readObject();
+      assertThat(deserialized.resolve(Map.of())).isEqualTo(4L);
+    }
+  }
+
   @Test
   public void testRegisterGlobal() throws NoSuchMethodException, ScriptException {
 
@@ -16,7 +16,7 @@ public class UnimplementedExceptionTest {
 
   @Test
   public void testSimple() {
-    String vtlExpression = "a := first_value(ds over());";
+    String vtlExpression = "a := check(ds > 0 imbalance ds);";
     Dataset ds =
         new InMemoryDataset(
             List.of(List.of(1L, 31L)),
@@ -0,0 +1,152 @@
+package fr.insee.vtl.engine.expressions;
+
+import static fr.insee.vtl.engine.expressions.ExpressionSamples.point;
+import static fr.insee.vtl.engine.expressions.ExpressionSamples.position;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.github.hervian.reflection.Fun;
+import fr.insee.vtl.engine.visitors.expression.ArithmeticExprOrConcatVisitor;
+import fr.insee.vtl.engine.visitors.expression.ArithmeticVisitor;
+import fr.insee.vtl.model.*;
+import fr.insee.vtl.model.exceptions.VtlScriptException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+public class CommonSubexpressionsTest {
+
+  private static final AtomicInteger userCalls = new AtomicInteger();
+
+  private final Structured.Component m1 =
+      new Structured.Component("m1", Long.class, Dataset.Role.MEASURE);
+  private final Structured.DataStructure structure = new Structured.DataStructure(List.of(m1));
+
+  private ResolvableExpression addition(ResolvableExpression left, ResolvableExpression right)
+      throws VtlScriptException {
+    return new FunctionExpression(
+        new VtlMethod(Fun.<Long, Long>toMethod(ArithmeticExprOrConcatVisitor::addition)),
+        List.of(left, right),
+        position);
+  }
+
+  private ResolvableExpression multiplication(ResolvableExpression left, ResolvableExpression right)
+      throws VtlScriptException {
+    return new FunctionExpression(
+        new VtlMethod(Fun.<Long, Long>toMethod(ArithmeticVisitor::multiplication)),
+        List.of(left, right),
+        position);
+  }
+
+  /** A function registered by a user, which is not deterministic. */
+  public static Long userFunction(Long value) {
+    return value == null ? null : value + userCalls.incrementAndGet();
+  }
+
+  @Test
+  public void testResolveOncePerRow() throws VtlScriptException {
+    var calls = new AtomicInteger();
+    var counted =
+        ResolvableExpression.withType(Long.class)
+            .withPosition(position)
+            .using(context -> (long) calls.incrementAndGet());
+
+    // Two items sharing m1 + counted, built independently.
+    var first = multiplication(addition(new ComponentExpression(m1, position), counted), counted);
+    var second =
+        addition(
+            addition(new ComponentExpression(m1, position), counted),
+            new ConstantExpression(1L, position));
+
+    var subexpressions = CommonSubexpressions.of(List.of(first, second));
+    assertThat(subexpressions.hasCommonSubexpressions()).isTrue();
+
+    var evaluation = subexpressions.newEvaluation();
+    var expressions = evaluation.getExpressions();
+
+    evaluation.nextRow();
+    var dataPoint = point(structure, 10L);
+    // counted is resolved twice: once in the shared addition, once in the multiplication.
+    assertThat(expressions.get(0).resolve(dataPoint)).isEqualTo((10L + 1L) * 2L);
+    assertThat(expressions.get(1).resolve(dataPoint)).isEqualTo(10L + 1L + 1L);
+    assertThat(calls.get()).isEqualTo(2);
+
+    evaluation.nextRow();
+    assertThat(expressions.get(1).resolve(point(structure, 20L))).isEqualTo(20L + 3L + 1L);
+    assertThat(calls.get()).isEqualTo(3);
+
+    // Also when resolved against a map, as in the Spark user defined functions.
+    evaluation.nextRow();
+    Map<String, Object> context = Map.of("m1", 30L);
+    assertThat(expressions.get(1).resolve(context)).isEqualTo(30L + 4L + 1L);
+    assertThat(expressions.get(0).resolve(context)).isEqualTo((30L + 4L) * 5L);
+    assertThat(calls.get()).isEqualTo(5);
+  }
+
+  @Test
+  public void testResolveOncePerRowCompiled() throws VtlScriptException {
+    var calls = new AtomicInteger();
+    var counted =
+        ResolvableExpression.withType(Long.class)
+            .withPosition(position)
+            .using(context -> (long) calls.incrementAndGet());
+
+    var first = multiplication(addition(new ComponentExpression(m1, position), counted), counted);
+    var second =
+        addition(
+            addition(new ComponentExpression(m1, position), counted),
+            new ConstantExpression(1L, position));
+
+    // Shared before compiling: the compiled roots resolve the shared addition through its slot.
+    var subexpressions =
+        CommonSubexpressions.of(
+            List.of(first, second),
+            expression -> ExpressionCompiler.compile(expression, structure));
+    assertThat(subexpressions.hasCommonSubexpressions()).isTrue();
+
+    var evaluation = subexpressions.newEvaluation();
+    var expressions = evaluation.getExpressions();
+    assertThat(expressions).allMatch(CompiledExpression.class::isInstance);
+
+    evaluation.nextRow();
+    var dataPoint = point(structure, 10L);
+    assertThat(expressions.get(0).resolve(dataPoint)).isEqualTo((10L + 1L) * 2L);
+    assertThat(expressions.get(1).resolve(dataPoint)).isEqualTo(10L + 1L + 1L);
+    assertThat(calls.get()).isEqualTo(2);
+
+    evaluation.nextRow();
+    assertThat(expressions.get(1).resolve(point(structure, 20L))).isEqualTo(20L + 3L + 1L);
+    assertThat(calls.get()).isEqualTo(3);
+  }
+
+  @Test
+  public void testNoCommonSubexpressions() throws VtlScriptException {
+    var first =
+        addition(new ComponentExpression(m1, position), new ConstantExpression(1L, position));
+    var second =
+        addition(new ComponentExpression(m1, position), new ConstantExpression(2L, position));
+
+    var subexpressions = CommonSubexpressions.of(List.of(first, second));
+    assertThat(subexpressions.hasCommonSubexpressions()).isFalse();
+    assertThat(subexpressions.newEvaluation().getExpressions()).containsExactly(first, second);
+  }
+
+  @Test
+  public void testUserFunctionsAreNotShared() throws Exception {
+    var method = new VtlMethod(getClass().getMethod("userFunction", Long.class));
+    var first =
+        new FunctionExpression(method, List.of(new ComponentExpression(m1, position)), position);
+    var second =
+        new FunctionExpression(method, List.of(new ComponentExpression(m1, position)), position);
+
+    var subexpressions = CommonSubexpressions.of(List.of(first, second));
+    assertThat(subexpressions.hasCommonSubexpressions()).isFalse();
+
+    var evaluation = subexpressions.newEvaluation();
+    evaluation.nextRow();
+    userCalls.set(0);
+    var dataPoint = point(structure, 10L);
+    assertThat(evaluation.getExpressions().get(0).resolve(dataPoint)).isEqualTo(11L);
+    assertThat(evaluation.getExpressions().get(1).resolve(dataPoint)).isEqualTo(12L);
+  }
+}
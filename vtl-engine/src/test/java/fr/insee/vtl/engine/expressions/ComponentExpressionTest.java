@@ -0,0 +1,67 @@
+package fr.insee.vtl.engine.expressions;
+
+import static fr.insee.vtl.engine.expressions.ExpressionSamples.point;
+import static fr.insee.vtl.engine.expressions.ExpressionSamples.position;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import fr.insee.vtl.model.Dataset;
+import fr.insee.vtl.model.ResolvableExpression;
+import fr.insee.vtl.model.Structured;
+import fr.insee.vtl.model.exceptions.VtlScriptException;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+public class ComponentExpressionTest {
+
+  @Test
+  public void testResolveDataPoint() {
+    var id = new Structured.Component("id", String.class, Dataset.Role.IDENTIFIER);
+    var m1 = new Structured.Component("m1", Long.class, Dataset.Role.MEASURE);
+    var m2 = new Structured.Component("m2", Long.class, Dataset.Role.MEASURE);
+    var expression = new ComponentExpression(m1, position);
+
+    var structure = new Structured.DataStructure(List.of(id, m1, m2));
+    assertThat(expression.resolve(point(structure, "a", 1L, 2L))).isEqualTo(1L);
+    assertThat(expression.resolve(point(structure, "b", 3L, 4L))).isEqualTo(3L);
+
+    // The index is bound again when the structure changes.
+    var projected = new Structured.DataStructure(List.of(id, m2, m1));
+    assertThat(expression.resolve(point(projected, "c", 5L, 6L))).isEqualTo(6L);
+
+    assertThat(expression.resolve(Map.of("m1", 7L))).isEqualTo(7L);
+  }
+
+  @Test
+  public void testResolveDataPointThroughCast() throws VtlScriptException {
+    var m1 = new Structured.Component("m1", Long.class, Dataset.Role.MEASURE);
+    var structure = new Structured.DataStructure(List.of(m1));
+    var component = new ComponentExpression(m1, position);
+    // Only resolvable against a data point, the cast must not wrap the point in a map.
+    var operand =
+        new ResolvableExpression(position) {
+          @Override
+          public Object resolve(Map<String, Object> context) {
+            throw new UnsupportedOperationException("resolved by name");
+          }
+
+          @Override
+          public Object resolve(Structured.DataPoint context) {
+            return component.resolve(context);
+          }
+
+          @Override
+          public Class<?> getType() {
+            return Long.class;
+          }
+        };
+
+    var toString = new CastExpression(position, operand, null, String.class);
+    assertThat(toString.resolve(point(structure, 1L))).isEqualTo("1");
+    var toDouble = new CastExpression(position, operand, null, Double.class);
+    assertThat(toDouble.resolve(point(structure, 2L))).isEqualTo(2D);
+    var toBoolean = new CastExpression(position, component, null, Boolean.class);
+    assertThat(toBoolean.resolve(point(structure, (Object) null))).isNull();
+    assertThat(toBoolean.resolve(Map.of("m1", 0L))).isEqualTo(false);
+  }
+}
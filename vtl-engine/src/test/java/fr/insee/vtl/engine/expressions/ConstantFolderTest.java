@@ -0,0 +1,72 @@
+package fr.insee.vtl.engine.expressions;
+
+import static fr.insee.vtl.engine.expressions.ExpressionSamples.position;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.github.hervian.reflection.Fun;
+import fr.insee.vtl.engine.visitors.expression.ArithmeticExprOrConcatVisitor;
+import fr.insee.vtl.engine.visitors.expression.functions.NumericFunctionsVisitor;
+import fr.insee.vtl.engine.visitors.expression.functions.StringFunctionsVisitor;
+import fr.insee.vtl.model.*;
+import fr.insee.vtl.model.exceptions.VtlScriptException;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+public class ConstantFolderTest {
+
+  private final Structured.Component s =
+      new Structured.Component("s", String.class, Dataset.Role.MEASURE);
+
+  @Test
+  public void testFoldConstants() throws VtlScriptException {
+    var addition =
+        new FunctionExpression(
+            new VtlMethod(Fun.<Long, Long>toMethod(ArithmeticExprOrConcatVisitor::addition)),
+            List.of(new ConstantExpression(1L, position), new ConstantExpression(2L, position)),
+            position);
+    var folded = ConstantFolder.fold(addition);
+    assertThat(folded).isInstanceOf(ConstantExpression.class);
+    assertThat(folded.resolve(Map.of())).isEqualTo(3L);
+
+    // The type of the expression is kept when the result is null.
+    var withNull =
+        new FunctionExpression(
+            new VtlMethod(Fun.<Long, Long>toMethod(ArithmeticExprOrConcatVisitor::addition)),
+            List.of(new ConstantExpression(1L, position), new ConstantExpression(null, position)),
+            position);
+    folded = ConstantFolder.fold(withNull);
+    assertThat(folded).isInstanceOf(ConstantExpression.class);
+    assertThat(folded.getType()).isEqualTo(Long.class);
+    assertThat(folded.resolve(Map.of())).isNull();
+
+    var cast =
+        new CastExpression(
+            position, new ConstantExpression("2020-01-15", position), "yyyy-MM-dd", Instant.class);
+    folded = ConstantFolder.fold(cast);
+    assertThat(folded).isInstanceOf(ConstantExpression.class);
+    assertThat(folded.resolve(Map.of())).isEqualTo(Instant.parse("2020-01-15T00:00:00Z"));
+  }
+
+  @Test
+  public void testNothingToFold() throws VtlScriptException {
+    var replace =
+        new FunctionExpression(
+            new VtlMethod(Fun.toMethod(StringFunctionsVisitor::replace)),
+            List.of(
+                new ComponentExpression(s, position),
+                new ConstantExpression("[0-9]+", position),
+                new ConstantExpression("", position)),
+            position);
+    assertThat(ConstantFolder.fold(replace)).isSameAs(replace);
+
+    // Errors are raised when the expression is resolved.
+    var sqrt =
+        new FunctionExpression(
+            new VtlMethod(Fun.toMethod(NumericFunctionsVisitor::sqrt)),
+            List.of(new ConstantExpression(-1D, position)),
+            position);
+    assertThat(ConstantFolder.fold(sqrt)).isSameAs(sqrt);
+  }
+}
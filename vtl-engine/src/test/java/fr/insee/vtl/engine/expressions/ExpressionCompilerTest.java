@@ -0,0 +1,136 @@
+package fr.insee.vtl.engine.expressions;
+
+import static fr.insee.vtl.engine.expressions.ExpressionSamples.point;
+import static fr.insee.vtl.engine.expressions.ExpressionSamples.position;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+
+import com.github.hervian.reflection.Fun;
+import fr.insee.vtl.engine.VtlScriptEngine;
+import fr.insee.vtl.engine.visitors.expression.ArithmeticExprOrConcatVisitor;
+import fr.insee.vtl.engine.visitors.expression.ComparisonVisitor;
+import fr.insee.vtl.model.*;
+import fr.insee.vtl.model.exceptions.VtlScriptException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+import org.junit.jupiter.api.Test;
+
+public class ExpressionCompilerTest {
+
+  private final Structured.Component m1 =
+      new Structured.Component("m1", Long.class, Dataset.Role.MEASURE);
+  private final Structured.Component m2 =
+      new Structured.Component("m2", Double.class, Dataset.Role.MEASURE);
+  private final Structured.DataStructure structure =
+      new Structured.DataStructure(
+          List.of(new Structured.Component("id", String.class, Dataset.Role.IDENTIFIER), m1, m2));
+
+  private static InMemoryDataset dataset() {
+    return new InMemoryDataset(
+        List.of(
+            new Structured.Component("id", String.class, Dataset.Role.IDENTIFIER),
+            new Structured.Component("m1", Long.class, Dataset.Role.MEASURE),
+            new Structured.Component("m2", Double.class, Dataset.Role.MEASURE),
+            new Structured.Component("s", String.class, Dataset.Role.MEASURE)),
+        Arrays.asList("a", 1L, 2.5D, "x"),
+        Arrays.asList("b", 3L, null, null),
+        Arrays.asList("c", 10L, -0.0D, "yy"),
+        Arrays.asList("d", null, 0.0D, "z"));
+  }
+
+  private static Object eval(boolean compile, String script) throws ScriptException {
+    ScriptEngine engine = new ScriptEngineManager().getEngineByName("vtl");
+    engine.put(VtlScriptEngine.EXPRESSION_COMPILATION, compile);
+    engine.put("ds", dataset());
+    engine.eval(script);
+    return ((Dataset) engine.get("res")).getDataAsList();
+  }
+
+  @Test
+  public void testCompiledExpressionsMatchInterpreter() throws ScriptException {
+    List<String> scripts =
+        List.of(
+            "res := ds[calc x := m1 + m2 * 2 - m1 / 3, y := -m1, z := - m2 + 1.5];",
+            "res := ds[calc x := m1 > 2, y := m2 <= 0, z := m1 = m2, w := not(m1 >= 3)];",
+            "res := ds[calc x := upper(s) || \"!\", y := length(s) + m1];",
+            "res := ds[calc x := if m1 > 2 then m2 else 0.0, y := nvl(m1, 0) * 2];",
+            "res := ds[filter m1 * 2 > 3 and m2 >= 0];",
+            "res := ds[calc x := m1 + 1][rename x to y][calc z := y * m2];");
+    for (String script : scripts) {
+      assertThat(eval(true, script)).as(script).isEqualTo(eval(false, script));
+    }
+  }
+
+  @Test
+  public void testCompiledErrorsMatchInterpreter() {
+    // The failing call is reported at its own position, be it the root or a nested call.
+    Map<String, Integer> scripts =
+        Map.of(
+            "res := ds[calc x := sqrt(m2 - 10.0)];", 20,
+            "res := ds[calc x := 1 + sqrt(m2 - 10.0)];", 24);
+    scripts.forEach(
+        (script, column) -> {
+          VtlScriptException compiled =
+              catchThrowableOfType(VtlScriptException.class, () -> eval(true, script));
+          VtlScriptException interpreted =
+              catchThrowableOfType(VtlScriptException.class, () -> eval(false, script));
+
+          assertThat(compiled)
+              .as(script)
+              .isNotNull()
+              .hasMessageContaining("operand has to be 0 or positive");
+          assertThat(compiled.getMessage()).isEqualTo(interpreted.getMessage());
+          assertThat(compiled.getPosition())
+              .usingRecursiveComparison()
+              .isEqualTo(interpreted.getPosition());
+          assertThat(compiled.getPosition().startColumn).as(script).isEqualTo(column);
+        });
+
+    // The right operand is evaluated even when the left one is null.
+    String script = "res := ds[filter id = \"d\"][calc x := m1 + cast(s, integer)];";
+    Throwable interpreted = catchThrowable(() -> eval(false, script));
+    assertThat(interpreted).isInstanceOf(NumberFormatException.class);
+    assertThat(catchThrowable(() -> eval(true, script)))
+        .isInstanceOf(NumberFormatException.class)
+        .hasMessage(interpreted.getMessage());
+  }
+
+  @Test
+  public void testCompile() throws Exception {
+    var addition =
+        new FunctionExpression(
+            new VtlMethod(Fun.<Long, Double>toMethod(ArithmeticExprOrConcatVisitor::addition)),
+            List.of(new ComponentExpression(m1, position), new ComponentExpression(m2, position)),
+            position);
+    var greaterThan =
+        new FunctionExpression(
+            new VtlMethod(Fun.toMethod(ComparisonVisitor::isGreaterThan)),
+            List.of(addition, new ConstantExpression(3L, position)),
+            position);
+
+    var compiled = ExpressionCompiler.compile(greaterThan, structure);
+    assertThat(compiled).isInstanceOf(CompiledExpression.class);
+    assertThat(compiled.getType()).isEqualTo(Boolean.class);
+
+    assertThat(compiled.resolve(point(structure, "a", 1L, 2.5D))).isEqualTo(true);
+    assertThat(compiled.resolve(point(structure, "b", 1L, 1.5D))).isEqualTo(false);
+    assertThat(compiled.resolve(point(structure, "c", null, 1D))).isNull();
+
+    // Another layout falls back to the interpreter.
+    var reordered =
+        new Structured.DataStructure(
+            List.of(m2, m1, new Structured.Component("id", String.class, Dataset.Role.IDENTIFIER)));
+    assertThat(compiled.resolve(point(reordered, 2.5D, 1L, "a"))).isEqualTo(true);
+  }
+
+  @Test
+  public void testNothingToCompile() {
+    var component = new ComponentExpression(m1, position);
+    assertThat(ExpressionCompiler.compile(component, structure)).isSameAs(component);
+  }
+}
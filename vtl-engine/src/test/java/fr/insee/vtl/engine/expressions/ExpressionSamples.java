@@ -0,0 +1,14 @@
+package fr.insee.vtl.engine.expressions;
+
+import fr.insee.vtl.model.Positioned;
+import fr.insee.vtl.model.Structured;
+import java.util.Arrays;
+
+public class ExpressionSamples {
+
+  public static final Positioned position = () -> new Positioned.Position(0, 0, 0, 0);
+
+  public static Structured.DataPoint point(Structured.DataStructure structure, Object... values) {
+    return new Structured.DataPoint(structure, Arrays.asList(values));
+  }
+}
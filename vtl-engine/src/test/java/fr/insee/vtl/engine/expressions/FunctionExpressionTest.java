@@ -0,0 +1,224 @@
+package fr.insee.vtl.engine.expressions;
+
+import static fr.insee.vtl.engine.expressions.ExpressionSamples.point;
+import static fr.insee.vtl.engine.expressions.ExpressionSamples.position;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.github.hervian.reflection.Fun;
+import fr.insee.vtl.engine.exceptions.VtlRuntimeException;
+import fr.insee.vtl.engine.visitors.expression.ArithmeticExprOrConcatVisitor;
+import fr.insee.vtl.engine.visitors.expression.ArithmeticVisitor;
+import fr.insee.vtl.engine.visitors.expression.BooleanVisitor;
+import fr.insee.vtl.engine.visitors.expression.ComparisonVisitor;
+import fr.insee.vtl.engine.visitors.expression.ConditionalVisitor;
+import fr.insee.vtl.engine.visitors.expression.functions.NumericFunctionsVisitor;
+import fr.insee.vtl.engine.visitors.expression.functions.StringFunctionsVisitor;
+import fr.insee.vtl.model.*;
+import fr.insee.vtl.model.exceptions.VtlScriptException;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+public class FunctionExpressionTest {
+
+  private final Structured.Component m1 =
+      new Structured.Component("m1", Long.class, Dataset.Role.MEASURE);
+  private final Structured.Component m2 =
+      new Structured.Component("m2", Double.class, Dataset.Role.MEASURE);
+  private final Structured.DataStructure structure = new Structured.DataStructure(List.of(m1, m2));
+
+  private FunctionExpression function(Method method, ResolvableExpression... parameters)
+      throws VtlScriptException {
+    return new FunctionExpression(new VtlMethod(method), List.of(parameters), position);
+  }
+
+  @Test
+  public void testResolvePrimitives() throws VtlScriptException {
+    // (m1 * m1 + m2) / 2
+    var square =
+        function(
+            Fun.<Long, Long>toMethod(ArithmeticVisitor::multiplication),
+            new ComponentExpression(m1, position),
+            new ComponentExpression(m1, position));
+    var sum =
+        function(
+            Fun.<Long, Double>toMethod(ArithmeticExprOrConcatVisitor::addition),
+            square,
+            new ComponentExpression(m2, position));
+    var half =
+        function(
+            Fun.<Double, Long>toMethod(ArithmeticVisitor::division),
+            sum,
+            new ConstantExpression(2L, position));
+
+    var isNull = new ResolvableExpression.NullFlag();
+    assertThat(square.resolveLong(point(structure, 3L, 1.5D), isNull)).isEqualTo(9L);
+    assertThat(isNull.isNull()).isFalse();
+    assertThat(half.resolveDouble(point(structure, 3L, 1.5D), isNull)).isEqualTo(5.25D);
+    assertThat(isNull.isNull()).isFalse();
+    assertThat(half.resolve(point(structure, 3L, 1.5D))).isEqualTo(5.25D);
+    assertThat(half.resolve(Map.of("m1", 3L, "m2", 1.5D))).isEqualTo(5.25D);
+
+    half.resolveDouble(point(structure, 3L, null), isNull);
+    assertThat(isNull.isNull()).isTrue();
+    assertThat(half.resolve(point(structure, null, 1.5D))).isNull();
+  }
+
+  @Test
+  public void testResolveComparisons() throws VtlScriptException {
+    var greaterThan =
+        function(
+            Fun.toMethod(ComparisonVisitor::isGreaterThan),
+            new ComponentExpression(m1, position),
+            new ComponentExpression(m2, position));
+    var equal =
+        function(
+            Fun.toMethod(ComparisonVisitor::isEqual),
+            new ComponentExpression(m1, position),
+            new ConstantExpression(Long.MAX_VALUE, position));
+
+    assertThat(greaterThan.resolve(point(structure, 2L, 1.5D))).isEqualTo(true);
+    assertThat(greaterThan.resolve(point(structure, 1L, 1.5D))).isEqualTo(false);
+    assertThat(greaterThan.resolve(point(structure, 1L, null))).isNull();
+
+    // Longs are compared as longs, not as doubles.
+    assertThat(equal.resolve(point(structure, Long.MAX_VALUE - 1, 0D))).isEqualTo(false);
+    assertThat(equal.resolve(point(structure, Long.MAX_VALUE, 0D))).isEqualTo(true);
+  }
+
+  @Test
+  public void testResolveNumericFunctions() throws VtlScriptException {
+    var sqrt =
+        function(
+            Fun.toMethod(NumericFunctionsVisitor::sqrt), new ComponentExpression(m2, position));
+    var ceil =
+        function(
+            Fun.toMethod(NumericFunctionsVisitor::ceil), new ComponentExpression(m2, position));
+    var log =
+        function(
+            Fun.toMethod(NumericFunctionsVisitor::log),
+            new ComponentExpression(m1, position),
+            new ConstantExpression(2L, position));
+
+    assertThat(sqrt.resolve(point(structure, 0L, 4D))).isEqualTo(2D);
+    assertThat(sqrt.resolve(point(structure, 0L, null))).isNull();
+    assertThat(ceil.resolve(point(structure, 0L, 1.2D))).isEqualTo(2L);
+    assertThat(log.resolve(point(structure, 8L, 0D))).isEqualTo(3D);
+    assertThat(log.resolve(point(structure, null, 0D))).isNull();
+
+    assertThatThrownBy(() -> sqrt.resolve(point(structure, 0L, -1D)))
+        .isInstanceOf(VtlRuntimeException.class)
+        .hasMessageContaining("operand has to be 0 or positive");
+    assertThatThrownBy(() -> log.resolve(point(structure, 0L, 0D)))
+        .isInstanceOf(VtlRuntimeException.class)
+        .hasMessageContaining("operand must be positive");
+  }
+
+  @Test
+  public void testResolveConditionalsLazily() throws VtlScriptException {
+    var isPositive =
+        function(
+            Fun.toMethod(ComparisonVisitor::isGreaterThan),
+            new ComponentExpression(m2, position),
+            new ConstantExpression(0D, position));
+    var sqrt =
+        function(
+            Fun.toMethod(NumericFunctionsVisitor::sqrt), new ComponentExpression(m2, position));
+    var ifThenElse =
+        function(
+            Fun.<Boolean, Double, Double>toMethod(ConditionalVisitor::ifThenElse),
+            isPositive,
+            sqrt,
+            new ConstantExpression(0D, position));
+
+    // The square root of a negative number is not resolved.
+    assertThat(ifThenElse.resolve(point(structure, 0L, 4D))).isEqualTo(2D);
+    assertThat(ifThenElse.resolve(point(structure, 0L, -4D))).isEqualTo(0D);
+    assertThat(ifThenElse.resolve(point(structure, 0L, null))).isNull();
+
+    var nvl =
+        function(
+            Fun.<Double, Double>toMethod(ConditionalVisitor::nvl),
+            new ComponentExpression(m2, position),
+            sqrt);
+    assertThat(nvl.resolve(point(structure, 0L, -4D))).isEqualTo(-4D);
+
+    var sqrtIsPositive =
+        function(
+            Fun.toMethod(ComparisonVisitor::isGreaterThan),
+            sqrt,
+            new ConstantExpression(0D, position));
+    var and = function(Fun.toMethod(BooleanVisitor::and), isPositive, sqrtIsPositive);
+    var or = function(Fun.toMethod(BooleanVisitor::or), isPositive, sqrtIsPositive);
+    assertThat(and.resolve(point(structure, 0L, -4D))).isEqualTo(false);
+    assertThat(and.resolve(point(structure, 0L, 4D))).isEqualTo(true);
+    assertThat(or.resolve(point(structure, 0L, 4D))).isEqualTo(true);
+    assertThatThrownBy(() -> or.resolve(point(structure, 0L, -4D)))
+        .isInstanceOf(VtlRuntimeException.class);
+
+    // Three-valued logic.
+    var nullBoolean = new ConstantExpression(null, position);
+    var andNull = function(Fun.toMethod(BooleanVisitor::and), isPositive, nullBoolean);
+    var orNull = function(Fun.toMethod(BooleanVisitor::or), isPositive, nullBoolean);
+    assertThat(andNull.resolve(point(structure, 0L, -4D))).isEqualTo(false);
+    assertThat(andNull.resolve(point(structure, 0L, 4D))).isNull();
+    assertThat(orNull.resolve(point(structure, 0L, 4D))).isEqualTo(true);
+    assertThat(orNull.resolve(point(structure, 0L, -4D))).isNull();
+  }
+
+  @Test
+  public void testResolvePreparedNatives() throws VtlScriptException {
+    var s = new Structured.Component("s", String.class, Dataset.Role.MEASURE);
+    var strings = new Structured.DataStructure(List.of(s));
+    var replace =
+        function(
+            Fun.toMethod(StringFunctionsVisitor::replace),
+            new ComponentExpression(s, position),
+            new ConstantExpression("[0-9]+", position),
+            new ConstantExpression(null, position));
+
+    assertThat(replace.resolve(point(strings, "a1b22c"))).isEqualTo("abc");
+    assertThat(replace.resolve(point(strings, (Object) null))).isNull();
+
+    // Invalid patterns are not prepared, the error is raised for each row.
+    var invalid =
+        function(
+            Fun.toMethod(StringFunctionsVisitor::replace),
+            new ComponentExpression(s, position),
+            new ConstantExpression("[", position),
+            new ConstantExpression("", position));
+    assertThatThrownBy(() -> invalid.resolve(point(strings, "a")))
+        .isInstanceOf(VtlRuntimeException.class);
+  }
+
+  @Test
+  public void testDependencies() throws VtlScriptException {
+    var cast =
+        new CastExpression(position, new ComponentExpression(m2, position), null, Double.class);
+    var sum =
+        function(
+            Fun.<Long, Double>toMethod(ArithmeticExprOrConcatVisitor::addition),
+            new ComponentExpression(m1, position),
+            cast);
+    assertThat(sum.getDependencies()).containsExactlyInAnyOrder("m1", "m2");
+
+    var lambda =
+        ResolvableExpression.withType(Double.class)
+            .withPosition(position)
+            .dependingOn(sum, new ConstantExpression(1L, position))
+            .using(context -> (Double) sum.resolve(context) + 1);
+    assertThat(lambda.getDependencies()).containsExactlyInAnyOrder("m1", "m2");
+    assertThat(lambda.tryCast(Double.class).getDependencies())
+        .containsExactlyInAnyOrder("m1", "m2");
+
+    // The components read by a function that does not declare them are not known.
+    var unknown =
+        ResolvableExpression.withType(Long.class)
+            .withPosition(position)
+            .using(context -> (Long) context.get("m1"));
+    assertThat(unknown.getDependencies()).isNull();
+    assertThat(ResolvableExpression.dependenciesOf(List.of(sum, unknown))).isNull();
+  }
+}
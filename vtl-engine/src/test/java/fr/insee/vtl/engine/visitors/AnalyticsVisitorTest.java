@@ -0,0 +1,193 @@
+package fr.insee.vtl.engine.visitors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import fr.insee.vtl.model.Dataset;
+import fr.insee.vtl.model.InMemoryDataset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+import org.assertj.core.data.Percentage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class AnalyticsVisitorTest {
+
+  private final InMemoryDataset ds1 =
+      new InMemoryDataset(
+          List.of(
+              Map.of("Id_1", "A", "Id_2", "XX", "Year", 2000L, "Me_1", 3L, "Me_2", 1D),
+              Map.of("Id_1", "A", "Id_2", "XX", "Year", 2001L, "Me_1", 4L, "Me_2", 9D),
+              Map.of("Id_1", "A", "Id_2", "XX", "Year", 2002L, "Me_1", 7L, "Me_2", 5D),
+              Map.of("Id_1", "A", "Id_2", "XX", "Year", 2003L, "Me_1", 6L, "Me_2", 8D),
+              Map.of("Id_1", "A", "Id_2", "YY", "Year", 2000L, "Me_1", 9L, "Me_2", 3D),
+              Map.of("Id_1", "A", "Id_2", "YY", "Year", 2001L, "Me_1", 5L, "Me_2", 4D),
+              Map.of("Id_1", "A", "Id_2", "YY", "Year", 2002L, "Me_1", 10L, "Me_2", 2D),
+              Map.of("Id_1", "A", "Id_2", "YY", "Year", 2003L, "Me_1", 5L, "Me_2", 7D)),
+          Map.of(
+              "Id_1",
+              String.class,
+              "Id_2",
+              String.class,
+              "Year",
+              Long.class,
+              "Me_1",
+              Long.class,
+              "Me_2",
+              Double.class),
+          Map.of(
+              "Id_1",
+              Dataset.Role.IDENTIFIER,
+              "Id_2",
+              Dataset.Role.IDENTIFIER,
+              "Year",
+              Dataset.Role.IDENTIFIER,
+              "Me_1",
+              Dataset.Role.MEASURE,
+              "Me_2",
+              Dataset.Role.MEASURE));
+
+  private ScriptEngine engine;
+
+  @BeforeEach
+  public void setUp() {
+    engine = new ScriptEngineManager().getEngineByName("vtl");
+    engine.put("ds1", ds1);
+  }
+
+  /** Returns the values of a column of the result, in the order of the data points. */
+  private List<Object> column(String name) {
+    return ((Dataset) engine.get("res"))
+        .getDataAsMap().stream().map(row -> row.get(name)).collect(Collectors.toList());
+  }
+
+  @Test
+  public void testRunningSum() throws ScriptException {
+    engine.eval(
+        "res := ds1[calc sum_Me_1 := sum(Me_1 over (partition by Id_1, Id_2 order by Year))];");
+    assertThat(column("sum_Me_1")).containsExactly(3L, 7L, 14L, 20L, 9L, 14L, 24L, 29L);
+    assertThat(((Dataset) engine.get("res")).getDataStructure().get("sum_Me_1").getType())
+        .isEqualTo(Long.class);
+
+    // Peers are in the frame of each other.
+    engine.eval("res := sum(ds1 over (partition by Id_1 order by Id_2));");
+    assertThat(column("Me_1")).containsExactly(20L, 20L, 20L, 20L, 49L, 49L, 49L, 49L);
+    assertThat(column("Me_2")).containsExactly(23D, 23D, 23D, 23D, 39D, 39D, 39D, 39D);
+  }
+
+  @Test
+  public void testDataPointsWindow() throws ScriptException {
+    engine.eval(
+        "res := sum(ds1 over (partition by Id_1 order by Id_2 "
+            + "data points between 2 preceding and 2 following));");
+    assertThat(column("Me_1")).containsExactly(14L, 20L, 29L, 31L, 37L, 35L, 29L, 20L);
+
+    engine.eval(
+        "res := max(ds1 over (partition by Id_1 order by Id_2 "
+            + "data points between 2 preceding and 2 following));");
+    assertThat(column("Me_1")).containsExactly(7L, 7L, 9L, 9L, 10L, 10L, 10L, 10L);
+
+    engine.eval(
+        "res := min(ds1 over (partition by Id_1 order by Id_2 "
+            + "data points between 1 preceding and 1 following));");
+    assertThat(column("Me_2")).containsExactly(1D, 1D, 5D, 3D, 3D, 2D, 2D, 2D);
+
+    engine.eval(
+        "res := first_value(ds1 over (partition by Id_1 order by Id_2 "
+            + "data points between 2 preceding and 2 following));");
+    assertThat(column("Me_1")).containsExactly(3L, 3L, 3L, 4L, 7L, 6L, 9L, 5L);
+  }
+
+  @Test
+  public void testRangeWindow() throws ScriptException {
+    engine.eval(
+        "res := avg(ds1 over (partition by Id_1 order by Year "
+            + "range between 1 preceding and 1 following));");
+    // Data points are not reordered.
+    assertThat(column("Me_1"))
+        .containsExactly(5.25D, 19D / 3, 37D / 6, 7D, 5.25D, 19D / 3, 37D / 6, 7D);
+    assertThat(column("Me_2")).containsExactly(4.25D, 4D, 35D / 6, 5.5D, 4.25D, 4D, 35D / 6, 5.5D);
+
+    engine.eval(
+        "res := count(ds1 over (partition by Id_1 order by Year desc "
+            + "range between 1 preceding and current data point));");
+    assertThat(column("Me_1")).containsExactly(4L, 4L, 4L, 2L, 4L, 4L, 4L, 2L);
+  }
+
+  @Test
+  public void testStatistics() throws ScriptException {
+    engine.eval(
+        "res := ds1[calc "
+            + "median_Me_1 := median(Me_1 over (partition by Id_1, Id_2)), "
+            + "var_Me_1 := var_samp(Me_1 over (partition by Id_1, Id_2 order by Year))];");
+    // Lower median, as Spark.
+    assertThat(column("median_Me_1")).containsExactly(4L, 4L, 4L, 4L, 5L, 5L, 5L, 5L);
+    var variances = column("var_Me_1");
+    assertThat(variances.get(0)).isNull();
+    assertThat(variances.get(1)).isEqualTo(0.5D);
+    assertThat((Double) variances.get(3)).isCloseTo(10D / 3, Percentage.withPercentage(0.001));
+    assertThat((Double) variances.get(7)).isCloseTo(83D / 12, Percentage.withPercentage(0.001));
+  }
+
+  @Test
+  public void testLagLeadAndRank() throws ScriptException {
+    engine.eval(
+        "res := ds1[calc "
+            + "lag_Me_1 := lag(Me_1, 1 over (partition by Id_1, Id_2 order by Year)), "
+            + "lead_Me_1 := lead(Me_1, 2 over (partition by Id_1, Id_2 order by Year)), "
+            + "rank_Me_1 := rank(over (partition by Id_1 order by Me_1 desc))];");
+    assertThat(column("lag_Me_1")).containsExactly(null, 3L, 4L, 7L, null, 9L, 5L, 10L);
+    assertThat(column("lead_Me_1")).containsExactly(7L, 6L, null, null, 10L, 5L, null, null);
+    assertThat(column("rank_Me_1")).containsExactly(8L, 7L, 3L, 4L, 2L, 5L, 1L, 5L);
+  }
+
+  @Test
+  public void testRatioToReport() throws ScriptException {
+    engine.eval("res := ratio_to_report(ds1 over (partition by Id_1, Id_2));");
+    assertThat(column("Me_1"))
+        .containsExactly(3D / 20, 4D / 20, 7D / 20, 6D / 20, 9D / 29, 5D / 29, 10D / 29, 5D / 29);
+  }
+
+  @Test
+  public void testFrameWithNulls() throws ScriptException {
+    var rows = new ArrayList<Map<String, Object>>();
+    for (long year = 2000; year < 2006; year++) {
+      var row = new HashMap<String, Object>();
+      row.put("Id_1", "A");
+      row.put("Year", year);
+      row.put("Me_1", year % 3 == 0 ? null : year - 2000);
+      rows.add(row);
+    }
+    engine.put(
+        "ds",
+        new InMemoryDataset(
+            rows,
+            Map.of("Id_1", String.class, "Year", Long.class, "Me_1", Long.class),
+            Map.of(
+                "Id_1",
+                Dataset.Role.IDENTIFIER,
+                "Year",
+                Dataset.Role.IDENTIFIER,
+                "Me_1",
+                Dataset.Role.MEASURE)));
+    // Me_1: 0, null, 2, 3, null, 5
+    engine.eval(
+        "res := ds[calc "
+            + "s := sum(Me_1 over (order by Year "
+            + "data points between 1 preceding and current data point)), "
+            + "c := count(Me_1 over (order by Year)), "
+            + "m := max(Me_1 over (order by Year "
+            + "data points between 1 preceding and 1 following)), "
+            + "n := sum(Me_1 over (order by Year "
+            + "data points between current data point and current data point))];");
+    assertThat(column("s")).containsExactly(0L, 0L, 2L, 5L, 3L, 5L);
+    assertThat(column("c")).containsExactly(1L, 1L, 2L, 3L, 3L, 4L);
+    assertThat(column("m")).containsExactly(0L, 2L, 3L, 3L, 5L, 5L);
+    assertThat(column("n")).containsExactly(0L, null, 2L, 3L, null, 5L);
+  }
+}
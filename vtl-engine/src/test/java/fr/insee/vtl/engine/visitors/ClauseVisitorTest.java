@@ -214,6 +214,54 @@ public class ClauseVisitorTest {
             Map.of("name", "Franck", "age", 12L));
   }
 
+  @Test
+  public void testSortedDataset() throws ScriptException {
+    var data =
+        new InMemoryDataset(
+            List.of(
+                new Structured.Component("country", String.class, Role.IDENTIFIER),
+                new Structured.Component("name", String.class, Role.IDENTIFIER),
+                new Structured.Component("age", Long.class, Role.MEASURE)),
+            Arrays.asList("france", "Franck", 12L),
+            Arrays.asList("france", "Nico", 11L),
+            Arrays.asList("italy", "Hadrien", 10L),
+            Arrays.asList("spain", "Toto", 9L),
+            Arrays.asList("spain", "Xavier", 8L));
+    var sorted =
+        new InMemoryDataset(
+            data.getDataPoints(), data.getDataStructure(), List.of("country", "name"));
+    engine.getContext().setAttribute("ds1", sorted, ScriptContext.ENGINE_SCOPE);
+
+    engine.eval("res := ds1[aggr sumAge := sum(age) group by country];");
+    var res = (Dataset) engine.getContext().getAttribute("res");
+    assertThat(res.getOrdering()).containsExactly("country");
+    assertThat(res.getDataAsList())
+        .containsExactly(
+            Arrays.asList("france", 23L), Arrays.asList("italy", 10L), Arrays.asList("spain", 17L));
+
+    // The ordering is kept by filters and by calcs of the columns that are not sorted on.
+    engine.eval("res := ds1[filter age > 8][calc name := upper(name), age := age + 1];");
+    res = (Dataset) engine.getContext().getAttribute("res");
+    assertThat(res.getOrdering()).containsExactly("country");
+    engine.eval("res := ds1[rename country to c][keep c, name];");
+    res = (Dataset) engine.getContext().getAttribute("res");
+    assertThat(res.getOrdering()).containsExactly("c", "name");
+
+    // Data points that are not sorted as declared are hashed.
+    var points = data.getDataPoints();
+    var unsorted =
+        new InMemoryDataset(
+            List.of(points.get(2), points.get(0), points.get(1), points.get(3), points.get(4)),
+            data.getDataStructure(),
+            List.of("country"));
+    engine.getContext().setAttribute("ds1", unsorted, ScriptContext.ENGINE_SCOPE);
+    engine.eval("res := ds1[aggr sumAge := sum(age) group by country];");
+    res = (Dataset) engine.getContext().getAttribute("res");
+    assertThat(res.getDataAsList())
+        .containsExactlyInAnyOrder(
+            Arrays.asList("france", 23L), Arrays.asList("italy", 10L), Arrays.asList("spain", 17L));
+  }
+
   @Test
   public void testAggregateType() {
     InMemoryDataset dataset =
@@ -314,46 +362,46 @@ public class ClauseVisitorTest {
         .containsExactly(
             Map.of(
                 "country",
-                "france",
+                "norway",
                 "sumAge",
-                23L,
+                10L,
                 "avgWeight",
-                11.5,
+                10.0,
                 "countVal",
-                2L,
+                1L,
                 "maxAge",
-                12L,
+                10L,
                 "maxWeight",
-                10D,
+                11D,
                 "minAge",
-                11L,
+                10L,
                 "minWeight",
-                9D,
+                11D,
                 "medianAge",
-                11.5D,
+                10D,
                 "medianWeight",
-                9.5D),
+                11D),
             Map.of(
                 "country",
-                "norway",
+                "france",
                 "sumAge",
-                10L,
+                23L,
                 "avgWeight",
-                10.0,
+                11.5,
                 "countVal",
-                1L,
+                2L,
                 "maxAge",
-                10L,
+                12L,
                 "maxWeight",
-                11D,
+                10D,
                 "minAge",
-                10L,
+                11L,
                 "minWeight",
-                11D,
+                9D,
                 "medianAge",
-                10D,
+                11.5D,
                 "medianWeight",
-                11D));
+                9.5D));
 
     InMemoryDataset dataset2 =
         new InMemoryDataset(
@@ -398,7 +446,7 @@ public class ClauseVisitorTest {
 
     assertThat(engine.getContext().getAttribute("res")).isInstanceOf(Dataset.class);
 
-    var fr = ((Dataset) engine.getContext().getAttribute("res")).getDataAsMap().get(0);
+    var fr = ((Dataset) engine.getContext().getAttribute("res")).getDataAsMap().get(1);
 
     assertThat((Double) fr.get("stddev_popAge")).isCloseTo(1.118, Percentage.withPercentage(2));
     assertThat((Double) fr.get("stddev_popWeight")).isCloseTo(3.640, Percentage.withPercentage(2));
@@ -409,7 +457,7 @@ public class ClauseVisitorTest {
     assertThat((Double) fr.get("var_sampAge")).isCloseTo(1.666, Percentage.withPercentage(2));
     assertThat((Double) fr.get("var_sampWeight")).isCloseTo(17.666, Percentage.withPercentage(2));
 
-    var no = ((Dataset) engine.getContext().getAttribute("res")).getDataAsMap().get(1);
+    var no = ((Dataset) engine.getContext().getAttribute("res")).getDataAsMap().get(0);
 
     assertThat((Double) no.get("stddev_popAge")).isEqualTo(0.0);
     assertThat((Double) no.get("stddev_popWeight")).isEqualTo(0.0);
@@ -103,6 +103,8 @@ public class GenericFunctionsTest {
     assertThat((Instant) context.getAttribute("d1")).isEqualTo("1998-12-01T00:00:00.000Z");
     engine.eval("d2 := cast(\"1998/31/12\", date, \"YYYY/DD/MM\");");
     assertThat((Instant) context.getAttribute("d2")).isEqualTo("1998-12-31T00:00:00.000Z");
+    engine.eval("d3 := cast(\"1998-12-01 10:30:15\", date, \"yyyy-MM-dd HH:mm:ss\");");
+    assertThat((Instant) context.getAttribute("d3")).isEqualTo("1998-12-01T10:30:15.000Z");
   }
 
   @Test
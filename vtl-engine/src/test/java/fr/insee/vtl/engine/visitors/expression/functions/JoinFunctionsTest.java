@@ -294,6 +294,207 @@ public class JoinFunctionsTest {
             Arrays.asList("b", 4L, 2L, 10L));
   }
 
+  @Test
+  public void testJoinKeepsLeftOrder() throws ScriptException {
+    var left =
+        new InMemoryDataset(
+            List.of(
+                new Structured.Component("id", String.class, Role.IDENTIFIER),
+                new Structured.Component("m1", Long.class, Role.MEASURE)),
+            Arrays.asList("b", 1L),
+            Arrays.asList("d", 2L),
+            Arrays.asList("a", 3L));
+    var right =
+        new InMemoryDataset(
+            List.of(
+                new Structured.Component("id", String.class, Role.IDENTIFIER),
+                new Structured.Component("m2", Long.class, Role.MEASURE)),
+            Arrays.asList("a", 4L),
+            Arrays.asList("c", 5L),
+            Arrays.asList("b", 6L),
+            Arrays.asList("e", 7L));
+    engine.getContext().setAttribute("l", left, ScriptContext.ENGINE_SCOPE);
+    engine.getContext().setAttribute("r", right, ScriptContext.ENGINE_SCOPE);
+
+    engine.eval("result := inner_join(l, r);");
+    var result = (Dataset) engine.getContext().getAttribute("result");
+    assertThat(result.getDataAsList())
+        .containsExactly(Arrays.asList("b", 1L, 6L), Arrays.asList("a", 3L, 4L));
+
+    engine.eval("result := left_join(l, r);");
+    result = (Dataset) engine.getContext().getAttribute("result");
+    assertThat(result.getDataAsList())
+        .containsExactly(
+            Arrays.asList("b", 1L, 6L), Arrays.asList("d", 2L, null), Arrays.asList("a", 3L, 4L));
+
+    engine.eval("result := full_join(l, r);");
+    result = (Dataset) engine.getContext().getAttribute("result");
+    assertThat(result.getDataAsList())
+        .containsExactly(
+            Arrays.asList("b", 1L, 6L),
+            Arrays.asList("d", 2L, null),
+            Arrays.asList("a", 3L, 4L),
+            Arrays.asList("c", null, 5L),
+            Arrays.asList("e", null, 7L));
+  }
+
+  @Test
+  public void testSortedJoin() throws ScriptException {
+    var left =
+        new InMemoryDataset(
+            List.of(
+                new Structured.Component("id", String.class, Role.IDENTIFIER),
+                new Structured.Component("m1", Long.class, Role.MEASURE)),
+            Arrays.asList("a", 1L),
+            Arrays.asList("b", 2L),
+            Arrays.asList("d", 3L));
+    var right =
+        new InMemoryDataset(
+            List.of(
+                new Structured.Component("id", String.class, Role.IDENTIFIER),
+                new Structured.Component("m2", Long.class, Role.MEASURE)),
+            Arrays.asList("a", 4L),
+            Arrays.asList("c", 5L),
+            Arrays.asList("d", 6L),
+            Arrays.asList("e", 7L));
+    engine
+        .getContext()
+        .setAttribute(
+            "l",
+            new InMemoryDataset(left.getDataPoints(), left.getDataStructure(), List.of("id")),
+            ScriptContext.ENGINE_SCOPE);
+    engine
+        .getContext()
+        .setAttribute(
+            "r",
+            new InMemoryDataset(right.getDataPoints(), right.getDataStructure(), List.of("id")),
+            ScriptContext.ENGINE_SCOPE);
+
+    engine.eval("result := inner_join(l, r);");
+    var result = (Dataset) engine.getContext().getAttribute("result");
+    assertThat(result.getOrdering()).containsExactly("id");
+    assertThat(result.getDataAsList())
+        .containsExactly(Arrays.asList("a", 1L, 4L), Arrays.asList("d", 3L, 6L));
+
+    engine.eval("result := full_join(l, r);");
+    result = (Dataset) engine.getContext().getAttribute("result");
+    assertThat(result.getDataAsList())
+        .containsExactly(
+            Arrays.asList("a", 1L, 4L),
+            Arrays.asList("b", 2L, null),
+            Arrays.asList("d", 3L, 6L),
+            Arrays.asList("c", null, 5L),
+            Arrays.asList("e", null, 7L));
+
+    // Data points that are not sorted as declared are hashed.
+    var points = right.getDataPoints();
+    engine
+        .getContext()
+        .setAttribute(
+            "r",
+            new InMemoryDataset(
+                List.of(points.get(3), points.get(2), points.get(1), points.get(0)),
+                right.getDataStructure(),
+                List.of("id")),
+            ScriptContext.ENGINE_SCOPE);
+    engine.eval("result := left_join(l, r);");
+    result = (Dataset) engine.getContext().getAttribute("result");
+    assertThat(result.getDataAsList())
+        .containsExactly(
+            Arrays.asList("a", 1L, 4L), Arrays.asList("b", 2L, null), Arrays.asList("d", 3L, 6L));
+  }
+
+  @Test
+  public void testMultiJoin() throws ScriptException {
+    var ds1 =
+        new InMemoryDataset(
+            List.of(
+                new Structured.Component("id1", String.class, Role.IDENTIFIER),
+                new Structured.Component("m1", Long.class, Role.MEASURE)),
+            Arrays.asList("a", 1L),
+            Arrays.asList("b", 2L));
+    var ds2 =
+        new InMemoryDataset(
+            List.of(
+                new Structured.Component("id1", String.class, Role.IDENTIFIER),
+                new Structured.Component("id2", Long.class, Role.IDENTIFIER),
+                new Structured.Component("m2", Long.class, Role.MEASURE)),
+            Arrays.asList("a", 1L, 3L),
+            Arrays.asList("a", 2L, 4L),
+            Arrays.asList("b", 1L, 5L));
+    var ds3 =
+        new InMemoryDataset(
+            List.of(
+                new Structured.Component("id1", String.class, Role.IDENTIFIER),
+                new Structured.Component("id3", Long.class, Role.IDENTIFIER),
+                new Structured.Component("m3", Long.class, Role.MEASURE)),
+            Arrays.asList("a", 1L, 6L),
+            Arrays.asList("a", 2L, 7L));
+    engine.getContext().setAttribute("ds_1", ds1, ScriptContext.ENGINE_SCOPE);
+    engine.getContext().setAttribute("ds_2", ds2, ScriptContext.ENGINE_SCOPE);
+    engine.getContext().setAttribute("ds_3", ds3, ScriptContext.ENGINE_SCOPE);
+
+    engine.eval("result := inner_join(ds_1, ds_2, ds_3 using id1);");
+    var result = (Dataset) engine.getContext().getAttribute("result");
+    assertThat(result.getColumnNames()).containsExactly("id1", "m1", "id2", "m2", "id3", "m3");
+    assertThat(result.getDataAsList())
+        .containsExactly(
+            Arrays.asList("a", 1L, 1L, 3L, 1L, 6L),
+            Arrays.asList("a", 1L, 1L, 3L, 2L, 7L),
+            Arrays.asList("a", 1L, 2L, 4L, 1L, 6L),
+            Arrays.asList("a", 1L, 2L, 4L, 2L, 7L));
+
+    engine.eval("result := left_join(ds_1, ds_2, ds_3 using id1);");
+    result = (Dataset) engine.getContext().getAttribute("result");
+    assertThat(result.getDataAsList())
+        .containsExactly(
+            Arrays.asList("a", 1L, 1L, 3L, 1L, 6L),
+            Arrays.asList("a", 1L, 1L, 3L, 2L, 7L),
+            Arrays.asList("a", 1L, 2L, 4L, 1L, 6L),
+            Arrays.asList("a", 1L, 2L, 4L, 2L, 7L),
+            Arrays.asList("b", 2L, 1L, 5L, null, null));
+  }
+
+  @Test
+  public void testMultiFullJoin() throws ScriptException {
+    var ds1 =
+        new InMemoryDataset(
+            List.of(
+                new Structured.Component("id", String.class, Role.IDENTIFIER),
+                new Structured.Component("m1", Long.class, Role.MEASURE)),
+            Arrays.asList("a", 1L),
+            Arrays.asList("b", 2L));
+    var ds2 =
+        new InMemoryDataset(
+            List.of(
+                new Structured.Component("id", String.class, Role.IDENTIFIER),
+                new Structured.Component("m2", Long.class, Role.MEASURE)),
+            Arrays.asList("b", 3L),
+            Arrays.asList("c", 4L));
+    var ds3 =
+        new InMemoryDataset(
+            List.of(
+                new Structured.Component("id", String.class, Role.IDENTIFIER),
+                new Structured.Component("m3", Long.class, Role.MEASURE)),
+            Arrays.asList("d", 5L),
+            Arrays.asList("c", 6L),
+            Arrays.asList("a", 7L));
+    engine.getContext().setAttribute("ds_1", ds1, ScriptContext.ENGINE_SCOPE);
+    engine.getContext().setAttribute("ds_2", ds2, ScriptContext.ENGINE_SCOPE);
+    engine.getContext().setAttribute("ds_3", ds3, ScriptContext.ENGINE_SCOPE);
+
+    engine.eval("result := full_join(ds_1, ds_2, ds_3);");
+    var result = (Dataset) engine.getContext().getAttribute("result");
+    assertThat(result.getColumnNames()).containsExactly("id", "m1", "m2", "m3");
+    // The points of each dataset that match none of the previous ones follow them.
+    assertThat(result.getDataAsList())
+        .containsExactly(
+            Arrays.asList("a", 1L, null, 7L),
+            Arrays.asList("b", 2L, 3L, null),
+            Arrays.asList("c", null, 4L, 6L),
+            Arrays.asList("d", null, null, 5L));
+  }
+
   @Test
   public void testFullJoin() throws ScriptException {
     ScriptContext context = engine.getContext();
@@ -247,4 +247,51 @@ public class SetFunctionsVisitorTest {
             Map.of("name", "Franck2", "age", 12L, "weight", 9L),
             Map.of("name", "Hadrien2", "age", 10L, "weight", 11L));
   }
+
+  @Test
+  public void testIntersectSetDiffAndSymDiff() throws ScriptException {
+    var structure =
+        new Structured.DataStructure(
+            List.of(
+                new Component("id", String.class, Dataset.Role.IDENTIFIER),
+                new Component("value", Long.class, Dataset.Role.MEASURE)));
+    var bindings = engine.getBindings(ScriptContext.ENGINE_SCOPE);
+    bindings.put(
+        "ds1",
+        new InMemoryDataset(
+            structure, List.of("1", 1L), List.of("2", 2L), List.of("3", 3L), List.of("4", 4L)));
+    bindings.put(
+        "ds2",
+        new InMemoryDataset(structure, List.of("3", 30L), List.of("4", 40L), List.of("5", 50L)));
+    bindings.put("ds3", new InMemoryDataset(structure, List.of("4", 400L), List.of("1", 100L)));
+
+    engine.eval(
+        "intersect2 := intersect(ds1, ds2); "
+            + "intersect3 := intersect(ds1, ds2, ds3); "
+            + "difference := setdiff(ds1, ds2); "
+            + "symmetricDiff := symdiff(ds1, ds2);");
+
+    // The data points are matched on their identifiers, measures come from the first dataset.
+    assertThat(((Dataset) bindings.get("intersect2")).getDataAsMap())
+        .containsExactly(Map.of("id", "3", "value", 3L), Map.of("id", "4", "value", 4L));
+    assertThat(((Dataset) bindings.get("intersect3")).getDataAsMap())
+        .containsExactly(Map.of("id", "4", "value", 4L));
+    assertThat(((Dataset) bindings.get("difference")).getDataAsMap())
+        .containsExactly(Map.of("id", "1", "value", 1L), Map.of("id", "2", "value", 2L));
+    assertThat(((Dataset) bindings.get("symmetricDiff")).getDataAsMap())
+        .containsExactly(
+            Map.of("id", "1", "value", 1L),
+            Map.of("id", "2", "value", 2L),
+            Map.of("id", "5", "value", 50L));
+
+    InMemoryDataset other =
+        new InMemoryDataset(
+            List.of(),
+            List.of(
+                new Component("id", String.class, Dataset.Role.IDENTIFIER),
+                new Component("other", Long.class, Dataset.Role.MEASURE)));
+    bindings.put("other", other);
+    assertThatThrownBy(() -> engine.eval("result := setdiff(ds1, other);"))
+        .hasMessageContaining("other is incompatible");
+  }
 }
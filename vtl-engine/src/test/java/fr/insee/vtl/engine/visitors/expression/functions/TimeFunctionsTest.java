@@ -14,7 +14,6 @@ import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
 import org.junit.jupiter.api.BeforeEach;
-import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 
 public class TimeFunctionsTest {
@@ -33,8 +32,6 @@ public class TimeFunctionsTest {
     assertThat(((Instant) context.getAttribute("a"))).isNotNull();
   }
 
-  // TODO, enable if we ever support analytics in memory engine.
-  @Disabled
   @Test
   public void testFlowToStock() throws ScriptException {
     var ds =
@@ -43,15 +40,20 @@ public class TimeFunctionsTest {
                 new Component("id1", String.class, Role.IDENTIFIER),
                 new Component("id2", OffsetDateTime.class, Role.IDENTIFIER),
                 new Component("me1", Long.class, Role.MEASURE)),
+            List.of("A", OffsetDateTime.parse("2011-01-01T00:00:00+01:00"), 5L),
             List.of("A", OffsetDateTime.parse("2010-01-01T00:00:00+01:00"), 2L),
-            List.of("A", OffsetDateTime.parse("2010-01-01T00:00:00+01:00"), 5L),
-            List.of("A", OffsetDateTime.parse("2010-01-01T00:00:00+01:00"), -3L),
-            List.of("A", OffsetDateTime.parse("2010-01-01T00:00:00+01:00"), 9L),
-            List.of("A", OffsetDateTime.parse("2010-01-01T00:00:00+01:00"), 4L));
+            List.of("B", OffsetDateTime.parse("2010-01-01T00:00:00+01:00"), 4L),
+            List.of("A", OffsetDateTime.parse("2012-01-01T00:00:00+01:00"), -3L),
+            List.of("B", OffsetDateTime.parse("2011-01-01T00:00:00+01:00"), 9L));
     engine.put("ds", ds);
     engine.eval("res := flow_to_stock(ds);");
     var actual = (Dataset) engine.get("res");
-    actual.getDataAsMap().forEach(System.out::println);
-    assertThat(engine.get("r")).isNotNull();
+    assertThat(actual.getDataAsList())
+        .containsExactly(
+            List.of("A", OffsetDateTime.parse("2011-01-01T00:00:00+01:00"), 7L),
+            List.of("A", OffsetDateTime.parse("2010-01-01T00:00:00+01:00"), 2L),
+            List.of("B", OffsetDateTime.parse("2010-01-01T00:00:00+01:00"), 4L),
+            List.of("A", OffsetDateTime.parse("2012-01-01T00:00:00+01:00"), 4L),
+            List.of("B", OffsetDateTime.parse("2011-01-01T00:00:00+01:00"), 13L));
   }
 }
@@ -1,14 +1,18 @@
 package fr.insee.vtl.engine.visitors.expression.functions;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 import fr.insee.vtl.model.Dataset;
 import fr.insee.vtl.model.InMemoryDataset;
 import fr.insee.vtl.model.Structured;
+import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
 import javax.script.ScriptContext;
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -77,6 +81,42 @@ public class ValidationFunctionsTest {
               new Structured.Component("Id_3", String.class, Dataset.Role.IDENTIFIER),
               new Structured.Component("toto", Long.class, Dataset.Role.MEASURE),
               new Structured.Component("toto2", Long.class, Dataset.Role.MEASURE)));
+  private final Dataset dsHierarchy =
+      new InMemoryDataset(
+          List.of(
+              List.of("2010", "A", 5L),
+              List.of("2010", "B", 11L),
+              List.of("2010", "C", 0L),
+              List.of("2010", "G", 19L),
+              Arrays.asList("2010", "H", null),
+              List.of("2010", "I", 14L),
+              List.of("2010", "M", 2L),
+              List.of("2010", "N", 5L),
+              List.of("2010", "O", 4L),
+              List.of("2010", "P", 7L),
+              List.of("2010", "Q", -7L),
+              List.of("2010", "S", 3L),
+              List.of("2010", "T", 9L),
+              Arrays.asList("2010", "U", null),
+              List.of("2010", "V", 6L),
+              List.of("2011", "A", 5L),
+              List.of("2011", "J", 2L),
+              List.of("2011", "K", 3L),
+              List.of("2011", "L", 1L)),
+          List.of(
+              new Structured.Component("Id_1", String.class, Dataset.Role.IDENTIFIER),
+              new Structured.Component("Id_2", String.class, Dataset.Role.IDENTIFIER),
+              new Structured.Component("Me_1", Long.class, Dataset.Role.MEASURE)));
+  private final String hierarchicalRuleset =
+      "define hierarchical ruleset HR_1 (variable rule Me_1) is "
+          + "R010 : A = J + K + L errorlevel 5; "
+          + "R020 : B = M + N + O errorlevel 5; "
+          + "R030 : C = P + Q errorcode \"XX\" errorlevel 5; "
+          + "R040 : D = R + S errorlevel 1; "
+          + "R070 : G = B + C; "
+          + "R100 : M >= N errorlevel 5; "
+          + "R110 : M <= G errorlevel 5 "
+          + "end hierarchical ruleset; ";
   private ScriptEngine engine;
 
   @BeforeEach
@@ -84,6 +124,149 @@ public class ValidationFunctionsTest {
     engine = new ScriptEngineManager().getEngineByName("vtl");
   }
 
+  private static List<Object> column(Dataset dataset, String name) {
+    return dataset.getDataAsMap().stream().map(row -> row.get(name)).collect(Collectors.toList());
+  }
+
+  @Test
+  public void testValidateDPruleset() throws ScriptException {
+    ScriptContext context = engine.getContext();
+    context.setAttribute("DS_1", dataset, ScriptContext.ENGINE_SCOPE);
+
+    engine.eval(
+        "define datapoint ruleset dpr1 (variable Id_3, Me_1) is "
+            + "ruleA : when Id_3 = \"CREDIT\" then Me_1 >= 0 errorcode \"Bad credit\"; "
+            + "when Id_3 = \"DEBIT\" then Me_1 >= 0 errorcode \"Bad debit\" errorlevel 1 "
+            + "end datapoint ruleset; "
+            + "DS_r := check_datapoint(DS_1, dpr1); "
+            + "DS_r_all := check_datapoint(DS_1, dpr1 all);");
+
+    Dataset dsR = (Dataset) context.getAttribute("DS_r");
+    assertThat(dsR.getDataStructure().keySet())
+        .containsExactly("Id_1", "Id_2", "Id_3", "Me_1", "ruleid", "errorcode", "errorlevel");
+    assertThat(dsR.getDataAsList())
+        .containsExactly(Arrays.asList("2011", "I", "DEBIT", -2L, "dpr1_2", "Bad debit", 1L));
+
+    Dataset dsRAll = (Dataset) context.getAttribute("DS_r_all");
+    assertThat(dsRAll.getDataStructure().get("ruleid").getRole())
+        .isEqualTo(Dataset.Role.IDENTIFIER);
+    assertThat(
+            dsRAll.getDataAsMap().stream()
+                .map(row -> "" + row.get("Id_1") + row.get("Id_3") + row.get("ruleid"))
+                .collect(Collectors.toList()))
+        .containsExactly(
+            "2011CREDITruleA",
+            "2011CREDITdpr1_2",
+            "2011DEBITruleA",
+            "2011DEBITdpr1_2",
+            "2012CREDITruleA",
+            "2012CREDITdpr1_2",
+            "2012DEBITruleA",
+            "2012DEBITdpr1_2");
+    assertThat(column(dsRAll, "bool_var"))
+        .containsExactly(true, true, true, false, true, true, true, true);
+    assertThat(column(dsRAll, "errorcode"))
+        .containsExactly(null, null, null, "Bad debit", null, null, null, null);
+  }
+
+  @Test
+  public void testValidateDPrulesetWithAlias() throws ScriptException {
+    ScriptContext context = engine.getContext();
+    context.setAttribute("DS_1", dataset, ScriptContext.ENGINE_SCOPE);
+
+    engine.eval(
+        "define datapoint ruleset dpr1 (variable Id_3 as AA, Me_1) is "
+            + "when AA = \"CREDIT\" then Me_1 >= 0 errorcode \"Bad credit\"; "
+            + "when AA = \"DEBIT\" then Me_1 >= 0 errorcode \"Bad debit\" "
+            + "end datapoint ruleset; "
+            + "DS_r := check_datapoint(DS_1, dpr1);");
+
+    Dataset dsR = (Dataset) context.getAttribute("DS_r");
+    assertThat(dsR.getDataStructure().keySet())
+        .containsExactly("Id_1", "Id_2", "Id_3", "Me_1", "ruleid", "errorcode", "errorlevel");
+    assertThat(dsR.getDataAsList())
+        .containsExactly(Arrays.asList("2011", "I", "DEBIT", -2L, "dpr1_2", "Bad debit", null));
+  }
+
+  @Test
+  public void testHierarchicalValidation() throws ScriptException {
+    ScriptContext context = engine.getContext();
+    context.setAttribute("DS_1", dsHierarchy, ScriptContext.ENGINE_SCOPE);
+
+    engine.eval(
+        hierarchicalRuleset
+            + "DS_r := check_hierarchy(DS_1, HR_1 rule Id_2); "
+            + "DS_r_all := check_hierarchy(DS_1, HR_1 rule Id_2 all); "
+            + "DS_r_all_measures := check_hierarchy(DS_1, HR_1 rule Id_2 all_measures);");
+
+    Dataset dsR = (Dataset) context.getAttribute("DS_r");
+    assertThat(dsR.getDataStructure().keySet())
+        .containsExactly("Id_1", "Id_2", "Me_1", "ruleid", "imbalance", "errorcode", "errorlevel");
+    assertThat(dsR.getDataAsList())
+        .containsExactly(
+            Arrays.asList("2010", "G", 19L, "R070", 8L, null, null),
+            Arrays.asList("2010", "M", 2L, "R100", -3L, null, 5L),
+            Arrays.asList("2011", "A", 5L, "R010", -1L, null, 5L));
+
+    Dataset dsRAll = (Dataset) context.getAttribute("DS_r_all");
+    assertThat(dsRAll.getDataStructure().keySet())
+        .containsExactly(
+            "Id_1", "Id_2", "ruleid", "bool_var", "imbalance", "errorcode", "errorlevel");
+    assertThat(dsRAll.getDataAsList())
+        .containsExactly(
+            Arrays.asList("2010", "B", "R020", true, 0L, null, null),
+            Arrays.asList("2010", "C", "R030", true, 0L, null, null),
+            Arrays.asList("2010", "G", "R070", false, 8L, null, null),
+            Arrays.asList("2010", "M", "R100", false, -3L, null, 5L),
+            Arrays.asList("2010", "M", "R110", true, -17L, null, null),
+            Arrays.asList("2011", "A", "R010", false, -1L, null, 5L));
+
+    Dataset dsRAllMeasures = (Dataset) context.getAttribute("DS_r_all_measures");
+    assertThat(column(dsRAllMeasures, "Me_1")).containsExactly(11L, 0L, 19L, 2L, 2L, 5L);
+  }
+
+  @Test
+  public void testHierarchicalValidationMode() throws ScriptException {
+    ScriptContext context = engine.getContext();
+    context.setAttribute("DS_1", dsHierarchy, ScriptContext.ENGINE_SCOPE);
+
+    engine.eval(
+        hierarchicalRuleset
+            + "DS_r_non_zero := check_hierarchy(DS_1, HR_1 rule Id_2 non_zero all); "
+            + "DS_r_always_null := check_hierarchy(DS_1, HR_1 rule Id_2 always_null all);");
+
+    Dataset dsRNonZero = (Dataset) context.getAttribute("DS_r_non_zero");
+    assertThat(column(dsRNonZero, "ruleid"))
+        .containsExactly("R010", "R020", "R030", "R040", "R070", "R100", "R110", "R010");
+    // Missing code items are zero.
+    assertThat(dsRNonZero.getDataAsList().get(3))
+        .isEqualTo(Arrays.asList("2010", "D", "R040", false, -3L, null, 1L));
+
+    Dataset dsRAlwaysNull = (Dataset) context.getAttribute("DS_r_always_null");
+    assertThat(dsRAlwaysNull.getDataPoints()).hasSize(14);
+    assertThat(dsRAlwaysNull.getDataAsList().get(3))
+        .isEqualTo(Arrays.asList("2010", "D", "R040", null, null, null, null));
+  }
+
+  @Test
+  public void testHierarchicalValidationSubtraction() throws ScriptException {
+    ScriptContext context = engine.getContext();
+    context.setAttribute("DS_1", dsHierarchy, ScriptContext.ENGINE_SCOPE);
+
+    engine.eval(
+        "define hierarchical ruleset HR_2 (variable rule Me_1) is "
+            + "R1 : M = B - N - O; "
+            + "R2 : B > - M + N "
+            + "end hierarchical ruleset; "
+            + "DS_r := check_hierarchy(DS_1, HR_2 rule Id_2 all);");
+
+    Dataset dsR = (Dataset) context.getAttribute("DS_r");
+    assertThat(dsR.getDataAsList())
+        .containsExactly(
+            Arrays.asList("2010", "M", "R1", true, 0L, null, null),
+            Arrays.asList("2010", "B", "R2", true, 8L, null, null));
+  }
+
   @Test
   public void testValidateExceptions() {
     ScriptContext context = engine.getContext();
@@ -13,6 +13,7 @@ import java.util.function.Supplier;
 public class JDBCDataset implements Dataset {
 
   private final Supplier<ResultSet> resultSetSupplier;
+  private final List<String> ordering;
   private DataStructure structure;
 
   /**
@@ -22,7 +23,21 @@ public class JDBCDataset implements Dataset {
    * structure is requested.
    */
   public JDBCDataset(Supplier<ResultSet> resultSetSupplier) {
+    this(resultSetSupplier, List.of());
+  }
+
+  /**
+   * Creates a new JDBC Dataset whose result sets are sorted on some columns.
+   *
+   * <p>The ordering is typically the one of the <code>ORDER BY</code> clause of the query.
+   *
+   * @param resultSetSupplier The supplier of result sets.
+   * @param ordering The names of the columns the result sets are sorted on.
+   * @see Dataset#getOrdering()
+   */
+  public JDBCDataset(Supplier<ResultSet> resultSetSupplier, List<String> ordering) {
     this.resultSetSupplier = resultSetSupplier;
+    this.ordering = List.copyOf(ordering);
   }
 
   /**
@@ -116,4 +131,9 @@ public class JDBCDataset implements Dataset {
       throw new RuntimeException(se);
     }
   }
+
+  @Override
+  public List<String> getOrdering() {
+    return ordering;
+  }
 }
@@ -1,9 +1,7 @@
 package fr.insee.vtl.model;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Comparator;
-import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.function.BiConsumer;
@@ -324,174 +322,187 @@ public class AggregationExpression
     }
   }
 
-  private static Collector<Long, List<Long>, Double> medianCollectorLong() {
-    return Collector.of(
-        ArrayList::new,
-        List::add,
-        (longs, longs2) -> {
-          longs.addAll(longs2);
-          return longs;
-        },
-        longs -> {
-          if (longs.contains(null)) return null;
-          Collections.sort(longs);
-          if (longs.size() % 2 == 0) {
-            return (double) (longs.get(longs.size() / 2 - 1) + longs.get(longs.size() / 2)) / 2;
-          } else {
-            return (double) longs.get(longs.size() / 2);
-          }
-        });
-  }
-
-  private static Collector<Double, List<Double>, Double> medianCollectorDouble() {
-    return Collector.of(
-        ArrayList::new,
-        List::add,
-        (longs, longs2) -> {
-          longs.addAll(longs2);
-          return longs;
-        },
-        longs -> {
-          if (longs.contains(null)) return null;
-          Collections.sort(longs);
-          if (longs.size() % 2 == 0) {
-            return (longs.get(longs.size() / 2 - 1) + longs.get(longs.size() / 2)) / 2;
-          } else {
-            return longs.get(longs.size() / 2);
-          }
-        });
-  }
-
-  private static Collector<Long, List<Long>, Double> stdDevPopCollectorLong() {
-    return Collector.of(
-        ArrayList::new,
-        List::add,
-        (longs, longs2) -> {
-          longs.addAll(longs2);
-          return longs;
-        },
-        getDeviationLongFn(true));
-  }
-
-  private static Collector<Double, List<Double>, Double> stdDevPopCollectorDouble() {
-    return Collector.of(
-        ArrayList::new,
-        List::add,
-        (longs, longs2) -> {
-          longs.addAll(longs2);
-          return longs;
-        },
-        getDeviationDoubleFn(true));
-  }
-
-  private static Collector<Long, List<Long>, Double> stdDevSampCollectorLong() {
-    return Collector.of(
-        ArrayList::new,
-        List::add,
-        (longs, longs2) -> {
-          longs.addAll(longs2);
-          return longs;
-        },
-        getDeviationLongFn(false));
-  }
-
-  private static Collector<Double, List<Double>, Double> stdDevSampCollectorDouble() {
-    return Collector.of(
-        ArrayList::new,
-        List::add,
-        (longs, longs2) -> {
-          longs.addAll(longs2);
-          return longs;
-        },
-        getDeviationDoubleFn(false));
-  }
-
-  private static Collector<Long, List<Long>, Double> varPopCollectorLong() {
-    return Collector.of(
-        ArrayList::new,
-        List::add,
-        (longs, longs2) -> {
-          longs.addAll(longs2);
-          return longs;
-        },
-        getVarLongFn(true));
-  }
-
-  private static Collector<Double, List<Double>, Double> varPopCollectorDouble() {
-    return Collector.of(
-        ArrayList::new,
-        List::add,
-        (longs, longs2) -> {
-          longs.addAll(longs2);
-          return longs;
-        },
-        getVarDoubleFn(true));
-  }
-
-  private static Collector<Long, List<Long>, Double> varSampCollectorLong() {
-    return Collector.of(
-        ArrayList::new,
-        List::add,
-        (longs, longs2) -> {
-          longs.addAll(longs2);
-          return longs;
-        },
-        getVarLongFn(false));
-  }
-
-  private static Collector<Double, List<Double>, Double> varSampCollectorDouble() {
-    return Collector.of(
-        ArrayList::new,
-        List::add,
-        (longs, longs2) -> {
-          longs.addAll(longs2);
-          return longs;
-        },
-        getVarDoubleFn(false));
-  }
-
-  private static Function<List<Long>, Double> getDeviationLongFn(Boolean usePopulation) {
-    return longs -> {
-      if (longs.contains(null)) return null;
-      if (longs.size() <= 1) return 0D;
-      Double avg = longs.stream().collect(Collectors.averagingLong(v -> v));
-      return Math.sqrt(
-          longs.stream().map(v -> Math.pow(((double) v) - avg, 2)).mapToDouble(v -> v).sum()
-              / (longs.size() - (usePopulation ? 0D : 1D)));
-    };
+  private static Collector<Long, Values, Double> medianCollectorLong() {
+    return Collector.of(Values::new, Values::add, Values::combine, Values::median);
   }
 
-  private static Function<List<Double>, Double> getDeviationDoubleFn(Boolean usePopulation) {
-    return doubles -> {
-      if (doubles.contains(null)) return null;
-      if (doubles.size() <= 1) return 0D;
-      Double avg = doubles.stream().collect(Collectors.averagingDouble(v -> v));
-      return Math.sqrt(
-          doubles.stream().map(v -> Math.pow(v - avg, 2)).mapToDouble(v -> v).sum()
-              / (doubles.size() - (usePopulation ? 0D : 1D)));
-    };
+  private static Collector<Double, Values, Double> medianCollectorDouble() {
+    return Collector.of(Values::new, Values::add, Values::combine, Values::median);
   }
 
-  private static Function<List<Long>, Double> getVarLongFn(Boolean usePopulation) {
-    return longs -> {
-      if (longs.contains(null)) return null;
-      if (longs.size() <= 1) return 0D;
-      Double avg = longs.stream().collect(Collectors.averagingLong(v -> v));
-      return longs.stream().map(v -> Math.pow(((double) v) - avg, 2)).mapToDouble(v -> v).sum()
-          / (longs.size() - (usePopulation ? 0D : 1D));
-    };
+  private static Collector<Long, Moments, Double> stdDevPopCollectorLong() {
+    return Collector.of(Moments::new, Moments::add, Moments::combine, getDeviationFn(true));
+  }
+
+  private static Collector<Double, Moments, Double> stdDevPopCollectorDouble() {
+    return Collector.of(Moments::new, Moments::add, Moments::combine, getDeviationFn(true));
+  }
+
+  private static Collector<Long, Moments, Double> stdDevSampCollectorLong() {
+    return Collector.of(Moments::new, Moments::add, Moments::combine, getDeviationFn(false));
+  }
+
+  private static Collector<Double, Moments, Double> stdDevSampCollectorDouble() {
+    return Collector.of(Moments::new, Moments::add, Moments::combine, getDeviationFn(false));
   }
 
-  private static Function<List<Double>, Double> getVarDoubleFn(Boolean usePopulation) {
-    return doubles -> {
-      if (doubles.contains(null)) return null;
-      if (doubles.size() <= 1) return 0D;
-      Double avg = doubles.stream().collect(Collectors.averagingDouble(v -> v));
-      return doubles.stream().map(v -> Math.pow(v - avg, 2)).mapToDouble(v -> v).sum()
-          / (doubles.size() - (usePopulation ? 0D : 1D));
+  private static Collector<Long, Moments, Double> varPopCollectorLong() {
+    return Collector.of(Moments::new, Moments::add, Moments::combine, getVarFn(true));
+  }
+
+  private static Collector<Double, Moments, Double> varPopCollectorDouble() {
+    return Collector.of(Moments::new, Moments::add, Moments::combine, getVarFn(true));
+  }
+
+  private static Collector<Long, Moments, Double> varSampCollectorLong() {
+    return Collector.of(Moments::new, Moments::add, Moments::combine, getVarFn(false));
+  }
+
+  private static Collector<Double, Moments, Double> varSampCollectorDouble() {
+    return Collector.of(Moments::new, Moments::add, Moments::combine, getVarFn(false));
+  }
+
+  private static Function<Moments, Double> getDeviationFn(Boolean usePopulation) {
+    return moments -> {
+      var variance = moments.variance(usePopulation);
+      return variance == null ? null : Math.sqrt(variance);
     };
   }
 
+  private static Function<Moments, Double> getVarFn(Boolean usePopulation) {
+    return moments -> moments.variance(usePopulation);
+  }
+
+  /**
+   * Running count, mean and sum of squared deviations of numbers (Welford's algorithm), partial
+   * results are merged with the pairwise update of Chan et al.
+   */
+  private static final class Moments {
+
+    private long count;
+    private double mean;
+    private double m2;
+    private boolean hasNull;
+
+    private void add(Number value) {
+      if (value == null) {
+        hasNull = true;
+        return;
+      }
+      var x = value.doubleValue();
+      count++;
+      var delta = x - mean;
+      mean += delta / count;
+      m2 += delta * (x - mean);
+    }
+
+    private Moments combine(Moments other) {
+      hasNull |= other.hasNull;
+      if (other.count == 0) {
+        return this;
+      }
+      if (count == 0) {
+        count = other.count;
+        mean = other.mean;
+        m2 = other.m2;
+        return this;
+      }
+      var total = count + other.count;
+      var delta = other.mean - mean;
+      mean += delta * other.count / total;
+      m2 += other.m2 + delta * delta * ((double) count * other.count / total);
+      count = total;
+      return this;
+    }
+
+    private Double variance(boolean usePopulation) {
+      if (hasNull) return null;
+      if (count <= 1) return 0D;
+      return m2 / (count - (usePopulation ? 0D : 1D));
+    }
+  }
+
+  /** Numbers kept in a growable array of doubles. */
+  private static final class Values {
+
+    private double[] values = new double[16];
+    private int size;
+    private boolean hasNull;
+
+    private void add(Number value) {
+      if (value == null) {
+        hasNull = true;
+        return;
+      }
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = value.doubleValue();
+    }
+
+    private Values combine(Values other) {
+      hasNull |= other.hasNull;
+      if (size + other.size > values.length) {
+        values = Arrays.copyOf(values, Math.max(values.length * 2, size + other.size));
+      }
+      System.arraycopy(other.values, 0, values, size, other.size);
+      size += other.size;
+      return this;
+    }
+
+    /** Returns the median, the values are reordered. */
+    private Double median() {
+      if (hasNull || size == 0) return null;
+      var upper = select(size / 2, 0, size - 1);
+      if (size % 2 != 0) {
+        return upper;
+      }
+      // After the selection, the lower middle value is the largest value of the lower part.
+      var lower = values[0];
+      for (int i = 1; i < size / 2; i++) {
+        lower = Math.max(lower, values[i]);
+      }
+      return (lower + upper) / 2;
+    }
+
+    /**
+     * Moves the k-th smallest value at index k, with smaller values before it and larger values
+     * after it (quickselect, median of three pivot).
+     */
+    private double select(int k, int from, int to) {
+      while (from < to) {
+        var middle = (from + to) >>> 1;
+        if (values[middle] < values[from]) swap(middle, from);
+        if (values[to] < values[from]) swap(to, from);
+        if (values[to] < values[middle]) swap(to, middle);
+        var pivot = values[middle];
+        var i = from;
+        var j = to;
+        while (i <= j) {
+          while (values[i] < pivot) i++;
+          while (values[j] > pivot) j--;
+          if (i <= j) {
+            swap(i++, j--);
+          }
+        }
+        if (k <= j) {
+          to = j;
+        } else if (k >= i) {
+          from = i;
+        } else {
+          break;
+        }
+      }
+      return values[k];
+    }
+
+    private void swap(int i, int j) {
+      var value = values[i];
+      values[i] = values[j];
+      values[j] = value;
+    }
+  }
+
   @Override
   public Class<?> getType() {
     return type;
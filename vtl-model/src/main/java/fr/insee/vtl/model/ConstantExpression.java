@@ -1,14 +1,25 @@
 package fr.insee.vtl.model;
 
 import java.util.Map;
+import java.util.Set;
 
 public class ConstantExpression extends ResolvableExpression {
 
   private final Object value;
+  private final Class<?> type;
 
   public ConstantExpression(Object value, Positioned position) {
+    this(value, null, position);
+  }
+
+  /**
+   * Constructor taking the static type of the constant, used when it differs from the class of the
+   * value (a null value or the result of a folded expression for instance).
+   */
+  public ConstantExpression(Object value, Class<?> type, Positioned position) {
     super(position);
     this.value = value;
+    this.type = type;
   }
 
   @Override
@@ -16,8 +27,21 @@ public class ConstantExpression extends ResolvableExpression {
     return value;
   }
 
+  @Override
+  public Object resolve(Structured.DataPoint context) {
+    return value;
+  }
+
+  @Override
+  public Set<String> getDependencies() {
+    return Set.of();
+  }
+
   @Override
   public Class<?> getType() {
+    if (type != null) {
+      return type;
+    }
     // TODO: Use expr == Constant.NULL instead.
     if (value == null) {
       return Object.class;
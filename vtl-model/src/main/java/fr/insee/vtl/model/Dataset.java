@@ -23,6 +23,20 @@ public interface Dataset extends Structured {
    */
   List<DataPoint> getDataPoints();
 
+  /**
+   * Returns the names of the columns the data points are sorted on.
+   *
+   * <p>The data points are in ascending order of the values of the first column, then of the second
+   * one for equal values of the first one, and so on. Null values come first. Sources that know the
+   * order of their data (a query with an <code>ORDER BY</code> clause for instance) can declare it
+   * so that processing engines can avoid hashing or sorting.
+   *
+   * @return The names of the columns the data points are sorted on, empty if the order is unknown.
+   */
+  default List<String> getOrdering() {
+    return List.of();
+  }
+
   default List<List<Object>> getDataAsList() {
     var columns = getDataStructure().keySet();
     return getDataPoints().stream()
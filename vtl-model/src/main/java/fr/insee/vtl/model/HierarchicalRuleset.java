@@ -1,6 +1,8 @@
 package fr.insee.vtl.model;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Hierarchical rule set
@@ -11,6 +13,13 @@ import java.util.List;
  */
 public class HierarchicalRuleset {
 
+  private static final String NON_NULL = "non_null";
+  private static final String NON_ZERO = "non_zero";
+  private static final String PARTIAL_NULL = "partial_null";
+  private static final String PARTIAL_ZERO = "partial_zero";
+  private static final String ALWAYS_NULL = "always_null";
+  private static final String ALWAYS_ZERO = "always_zero";
+
   private final List<HierarchicalRule> rules;
   private final String variable;
   private final Class<?> errorCodeType;
@@ -50,4 +59,57 @@ public class HierarchicalRuleset {
   public Class<?> getErrorLevelType() {
     return errorLevelType;
   }
+
+  /**
+   * Returns the values of the code items of a rule, with the defaults of the validation mode for
+   * the missing ones, or null if the rule is not checked.
+   *
+   * @param codeItems The code items of the rule.
+   * @param codeValues The values of the code items found in the dataset, by code item.
+   * @param validationMode The validation mode, null for the default one (non_null).
+   * @param measureType The type of the measure.
+   * @return The values to resolve the expressions of the rule against, or null.
+   */
+  public static Map<String, Object> ruleBindings(
+      List<String> codeItems,
+      Map<String, Object> codeValues,
+      String validationMode,
+      Class<?> measureType) {
+    Map<String, Object> bindings = new HashMap<>();
+    var missing = false;
+    var anyNonNull = false;
+    var anyNullOrNonZero = false;
+    for (String codeItem : codeItems) {
+      if (!codeValues.containsKey(codeItem)) {
+        missing = true;
+        continue;
+      }
+      var value = codeValues.get(codeItem);
+      bindings.put(codeItem, value);
+      anyNonNull |= value != null;
+      anyNullOrNonZero |= value == null || ((Number) value).doubleValue() != 0D;
+    }
+    var mode = validationMode == null ? NON_NULL : validationMode;
+    var checked =
+        switch (mode) {
+          case NON_NULL -> !missing && !bindings.containsValue(null);
+          case NON_ZERO -> anyNullOrNonZero;
+          case PARTIAL_NULL, PARTIAL_ZERO -> anyNonNull;
+          case ALWAYS_NULL, ALWAYS_ZERO -> true;
+          default -> false;
+        };
+    if (!checked) {
+      return null;
+    }
+    if (missing) {
+      Object defaultValue =
+          mode.endsWith("_zero") ? (measureType.equals(Long.class) ? (Object) 0L : 0D) : null;
+      for (String codeItem : codeItems) {
+        if (!bindings.containsKey(codeItem)) {
+          bindings.put(codeItem, defaultValue);
+        }
+      }
+    }
+    return bindings;
+  }
 }
@@ -10,10 +10,28 @@ public class InMemoryDataset implements Dataset {
 
   private final List<DataPoint> data;
   private final DataStructure structure;
+  private final List<String> ordering;
 
   public InMemoryDataset(List<DataPoint> data, Map<String, Component> structure) {
+    this(data, structure, List.of());
+  }
+
+  /**
+   * Constructor taking data points sorted on some columns and a structure.
+   *
+   * @param data The data points.
+   * @param structure The structure of the dataset.
+   * @param ordering The names of the columns the data points are sorted on.
+   * @see Dataset#getOrdering()
+   */
+  public InMemoryDataset(
+      List<DataPoint> data, Map<String, Component> structure, List<String> ordering) {
+    if (!structure.keySet().containsAll(ordering)) {
+      throw new IllegalArgumentException("unknown ordering columns " + ordering);
+    }
     this.structure = new DataStructure(structure.values());
     this.data = data;
+    this.ordering = List.copyOf(ordering);
   }
 
   /**
@@ -30,6 +48,7 @@ public class InMemoryDataset implements Dataset {
     }
     this.structure = new DataStructure(types, roles);
     this.data = convert(data);
+    this.ordering = List.of();
   }
 
   /**
@@ -51,11 +70,13 @@ public class InMemoryDataset implements Dataset {
     }
     this.structure = new DataStructure(types, roles, nullables);
     this.data = convert(data);
+    this.ordering = List.of();
   }
 
   public InMemoryDataset(DataStructure structures, List<Object>... data) {
     this.structure = structures;
     this.data = convertList(List.of(data));
+    this.ordering = List.of();
   }
 
   /**
@@ -77,6 +98,7 @@ public class InMemoryDataset implements Dataset {
   public InMemoryDataset(List<List<Object>> data, List<Component> structures) {
     this.structure = new DataStructure(structures);
     this.data = convertList(data);
+    this.ordering = List.of();
   }
 
   /**
@@ -89,6 +111,7 @@ public class InMemoryDataset implements Dataset {
   public InMemoryDataset(List<List<Object>> data, DataStructure structures) {
     this.structure = structures;
     this.data = convertList(data);
+    this.ordering = List.of();
   }
 
   private List<DataPoint> convert(List<Map<String, Object>> data) {
@@ -112,4 +135,9 @@ public class InMemoryDataset implements Dataset {
   public DataStructure getDataStructure() {
     return structure;
   }
+
+  @Override
+  public List<String> getOrdering() {
+    return ordering;
+  }
 }
@@ -3,6 +3,7 @@ package fr.insee.vtl.model;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * The <code>ListExpression</code> class is an abstract representation of an expression of type
@@ -31,6 +32,11 @@ public abstract class ListExpression extends ResolvableExpression
         return list;
       }
 
+      @Override
+      public Set<String> getDependencies() {
+        return Set.of();
+      }
+
       @Override
       public Class<?> containedType() {
         return containedType;
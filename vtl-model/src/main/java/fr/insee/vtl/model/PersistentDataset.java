@@ -24,4 +24,9 @@ public final class PersistentDataset implements Dataset {
   public DataStructure getDataStructure() {
     return delegate.getDataStructure();
   }
+
+  @Override
+  public List<String> getOrdering() {
+    return delegate.getOrdering();
+  }
 }
@@ -63,6 +63,45 @@ public interface ProcessingEngine {
    */
   DatasetExpression executeUnion(List<DatasetExpression> datasets);
 
+  /**
+   * Execute an intersect transformations on the dataset expressions. The data points are matched on
+   * their identifiers, those of the first dataset are kept.
+   *
+   * @param datasets list of dataset expression to intersect
+   * @return the result of the intersect transformation
+   * @throws UnsupportedOperationException if the processing engine does not implement it
+   */
+  default DatasetExpression executeIntersect(List<DatasetExpression> datasets) {
+    throw new UnsupportedOperationException(
+        "intersect is not supported by " + getClass().getName());
+  }
+
+  /**
+   * Execute a setdiff transformations on the dataset expressions. The data points are matched on
+   * their identifiers.
+   *
+   * @param left the dataset whose data points are kept
+   * @param right the dataset whose data points are removed
+   * @return the result of the setdiff transformation
+   * @throws UnsupportedOperationException if the processing engine does not implement it
+   */
+  default DatasetExpression executeSetDiff(DatasetExpression left, DatasetExpression right) {
+    throw new UnsupportedOperationException("setdiff is not supported by " + getClass().getName());
+  }
+
+  /**
+   * Execute a symdiff transformations on the dataset expressions. The data points are matched on
+   * their identifiers.
+   *
+   * @param left the first dataset
+   * @param right the second dataset
+   * @return the result of the symdiff transformation
+   * @throws UnsupportedOperationException if the processing engine does not implement it
+   */
+  default DatasetExpression executeSymDiff(DatasetExpression left, DatasetExpression right) {
+    throw new UnsupportedOperationException("symdiff is not supported by " + getClass().getName());
+  }
+
   /**
    * Execute an aggregate transformations on the dataset expression.
    *
@@ -3,8 +3,12 @@ package fr.insee.vtl.model;
 import fr.insee.vtl.model.exceptions.InvalidTypeException;
 import fr.insee.vtl.model.exceptions.VtlScriptException;
 import java.io.Serializable;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
 /**
  * <code>ResolvableExpression</code> is the base interface for VTL expressions that can be resolved
@@ -37,7 +41,10 @@ public abstract class ResolvableExpression implements TypedExpression, Positione
    */
   public ResolvableExpression checkInstanceOf(Class<?> clazz) throws InvalidTypeException {
     if (Object.class.equals(this.getType())) {
-      return ResolvableExpression.withType(Object.class).withPosition(this).using(ctx -> null);
+      return ResolvableExpression.withType(Object.class)
+          .withPosition(this)
+          .dependingOn()
+          .using(ctx -> null);
     }
     if (!clazz.isAssignableFrom(this.getType())) {
       throw new InvalidTypeException(clazz, getType(), this);
@@ -47,10 +54,14 @@ public abstract class ResolvableExpression implements TypedExpression, Positione
 
   public <T> ResolvableExpression tryCast(Class<T> clazz) {
     if (Object.class.equals(this.getType())) {
-      return ResolvableExpression.withType(clazz).withPosition(this).using(ctx -> null);
+      return ResolvableExpression.withType(clazz)
+          .withPosition(this)
+          .dependingOn()
+          .using(ctx -> null);
     }
     return ResolvableExpression.withType(clazz)
         .withPosition(this)
+        .dependingOn(this)
         .using(
             ctx -> {
               var value = this.resolve(ctx);
@@ -70,6 +81,36 @@ public abstract class ResolvableExpression implements TypedExpression, Positione
    */
   public abstract Object resolve(Map<String, Object> context);
 
+  /**
+   * Returns the names of the components the expression reads from its context, or null when they
+   * are not known. Processing engines use them to only read and keep the components that are
+   * needed.
+   *
+   * @return The names of the components referenced by the expression, or null.
+   */
+  public Set<String> getDependencies() {
+    return null;
+  }
+
+  /**
+   * Returns the names of the components read by a collection of expressions.
+   *
+   * @param expressions The expressions.
+   * @return The union of the dependencies of the expressions, or null when those of an expression
+   *     are not known.
+   */
+  public static Set<String> dependenciesOf(Collection<? extends ResolvableExpression> expressions) {
+    Set<String> dependencies = new LinkedHashSet<>();
+    for (ResolvableExpression expression : expressions) {
+      var expressionDependencies = expression.getDependencies();
+      if (expressionDependencies == null) {
+        return null;
+      }
+      dependencies.addAll(expressionDependencies);
+    }
+    return dependencies;
+  }
+
   /**
    * Resolves the expression for a given datapoint.
    *
@@ -80,9 +121,89 @@ public abstract class ResolvableExpression implements TypedExpression, Positione
     return resolve(new Structured.DataPointMap(context));
   }
 
+  /**
+   * Resolves the expression to a primitive long in a given context.
+   *
+   * <p>The flag is set on every call. When the value is null, the flag is raised and the returned
+   * value must be ignored. Expressions that can compute their value without boxing it override this
+   * method, the default implementation unboxes the result of {@link #resolve(Map)}.
+   *
+   * @param context The context for the resolution.
+   * @param isNull The flag indicating whether the value is null.
+   * @return The value of the expression, or 0 when it is null.
+   */
+  public long resolveLong(Map<String, Object> context, NullFlag isNull) {
+    return unboxLong(resolve(context), isNull);
+  }
+
+  /** Resolves the expression to a primitive long for a given datapoint. */
+  public long resolveLong(Structured.DataPoint context, NullFlag isNull) {
+    return unboxLong(resolve(context), isNull);
+  }
+
+  /**
+   * Resolves the expression to a primitive double in a given context.
+   *
+   * @see #resolveLong(Map, NullFlag)
+   */
+  public double resolveDouble(Map<String, Object> context, NullFlag isNull) {
+    return unboxDouble(resolve(context), isNull);
+  }
+
+  /** Resolves the expression to a primitive double for a given datapoint. */
+  public double resolveDouble(Structured.DataPoint context, NullFlag isNull) {
+    return unboxDouble(resolve(context), isNull);
+  }
+
+  /**
+   * Resolves the expression to a primitive boolean in a given context.
+   *
+   * @see #resolveLong(Map, NullFlag)
+   */
+  public boolean resolveBoolean(Map<String, Object> context, NullFlag isNull) {
+    return unboxBoolean(resolve(context), isNull);
+  }
+
+  /** Resolves the expression to a primitive boolean for a given datapoint. */
+  public boolean resolveBoolean(Structured.DataPoint context, NullFlag isNull) {
+    return unboxBoolean(resolve(context), isNull);
+  }
+
+  private static long unboxLong(Object value, NullFlag isNull) {
+    isNull.set(value == null);
+    return value == null ? 0L : (Long) value;
+  }
+
+  private static double unboxDouble(Object value, NullFlag isNull) {
+    isNull.set(value == null);
+    return value == null ? 0D : ((Number) value).doubleValue();
+  }
+
+  private static boolean unboxBoolean(Object value, NullFlag isNull) {
+    isNull.set(value == null);
+    return value != null && (Boolean) value;
+  }
+
+  /**
+   * Null indicator of the primitive resolution methods. A single flag is meant to be reused while
+   * resolving a whole expression tree.
+   */
+  public static final class NullFlag {
+    private boolean isNull;
+
+    public boolean isNull() {
+      return isNull;
+    }
+
+    public void set(boolean isNull) {
+      this.isNull = isNull;
+    }
+  }
+
   public static class Builder<T> implements Serializable {
     private final Class<T> type;
     private Position position;
+    private Set<String> dependencies;
 
     Builder(Class<T> type) {
       this.type = type;
@@ -97,13 +218,29 @@ public abstract class ResolvableExpression implements TypedExpression, Positione
       return this;
     }
 
+    /**
+     * Declares the expressions the function resolves, the built expression then depends on their
+     * components. Without expressions, the function does not read its context.
+     */
+    public Builder<T> dependingOn(ResolvableExpression... expressions) {
+      var names = dependenciesOf(List.of(expressions));
+      this.dependencies = names == null ? null : Set.copyOf(names);
+      return this;
+    }
+
     public ResolvableExpression using(VtlFunction<Map<String, Object>, T> function) {
+      var functionDependencies = dependencies;
       return new ResolvableExpression(position) {
         @Override
         public Object resolve(Map<String, Object> context) {
           return function.apply(context);
         }
 
+        @Override
+        public Set<String> getDependencies() {
+          return functionDependencies;
+        }
+
         @Override
         public Class<?> getType() {
           return type;
@@ -398,6 +398,15 @@ public interface Structured {
       }
     }
 
+    /**
+     * Get the data structure of the point.
+     *
+     * @return the {@link DataStructure} the values are laid out against
+     */
+    public DataStructure getDataStructure() {
+      return dataStructure;
+    }
+
     /**
      * Get the value by name.
      *
@@ -3,6 +3,8 @@ package fr.insee.vtl.model;
 import fr.insee.vtl.model.exceptions.VtlScriptException;
 import java.io.Serializable;
 import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Objects;
 
 public class VtlMethod implements Serializable {
 
@@ -24,4 +26,19 @@ public class VtlMethod implements Serializable {
           "could not deserialize method " + methodName + ": " + e.getMessage(), pos);
     }
   }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    VtlMethod vtlMethod = (VtlMethod) o;
+    return Arrays.equals(types, vtlMethod.types)
+        && Objects.equals(className, vtlMethod.className)
+        && Objects.equals(methodName, vtlMethod.methodName);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(Arrays.hashCode(types), className, methodName);
+  }
 }
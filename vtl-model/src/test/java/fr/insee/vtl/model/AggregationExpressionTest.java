@@ -0,0 +1,77 @@
+package fr.insee.vtl.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collector;
+import org.junit.jupiter.api.Test;
+
+public class AggregationExpressionTest {
+
+  private final Structured.DataStructure structure =
+      new Structured.DataStructure(
+          List.of(new Structured.Component("m", Double.class, Dataset.Role.MEASURE)));
+
+  private final ResolvableExpression measure =
+      ResolvableExpression.withType(Double.class)
+          .withPosition(new Positioned.Position(0, 0, 0, 0))
+          .using(ctx -> (Double) ctx.get("m"));
+
+  private List<Structured.DataPoint> points(Double... values) {
+    var points = new ArrayList<Structured.DataPoint>();
+    for (Double value : values) {
+      points.add(new Structured.DataPoint(structure, Arrays.asList(value)));
+    }
+    return points;
+  }
+
+  /** Aggregates the points in two halves that are then combined. */
+  private static Object collectInHalves(
+      Collector<Structured.DataPoint, Object, Object> collector,
+      List<Structured.DataPoint> points) {
+    var left = collector.supplier().get();
+    var right = collector.supplier().get();
+    var half = points.size() / 2;
+    for (int i = 0; i < points.size(); i++) {
+      collector.accumulator().accept(i < half ? left : right, points.get(i));
+    }
+    return collector.finisher().apply(collector.combiner().apply(left, right));
+  }
+
+  @Test
+  public void testVariance() {
+    var points = points(5D, 15D, 10D, 8D, 1e9 + 4, 1e9 + 7);
+    var expected = 2.2222222044444445E17;
+
+    assertEquals(
+        expected, (Double) points.stream().collect(AggregationExpression.varPop(measure)), 1e3);
+    assertEquals(
+        expected, (Double) collectInHalves(AggregationExpression.varPop(measure), points), 1e3);
+    assertEquals(
+        Math.sqrt(expected * 6 / 5),
+        (Double) collectInHalves(AggregationExpression.stdDevSamp(measure), points),
+        1e-3);
+
+    assertEquals(0D, points(3D).stream().collect(AggregationExpression.varSamp(measure)));
+    assertNull(points(3D, null).stream().collect(AggregationExpression.stdDevPop(measure)));
+  }
+
+  @Test
+  public void testMedian() {
+    assertEquals(3D, points(5D, 1D, 3D).stream().collect(AggregationExpression.median(measure)));
+    assertEquals(
+        3.5D, points(4D, 6D, 1D, 3D).stream().collect(AggregationExpression.median(measure)));
+    assertEquals(
+        2D, points(2D, 2D, 2D, 2D).stream().collect(AggregationExpression.median(measure)));
+    assertNull(points(1D, null, 2D).stream().collect(AggregationExpression.median(measure)));
+
+    var values = new Double[101];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = (double) ((i * 37) % values.length);
+    }
+    assertEquals(50D, collectInHalves(AggregationExpression.median(measure), points(values)));
+  }
+}
@@ -0,0 +1,46 @@
+package fr.insee.vtl.spark;
+
+import fr.insee.vtl.engine.expressions.CommonSubexpressions;
+import fr.insee.vtl.model.ResolvableExpression;
+import java.util.List;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.RowFactory;
+import org.apache.spark.sql.api.java.UDF1;
+
+/**
+ * The <code>SparkCalcFunction</code> class is a wrapper around the expressions of a calc clause
+ * that Spark cannot evaluate natively. The expressions are resolved together on each row and their
+ * values returned as a struct, so that the row is read once and the subexpressions they share are
+ * resolved once.
+ */
+public class SparkCalcFunction implements UDF1<Row, Row> {
+
+  private final List<ResolvableExpression> expressions;
+  private transient ResolvableExpression[] evaluatedExpressions;
+  private transient CommonSubexpressions.Evaluation evaluation;
+
+  /**
+   * Constructor taking the VTL expressions.
+   *
+   * @param expressions the VTL expressions, in the order of the fields of the struct.
+   */
+  public SparkCalcFunction(List<ResolvableExpression> expressions) {
+    this.expressions = List.copyOf(expressions);
+  }
+
+  @Override
+  public Row call(Row row) {
+    // The function is deserialized in each task, the evaluation is not shared between threads.
+    if (evaluation == null) {
+      evaluation = CommonSubexpressions.of(expressions).newEvaluation();
+      evaluatedExpressions = evaluation.getExpressions().toArray(ResolvableExpression[]::new);
+    }
+    evaluation.nextRow();
+    var context = new SparkRowMap(row);
+    var values = new Object[evaluatedExpressions.length];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = evaluatedExpressions[i].resolve(context);
+    }
+    return RowFactory.create(values);
+  }
+}
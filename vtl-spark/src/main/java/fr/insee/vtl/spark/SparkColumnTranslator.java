@@ -0,0 +1,174 @@
+package fr.insee.vtl.spark;
+
+import static org.apache.spark.sql.functions.*;
+
+import fr.insee.vtl.engine.expressions.CastExpression;
+import fr.insee.vtl.engine.expressions.ComponentExpression;
+import fr.insee.vtl.engine.expressions.FunctionExpression;
+import fr.insee.vtl.engine.visitors.expression.ArithmeticExprOrConcatVisitor;
+import fr.insee.vtl.engine.visitors.expression.ArithmeticVisitor;
+import fr.insee.vtl.engine.visitors.expression.BooleanVisitor;
+import fr.insee.vtl.engine.visitors.expression.ComparisonVisitor;
+import fr.insee.vtl.engine.visitors.expression.ConditionalVisitor;
+import fr.insee.vtl.engine.visitors.expression.UnaryVisitor;
+import fr.insee.vtl.engine.visitors.expression.functions.NumericFunctionsVisitor;
+import fr.insee.vtl.engine.visitors.expression.functions.StringFunctionsVisitor;
+import fr.insee.vtl.model.ConstantExpression;
+import fr.insee.vtl.model.ResolvableExpression;
+import fr.insee.vtl.model.exceptions.VtlScriptException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import org.apache.spark.sql.Column;
+import org.apache.spark.sql.types.DataType;
+import org.apache.spark.sql.types.DataTypes;
+
+/**
+ * The <code>SparkColumnTranslator</code> class translates VTL expressions into native Spark
+ * columns, so that Catalyst can optimize and generate code for them instead of calling a user
+ * defined function on every row.
+ *
+ * <p>Only the operators whose Spark implementation follows the VTL semantics, null values included,
+ * are translated. The other expressions (user defined functions for instance) are not translated
+ * and must be evaluated row by row.
+ */
+public final class SparkColumnTranslator {
+
+  private static final Set<Class<?>> TYPES =
+      Set.of(String.class, Long.class, Double.class, Boolean.class);
+
+  private static final Map<Method, Function<List<Column>, Column>> TRANSLATIONS = new HashMap<>();
+
+  static {
+    register(ArithmeticExprOrConcatVisitor.class, "addition", c -> c.get(0).plus(c.get(1)));
+    register(ArithmeticExprOrConcatVisitor.class, "subtraction", c -> c.get(0).minus(c.get(1)));
+    register(ArithmeticExprOrConcatVisitor.class, "concat", c -> concat(c.get(0), c.get(1)));
+    register(ArithmeticVisitor.class, "multiplication", c -> c.get(0).multiply(c.get(1)));
+    register(ArithmeticVisitor.class, "division", c -> division(c.get(0), c.get(1)));
+    register(UnaryVisitor.class, "plus", c -> c.get(0));
+    register(UnaryVisitor.class, "minus", c -> negate(c.get(0)));
+    register(UnaryVisitor.class, "not", c -> not(c.get(0)));
+    register(ComparisonVisitor.class, "isEqual", c -> c.get(0).equalTo(c.get(1)));
+    register(ComparisonVisitor.class, "isNotEqual", c -> c.get(0).notEqual(c.get(1)));
+    register(ComparisonVisitor.class, "isLessThan", c -> c.get(0).lt(c.get(1)));
+    register(ComparisonVisitor.class, "isGreaterThan", c -> c.get(0).gt(c.get(1)));
+    register(ComparisonVisitor.class, "isLessThanOrEqual", c -> c.get(0).leq(c.get(1)));
+    register(ComparisonVisitor.class, "isGreaterThanOrEqual", c -> c.get(0).geq(c.get(1)));
+    // Spark uses the same three-valued logic as VTL.
+    register(BooleanVisitor.class, "and", c -> c.get(0).and(c.get(1)));
+    register(BooleanVisitor.class, "or", c -> c.get(0).or(c.get(1)));
+    // The result is null when the condition is null, Spark would otherwise use the else branch.
+    register(
+        ConditionalVisitor.class,
+        "ifThenElse",
+        c -> when(c.get(0), c.get(1)).when(not(c.get(0)), c.get(2)));
+    register(ConditionalVisitor.class, "nvl", c -> coalesce(c.get(0), c.get(1)));
+    register(NumericFunctionsVisitor.class, "ceil", c -> ceil(c.get(0)));
+    register(NumericFunctionsVisitor.class, "floor", c -> floor(c.get(0)));
+    register(NumericFunctionsVisitor.class, "abs", c -> abs(c.get(0)));
+    register(NumericFunctionsVisitor.class, "exp", c -> exp(c.get(0)));
+    register(NumericFunctionsVisitor.class, "power", c -> pow(c.get(0), c.get(1)));
+    register(NumericFunctionsVisitor.class, "mod", c -> mod(c.get(0), c.get(1)));
+    register(StringFunctionsVisitor.class, "ucase", c -> upper(c.get(0)));
+    register(StringFunctionsVisitor.class, "lcase", c -> lower(c.get(0)));
+  }
+
+  private SparkColumnTranslator() {
+    throw new IllegalStateException("Utility class");
+  }
+
+  private static void register(
+      Class<?> clazz, String name, Function<List<Column>, Column> translation) {
+    for (Method method : clazz.getMethods()) {
+      if (Modifier.isStatic(method.getModifiers()) && method.getName().equals(name)) {
+        TRANSLATIONS.put(method, translation);
+      }
+    }
+  }
+
+  /**
+   * Division of doubles, that Spark evaluates to null instead of an infinity or NaN. By a zero
+   * divisor, the dividend is multiplied by its inverse: pow keeps the sign of a negative zero, the
+   * infinity then has the sign of both operands and a zero or NaN dividend gives NaN.
+   */
+  private static Column division(Column left, Column right) {
+    var dividend = left.cast(DataTypes.DoubleType);
+    var divisor = right.cast(DataTypes.DoubleType);
+    return when(divisor.equalTo(0), dividend.multiply(pow(divisor, -1)))
+        .otherwise(dividend.divide(divisor));
+  }
+
+  /** Modulo with the sign of the divisor, returning the dividend when the divisor is zero. */
+  private static Column mod(Column left, Column right) {
+    var dividend = left.cast(DataTypes.DoubleType);
+    var divisor = right.cast(DataTypes.DoubleType);
+    return when(divisor.equalTo(0), dividend)
+        .otherwise(dividend.mod(divisor).multiply(when(divisor.lt(0), -1).otherwise(1)));
+  }
+
+  private static DataType sparkType(Class<?> type) {
+    return TYPES.contains(type) ? SparkDataset.fromVtlType(type) : null;
+  }
+
+  /**
+   * Translates a VTL expression into a Spark column.
+   *
+   * @param expression the VTL expression to translate.
+   * @return The Spark column computing the expression, or null if the expression cannot be
+   *     translated.
+   */
+  public static Column translate(ResolvableExpression expression) {
+    var type = sparkType(expression.getType());
+    if (type == null) {
+      return null;
+    }
+    if (expression instanceof ComponentExpression component) {
+      return col(component.getComponent().getName()).cast(type);
+    }
+    if (expression instanceof ConstantExpression) {
+      return lit(expression.resolve(Map.of())).cast(type);
+    }
+    if (expression instanceof CastExpression cast) {
+      // Only the casts that cannot fail and that Spark formats as Java.
+      var operand = cast.getOperand();
+      if (operand.getType().equals(expression.getType())
+          || Long.class.equals(operand.getType())
+          || Boolean.class.equals(operand.getType())) {
+        var column = translate(operand);
+        return column == null ? null : column.cast(type);
+      }
+      return null;
+    }
+    if (expression instanceof ConditionalVisitor.CastExpression cast) {
+      // If-then-else and case expressions, typed as their branches.
+      var column = translate(cast.getOperand());
+      return column == null ? null : column.cast(type);
+    }
+    if (expression instanceof FunctionExpression function) {
+      Function<List<Column>, Column> translation;
+      try {
+        translation = TRANSLATIONS.get(function.getMethod().getMethod(function));
+      } catch (VtlScriptException e) {
+        return null;
+      }
+      if (translation == null) {
+        return null;
+      }
+      List<Column> parameters = new ArrayList<>();
+      for (ResolvableExpression parameter : function.getParameters()) {
+        var column = translate(parameter);
+        if (column == null) {
+          return null;
+        }
+        parameters.add(column);
+      }
+      return translation.apply(parameters).cast(type);
+    }
+    return null;
+  }
+}
@@ -0,0 +1,115 @@
+package fr.insee.vtl.spark;
+
+import fr.insee.vtl.engine.expressions.CommonSubexpressions;
+import fr.insee.vtl.model.ResolvableExpression;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.RowFactory;
+import org.apache.spark.sql.api.java.UDF1;
+
+/**
+ * The <code>SparkDataPointRulesetFunction</code> class evaluates all the rules of a data point
+ * ruleset on a row of a Spark dataset. It returns one (ruleid, bool_var, errorcode, errorlevel)
+ * struct per rule, or per rule that is not satisfied when only the invalid results are kept.
+ */
+public class SparkDataPointRulesetFunction implements UDF1<Row, List<Row>> {
+
+  private final List<String> ruleNames;
+  private final List<ResolvableExpression> conditions;
+  private final List<ResolvableExpression> errorCodes;
+  private final List<ResolvableExpression> errorLevels;
+  private final Class<?> errorCodeType;
+  private final Class<?> errorLevelType;
+  private final boolean invalidOnly;
+  private transient ResolvableExpression[] evaluatedConditions;
+  private transient CommonSubexpressions.Evaluation evaluation;
+
+  /**
+   * Constructor taking the rules of the ruleset.
+   *
+   * @param ruleNames the names of the rules.
+   * @param conditions the antecedent and the consequent of each rule, in the order of the rules.
+   * @param errorCodes the error code expression of each rule, null if it has none.
+   * @param errorLevels the error level expression of each rule, null if it has none.
+   * @param errorCodeType the type of the error codes.
+   * @param errorLevelType the type of the error levels.
+   * @param invalidOnly true to only return the rules that are not satisfied.
+   */
+  public SparkDataPointRulesetFunction(
+      List<String> ruleNames,
+      List<ResolvableExpression> conditions,
+      List<ResolvableExpression> errorCodes,
+      List<ResolvableExpression> errorLevels,
+      Class<?> errorCodeType,
+      Class<?> errorLevelType,
+      boolean invalidOnly) {
+    this.ruleNames = List.copyOf(ruleNames);
+    this.conditions = List.copyOf(conditions);
+    this.errorCodes = new ArrayList<>(errorCodes);
+    this.errorLevels = new ArrayList<>(errorLevels);
+    this.errorCodeType = errorCodeType;
+    this.errorLevelType = errorLevelType;
+    this.invalidOnly = invalidOnly;
+  }
+
+  private static Object resolveError(
+      ResolvableExpression expression, Class<?> type, SparkRowMap context) {
+    if (expression == null) {
+      return null;
+    }
+    var value = expression.resolve(context);
+    return value == null ? null : type.cast(value);
+  }
+
+  @Override
+  public List<Row> call(Row row) {
+    // The function is deserialized in each task, the evaluation is not shared between threads.
+    if (evaluation == null) {
+      evaluation = CommonSubexpressions.of(conditions).newEvaluation();
+      evaluatedConditions = evaluation.getExpressions().toArray(ResolvableExpression[]::new);
+    }
+    evaluation.nextRow();
+    var context = new SparkRowMap(row);
+    var results = new ArrayList<Row>();
+    for (int i = 0; i < ruleNames.size(); i++) {
+      var antecedent = (Boolean) evaluatedConditions[2 * i].resolve(context);
+      var consequent = (Boolean) evaluatedConditions[2 * i + 1].resolve(context);
+      Boolean valid;
+      if (antecedent == null) {
+        valid = consequent;
+      } else if (consequent == null) {
+        valid = antecedent;
+      } else {
+        valid = !antecedent || consequent;
+      }
+      if (invalidOnly && !Boolean.FALSE.equals(valid)) {
+        continue;
+      }
+      Object errorCode = null;
+      Object errorLevel = null;
+      if (Boolean.TRUE.equals(antecedent) && Boolean.FALSE.equals(consequent)) {
+        errorCode = resolveError(errorCodes.get(i), errorCodeType, context);
+        errorLevel = resolveError(errorLevels.get(i), errorLevelType, context);
+      }
+      results.add(RowFactory.create(ruleNames.get(i), valid, errorCode, errorLevel));
+    }
+    return results;
+  }
+
+  /** Returns the expressions the function resolves. */
+  List<ResolvableExpression> getExpressions() {
+    var expressions = new ArrayList<>(conditions);
+    for (ResolvableExpression expression : errorCodes) {
+      if (expression != null) {
+        expressions.add(expression);
+      }
+    }
+    for (ResolvableExpression expression : errorLevels) {
+      if (expression != null) {
+        expressions.add(expression);
+      }
+    }
+    return expressions;
+  }
+}
@@ -0,0 +1,132 @@
+package fr.insee.vtl.spark;
+
+import fr.insee.vtl.model.HierarchicalRule;
+import fr.insee.vtl.model.HierarchicalRuleset;
+import fr.insee.vtl.model.ResolvableExpression;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.RowFactory;
+import org.apache.spark.sql.api.java.UDF1;
+import scala.collection.JavaConverters;
+import scala.collection.Seq;
+
+/**
+ * The <code>SparkHierarchicalRulesetFunction</code> class evaluates all the rules of a hierarchical
+ * ruleset on a group of data points, given as the list of the (code, value) structs of the data
+ * points having the same identifiers but the rule component. It returns one (code, value, ruleid,
+ * bool_var, imbalance, errorcode, errorlevel) struct per rule that is checked, or per rule that is
+ * not satisfied when only the invalid results are kept.
+ */
+public class SparkHierarchicalRulesetFunction implements UDF1<Seq<Row>, List<Row>> {
+
+  private final List<String> ruleNames = new ArrayList<>();
+  private final List<String> valueDomainValues = new ArrayList<>();
+  private final List<List<String>> codeItems = new ArrayList<>();
+  private final List<ResolvableExpression> expressions = new ArrayList<>();
+  private final List<ResolvableExpression> leftExpressions = new ArrayList<>();
+  private final List<ResolvableExpression> rightExpressions = new ArrayList<>();
+  private final List<ResolvableExpression> errorCodes = new ArrayList<>();
+  private final List<ResolvableExpression> errorLevels = new ArrayList<>();
+  private final String validationMode;
+  private final Class<?> measureType;
+  private final Class<?> errorCodeType;
+  private final Class<?> errorLevelType;
+  private final boolean invalidOnly;
+
+  /**
+   * Constructor taking the rules of the ruleset.
+   *
+   * @param rules the rules of the ruleset.
+   * @param validationMode the validation mode, null for the default one (non_null).
+   * @param measureType the type of the measure.
+   * @param errorCodeType the type of the error codes.
+   * @param errorLevelType the type of the error levels.
+   * @param invalidOnly true to only return the rules that are not satisfied.
+   */
+  public SparkHierarchicalRulesetFunction(
+      List<HierarchicalRule> rules,
+      String validationMode,
+      Class<?> measureType,
+      Class<?> errorCodeType,
+      Class<?> errorLevelType,
+      boolean invalidOnly) {
+    // The rules are not serializable, only their parts are kept.
+    for (HierarchicalRule rule : rules) {
+      ruleNames.add(rule.getName());
+      valueDomainValues.add(rule.getValueDomainValue());
+      codeItems.add(List.copyOf(rule.getCodeItems()));
+      expressions.add(rule.getExpression());
+      leftExpressions.add(rule.getLeftExpression());
+      rightExpressions.add(rule.getRightExpression());
+      errorCodes.add(rule.getErrorCodeExpression());
+      errorLevels.add(rule.getErrorLevelExpression());
+    }
+    this.validationMode = validationMode;
+    this.measureType = measureType;
+    this.errorCodeType = errorCodeType;
+    this.errorLevelType = errorLevelType;
+    this.invalidOnly = invalidOnly;
+  }
+
+  private static Object resolveError(
+      ResolvableExpression expression, Class<?> type, Map<String, Object> bindings) {
+    if (expression == null) {
+      return null;
+    }
+    var value = expression.resolve(bindings);
+    return value == null ? null : type.cast(value);
+  }
+
+  @Override
+  public List<Row> call(Seq<Row> items) {
+    Map<String, Object> codeValues = new HashMap<>();
+    for (Row item : JavaConverters.seqAsJavaList(items)) {
+      codeValues.put(item.getString(0), item.get(1));
+    }
+    var results = new ArrayList<Row>();
+    if (codeValues.isEmpty()) {
+      return results;
+    }
+    for (int i = 0; i < ruleNames.size(); i++) {
+      var bindings =
+          HierarchicalRuleset.ruleBindings(
+              codeItems.get(i), codeValues, validationMode, measureType);
+      if (bindings == null) {
+        continue;
+      }
+      var valid = (Boolean) expressions.get(i).resolve(bindings);
+      if (invalidOnly && !Boolean.FALSE.equals(valid)) {
+        continue;
+      }
+      var left = (Number) leftExpressions.get(i).resolve(bindings);
+      var right = (Number) rightExpressions.get(i).resolve(bindings);
+      Object imbalance = null;
+      if (left != null && right != null) {
+        imbalance =
+            measureType.equals(Long.class)
+                ? (Object) (left.longValue() - right.longValue())
+                : (Object) (left.doubleValue() - right.doubleValue());
+      }
+      Object errorCode = null;
+      Object errorLevel = null;
+      if (Boolean.FALSE.equals(valid)) {
+        errorCode = resolveError(errorCodes.get(i), errorCodeType, bindings);
+        errorLevel = resolveError(errorLevels.get(i), errorLevelType, bindings);
+      }
+      var valueDomainValue = valueDomainValues.get(i);
+      results.add(
+          RowFactory.create(
+              valueDomainValue,
+              bindings.get(valueDomainValue),
+              ruleNames.get(i),
+              valid,
+              imbalance,
+              errorCode,
+              errorLevel));
+    }
+    return results;
+  }
+}
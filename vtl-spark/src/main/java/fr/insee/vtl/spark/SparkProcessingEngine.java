@@ -14,7 +14,9 @@ import static org.apache.spark.sql.functions.min;
 import static org.apache.spark.sql.functions.sum;
 import static scala.collection.JavaConverters.iterableAsScalaIterable;
 
+import fr.insee.vtl.engine.exceptions.VtlRuntimeException;
 import fr.insee.vtl.model.*;
+import fr.insee.vtl.model.exceptions.VtlScriptException;
 import java.util.*;
 import java.util.stream.Collectors;
 import javax.script.ScriptEngine;
@@ -25,6 +27,10 @@ import org.apache.spark.sql.SparkSession;
 import org.apache.spark.sql.expressions.UserDefinedFunction;
 import org.apache.spark.sql.expressions.Window;
 import org.apache.spark.sql.expressions.WindowSpec;
+import org.apache.spark.sql.types.DataType;
+import org.apache.spark.sql.types.DataTypes;
+import org.apache.spark.sql.types.StructField;
+import org.apache.spark.sql.types.StructType;
 import scala.collection.JavaConverters;
 import scala.collection.Seq;
 
@@ -42,12 +48,6 @@ public class SparkProcessingEngine implements ProcessingEngine {
   private static final String ERRORLEVEL = "errorlevel";
   private static final String RULEID = "ruleid";
   private static final String IMBALANCE = "imbalance";
-  private static final String NON_NULL = "non_null";
-  private static final String NON_ZERO = "non_zero";
-  private static final String PARTIAL_NULL = "partial_null";
-  private static final String PARTIAL_ZERO = "partial_zero";
-  private static final String ALWAYS_NULL = "always_null";
-  private static final String ALWAYS_ZERO = "always_zero";
   private final SparkSession spark;
 
   /**
@@ -182,21 +182,37 @@ public class SparkProcessingEngine implements ProcessingEngine {
     Dataset<Row> ds = dataset.getSparkDataset();
 
     // Rename all the columns to avoid conflicts (static single assignment).
-    Map<String, String> aliasesToName = new HashMap<>();
-    Map<String, ResolvableExpression> renamedExpressions = new LinkedHashMap<>();
-    Map<String, String> renamedExpressionString = new LinkedHashMap<>();
+    var columnNames = Set.of(ds.columns());
+    Map<String, String> aliasesToName = new LinkedHashMap<>();
+    Map<String, Column> translatedColumns = new LinkedHashMap<>();
+    Map<String, ResolvableExpression> evaluatedExpressions = new LinkedHashMap<>();
     for (var name : expressions.keySet()) {
       String alias = name + "_" + aliasesToName.size();
-      renamedExpressions.put(alias, expressions.get(name));
-      renamedExpressionString.put(alias, expressionStrings.get(name));
+      while (columnNames.contains(alias) || aliasesToName.containsKey(alias)) {
+        alias = "_" + alias;
+      }
       aliasesToName.put(alias, name);
+      // Translate the expressions into native Spark columns, the others (user defined functions
+      // for instance) are evaluated row by row.
+      Column column = SparkColumnTranslator.translate(expressions.get(name));
+      if (column != null) {
+        translatedColumns.put(alias, column);
+      } else {
+        evaluatedExpressions.put(alias, expressions.get(name));
+      }
     }
 
-    // First pass with interpreted spark expressions
-    Dataset<Row> interpreted = executeCalcInterpreted(ds, renamedExpressionString);
-
-    // Execute the rest using the resolvable expressions
-    Dataset<Row> evaluated = executeCalcEvaluated(interpreted, renamedExpressions);
+    // Keep the order of the calc items, whether they are translated or evaluated.
+    Dataset<Row> evaluated = executeCalcEvaluated(ds, evaluatedExpressions);
+    List<Column> columns = new ArrayList<>();
+    for (String name : ds.columns()) {
+      columns.add(col(name));
+    }
+    for (String alias : aliasesToName.keySet()) {
+      Column translated = translatedColumns.get(alias);
+      columns.add(translated == null ? col(alias) : translated.as(alias));
+    }
+    evaluated = evaluated.select(iterableAsScalaIterable(columns).toSeq());
 
     // Rename the columns back to their original names
     Dataset<Row> renamed = rename(evaluated, aliasesToName);
@@ -211,42 +227,54 @@ public class SparkProcessingEngine implements ProcessingEngine {
   private Dataset<Row> executeCalcEvaluated(
       Dataset<Row> interpreted, Map<String, ResolvableExpression> expressions) {
     var columnNames = Set.of(interpreted.columns());
-    Column structColumns =
-        struct(columnNames.stream().map(colName -> col(colName)).toArray(Column[]::new));
+    List<String> names = new ArrayList<>();
+    List<ResolvableExpression> evaluatedExpressions = new ArrayList<>();
+    List<StructField> fields = new ArrayList<>();
     for (var name : expressions.keySet()) {
-      // Ignore the columns that already exist.
-      if (columnNames.contains(name)) {
-        continue;
-      }
-      // Execute the ResolvableExpression by wrapping it in a UserDefinedFunction.
       ResolvableExpression expression = expressions.get(name);
+      DataType type;
       try {
-        UserDefinedFunction exprFunction =
-            udf(
-                (Row row) -> {
-                  SparkRowMap context = new SparkRowMap(row);
-                  return expression.resolve(context);
-                },
-                fromVtlType(expression.getType()));
-        interpreted = interpreted.withColumn(name, exprFunction.apply(structColumns));
-      } catch (Exception e) {
-        System.out.println(name);
+        type = fromVtlType(expression.getType());
+      } catch (UnsupportedOperationException e) {
+        throw new VtlRuntimeException(new VtlScriptException(e, expression));
       }
+      fields.add(DataTypes.createStructField(name, type, true));
+      names.add(name);
+      evaluatedExpressions.add(expression);
+    }
+    if (names.isEmpty()) {
+      return interpreted;
     }
-    return interpreted;
-  }
 
-  private Dataset<Row> executeCalcInterpreted(
-      Dataset<Row> result, Map<String, String> expressionStrings) {
-    for (String name : expressionStrings.keySet()) {
-      try {
-        String expression = expressionStrings.get(name);
-        if (expression == null) continue;
-        result = result.withColumn(name, expr(expression));
-      } catch (Exception ignored) {
+    // Only pass the columns the expressions read, or all of them when they are not known.
+    Set<String> dependencies = ResolvableExpression.dependenciesOf(evaluatedExpressions);
+    Column structColumns =
+        struct(
+            columnNames.stream()
+                .filter(colName -> dependencies == null || dependencies.contains(colName))
+                .map(colName -> col(colName))
+                .toArray(Column[]::new));
+
+    // Execute all the ResolvableExpressions in one UserDefinedFunction returning a struct, that is
+    // then expanded into columns.
+    String structName = "calc";
+    while (columnNames.contains(structName)) {
+      structName = "_" + structName;
+    }
+    UserDefinedFunction exprFunction =
+        udf(new SparkCalcFunction(evaluatedExpressions), DataTypes.createStructType(fields));
+    Dataset<Row> evaluated = interpreted.withColumn(structName, exprFunction.apply(structColumns));
+    // The values of the existing columns are replaced in place, the new ones are appended.
+    List<Column> columns = new ArrayList<>();
+    for (String name : interpreted.columns()) {
+      columns.add(names.contains(name) ? col(structName).getField(name).as(name) : col(name));
+    }
+    for (String name : names) {
+      if (!columnNames.contains(name)) {
+        columns.add(col(structName).getField(name).as(name));
       }
     }
-    return result;
+    return evaluated.select(iterableAsScalaIterable(columns).toSeq());
   }
 
   @Override
@@ -255,14 +283,11 @@ public class SparkProcessingEngine implements ProcessingEngine {
     SparkDataset dataset = asSparkDataset(expression);
 
     Dataset<Row> ds = dataset.getSparkDataset();
-    try {
-      Dataset<Row> result = ds.filter(filterText);
-      return new SparkDatasetExpression(new SparkDataset(result, getRoleMap(dataset)), expression);
-    } catch (Exception e) {
-      SparkFilterFunction filterFunction = new SparkFilterFunction(filter);
-      Dataset<Row> result = ds.filter(filterFunction);
-      return new SparkDatasetExpression(new SparkDataset(result, getRoleMap(dataset)), expression);
-    }
+    // The VTL text is not Spark SQL, filters that cannot be translated are evaluated by row.
+    Column filterColumn = SparkColumnTranslator.translate(filter);
+    Dataset<Row> result =
+        filterColumn != null ? ds.filter(filterColumn) : ds.filter(new SparkFilterFunction(filter));
+    return new SparkDatasetExpression(new SparkDataset(result, getRoleMap(dataset)), expression);
   }
 
   @Override
@@ -357,6 +382,76 @@ public class SparkProcessingEngine implements ProcessingEngine {
     }
   }
 
+  @Override
+  public DatasetExpression executeIntersect(List<DatasetExpression> datasets) {
+    if (!checkColNameCompatibility(datasets))
+      throw new UnsupportedOperationException("The schema of the dataset is not compatible");
+    SparkDataset sparkDataset = asSparkDataset(datasets.get(0));
+    Dataset<Row> result = sparkDataset.getSparkDataset();
+    List<String> identifiers = getIdentifierNames(datasets.get(0));
+    for (int i = 1; i <= datasets.size() - 1; i++) {
+      Dataset<Row> current = asSparkDataset(datasets.get(i)).getSparkDataset();
+      result = setOperation(result, current, identifiers, "left_semi");
+    }
+    result = result.dropDuplicates(iterableAsScalaIterable(identifiers).toSeq());
+    return new SparkDatasetExpression(
+        new SparkDataset(result, getRoleMap(sparkDataset)), datasets.get(0));
+  }
+
+  @Override
+  public DatasetExpression executeSetDiff(DatasetExpression left, DatasetExpression right) {
+    if (!checkColNameCompatibility(List.of(left, right)))
+      throw new UnsupportedOperationException("The schema of the dataset is not compatible");
+    SparkDataset sparkDataset = asSparkDataset(left);
+    List<String> identifiers = getIdentifierNames(left);
+    Dataset<Row> result =
+        setOperation(
+                sparkDataset.getSparkDataset(),
+                asSparkDataset(right).getSparkDataset(),
+                identifiers,
+                "left_anti")
+            .dropDuplicates(iterableAsScalaIterable(identifiers).toSeq());
+    return new SparkDatasetExpression(new SparkDataset(result, getRoleMap(sparkDataset)), left);
+  }
+
+  @Override
+  public DatasetExpression executeSymDiff(DatasetExpression left, DatasetExpression right) {
+    if (!checkColNameCompatibility(List.of(left, right)))
+      throw new UnsupportedOperationException("The schema of the dataset is not compatible");
+    SparkDataset sparkDataset = asSparkDataset(left);
+    List<String> identifiers = getIdentifierNames(left);
+    Dataset<Row> leftDs = sparkDataset.getSparkDataset();
+    Dataset<Row> rightDs = asSparkDataset(right).getSparkDataset();
+    Dataset<Row> result =
+        setOperation(leftDs, rightDs, identifiers, "left_anti")
+            .unionByName(setOperation(rightDs, leftDs, identifiers, "left_anti"))
+            .dropDuplicates(iterableAsScalaIterable(identifiers).toSeq());
+    return new SparkDatasetExpression(new SparkDataset(result, getRoleMap(sparkDataset)), left);
+  }
+
+  private static List<String> getIdentifierNames(DatasetExpression dataset) {
+    return dataset.getDataStructure().getIdentifiers().stream()
+        .map(Component::getName)
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Keeps the rows of a dataset whose identifiers are (left_semi) or are not (left_anti) in another
+   * dataset. Without measures, the rows are compared as a whole with intersect and except, which
+   * avoids the join.
+   */
+  private static Dataset<Row> setOperation(
+      Dataset<Row> left, Dataset<Row> right, List<String> identifiers, String joinType) {
+    if (identifiers.size() == left.columns().length) {
+      Column[] columns =
+          Arrays.stream(left.columns()).map(name -> col(name)).toArray(Column[]::new);
+      Dataset<Row> aligned = right.select(columns);
+      return joinType.equals("left_semi") ? left.intersect(aligned) : left.except(aligned);
+    }
+    Column[] columns = identifiers.stream().map(name -> col(name)).toArray(Column[]::new);
+    return left.join(right.select(columns), iterableAsScalaIterable(identifiers).toSeq(), joinType);
+  }
+
   @Override
   public DatasetExpression executeAggr(
       DatasetExpression dataset,
@@ -542,120 +637,82 @@ public class SparkProcessingEngine implements ProcessingEngine {
       List<String> toDrop) {
     SparkDataset sparkDataset = asSparkDataset(dataset);
     Dataset<Row> ds = sparkDataset.getSparkDataset();
-    Dataset<Row> renamedDs = rename(ds, dpr.getAlias());
+    // The rules are written against the aliases of the variables.
+    Map<String, String> alias = dpr.getAlias();
+    Structured.DataStructure dataStructure = new SparkDataset(rename(ds, alias)).getDataStructure();
+
+    List<String> ruleNames = new ArrayList<>();
+    List<ResolvableExpression> conditions = new ArrayList<>();
+    List<ResolvableExpression> errorCodes = new ArrayList<>();
+    List<ResolvableExpression> errorLevels = new ArrayList<>();
+    for (DataPointRule rule : dpr.getRules()) {
+      ruleNames.add(rule.getName());
+      conditions.add(rule.getBuildAntecedentExpression(dataStructure));
+      conditions.add(rule.getBuildConsequentExpression(dataStructure));
+      errorCodes.add(rule.getErrorCodeExpression());
+      errorLevels.add(rule.getErrorLevelExpression());
+    }
+    boolean invalidOnly = output == null || output.equals(ValidationOutput.INVALID.value);
+    Class<?> errorCodeType = dpr.getErrorCodeType();
+    Class<?> errorLevelType = dpr.getErrorLevelType();
+    var rulesetFunction =
+        new SparkDataPointRulesetFunction(
+            ruleNames,
+            conditions,
+            errorCodes,
+            errorLevels,
+            errorCodeType,
+            errorLevelType,
+            invalidOnly);
+
+    // All the rules are evaluated in one pass: the function returns the results of the rules for
+    // each row, that are then exploded into one row per rule.
+    Set<String> dependencies =
+        ResolvableExpression.dependenciesOf(rulesetFunction.getExpressions());
+    List<Column> inputs = new ArrayList<>();
+    for (String name : ds.columns()) {
+      String aliasedName = alias.getOrDefault(name, name);
+      if (dependencies == null || dependencies.contains(aliasedName)) {
+        inputs.add(col(name).as(aliasedName));
+      }
+    }
+    StructType resultType =
+        DataTypes.createStructType(
+            List.of(
+                DataTypes.createStructField(RULEID, DataTypes.StringType, false),
+                DataTypes.createStructField(BOOLVAR, DataTypes.BooleanType, true),
+                DataTypes.createStructField(ERRORCODE, fromVtlType(errorCodeType), true),
+                DataTypes.createStructField(ERRORLEVEL, fromVtlType(errorLevelType), true)));
+    UserDefinedFunction rulesFunction =
+        udf(rulesetFunction, DataTypes.createArrayType(resultType, false));
 
-    SparkDataset sparkDs = new SparkDataset(renamedDs);
-    DatasetExpression sparkDsExpr = new SparkDatasetExpression(sparkDs, pos);
-    Structured.DataStructure dataStructure = sparkDs.getDataStructure();
+    String resultName = "rule";
+    while (Arrays.asList(ds.columns()).contains(resultName)) {
+      resultName = "_" + resultName;
+    }
+    Dataset<Row> exploded =
+        ds.withColumn(
+            resultName, explode(rulesFunction.apply(struct(inputs.toArray(Column[]::new)))));
 
     var roleMap = getRoleMap(sparkDataset);
-    roleMap.put(RULEID, IDENTIFIER);
-    roleMap.put(BOOLVAR, MEASURE);
-    roleMap.put(ERRORLEVEL, MEASURE);
-    roleMap.put(ERRORCODE, MEASURE);
-
-    Class errorCodeType = dpr.getErrorCodeType();
-    Class errorLevelType = dpr.getErrorLevelType();
-
-    List<DatasetExpression> datasetsExpression =
-        dpr.getRules().stream()
-            .map(
-                rule -> {
-                  String ruleName = rule.getName();
-                  ResolvableExpression ruleIdExpression =
-                      ResolvableExpression.withType(String.class)
-                          .withPosition(pos)
-                          .using(context -> ruleName);
-
-                  ResolvableExpression antecedentExpression =
-                      rule.getBuildAntecedentExpression(dataStructure);
-                  ResolvableExpression consequentExpression =
-                      rule.getBuildConsequentExpression(dataStructure);
-
-                  ResolvableExpression errorCodeExpr = rule.getErrorCodeExpression();
-                  ResolvableExpression errorCodeExpression =
-                      ResolvableExpression.withType(errorCodeType)
-                          .withPosition(pos)
-                          .using(
-                              context -> {
-                                if (errorCodeExpr == null) return null;
-                                Map<String, Object> mapContext = (Map<String, Object>) context;
-                                Object erCode = errorCodeExpr.resolve(mapContext);
-                                if (erCode == null) return null;
-                                Boolean antecedentValue =
-                                    (Boolean) antecedentExpression.resolve(mapContext);
-                                Boolean consequentValue =
-                                    (Boolean) consequentExpression.resolve(mapContext);
-                                return Boolean.TRUE.equals(antecedentValue)
-                                        && Boolean.FALSE.equals(consequentValue)
-                                    ? errorCodeType.cast(erCode)
-                                    : null;
-                              });
-
-                  ResolvableExpression errorLevelExpr = rule.getErrorLevelExpression();
-                  ResolvableExpression errorLevelExpression =
-                      ResolvableExpression.withType(errorLevelType)
-                          .withPosition(pos)
-                          .using(
-                              context -> {
-                                if (errorLevelExpr == null) return null;
-                                Map<String, Object> mapContext = (Map<String, Object>) context;
-                                Object erLevel = errorLevelExpr.resolve(mapContext);
-                                if (erLevel == null) return null;
-                                Boolean antecedentValue =
-                                    (Boolean) antecedentExpression.resolve(mapContext);
-                                Boolean consequentValue =
-                                    (Boolean) consequentExpression.resolve(mapContext);
-                                return Boolean.TRUE.equals(antecedentValue)
-                                        && Boolean.FALSE.equals(consequentValue)
-                                    ? errorLevelType.cast(erLevel)
-                                    : null;
-                              });
-
-                  ResolvableExpression BOOLVARExpression =
-                      ResolvableExpression.withType(Boolean.class)
-                          .withPosition(pos)
-                          .using(
-                              context -> {
-                                Boolean antecedentValue =
-                                    (Boolean) antecedentExpression.resolve(context);
-                                Boolean consequentValue =
-                                    (Boolean) consequentExpression.resolve(context);
-                                if (antecedentValue == null) return consequentValue;
-                                if (consequentValue == null) return antecedentValue;
-                                return !antecedentValue || consequentValue;
-                              });
-
-                  Map<String, ResolvableExpression> resolvableExpressions = new HashMap<>();
-                  resolvableExpressions.put(RULEID, ruleIdExpression);
-                  resolvableExpressions.put(BOOLVAR, BOOLVARExpression);
-                  resolvableExpressions.put(ERRORLEVEL, errorLevelExpression);
-                  resolvableExpressions.put(ERRORCODE, errorCodeExpression);
-                  // do we need to use execute executeCalcInterpreted too?
-                  return executeCalc(sparkDsExpr, resolvableExpressions, roleMap, Map.of());
-                })
-            .collect(Collectors.toList());
-
-    Dataset<Row> invertRenamedSparkDs =
-        rename(
-            asSparkDataset(executeUnion(datasetsExpression)).getSparkDataset(),
-            invertMap(dpr.getAlias()));
-    SparkDatasetExpression sparkDatasetExpression =
-        new SparkDatasetExpression(new SparkDataset(invertRenamedSparkDs), pos);
-    List<String> toKeep =
-        sparkDatasetExpression.getColumnNames().stream()
-            .filter(v -> !toDrop.contains(v))
-            .collect(Collectors.toList());
-    DatasetExpression cleanedExpression = executeProject(sparkDatasetExpression, toKeep);
-    if (output == null || output.equals(ValidationOutput.INVALID.value)) {
-      ResolvableExpression defaultExpression =
-          ResolvableExpression.withType(Boolean.class).withPosition(pos).using(c -> null);
-      DatasetExpression filteredDataset =
-          executeFilter(cleanedExpression, defaultExpression, BOOLVAR + " = false");
-      Dataset<Row> result = asSparkDataset(filteredDataset).getSparkDataset().drop(BOOLVAR);
-      return new SparkDatasetExpression(new SparkDataset(result), pos);
+    List<Column> columns = new ArrayList<>();
+    for (String name : ds.columns()) {
+      if (toDrop.contains(name)) {
+        roleMap.remove(name);
+      } else {
+        columns.add(col(name));
+      }
     }
-    return cleanedExpression;
+    List<String> results =
+        invalidOnly
+            ? List.of(RULEID, ERRORCODE, ERRORLEVEL)
+            : List.of(RULEID, BOOLVAR, ERRORCODE, ERRORLEVEL);
+    for (String name : results) {
+      columns.add(col(resultName).getField(name).as(name));
+      roleMap.put(name, RULEID.equals(name) ? IDENTIFIER : MEASURE);
+    }
+    Dataset<Row> result = exploded.select(iterableAsScalaIterable(columns).toSeq());
+    return new SparkDatasetExpression(new SparkDataset(result, roleMap), pos);
   }
 
   @Override
@@ -736,14 +793,9 @@ public class SparkProcessingEngine implements ProcessingEngine {
     if (output == null || output.equals(ValidationOutput.ALL.value)) {
       return sparkDatasetExpression;
     }
-    DatasetExpression filteredDataset =
-        executeFilter(
-            sparkDatasetExpression,
-            ResolvableExpression.withType(Boolean.class).withPosition(pos).using(c -> null),
-            BOOLVAR + " = false");
     // VTL issue: drop BOOLVAR in check_datapoint only specified but we apply also here for
     // harmonization
-    Dataset<Row> result = asSparkDataset(filteredDataset).getSparkDataset().drop(BOOLVAR);
+    Dataset<Row> result = calculatedDataset.filter(col(BOOLVAR).equalTo(false)).drop(BOOLVAR);
     return new SparkDatasetExpression(new SparkDataset(result), pos);
   }
 
@@ -761,300 +813,83 @@ public class SparkProcessingEngine implements ProcessingEngine {
       throw new UnsupportedOperationException(
           "dataset_priority input mode is not supported in check_hierarchy");
     }
-
-    // Create "bindings" (componentID column values)
-    fr.insee.vtl.model.Dataset ds = dsE.resolve(Map.of());
-
-    Map<String, Object> bindings =
-        ds.getDataAsMap().stream()
-            .collect(
-                HashMap::new,
-                (acc, dp) -> acc.put(dp.get(componentID).toString(), dp.get(hr.getVariable())),
-                HashMap::putAll);
-    // Save monomeasure type
-    Component measure = dsE.getDataStructure().getMeasures().get(0);
-    Class measureType = measure.getType();
-
-    var roleMap = getRoleMap(ds);
-    roleMap.put(RULEID, IDENTIFIER);
-    roleMap.put(BOOLVAR, MEASURE);
-    roleMap.put(IMBALANCE, MEASURE);
-    roleMap.put(ERRORLEVEL, MEASURE);
-    roleMap.put(ERRORCODE, MEASURE);
-
-    Class errorCodeType = hr.getErrorCodeType();
-    Class errorLevelType = hr.getErrorLevelType();
-
-    List<DatasetExpression> datasetsExpression = new ArrayList<>();
-    hr.getRules()
-        .forEach(
-            rule -> {
-              DatasetExpression filteredDataset;
-              try {
-                filteredDataset =
-                    executeFilterForHR(
-                        dsE, componentID + " = \"" + rule.getValueDomainValue() + "\"");
-              } catch (Exception e) {
-                throw new RuntimeException(e);
-              }
-
-              String ruleName = rule.getName();
-              List<String> codeItems = rule.getCodeItems();
-
-              // handle validationMode
-              Map<String, Object> ruleBindings = extractHRRuleBindings(bindings, codeItems);
-              Boolean hasToProduceOutputLine = checkRule(codeItems, ruleBindings, validationMode);
-              if (Boolean.FALSE.equals(hasToProduceOutputLine)) {
-                // trick to break
-                return;
-              }
-              ruleBindings =
-                  buildBindingsWithDefault(ruleBindings, codeItems, validationMode, measureType);
-              // Iterate on rules to resolve expressions
-              Map<Object, Boolean> resolvedRuleExpressions = new HashMap<>();
-              Map<Object, Double> resolvedLeftRuleExpressions = new HashMap<>();
-              Map<Object, Double> resolvedRightRuleExpressions = new HashMap<>();
-              // use try / catch because of scalar expr function resolution issue with null (only
-              // handled in ds thanks to column type)
-              try {
-                resolvedRuleExpressions.put(
-                    ruleName, (Boolean) rule.getExpression().resolve(ruleBindings));
-              } catch (Exception e) {
-                resolvedRuleExpressions.put(ruleName, null);
-              }
-              try {
-                resolvedLeftRuleExpressions.put(
-                    ruleName, (Double) rule.getLeftExpression().resolve(ruleBindings));
-              } catch (Exception e) {
-                resolvedLeftRuleExpressions.put(ruleName, null);
-              }
-              try {
-                resolvedRightRuleExpressions.put(
-                    ruleName, (Double) rule.getRightExpression().resolve(ruleBindings));
-              } catch (Exception e) {
-                resolvedRightRuleExpressions.put(ruleName, null);
-              }
-              ResolvableExpression ruleIdExpression =
-                  ResolvableExpression.withType(String.class)
-                      .withPosition(pos)
-                      .using(context -> ruleName);
-
-              String vd = rule.getValueDomainValue();
-              ResolvableExpression valueDomainExpression =
-                  ResolvableExpression.withType(String.class)
-                      .withPosition(pos)
-                      .using(context -> vd);
-
-              Boolean expression = resolvedRuleExpressions.get(ruleName);
-
-              ResolvableExpression errorCodeExpr = rule.getErrorCodeExpression();
-              ResolvableExpression errorCodeExpression =
-                  ResolvableExpression.withType(errorCodeType)
-                      .withPosition(pos)
-                      .using(
-                          context -> {
-                            if (errorCodeExpr == null || expression == null) return null;
-                            Map<String, Object> mapContext = (Map<String, Object>) context;
-                            Object erCode = errorCodeExpr.resolve(mapContext);
-                            if (erCode == null) return null;
-                            return expression.equals(Boolean.FALSE)
-                                ? errorCodeType.cast(erCode)
-                                : null;
-                          });
-
-              ResolvableExpression errorLevelExpr = rule.getErrorLevelExpression();
-              ResolvableExpression errorLevelExpression =
-                  ResolvableExpression.withType(errorLevelType)
-                      .withPosition(pos)
-                      .using(
-                          context -> {
-                            if (errorLevelExpr == null || expression == null) return null;
-                            Map<String, Object> mapContext = (Map<String, Object>) context;
-                            Object erLevel = errorLevelExpr.resolve(mapContext);
-                            if (erLevel == null) return null;
-                            return expression.equals(Boolean.FALSE)
-                                ? errorLevelType.cast(erLevel)
-                                : null;
-                          });
-
-              ResolvableExpression BoolvarExpression =
-                  ResolvableExpression.withType(Boolean.class)
-                      .withPosition(pos)
-                      .using(context -> expression);
-
-              ResolvableExpression imbalanceExpression =
-                  ResolvableExpression.withType(measureType)
-                      .withPosition(pos)
-                      .using(
-                          context -> {
-                            Double leftExpression = resolvedLeftRuleExpressions.get(ruleName);
-                            Double rightExpression = resolvedRightRuleExpressions.get(ruleName);
-                            if (leftExpression == null || rightExpression == null) {
-                              return null;
-                            }
-                            if (measureType.isAssignableFrom(Long.class)) {
-                              return leftExpression.longValue() - rightExpression.longValue();
-                            }
-                            return leftExpression - rightExpression;
-                          });
-
-              Map<String, ResolvableExpression> resolvableExpressions = new HashMap<>();
-              resolvableExpressions.put(RULEID, ruleIdExpression);
-              resolvableExpressions.put(componentID, valueDomainExpression);
-              resolvableExpressions.put(BOOLVAR, BoolvarExpression);
-              resolvableExpressions.put(IMBALANCE, imbalanceExpression);
-              resolvableExpressions.put(ERRORLEVEL, errorLevelExpression);
-              resolvableExpressions.put(ERRORCODE, errorCodeExpression);
-
-              datasetsExpression.add(
-                  executeCalc(filteredDataset, resolvableExpressions, roleMap, Map.of()));
-            });
-    DatasetExpression datasetExpression;
-    if (datasetsExpression.size() == 0) {
-      InMemoryDataset emptyCHDataset =
-          new InMemoryDataset(
-              List.of(),
-              Map.of(
-                  measure.getName(),
-                  measureType,
-                  RULEID,
-                  String.class,
-                  componentID,
-                  String.class,
-                  BOOLVAR,
-                  Boolean.class,
-                  IMBALANCE,
-                  Double.class,
-                  ERRORLEVEL,
-                  errorLevelType,
-                  ERRORCODE,
-                  errorCodeType),
-              roleMap);
-      datasetExpression = DatasetExpression.of(emptyCHDataset, pos);
-    } else {
-      datasetExpression = executeUnion(datasetsExpression);
-    }
-    // validationOutput invalid (default) | all | all_measures
-    if (null == validationOutput || validationOutput.equals("invalid")) {
-      DatasetExpression filteredDataset =
-          executeFilter(
-              datasetExpression,
-              ResolvableExpression.withType(Boolean.class).withPosition(pos).using(c -> null),
-              BOOLVAR + " = false");
-      Dataset<Row> result = asSparkDataset(filteredDataset).getSparkDataset().drop(BOOLVAR);
-      return new SparkDatasetExpression(new SparkDataset(result), pos);
-    }
-    if (validationOutput.equals("all")) {
-      String measureName = measure.getName();
-      Dataset<Row> result = asSparkDataset(datasetExpression).getSparkDataset().drop(measureName);
-      return new SparkDatasetExpression(new SparkDataset(result), pos);
-    }
-    // all_measures
-    return datasetExpression;
-  }
-
-  private DatasetExpression executeFilterForHR(DatasetExpression expression, String filterText)
-      throws Exception {
-    SparkDataset dataset = asSparkDataset(expression);
-    Dataset<Row> ds = dataset.getSparkDataset();
-    try {
-      Dataset<Row> result = ds.filter(filterText);
-      if (result.isEmpty()) {
-        result = ds.limit(1);
-      }
-      return new SparkDatasetExpression(new SparkDataset(result, getRoleMap(dataset)), expression);
-    } catch (Exception e) {
-      throw new Exception(e);
-    }
-  }
-
-  private Map<String, Object> extractHRRuleBindings(
-      Map<String, Object> bindings, List<String> items) {
-    Map<String, Object> ruleBindings = new HashMap<>();
-    items.forEach(
-        k -> {
-          if (bindings.containsKey(k)) {
-            Object value = bindings.get(k);
-            ruleBindings.put(k, value);
-          }
-        });
-    return ruleBindings;
-  }
-
-  private Boolean checkRule(
-      List<String> codeItems, Map<String, Object> ruleBindings, String validationMode) {
-    if (validationMode == null || validationMode.equals(NON_NULL)) {
-      if (codeItems.size() != ruleBindings.size()) {
-        return Boolean.FALSE;
-      }
-      if (ruleBindings.values().stream().noneMatch(Objects::isNull)) {
-        return Boolean.TRUE;
-      }
-      return Boolean.FALSE;
-    }
-    if (validationMode.equals(NON_ZERO)) {
-      if (ruleBindings.values().stream()
-          .noneMatch(
-              r -> {
-                if (null == r) {
-                  return Boolean.TRUE;
-                }
-                Double d = null;
-                if (r.getClass().isAssignableFrom(Long.class)) {
-                  d = ((Long) r).doubleValue();
-                }
-                if (r.getClass().isAssignableFrom(Double.class)) {
-                  d = (Double) r;
-                }
-                if (d.equals(0D)) {
-                  return Boolean.FALSE;
-                }
-                return Boolean.TRUE;
-              })) {
-        return Boolean.FALSE;
-      }
-      return Boolean.TRUE;
-    }
-    if (validationMode.equals(PARTIAL_NULL) || validationMode.equals(PARTIAL_ZERO)) {
-      if (ruleBindings.values().stream().filter(Objects::nonNull).count() > 0) {
-        return Boolean.TRUE;
+    SparkDataset sparkDataset = asSparkDataset(dsE);
+    Dataset<Row> ds = sparkDataset.getSparkDataset();
+    Structured.DataStructure structure = sparkDataset.getDataStructure();
+    Component measure = structure.getMeasures().get(0);
+    Class<?> measureType = measure.getType();
+    // The data points with the same other identifiers are checked together.
+    List<Column> groupBy = new ArrayList<>();
+    for (Component identifier : structure.getIdentifiers()) {
+      if (!identifier.getName().equals(componentID)) {
+        groupBy.add(col(identifier.getName()));
       }
-      return Boolean.FALSE;
     }
-    if (validationMode.equals(ALWAYS_NULL) || validationMode.equals(ALWAYS_ZERO)) {
-      return Boolean.TRUE;
-    }
-    return Boolean.FALSE;
-  }
 
-  private Map<String, Object> buildBindingsWithDefault(
-      Map<String, Object> bindings,
-      List<String> ruleItems,
-      String validationMode,
-      Class<?> measureType) {
-    Map<String, Object> bindingsWithDefault = new HashMap<>();
-    ruleItems.forEach(
-        i -> {
-          if (bindings.containsKey(i)) {
-            bindingsWithDefault.put(i, bindings.get(i));
-          } else {
-            // don't need to handle non_null, items are always in bindings
-            if (List.of(NON_ZERO, PARTIAL_ZERO, ALWAYS_ZERO).contains(validationMode)) {
-              if (measureType.isAssignableFrom(Long.class)) {
-                bindingsWithDefault.put(i, 0L);
-              } else bindingsWithDefault.put(i, 0D);
-            }
-            if (List.of(PARTIAL_NULL, ALWAYS_NULL).contains(validationMode)) {
-              bindingsWithDefault.put(i, null);
-            }
-          }
-        });
-    return bindingsWithDefault;
-  }
-
-  private <V, K> Map<V, K> invertMap(Map<K, V> map) {
-    return map.entrySet().stream()
-        .collect(Collectors.toMap(Map.Entry::getValue, Map.Entry::getKey));
+    // validationOutput invalid (default) | all | all_measures
+    boolean invalidOnly = validationOutput == null || validationOutput.equals("invalid");
+    boolean withMeasure = !"all".equals(validationOutput);
+    var rulesetFunction =
+        new SparkHierarchicalRulesetFunction(
+            hr.getRules(),
+            validationMode,
+            measureType,
+            hr.getErrorCodeType(),
+            hr.getErrorLevelType(),
+            invalidOnly);
+
+    // The code items of each group are collected in one aggregation, then all the rules are
+    // evaluated on each group and exploded into one row per checked rule.
+    String itemsName = "items";
+    while (Arrays.asList(ds.columns()).contains(itemsName)) {
+      itemsName = "_" + itemsName;
+    }
+    Dataset<Row> groups =
+        ds.filter(col(componentID).isNotNull())
+            .groupBy(groupBy.toArray(Column[]::new))
+            .agg(
+                collect_list(
+                        struct(
+                            col(componentID).cast(DataTypes.StringType).as("code"),
+                            col(measure.getName()).as("value")))
+                    .as(itemsName));
+    StructType resultType =
+        DataTypes.createStructType(
+            List.of(
+                DataTypes.createStructField("code", DataTypes.StringType, false),
+                DataTypes.createStructField("value", fromVtlType(measureType), true),
+                DataTypes.createStructField(RULEID, DataTypes.StringType, false),
+                DataTypes.createStructField(BOOLVAR, DataTypes.BooleanType, true),
+                DataTypes.createStructField(IMBALANCE, fromVtlType(measureType), true),
+                DataTypes.createStructField(ERRORCODE, fromVtlType(hr.getErrorCodeType()), true),
+                DataTypes.createStructField(
+                    ERRORLEVEL, fromVtlType(hr.getErrorLevelType()), true)));
+    UserDefinedFunction rulesFunction =
+        udf(rulesetFunction, DataTypes.createArrayType(resultType, false));
+    Dataset<Row> exploded =
+        groups.withColumn(itemsName, explode(rulesFunction.apply(col(itemsName))));
+
+    Map<String, Role> roleMap = new LinkedHashMap<>();
+    List<Column> columns = new ArrayList<>();
+    for (Component identifier : structure.getIdentifiers()) {
+      String name = identifier.getName();
+      columns.add(name.equals(componentID) ? col(itemsName).getField("code").as(name) : col(name));
+      roleMap.put(name, IDENTIFIER);
+    }
+    if (withMeasure) {
+      columns.add(col(itemsName).getField("value").as(measure.getName()));
+      roleMap.put(measure.getName(), MEASURE);
+    }
+    List<String> results =
+        invalidOnly
+            ? List.of(RULEID, IMBALANCE, ERRORCODE, ERRORLEVEL)
+            : List.of(RULEID, BOOLVAR, IMBALANCE, ERRORCODE, ERRORLEVEL);
+    for (String name : results) {
+      columns.add(col(itemsName).getField(name).as(name));
+      roleMap.put(name, RULEID.equals(name) ? IDENTIFIER : MEASURE);
+    }
+    Dataset<Row> result = exploded.select(iterableAsScalaIterable(columns).toSeq());
+    return new SparkDatasetExpression(new SparkDataset(result, roleMap), pos);
   }
 
   private List<Dataset<Row>> toAliasedDatasets(Map<String, DatasetExpression> datasets) {
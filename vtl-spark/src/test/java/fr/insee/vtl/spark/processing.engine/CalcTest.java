@@ -6,12 +6,18 @@ import fr.insee.vtl.engine.VtlScriptEngine;
 import fr.insee.vtl.model.Dataset;
 import fr.insee.vtl.model.InMemoryDataset;
 import fr.insee.vtl.model.Structured;
+import fr.insee.vtl.spark.SparkDataset;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import javax.script.Bindings;
+import javax.script.Compilable;
 import javax.script.ScriptContext;
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
+import javax.script.SimpleBindings;
 import org.apache.spark.sql.SparkSession;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -79,4 +85,196 @@ public class CalcTest {
             new Structured.Component("weight", Long.class, Dataset.Role.MEASURE),
             new Structured.Component("wisdom", Double.class, Dataset.Role.ATTRIBUTE));
   }
+
+  @Test
+  public void testCompiledCalc() throws ScriptException {
+    var compiled = ((Compilable) engine).compile("ds := ds1[calc sum_aw := age + weight];");
+
+    // The bindings of the evaluations only hold the datasets, the engine stays the Spark one.
+    for (int i = 0; i < 2; i++) {
+      Bindings bindings = new SimpleBindings();
+      bindings.put("ds1", dataset);
+      compiled.eval(bindings);
+
+      var ds = (Dataset) bindings.get("ds");
+      assertThat(ds).isInstanceOf(SparkDataset.class);
+      assertThat(ds.getDataAsMap())
+          .containsExactly(
+              Map.of("name", "Hadrien", "age", 10L, "weight", 11L, "sum_aw", 21L),
+              Map.of("name", "Nico", "age", 11L, "weight", 10L, "sum_aw", 21L),
+              Map.of("name", "Franck", "age", 12L, "weight", 9L, "sum_aw", 21L));
+    }
+    assertThat(engine.getBindings(ScriptContext.ENGINE_SCOPE)).doesNotContainKey("ds");
+  }
+
+  @Test
+  public void testCalcNativeColumns() throws ScriptException {
+    var rows = new ArrayList<Map<String, Object>>();
+    rows.add(Map.of("name", "Hadrien", "age", 10L, "weight", 0L));
+    var nulls = new HashMap<String, Object>();
+    nulls.put("name", "Nico");
+    nulls.put("age", null);
+    nulls.put("weight", 2L);
+    rows.add(nulls);
+    engine.put(
+        "ds1",
+        new InMemoryDataset(
+            rows,
+            Map.of("name", String.class, "age", Long.class, "weight", Long.class),
+            Map.of(
+                "name",
+                Dataset.Role.IDENTIFIER,
+                "age",
+                Dataset.Role.MEASURE,
+                "weight",
+                Dataset.Role.MEASURE)));
+
+    engine.eval(
+        "ds := ds1[calc "
+            + "ratio := age / weight, "
+            + "older := if age > 10 then \"yes\" else \"no\", "
+            + "age_or_zero := nvl(age, 0), "
+            + "label := upper(name) || \"_\" || cast(weight, string)];");
+
+    var ds = (SparkDataset) engine.getContext().getAttribute("ds");
+    // The expressions are evaluated by Spark, without user defined functions.
+    assertThat(ds.getSparkDataset().queryExecution().analyzed().toString()).doesNotContain("UDF");
+
+    var result = new HashMap<String, Object>();
+    result.put("name", "Nico");
+    result.put("age", null);
+    result.put("weight", 2L);
+    result.put("ratio", null);
+    result.put("older", null);
+    result.put("age_or_zero", 0L);
+    result.put("label", "NICO_2");
+    assertThat(ds.getDataAsMap())
+        .containsExactly(
+            Map.of(
+                "name",
+                "Hadrien",
+                "age",
+                10L,
+                "weight",
+                0L,
+                "ratio",
+                Double.POSITIVE_INFINITY,
+                "older",
+                "no",
+                "age_or_zero",
+                10L,
+                "label",
+                "HADRIEN_0"),
+            result);
+  }
+
+  @Test
+  public void testCalcNativeZeroDivisor() throws ScriptException {
+    engine.put(
+        "ds1",
+        new InMemoryDataset(
+            List.of(
+                List.of("a", 1D, -0D),
+                List.of("b", -1D, -0D),
+                List.of("c", 0D, -0D),
+                List.of("d", 1D, 0D),
+                List.of("e", -1D, 0D)),
+            List.of(
+                new Structured.Component("id", String.class, Dataset.Role.IDENTIFIER),
+                new Structured.Component("m1", Double.class, Dataset.Role.MEASURE),
+                new Structured.Component("m2", Double.class, Dataset.Role.MEASURE))));
+
+    engine.eval("ds := ds1[calc ratio := m1 / m2];");
+
+    var ds = (SparkDataset) engine.getContext().getAttribute("ds");
+    assertThat(ds.getSparkDataset().queryExecution().analyzed().toString()).doesNotContain("UDF");
+    // The infinities have the sign of the natives, which takes the sign of a negative zero.
+    assertThat(ds.getDataAsMap())
+        .extracting(row -> row.get("ratio"))
+        .containsExactly(
+            1D / -0D, -1D / -0D, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY);
+  }
+
+  @Test
+  public void testCalcEvaluatedColumns() throws ScriptException {
+    ScriptContext context = engine.getContext();
+    context.setAttribute("ds1", dataset, ScriptContext.ENGINE_SCOPE);
+
+    engine.eval(
+        "ds := ds1[calc "
+            + "initials := substr(name, 0, 2), "
+            + "rounded := round(weight / 4, 1), "
+            + "padded := trim(\" \" || name || \" \")];");
+
+    var ds = (SparkDataset) engine.getContext().getAttribute("ds");
+    // The three items are evaluated by a single user defined function.
+    var plan = ds.getSparkDataset().queryExecution().analyzed().toString();
+    assertThat(plan.split("UDF\\(", -1)).hasSize(2);
+    assertThat(ds.getDataAsMap())
+        .containsExactly(
+            Map.of(
+                "name",
+                "Hadrien",
+                "age",
+                10L,
+                "weight",
+                11L,
+                "initials",
+                "Ha",
+                "rounded",
+                2.8D,
+                "padded",
+                "Hadrien"),
+            Map.of(
+                "name",
+                "Nico",
+                "age",
+                11L,
+                "weight",
+                10L,
+                "initials",
+                "Ni",
+                "rounded",
+                2.5D,
+                "padded",
+                "Nico"),
+            Map.of(
+                "name",
+                "Franck",
+                "age",
+                12L,
+                "weight",
+                9L,
+                "initials",
+                "Fr",
+                "rounded",
+                2.3D,
+                "padded",
+                "Franck"));
+  }
+
+  @Test
+  public void testCalcEvaluatedOverwrite() throws ScriptException {
+    // The name of the measure followed by its index used to be the alias of the calc item.
+    engine.put(
+        "ds1",
+        new InMemoryDataset(
+            List.of(List.of("Hadrien", 11L, "a"), List.of("Nico", 10L, "b")),
+            List.of(
+                new Structured.Component("name", String.class, Dataset.Role.IDENTIFIER),
+                new Structured.Component("weight", Long.class, Dataset.Role.MEASURE),
+                new Structured.Component("weight_0", String.class, Dataset.Role.MEASURE))));
+
+    engine.eval("ds := ds1[calc weight := round(weight / 4, 1), initials := substr(name, 0, 2)];");
+
+    var ds = (SparkDataset) engine.getContext().getAttribute("ds");
+    // The existing measure is replaced by the value of the user defined function.
+    var plan = ds.getSparkDataset().queryExecution().analyzed().toString();
+    assertThat(plan.split("UDF\\(", -1)).hasSize(2);
+    assertThat(ds.getDataAsMap())
+        .containsExactly(
+            Map.of("name", "Hadrien", "weight", 2.8D, "weight_0", "a", "initials", "Ha"),
+            Map.of("name", "Nico", "weight", 2.5D, "weight_0", "b", "initials", "Ni"));
+    assertThat(ds.getDataStructure().get("weight").getType()).isEqualTo(Double.class);
+  }
 }
@@ -72,4 +72,20 @@ public class FilterTest {
             new Structured.Component("age", Long.class, Dataset.Role.MEASURE),
             new Structured.Component("weight", Long.class, Dataset.Role.MEASURE));
   }
+
+  @Test
+  public void testFilterWithUntranslatedNative() throws ScriptException {
+
+    ScriptContext context = engine.getContext();
+    context.setAttribute("ds1", dataset, ScriptContext.ENGINE_SCOPE);
+
+    // Spark SQL takes the base of log first, the filter must not be run as SQL text.
+    engine.eval("ds := ds1[filter log(age, 10) > 1];");
+
+    var ds = (Dataset) engine.getContext().getAttribute("ds");
+    assertThat(ds.getDataAsMap())
+        .containsExactlyInAnyOrder(
+            Map.of("name", "Nico", "age", 11L, "weight", 10L),
+            Map.of("name", "Franck", "age", 12L, "weight", 9L));
+  }
 }
@@ -0,0 +1,85 @@
+package fr.insee.vtl.spark.processing.engine;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import fr.insee.vtl.engine.VtlScriptEngine;
+import fr.insee.vtl.model.Dataset;
+import fr.insee.vtl.model.InMemoryDataset;
+import fr.insee.vtl.model.Structured;
+import java.util.List;
+import java.util.Map;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+import org.apache.spark.sql.SparkSession;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class SetFunctionsTest {
+
+  private final Structured.DataStructure structure =
+      new Structured.DataStructure(
+          List.of(
+              new Structured.Component("Id_1", String.class, Dataset.Role.IDENTIFIER),
+              new Structured.Component("Me_1", Long.class, Dataset.Role.MEASURE)));
+  private final InMemoryDataset ds1 =
+      new InMemoryDataset(
+          structure, List.of("1", 1L), List.of("2", 2L), List.of("3", 3L), List.of("4", 4L));
+  private final InMemoryDataset ds2 =
+      new InMemoryDataset(structure, List.of("3", 30L), List.of("4", 40L), List.of("5", 50L));
+  private final InMemoryDataset ds3 =
+      new InMemoryDataset(structure, List.of("4", 400L), List.of("1", 100L));
+
+  private SparkSession spark;
+  private ScriptEngine engine;
+
+  @BeforeEach
+  public void setUp() {
+
+    ScriptEngineManager mgr = new ScriptEngineManager();
+    engine = mgr.getEngineByExtension("vtl");
+
+    spark = SparkSession.builder().appName("test").master("local").getOrCreate();
+    SparkSession.setActiveSession(spark);
+
+    engine.put(VtlScriptEngine.PROCESSING_ENGINE_NAMES, "spark");
+  }
+
+  @AfterEach
+  public void tearDown() {
+    if (spark != null) spark.close();
+  }
+
+  @Test
+  public void testSetFunctions() throws ScriptException {
+    ScriptContext context = engine.getContext();
+    context.setAttribute("ds1", ds1, ScriptContext.ENGINE_SCOPE);
+    context.setAttribute("ds2", ds2, ScriptContext.ENGINE_SCOPE);
+    context.setAttribute("ds3", ds3, ScriptContext.ENGINE_SCOPE);
+
+    engine.eval(
+        "intersect2 := intersect(ds1, ds2); "
+            + "intersect3 := intersect(ds1, ds2, ds3); "
+            + "difference := setdiff(ds1, ds2); "
+            + "symmetricDiff := symdiff(ds1, ds2); "
+            + "identifiers := setdiff(ds1[keep Id_1], ds3[keep Id_1]);");
+
+    assertThat(((Dataset) context.getAttribute("intersect2")).getDataAsMap())
+        .containsExactlyInAnyOrder(
+            Map.of("Id_1", "3", "Me_1", 3L), Map.of("Id_1", "4", "Me_1", 4L));
+    assertThat(((Dataset) context.getAttribute("intersect3")).getDataAsMap())
+        .containsExactly(Map.of("Id_1", "4", "Me_1", 4L));
+    assertThat(((Dataset) context.getAttribute("difference")).getDataAsMap())
+        .containsExactlyInAnyOrder(
+            Map.of("Id_1", "1", "Me_1", 1L), Map.of("Id_1", "2", "Me_1", 2L));
+    assertThat(((Dataset) context.getAttribute("symmetricDiff")).getDataAsMap())
+        .containsExactlyInAnyOrder(
+            Map.of("Id_1", "1", "Me_1", 1L),
+            Map.of("Id_1", "2", "Me_1", 2L),
+            Map.of("Id_1", "5", "Me_1", 50L));
+    assertThat(((Dataset) context.getAttribute("identifiers")).getDataAsMap())
+        .containsExactlyInAnyOrder(Map.of("Id_1", "2"), Map.of("Id_1", "3"));
+  }
+}
@@ -388,6 +388,10 @@ public class ValidationTest {
                 "errorlevel",
                 "null"))
         .containsExactlyInAnyOrderElementsOf(DS_r_all_measuresWithoutNull);
+
+    // The rules are evaluated in a single pass over the dataset.
+    var plan = ((SparkDataset) DS_r_all).getSparkDataset().queryExecution().optimizedPlan();
+    assertThat(plan.toString()).doesNotContain("Union").contains("Generate");
   }
 
   @Test
@@ -1923,6 +1927,124 @@ public class ValidationTest {
                     "null")));
   }
 
+  @Test
+  public void checkHierarchyGroups() throws ScriptException {
+    Dataset ds =
+        new InMemoryDataset(
+            List.of(
+                List.of("2010", "A", 5L),
+                List.of("2010", "B", 2L),
+                List.of("2010", "C", 3L),
+                List.of("2011", "A", 4L),
+                List.of("2011", "B", 2L),
+                List.of("2011", "C", 3L),
+                List.of("2012", "B", 1L)),
+            List.of(
+                new Structured.Component("Id_1", String.class, Dataset.Role.IDENTIFIER),
+                new Structured.Component("Id_2", String.class, Dataset.Role.IDENTIFIER),
+                new Structured.Component("Me_1", Long.class, Dataset.Role.MEASURE)));
+    ScriptContext context = engine.getContext();
+    context.setAttribute("DS_1", ds, ScriptContext.ENGINE_SCOPE);
+
+    engine.eval(
+        """
+            define hierarchical ruleset HR_2 (variable rule Me_1) is
+            R1 : A = B + C errorcode "A" errorlevel 1;
+            R2 : C <= A
+            end hierarchical ruleset;
+            DS_r := check_hierarchy(DS_1, HR_2 rule Id_2);
+            DS_r_all := check_hierarchy(DS_1, HR_2 rule Id_2 all);
+            """);
+
+    // Each group of the other identifiers is checked on its own.
+    Dataset dsR = (Dataset) engine.getContext().getAttribute("DS_r");
+    assertThat(dsR.getDataAsMap())
+        .containsExactly(
+            Map.of(
+                "Id_1",
+                "2011",
+                "Id_2",
+                "A",
+                "ruleid",
+                "R1",
+                "Me_1",
+                4L,
+                "imbalance",
+                -1L,
+                "errorcode",
+                "A",
+                "errorlevel",
+                1L));
+
+    Dataset dsRAll = (Dataset) engine.getContext().getAttribute("DS_r_all");
+    List<Map<String, Object>> dsRAllWithoutNull = new ArrayList<>();
+    for (Map<String, Object> map : dsRAll.getDataAsMap()) {
+      dsRAllWithoutNull.add(replaceNullValues(map, DEFAULT_NULL_STR));
+    }
+    assertThat(dsRAllWithoutNull)
+        .containsExactlyInAnyOrder(
+            Map.of(
+                "Id_1",
+                "2010",
+                "Id_2",
+                "A",
+                "ruleid",
+                "R1",
+                "bool_var",
+                true,
+                "imbalance",
+                0L,
+                "errorcode",
+                "null",
+                "errorlevel",
+                "null"),
+            Map.of(
+                "Id_1",
+                "2010",
+                "Id_2",
+                "C",
+                "ruleid",
+                "R2",
+                "bool_var",
+                true,
+                "imbalance",
+                -2L,
+                "errorcode",
+                "null",
+                "errorlevel",
+                "null"),
+            Map.of(
+                "Id_1",
+                "2011",
+                "Id_2",
+                "A",
+                "ruleid",
+                "R1",
+                "bool_var",
+                false,
+                "imbalance",
+                -1L,
+                "errorcode",
+                "A",
+                "errorlevel",
+                1L),
+            Map.of(
+                "Id_1",
+                "2011",
+                "Id_2",
+                "C",
+                "ruleid",
+                "R2",
+                "bool_var",
+                true,
+                "imbalance",
+                -1L,
+                "errorcode",
+                "null",
+                "errorlevel",
+                "null"));
+  }
+
   @Test
   public void checkHierarchyException() {
     Dataset DS_2_HR =